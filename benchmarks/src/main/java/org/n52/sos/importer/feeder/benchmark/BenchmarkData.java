@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.xmlbeans.XmlException;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.DataFile;
+import org.n52.sos.importer.feeder.model.Sensor;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+import org.x52North.sensorweb.sos.importer.x04.ColumnDocument.Column;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument.SosImportConfiguration;
+
+/**
+ * Configurations and data lines used by the benchmarks.<br />
+ * The configuration is created from <code>configuration-test_working.xml</code>
+ * of the tests of the feeding module, which describes a GLDAS data file: the
+ * position and the time of each line are split into several columns
+ * followed by a measured value. Additional measured value columns are copies
+ * of the first one.<br />
+ * The lines are generated with a fixed seed, hence each run uses the same
+ * data.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class BenchmarkData {
+
+	public static final int LINE_COUNT = 1024;
+
+	private static final String CONFIGURATION = "/configurations/configuration-test_working.xml";
+
+	private static final long SEED = 52;
+
+	// the first measured value column of the configuration
+	private static final int MEASURED_VALUE_COLUMN = 3;
+
+	// columns of the configuration
+	private static final int COLUMN_COUNT = 7;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @param measuredValueColumns the number of measured value columns, at
+	 * 			least 1
+	 */
+	public static Configuration createConfiguration(final int measuredValueColumns) throws IOException, XmlException {
+		// loaded from a file like by the feeder, which validates it as well
+		final File configFile = File.createTempFile("benchmark-configuration", ".xml");
+		configFile.deleteOnExit();
+		createConfigurationDocument(measuredValueColumns).save(configFile);
+		return new Configuration(configFile.getAbsolutePath());
+	}
+
+	/**
+	 * @param measuredValueColumns the number of measured value columns, at
+	 * 			least 1
+	 * @return the configuration document, e.g. to be adjusted and saved
+	 */
+	public static SosImportConfigurationDocument createConfigurationDocument(final int measuredValueColumns)
+			throws IOException, XmlException {
+		// the test configurations use an older version of the schema with the same elements
+		final String xml = read(CONFIGURATION)
+				.replace("\uFEFF", "")
+				.replaceAll("<\\?xml[^>]*\\?>", "")
+				.replace("/sos/importer/0.2/", "/sos/importer/0.4/");
+		final SosImportConfigurationDocument importConfDoc = SosImportConfigurationDocument.Factory.parse(xml);
+		final SosImportConfiguration importConf = importConfDoc.getSosImportConfiguration();
+		final Column measuredValue = importConf.getCsvMetadata().getColumnAssignments().getColumnArray(MEASURED_VALUE_COLUMN);
+		for (int i = 1; i < measuredValueColumns; i++) {
+			final Column column = importConf.getCsvMetadata().getColumnAssignments().addNewColumn();
+			column.set(measuredValue);
+			column.setNumber(COLUMN_COUNT + i - 1);
+		}
+		return importConfDoc;
+	}
+
+	public static DataFile createDataFile(final Configuration configuration) {
+		return new DataFile(configuration, new File("benchmark.csv"));
+	}
+
+	/**
+	 * @return {@link #LINE_COUNT} lines of one position with hourly values
+	 */
+	public static String[][] createLines(final int measuredValueColumns) {
+		return createLines(measuredValueColumns, LINE_COUNT);
+	}
+
+	/**
+	 * @return the given number of lines of one position with hourly values
+	 */
+	public static String[][] createLines(final int measuredValueColumns, final int lineCount) {
+		final Random random = new Random(SEED);
+		final String[][] lines = new String[lineCount][];
+		for (int i = 0; i < lineCount; i++) {
+			final String[] line = new String[COLUMN_COUNT + measuredValueColumns - 1];
+			line[0] = Integer.toString(i);
+			line[1] = "7,6250";
+			line[2] = "51,9375";
+			line[MEASURED_VALUE_COLUMN] = createValue(random);
+			final int day = i / 24;
+			line[4] = String.format("%d.%d.%d", day % 28 + 1, day / 28 % 12 + 1, 2015 + day / 336);
+			line[5] = String.format("%d,00", i % 24);
+			line[6] = "0,00";
+			for (int j = COLUMN_COUNT; j < line.length; j++) {
+				line[j] = createValue(random);
+			}
+			lines[i] = line;
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the observation of the given measured value column of the
+	 * 			given line as created by the feeder
+	 */
+	public static InsertObservation createInsertObservation(final DataFile dataFile,
+			final int mvColumn,
+			final String[] values) throws ParseException {
+		final Sensor sensor = dataFile.getSensorForColumn(mvColumn, values);
+		return new InsertObservation(sensor,
+				dataFile.getFoiForColumn(mvColumn, values),
+				dataFile.getValue(mvColumn, values),
+				dataFile.getTimeStamp(mvColumn, values),
+				dataFile.getUnitOfMeasurement(mvColumn, values),
+				dataFile.getObservedProperty(mvColumn, values),
+				dataFile.getOffering(sensor),
+				dataFile.getType(mvColumn));
+	}
+
+	/**
+	 * Writes the given lines to a data file matching the configuration, i.e.
+	 * separated by semicolons and preceded by a header line.
+	 */
+	public static void writeDataFile(final File file, final String[][] lines) throws IOException {
+		try (final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+			out.write("id;lon;lat;value;date;hour;minute\n");
+			for (final String[] line : lines) {
+				for (int i = 0; i < line.length; i++) {
+					if (i > 0) {
+						out.write(';');
+					}
+					out.write(line[i]);
+				}
+				out.write('\n');
+			}
+		}
+	}
+
+	private static String createValue(final Random random) {
+		// temperatures in degree celsius with the decimal separator of the configuration
+		return String.format(Locale.GERMAN, "%.4f", random.nextGaussian() * 8 + 10);
+	}
+
+	private static String read(final String resource) throws IOException {
+		try (final InputStream in = BenchmarkData.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IOException(String.format("Resource '%s' not found.", resource));
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toString("UTF-8");
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.benchmark;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.model.Position;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of numbers and positions using the decimal separator and the
+ * position columns of the configuration.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ConfigurationBenchmark {
+
+	// position group of the configuration
+	private static final String POSITION_GROUP = "A";
+
+	private Configuration configuration;
+
+	private String[][] lines;
+
+	private int line;
+
+	@Setup
+	public void setUp() throws Exception {
+		configuration = BenchmarkData.createConfiguration(1);
+		lines = BenchmarkData.createLines(1);
+	}
+
+	@Benchmark
+	public double parseToDouble() throws ParseException {
+		return configuration.parseToDouble(nextLine()[3]);
+	}
+
+	@Benchmark
+	public Position getPosition() throws ParseException {
+		return configuration.getPosition(POSITION_GROUP, nextLine());
+	}
+
+	private String[] nextLine() {
+		line = (line + 1) % lines.length;
+		return lines[line];
+	}
+
+}
@@ -0,0 +1,465 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.n52.sos.importer.feeder.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in of a transactional SOS listening on localhost, which
+ * answers the operations used by the feeder: GetCapabilities,
+ * RegisterSensor (1.0.0), InsertSensor (2.0.0) and InsertObservation using the
+ * POX binding or KVP for GetCapabilities.<br />
+ * Observations are not stored, hence each request is answered after the
+ * configured latency with a minimal, valid response. Failures can be injected
+ * per InsertObservation request:
+ * <ul>
+ * <li><b>failure rate</b>: the connection is closed without response, which
+ * 		is a transport error for the feeder</li>
+ * <li><b>error rate</b>: an OWS exception report is returned</li>
+ * <li><b>duplicate rate</b>: the exception report of the 52&deg;North SOS for
+ * 		observations already contained is returned</li>
+ * </ul>
+ * The capabilities list an offering for each sensor registered before.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class MockSos implements HttpHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MockSos.class);
+
+	private static final String PATH = "/sos";
+
+	private static final String NS_SOS_1_0_0 = "http://www.opengis.net/sos/1.0";
+
+	private static final String NS_SOS_2_0_0 = "http://www.opengis.net/sos/2.0";
+
+	private static final String NS_SWES_2_0_0 = "http://www.opengis.net/swes/2.0";
+
+	private static final String NS_OWS = "http://www.opengis.net/ows/1.1";
+
+	private static final String NAMESPACES = " xmlns:ows=\"" + NS_OWS + "\""
+			+ " xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"";
+
+	private static final Pattern OPERATION = Pattern.compile(
+			"<(?:[\\w.-]+:)?(GetCapabilities|RegisterSensor|InsertSensor|InsertObservation)[\\s/>]");
+
+	private static final Pattern VERSION_2_0_0 = Pattern.compile(
+			"(?:Version>|version=\"|[vV]ersions?=)2\\.0\\.0");
+
+	private static final Pattern UNIQUE_ID = Pattern.compile("uniqueID.*?value>([^<]+)<", Pattern.DOTALL);
+
+	private static final Pattern OFFERING_ID = Pattern.compile("offeringID.*?value>([^<]+)<", Pattern.DOTALL);
+
+	private final AtomicLong capabilitiesRequests = new AtomicLong();
+
+	private final AtomicLong registerRequests = new AtomicLong();
+
+	private final AtomicLong insertRequests = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong duplicates = new AtomicLong();
+
+	// procedure -> offering
+	private final Map<String, String> sensors = new ConcurrentHashMap<>();
+
+	private volatile long latency;
+
+	private volatile double failureRate;
+
+	private volatile double errorRate;
+
+	private volatile double duplicateRate;
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	private URL url;
+
+	/**
+	 * Starts the server on a free port of localhost.
+	 *
+	 * @return the service URL to be used in the <code>&lt;SosMetadata&gt;</code>
+	 * 			of a configuration
+	 */
+	public synchronized URL start() throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("Mock SOS already started.");
+		}
+		final InetAddress localhost = InetAddress.getByName("localhost");
+		server = HttpServer.create(new InetSocketAddress(localhost, 0), 0);
+		server.createContext(PATH, this);
+		// each request is answered in its own thread -> concurrent inserts are not serialized
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+		url = new URL("http", localhost.getHostName(), server.getAddress().getPort(), PATH);
+		LOG.info("Mock SOS started at '{}'.", url);
+		return url;
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+			LOG.info("Mock SOS at '{}' stopped.", url);
+		}
+	}
+
+	public URL getUrl() {
+		return url;
+	}
+
+	/**
+	 * @param latency the time in milliseconds each request is delayed before
+	 * 			answering
+	 */
+	public void setLatency(final long latency) {
+		this.latency = latency;
+	}
+
+	/**
+	 * @param failureRate the probability of an InsertObservation request to
+	 * 			be answered by closing the connection
+	 */
+	public void setFailureRate(final double failureRate) {
+		this.failureRate = checkRate(failureRate);
+	}
+
+	/**
+	 * @param errorRate the probability of an InsertObservation request to be
+	 * 			answered by an exception report
+	 */
+	public void setErrorRate(final double errorRate) {
+		this.errorRate = checkRate(errorRate);
+	}
+
+	/**
+	 * @param duplicateRate the probability of an InsertObservation request to
+	 * 			be answered as already contained observation
+	 */
+	public void setDuplicateRate(final double duplicateRate) {
+		this.duplicateRate = checkRate(duplicateRate);
+	}
+
+	public long getCapabilitiesRequests() {
+		return capabilitiesRequests.get();
+	}
+
+	/**
+	 * @return the number of RegisterSensor and InsertSensor requests
+	 */
+	public long getRegisterRequests() {
+		return registerRequests.get();
+	}
+
+	/**
+	 * @return the number of InsertObservation requests including the ones
+	 * 			answered by injected failures
+	 */
+	public long getInsertRequests() {
+		return insertRequests.get();
+	}
+
+	public long getRequests() {
+		return getCapabilitiesRequests() + getRegisterRequests() + getInsertRequests();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	@Override
+	public void handle(final HttpExchange exchange) throws IOException {
+		try {
+			final String request = "GET".equalsIgnoreCase(exchange.getRequestMethod())?
+					URLDecoder.decode(String.valueOf(exchange.getRequestURI().getRawQuery()), "UTF-8") :
+					read(exchange.getRequestBody());
+			if (latency > 0) {
+				Thread.sleep(latency);
+			}
+			final Matcher operation = OPERATION.matcher(request);
+			if (operation.find()) {
+				handle(exchange, operation.group(1), request, getVersion(request));
+			} else if (request.contains("request=GetCapabilities")) {
+				handle(exchange, "GetCapabilities", request, getVersion(request));
+			} else {
+				LOG.warn("Request not supported by mock SOS: {}", request);
+				send(exchange, 400, createExceptionReport("1.0.0", "OperationNotSupported", "Request not supported by mock SOS."));
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handle(final HttpExchange exchange,
+			final String operation,
+			final String request,
+			final String version) throws IOException {
+		switch (operation) {
+		case "GetCapabilities":
+			capabilitiesRequests.incrementAndGet();
+			send(exchange, 200, createCapabilities(version));
+			break;
+		case "RegisterSensor":
+		case "InsertSensor":
+			registerRequests.incrementAndGet();
+			send(exchange, 200, registerSensor(request, version));
+			break;
+		default:
+			insertRequests.incrementAndGet();
+			insertObservation(exchange, version);
+		}
+	}
+
+	private void insertObservation(final HttpExchange exchange, final String version) throws IOException {
+		final double random = ThreadLocalRandom.current().nextDouble();
+		if (random < failureRate) {
+			failures.incrementAndGet();
+			// closing the exchange without response headers closes the connection
+			return;
+		}
+		if (random < failureRate + errorRate) {
+			errors.incrementAndGet();
+			send(exchange, getExceptionStatus(version), createExceptionReport(version,
+					Configuration.SOS_EXCEPTION_CODE_NO_APPLICABLE_CODE,
+					"Error injected by mock SOS."));
+		} else if (random < failureRate + errorRate + duplicateRate) {
+			duplicates.incrementAndGet();
+			send(exchange, getExceptionStatus(version), createExceptionReport(version,
+					Configuration.SOS_EXCEPTION_CODE_NO_APPLICABLE_CODE,
+					version.equals("2.0.0")?
+							"duplicate key value violates unique constraint \""
+									+ Configuration.SOS_200_DUPLICATE_OBSERVATION_CONSTRAINT + "\"" :
+							Configuration.SOS_EXCEPTION_OBSERVATION_ALREADY_CONTAINED));
+		} else if (version.equals("2.0.0")) {
+			send(exchange, 200, "<sos:InsertObservationResponse xmlns:sos=\"" + NS_SOS_2_0_0 + "\"/>");
+		} else {
+			send(exchange, 200, "<sos:InsertObservationResponse xmlns:sos=\"" + NS_SOS_1_0_0 + "\">"
+					+ "<sos:AssignedObservationId>o_" + insertRequests.get() + "</sos:AssignedObservationId>"
+					+ "</sos:InsertObservationResponse>");
+		}
+	}
+
+	private String registerSensor(final String request, final String version) {
+		// the sensor description might be embedded as escaped text
+		final String description = request.replace("&lt;", "<").replace("&gt;", ">");
+		final String procedure = find(UNIQUE_ID, description, "urn:ogc:object:feature:Sensor:mock-" + registerRequests.get());
+		final String offering = find(OFFERING_ID, description, procedure + "-offering");
+		sensors.put(procedure, offering);
+		if (version.equals("2.0.0")) {
+			return "<swes:InsertSensorResponse xmlns:swes=\"" + NS_SWES_2_0_0 + "\">"
+					+ "<swes:assignedProcedure>" + escape(procedure) + "</swes:assignedProcedure>"
+					+ "<swes:assignedOffering>" + escape(offering) + "</swes:assignedOffering>"
+					+ "</swes:InsertSensorResponse>";
+		}
+		return "<sos:RegisterSensorResponse xmlns:sos=\"" + NS_SOS_1_0_0 + "\">"
+				+ "<sos:AssignedSensorId>" + escape(procedure) + "</sos:AssignedSensorId>"
+				+ "</sos:RegisterSensorResponse>";
+	}
+
+	private String createCapabilities(final String version) {
+		final StringBuilder capabilities = new StringBuilder(4096);
+		if (version.equals("2.0.0")) {
+			capabilities.append("<sos:Capabilities xmlns:sos=\"").append(NS_SOS_2_0_0)
+					.append("\" xmlns:swes=\"").append(NS_SWES_2_0_0)
+					.append("\" xmlns:gml=\"http://www.opengis.net/gml/3.2\"")
+					.append(NAMESPACES).append(" version=\"2.0.0\">");
+			appendServiceMetadata(capabilities, version, "InsertSensor");
+			capabilities.append("<sos:contents><sos:Contents>");
+			appendOffering200(capabilities, "mock-offering", "mock-procedure");
+			for (final Map.Entry<String, String> sensor : sensors.entrySet()) {
+				appendOffering200(capabilities, sensor.getValue(), sensor.getKey());
+			}
+			capabilities.append("</sos:Contents></sos:contents></sos:Capabilities>");
+		} else {
+			capabilities.append("<sos:Capabilities xmlns:sos=\"").append(NS_SOS_1_0_0)
+					.append("\" xmlns:gml=\"http://www.opengis.net/gml\"")
+					.append(" xmlns:om=\"http://www.opengis.net/om/1.0\"")
+					.append(NAMESPACES).append(" version=\"1.0.0\">");
+			appendServiceMetadata(capabilities, version, "RegisterSensor");
+			capabilities.append("<sos:Contents><sos:ObservationOfferingList>");
+			appendOffering100(capabilities, "mock-offering", "mock-procedure");
+			for (final Map.Entry<String, String> sensor : sensors.entrySet()) {
+				appendOffering100(capabilities, sensor.getValue(), sensor.getKey());
+			}
+			capabilities.append("</sos:ObservationOfferingList></sos:Contents></sos:Capabilities>");
+		}
+		return capabilities.toString();
+	}
+
+	private void appendServiceMetadata(final StringBuilder capabilities,
+			final String version,
+			final String registerOperation) {
+		capabilities.append("<ows:ServiceIdentification>")
+				.append("<ows:Title>52North SOS Importer Mock SOS</ows:Title>")
+				.append("<ows:ServiceType codeSpace=\"http://opengeospatial.net\">OGC:SOS</ows:ServiceType>")
+				.append("<ows:ServiceTypeVersion>").append(version).append("</ows:ServiceTypeVersion>")
+				.append("</ows:ServiceIdentification>")
+				.append("<ows:ServiceProvider><ows:ProviderName>52North</ows:ProviderName>")
+				.append("<ows:ServiceContact/></ows:ServiceProvider>")
+				.append("<ows:OperationsMetadata>");
+		for (final String operation : new String[] {"GetCapabilities", registerOperation, "InsertObservation"}) {
+			capabilities.append("<ows:Operation name=\"").append(operation).append("\"><ows:DCP><ows:HTTP>")
+					.append("<ows:Get xlink:href=\"").append(escape(url + "?")).append("\"/>")
+					.append("<ows:Post xlink:href=\"").append(escape(url.toString())).append("\"/>")
+					.append("</ows:HTTP></ows:DCP></ows:Operation>");
+		}
+		capabilities.append("</ows:OperationsMetadata>");
+	}
+
+	private void appendOffering100(final StringBuilder capabilities, final String offering, final String procedure) {
+		capabilities.append("<sos:ObservationOffering gml:id=\"o").append(Math.abs(offering.hashCode())).append("\">")
+				.append("<gml:name>").append(escape(offering)).append("</gml:name>")
+				.append("<gml:boundedBy><gml:Envelope srsName=\"").append(Configuration.SOS_100_EPSG_CODE_PREFIX).append("4326\">")
+				.append("<gml:lowerCorner>-90 -180</gml:lowerCorner><gml:upperCorner>90 180</gml:upperCorner>")
+				.append("</gml:Envelope></gml:boundedBy>")
+				.append("<sos:time><gml:TimePeriod xsi:type=\"gml:TimePeriodType\">")
+				.append("<gml:beginPosition>2015-01-01T00:00:00Z</gml:beginPosition>")
+				.append("<gml:endPosition>2015-12-31T23:00:00Z</gml:endPosition>")
+				.append("</gml:TimePeriod></sos:time>")
+				.append("<sos:procedure xlink:href=\"").append(escape(procedure)).append("\"/>")
+				.append("<sos:observedProperty xlink:href=\"mock-property\"/>")
+				.append("<sos:featureOfInterest xlink:href=\"mock-feature\"/>")
+				.append("<sos:responseFormat>text/xml;subtype=\"om/1.0.0\"</sos:responseFormat>")
+				.append("<sos:resultModel>om:Measurement</sos:resultModel>")
+				.append("<sos:responseMode>inline</sos:responseMode>")
+				.append("</sos:ObservationOffering>");
+	}
+
+	private void appendOffering200(final StringBuilder capabilities, final String offering, final String procedure) {
+		capabilities.append("<swes:offering><sos:ObservationOffering>")
+				.append("<swes:identifier>").append(escape(offering)).append("</swes:identifier>")
+				.append("<swes:procedure>").append(escape(procedure)).append("</swes:procedure>")
+				.append("<swes:observableProperty>mock-property</swes:observableProperty>")
+				.append("<sos:observedArea><gml:Envelope srsName=\"").append(Configuration.SOS_200_EPSG_CODE_PREFIX).append("4326\">")
+				.append("<gml:lowerCorner>-90 -180</gml:lowerCorner><gml:upperCorner>90 180</gml:upperCorner>")
+				.append("</gml:Envelope></sos:observedArea>")
+				.append("<sos:phenomenonTime><gml:TimePeriod gml:id=\"t").append(Math.abs(offering.hashCode())).append("\">")
+				.append("<gml:beginPosition>2015-01-01T00:00:00Z</gml:beginPosition>")
+				.append("<gml:endPosition>2015-12-31T23:00:00Z</gml:endPosition>")
+				.append("</gml:TimePeriod></sos:phenomenonTime>")
+				.append("<sos:responseFormat>http://www.opengis.net/om/2.0</sos:responseFormat>")
+				.append("<sos:observationType>http://www.opengis.net/def/observationType/OGC-OM/2.0/OM_Measurement</sos:observationType>")
+				.append("</sos:ObservationOffering></swes:offering>");
+	}
+
+	private String createExceptionReport(final String version, final String code, final String text) {
+		return "<ows:ExceptionReport xmlns:ows=\"" + NS_OWS + "\" version=\"" + version + "\">"
+				+ "<ows:Exception exceptionCode=\"" + code + "\">"
+				+ "<ows:ExceptionText>" + escape(text) + "</ows:ExceptionText>"
+				+ "</ows:Exception></ows:ExceptionReport>";
+	}
+
+	private String getVersion(final String request) {
+		return request.contains(NS_SOS_2_0_0) || VERSION_2_0_0.matcher(request).find()? "2.0.0" : "1.0.0";
+	}
+
+	/*
+	 * The 52North SOS 4.x answers exception reports with HTTP status 400 while
+	 * the 3.x versions implementing SOS 1.0.0 use status 200.
+	 */
+	private int getExceptionStatus(final String version) {
+		return version.equals("2.0.0")? 400 : 200;
+	}
+
+	private double checkRate(final double rate) {
+		if (rate < 0 || rate > 1) {
+			throw new IllegalArgumentException(String.format("Rate must be between 0 and 1: %s", rate));
+		}
+		return rate;
+	}
+
+	private void send(final HttpExchange exchange, final int status, final String response) throws IOException {
+		final byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + response).getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "text/xml;charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (final OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String find(final Pattern pattern, final String text, final String defaultValue) {
+		final Matcher matcher = pattern.matcher(text);
+		return matcher.find()? matcher.group(1).trim().replace("&amp;", "&") : defaultValue;
+	}
+
+	private static String escape(final String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	private static String read(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toString("UTF-8");
+	}
+
+}
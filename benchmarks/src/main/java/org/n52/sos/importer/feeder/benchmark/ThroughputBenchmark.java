@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.Configuration.ImportStrategy;
+import org.n52.sos.importer.feeder.metrics.ImportMetrics;
+import org.n52.sos.importer.feeder.task.OneTimeFeeder;
+import org.x52North.sensorweb.sos.importer.x04.KeyDocument.Key;
+import org.x52North.sensorweb.sos.importer.x04.MetadataDocument.Metadata;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument.SosImportConfiguration;
+import org.x52North.sensorweb.sos.importer.x04.SosMetadataDocument.SosMetadata;
+
+/**
+ * End-to-end throughput of the feeder: a {@link OneTimeFeeder} imports a
+ * generated data file into a {@link MockSos} for each {@link ImportStrategy}
+ * and SOS version. Observations per second, requests per second and the
+ * 99th percentile of the InsertObservation latency are printed for each run.
+ * <br />
+ * Run with
+ * <code>java -cp benchmarks/target/benchmarks.jar org.n52.sos.importer.feeder.benchmark.ThroughputBenchmark</code>.
+ * The following system properties are supported:
+ * <ul>
+ * <li><code>benchmark.lines</code>: lines of the data file, default 8192</li>
+ * <li><code>benchmark.measuredValueColumns</code>: default 1</li>
+ * <li><code>benchmark.sosVersions</code>: comma separated, default
+ * 		<code>1.0.0,2.0.0</code></li>
+ * <li><code>benchmark.hunkSize</code>: default 1000</li>
+ * <li><code>benchmark.concurrentInserts</code>: default 1</li>
+ * <li><code>benchmark.latency</code>: of the mock SOS in milliseconds,
+ * 		default 2</li>
+ * <li><code>benchmark.failureRate</code>, <code>benchmark.errorRate</code>
+ * 		and <code>benchmark.duplicateRate</code>: see {@link MockSos},
+ * 		default 0</li>
+ * <li><code>benchmark.retries</code>: default 3</li>
+ * </ul>
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class ThroughputBenchmark {
+
+	private static final String RESULT_FORMAT = "%-38s %-6s %12s %12s %10s %8s %8s%n";
+
+	private ThroughputBenchmark() {
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final int lineCount = Integer.getInteger("benchmark.lines", 8 * BenchmarkData.LINE_COUNT);
+		final int measuredValueColumns = Integer.getInteger("benchmark.measuredValueColumns", 1);
+		final File directory = Files.createTempDirectory("sos-importer-benchmark").toFile();
+		final File dataFile = new File(directory, "throughput.csv");
+		BenchmarkData.writeDataFile(dataFile, BenchmarkData.createLines(measuredValueColumns, lineCount));
+		System.out.printf(RESULT_FORMAT, "Strategy", "SOS", "obs/s", "requests/s", "p99 [ms]", "failed", "retries");
+		for (final ImportStrategy strategy : ImportStrategy.values()) {
+			for (final String sosVersion : System.getProperty("benchmark.sosVersions", "1.0.0,2.0.0").split(",")) {
+				run(strategy, sosVersion.trim(), dataFile, measuredValueColumns);
+			}
+		}
+	}
+
+	private static void run(final ImportStrategy strategy,
+			final String sosVersion,
+			final File dataFile,
+			final int measuredValueColumns) throws Exception {
+		final MockSos sos = new MockSos();
+		sos.setLatency(Long.getLong("benchmark.latency", 2));
+		sos.setFailureRate(getRate("benchmark.failureRate"));
+		sos.setErrorRate(getRate("benchmark.errorRate"));
+		sos.setDuplicateRate(getRate("benchmark.duplicateRate"));
+		try {
+			final URL url = sos.start();
+			// each run uses its own configuration file -> own metrics and counter file
+			final File configFile = new File(dataFile.getParentFile(),
+					String.format("throughput-%s-%s.xml", strategy, sosVersion));
+			createConfigurationDocument(measuredValueColumns, strategy, sosVersion, url, dataFile).save(configFile);
+			final Configuration config = new Configuration(configFile.getAbsolutePath());
+			final long start = System.nanoTime();
+			new OneTimeFeeder(config).run();
+			final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+			final ImportMetrics metrics = ImportMetrics.get(config.getFileName());
+			System.out.printf(RESULT_FORMAT,
+					strategy,
+					sosVersion,
+					String.format("%.1f", (metrics.getObservations() - metrics.getFailedObservations()) / seconds),
+					String.format("%.1f", sos.getRequests() / seconds),
+					metrics.getInsertLatency99thPercentile(),
+					metrics.getFailedObservations(),
+					metrics.getRetries());
+		} finally {
+			sos.stop();
+		}
+	}
+
+	private static SosImportConfigurationDocument createConfigurationDocument(final int measuredValueColumns,
+			final ImportStrategy strategy,
+			final String sosVersion,
+			final URL url,
+			final File dataFile) throws Exception {
+		final SosImportConfigurationDocument importConfDoc = BenchmarkData.createConfigurationDocument(measuredValueColumns);
+		final SosImportConfiguration importConf = importConfDoc.getSosImportConfiguration();
+		importConf.getDataFile().getLocalFile().setPath(dataFile.getAbsolutePath());
+		final SosMetadata sosMeta = importConf.getSosMetadata();
+		sosMeta.setURL(url.toString());
+		sosMeta.setVersion(sosVersion);
+		if (sosVersion.equals("2.0.0")) {
+			sosMeta.setBinding("POX");
+		}
+		// registered sensors are not stored in the importer home
+		sosMeta.setSensorRegistryMaxAge(0);
+		sosMeta.setConcurrentInserts(Integer.getInteger("benchmark.concurrentInserts", 1));
+		sosMeta.setRetries(Integer.getInteger("benchmark.retries", 3));
+		sosMeta.setRetryDelay(10);
+		if (!importConf.isSetAdditionalMetadata()) {
+			importConf.addNewAdditionalMetadata();
+		}
+		final Metadata importStrategy = importConf.getAdditionalMetadata().addNewMetadata();
+		importStrategy.setKey(Key.IMPORT_STRATEGY);
+		importStrategy.setValue(strategy.name());
+		final Metadata hunkSize = importConf.getAdditionalMetadata().addNewMetadata();
+		hunkSize.setKey(Key.HUNK_SIZE);
+		hunkSize.setValue(Integer.toString(Integer.getInteger("benchmark.hunkSize", 1000)));
+		return importConfDoc;
+	}
+
+	private static double getRate(final String property) {
+		return Double.parseDouble(System.getProperty(property, "0"));
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.n52.sos.importer.feeder.DataFile;
+import org.n52.sos.importer.feeder.model.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formatting and comparing of the timestamps parsed from the data lines,
+ * which is done for each observation sent.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TimestampBenchmark {
+
+	private Timestamp[] timestamps;
+
+	private int index;
+
+	@Setup
+	public void setUp() throws Exception {
+		final DataFile dataFile = BenchmarkData.createDataFile(BenchmarkData.createConfiguration(1));
+		final int mvColumn = dataFile.getMeasuredValueColumnIds()[0];
+		final String[][] lines = BenchmarkData.createLines(1);
+		timestamps = new Timestamp[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			timestamps[i] = dataFile.getTimeStamp(mvColumn, lines[i]);
+		}
+	}
+
+	@Benchmark
+	public String toStringOfTimestamp() {
+		return timestamps[next()].toString();
+	}
+
+	@Benchmark
+	public boolean before() {
+		final int i = next();
+		return timestamps[i].before(timestamps[(i * 7) % timestamps.length]);
+	}
+
+	private int next() {
+		index = (index + 1) % timestamps.length;
+		return index;
+	}
+
+}
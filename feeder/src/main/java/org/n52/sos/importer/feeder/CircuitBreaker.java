@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops sending requests to an SOS which is not available.<br />
+ * After a number of consecutive failed requests the breaker is opened: each
+ * call of {@link #acquire()} blocks for the pause, which pauses all senders
+ * of the {@link InsertPipeline} and hence the parsing, too. Afterwards, one
+ * trial request is allowed. If it succeeds, the breaker is closed again,
+ * else it is opened for another pause.<br />
+ * A threshold of <code>0</code> disables the breaker.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+final class CircuitBreaker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	private final String name;
+
+	private final int threshold;
+
+	private final long pauseNanos;
+
+	private int failures;
+
+	// System.nanoTime() until which no requests are sent, if open
+	private long openUntil;
+
+	private boolean isOpen;
+
+	private boolean isTrialRunning;
+
+	/**
+	 * @param name used for logging, e.g. the SOS URL
+	 * @param threshold the number of consecutive failures opening the breaker
+	 * @param pause the time in milliseconds the breaker stays open
+	 */
+	CircuitBreaker(final String name, final int threshold, final long pause) {
+		this.name = name;
+		this.threshold = threshold;
+		pauseNanos = TimeUnit.MILLISECONDS.toNanos(pause);
+	}
+
+	/**
+	 * Blocks while the breaker is open or another trial request is running.
+	 *
+	 * @throws InterruptedIOException if the calling thread was interrupted
+	 */
+	synchronized void acquire() throws IOException {
+		try {
+			while (isOpen) {
+				final long remaining = openUntil - System.nanoTime();
+				if (remaining <= 0 && !isTrialRunning) {
+					LOG.info("Sending trial request to SOS '{}'.", name);
+					isTrialRunning = true;
+					return;
+				}
+				if (remaining > 0) {
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				} else {
+					wait();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw (IOException) new InterruptedIOException("Interrupted while waiting for SOS '" + name + "'.").initCause(e);
+		}
+	}
+
+	/**
+	 * Records a request answered by the SOS, incl. exception reports.
+	 */
+	synchronized void onSuccess() {
+		failures = 0;
+		if (isOpen) {
+			LOG.info("SOS '{}' is available again. Resuming requests.", name);
+			isOpen = false;
+			isTrialRunning = false;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Records a request failed because the SOS could not be reached.
+	 */
+	synchronized void onFailure() {
+		failures++;
+		if (threshold > 0 && (isTrialRunning || !isOpen && failures >= threshold)) {
+			LOG.warn("SOS '{}' is not available: {} consecutive requests failed. Pausing requests for {}ms.",
+					name, failures, TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+			isOpen = true;
+			isTrialRunning = false;
+			openUntil = System.nanoTime() + pauseNanos;
+			notifyAll();
+		}
+	}
+
+	synchronized boolean isOpen() {
+		return isOpen;
+	}
+
+}
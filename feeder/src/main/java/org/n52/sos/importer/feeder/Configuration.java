@@ -32,14 +32,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
@@ -147,11 +146,25 @@ public final class Configuration {
         SweArrayObservationWithSplitExtension;
     }
 
+    public enum DuplicateFilterPolicy {
+        /**
+         * Only observations listed in the duplicate filter are dropped.
+         */
+        Exact,
+        /**
+         * Observations reported by the bloom filter of the duplicate filter
+         * are dropped, including false positives.
+         */
+        Probabilistic;
+    }
+
     private SosImportConfiguration importConf;
     private final File configFile;
 
     private Pattern localeFilePattern = null;
 
+    private volatile DecimalParser decimalParser;
+
     public Configuration(final String pathToFile) throws XmlException, IOException {
         LOG.trace("Configuration({})",pathToFile);
         configFile = new File(pathToFile);
@@ -572,6 +585,34 @@ public final class Configuration {
         return null;
     }
 
+    /**
+     * @return all positions defined in <code>AdditionalMetadata.FOIPosition</code>
+     *             by the uri of their feature of interest. If more than one
+     *             position is defined for one uri, the first one is used like
+     *             in {@link #getFoiPosition(String)}.
+     */
+    public Map<String, Position> getFoiPositions() {
+        LOG.trace("getFoiPositions()");
+        final Map<String, Position> foiPositions = new HashMap<String, Position>();
+        if (importConf.getAdditionalMetadata() != null &&
+                importConf.getAdditionalMetadata().getFOIPositionArray() != null) {
+            for (final FOIPosition pos : importConf.getAdditionalMetadata().getFOIPositionArray()) {
+                if (pos.getURI() != null &&
+                        pos.getURI().getStringValue() != null &&
+                        !foiPositions.containsKey(pos.getURI().getStringValue())) {
+                    final org.x52North.sensorweb.sos.importer.x04.PositionDocument.Position p = pos.getPosition();
+                    if (p.isSetAlt() &&
+                            p.isSetEPSGCode() &&
+                            p.isSetLat() &&
+                            p.isSetLong()) {
+                        foiPositions.put(pos.getURI().getStringValue(), getModelPositionXBPosition(p));
+                    }
+                }
+            }
+        }
+        return foiPositions;
+    }
+
     /**
      * @param p {@link org.x52North.sensorweb.sos.importer.x04.PositionDocument.Position}
      * @return {@link org.n52.sos.importer.feeder.model.Position}
@@ -639,7 +680,19 @@ public final class Configuration {
         LOG.trace(String.format("getPosition(group:%s,%s)",
                 group,
                 Arrays.toString(values)));
-        final Column[] cols = getAllColumnsForGroup(group, Type.POSITION);
+        return getPosition(getAllColumnsForGroup(group, Type.POSITION), values);
+    }
+
+    /**
+     * Combines the values of the given position columns of one group.
+     * @param cols all columns of one position group, e.g. the result of
+     *             {@link #getAllColumnsForGroup(String, Enum)}
+     * @param values the values of the current line
+     * @return the {@link Position} build from the values and the metadata of
+     *             the given columns
+     * @throws ParseException
+     */
+    public Position getPosition(final Column[] cols, final String[] values) throws ParseException {
         // combine the values from the different columns
         final String[] units = new String[3];
         final double[] posValues = new double[3];
@@ -819,29 +872,21 @@ public final class Configuration {
     }
 
     public double parseToDouble(final String number) throws ParseException{
-        LOG.trace(String.format("parseToDouble(%s)",
-                number));
-        final DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        final char dSep = getDecimalSeparator();
-        symbols.setDecimalSeparator(dSep);
-        symbols.setGroupingSeparator(getThousandsSeparator(dSep));
-
-        Number n;
-        final DecimalFormat formatter = new DecimalFormat();
-        formatter.setDecimalFormatSymbols(symbols);
-        n = formatter.parse(number);
-
-        return n.doubleValue();
-    }
-
-    private char getThousandsSeparator(final char dSep) {
-        if (dSep == '.') {
-            return ',';
-        } else if (dSep == ',') {
-            return '.';
-        } else {
-            return 0;
+        LOG.trace("parseToDouble({})", number);
+        return getDecimalParser().parse(number);
+    }
+
+    /**
+     * @return the thread-safe {@link DecimalParser} using the decimal
+     *             separator defined in <code>CsvMetadata.DecimalSeparator</code>
+     */
+    public DecimalParser getDecimalParser() {
+        DecimalParser result = decimalParser;
+        if (result == null) {
+            result = new DecimalParser(getDecimalSeparator());
+            decimalParser = result;
         }
+        return result;
     }
 
     private char getDecimalSeparator() {
@@ -986,15 +1031,30 @@ public final class Configuration {
 
     public Offering getOffering(final Sensor s) {
         LOG.trace("getOffering()");
-        if( importConf.getSosMetadata().getOffering().isSetGenerate() &&
-                importConf.getSosMetadata().getOffering().getGenerate()) {
+        if (isOfferingGenerated()) {
             return new Offering(s.getName(), s.getUri());
         } else {
-            final String o = importConf.getSosMetadata().getOffering().getStringValue();
+            final String o = getOfferingName();
             return new Offering(o,o);
         }
     }
 
+    /**
+     * @return <code>true</code>, if the offering should be generated from the
+     *             sensor of each observation.
+     */
+    public boolean isOfferingGenerated() {
+        return importConf.getSosMetadata().getOffering().isSetGenerate() &&
+                importConf.getSosMetadata().getOffering().getGenerate();
+    }
+
+    /**
+     * @return the name of the offering defined in <code>SosMetadata.Offering</code>
+     */
+    public String getOfferingName() {
+        return importConf.getSosMetadata().getOffering().getStringValue();
+    }
+
     public String getFileName() {
         return configFile.getName();
     }
@@ -1268,6 +1328,153 @@ public final class Configuration {
 		throw new IllegalArgumentException("Attribute 'insertSweArrayObservationTimeoutBuffer' of <SosMetadata> not set.");
 	}
 
+	public boolean isImportQueueSizeSet() {
+		return importConf.getSosMetadata().isSetImportQueueSize();
+	}
+
+	public int getImportQueueSize() {
+		if (isImportQueueSizeSet()) {
+			return importConf.getSosMetadata().getImportQueueSize();
+		}
+		throw new IllegalArgumentException("Attribute 'importQueueSize' of <SosMetadata> not set.");
+	}
+
+	public boolean isConcurrentInsertsSet() {
+		return importConf.getSosMetadata().isSetConcurrentInserts();
+	}
+
+	public int getConcurrentInserts() {
+		if (isConcurrentInsertsSet()) {
+			return importConf.getSosMetadata().getConcurrentInserts();
+		}
+		throw new IllegalArgumentException("Attribute 'concurrentInserts' of <SosMetadata> not set.");
+	}
+
+	/**
+	 * Overrides the attribute 'concurrentInserts' of &lt;SosMetadata&gt;, e.g.
+	 * with the value given on the command line.
+	 */
+	public void setConcurrentInserts(final int concurrentInserts) {
+		if (concurrentInserts < 1) {
+			throw new IllegalArgumentException(String.format("Number of concurrent inserts must be >= 1 but is '%d'.", concurrentInserts));
+		}
+		importConf.getSosMetadata().setConcurrentInserts(concurrentInserts);
+	}
+
+	public boolean isSensorRegistryMaxAgeSet() {
+		return importConf.getSosMetadata().isSetSensorRegistryMaxAge();
+	}
+
+	public int getSensorRegistryMaxAge() {
+		if (isSensorRegistryMaxAgeSet()) {
+			return importConf.getSosMetadata().getSensorRegistryMaxAge();
+		}
+		throw new IllegalArgumentException("Attribute 'sensorRegistryMaxAge' of <SosMetadata> not set.");
+	}
+
+	public boolean isParseThreadsSet() {
+		return importConf.getSosMetadata().isSetParseThreads();
+	}
+
+	public int getParseThreads() {
+		if (isParseThreadsSet()) {
+			return importConf.getSosMetadata().getParseThreads();
+		}
+		throw new IllegalArgumentException("Attribute 'parseThreads' of <SosMetadata> not set.");
+	}
+
+	public boolean isConcurrentFilesSet() {
+		return importConf.getSosMetadata().isSetConcurrentFiles();
+	}
+
+	public int getConcurrentFiles() {
+		if (isConcurrentFilesSet()) {
+			return importConf.getSosMetadata().getConcurrentFiles();
+		}
+		throw new IllegalArgumentException("Attribute 'concurrentFiles' of <SosMetadata> not set.");
+	}
+
+	public boolean isRetriesSet() {
+		return importConf.getSosMetadata().isSetRetries();
+	}
+
+	public int getRetries() {
+		if (isRetriesSet()) {
+			return importConf.getSosMetadata().getRetries();
+		}
+		throw new IllegalArgumentException("Attribute 'retries' of <SosMetadata> not set.");
+	}
+
+	public boolean isRetryDelaySet() {
+		return importConf.getSosMetadata().isSetRetryDelay();
+	}
+
+	public int getRetryDelay() {
+		if (isRetryDelaySet()) {
+			return importConf.getSosMetadata().getRetryDelay();
+		}
+		throw new IllegalArgumentException("Attribute 'retryDelay' of <SosMetadata> not set.");
+	}
+
+	public boolean isRetryMaxDelaySet() {
+		return importConf.getSosMetadata().isSetRetryMaxDelay();
+	}
+
+	public int getRetryMaxDelay() {
+		if (isRetryMaxDelaySet()) {
+			return importConf.getSosMetadata().getRetryMaxDelay();
+		}
+		throw new IllegalArgumentException("Attribute 'retryMaxDelay' of <SosMetadata> not set.");
+	}
+
+	public boolean isCircuitBreakerThresholdSet() {
+		return importConf.getSosMetadata().isSetCircuitBreakerThreshold();
+	}
+
+	public int getCircuitBreakerThreshold() {
+		if (isCircuitBreakerThresholdSet()) {
+			return importConf.getSosMetadata().getCircuitBreakerThreshold();
+		}
+		throw new IllegalArgumentException("Attribute 'circuitBreakerThreshold' of <SosMetadata> not set.");
+	}
+
+	public boolean isCircuitBreakerPauseSet() {
+		return importConf.getSosMetadata().isSetCircuitBreakerPause();
+	}
+
+	public int getCircuitBreakerPause() {
+		if (isCircuitBreakerPauseSet()) {
+			return importConf.getSosMetadata().getCircuitBreakerPause();
+		}
+		throw new IllegalArgumentException("Attribute 'circuitBreakerPause' of <SosMetadata> not set.");
+	}
+
+	public boolean isDuplicateFilterSizeSet() {
+		return importConf.getSosMetadata().isSetDuplicateFilterSize();
+	}
+
+	public int getDuplicateFilterSize() {
+		if (isDuplicateFilterSizeSet()) {
+			return importConf.getSosMetadata().getDuplicateFilterSize();
+		}
+		throw new IllegalArgumentException("Attribute 'duplicateFilterSize' of <SosMetadata> not set.");
+	}
+
+	public DuplicateFilterPolicy getDuplicateFilterPolicy() {
+		if (importConf.getSosMetadata().isSetDuplicateFilterPolicy() &&
+				importConf.getSosMetadata().getDuplicateFilterPolicy().toString().equals(DuplicateFilterPolicy.Probabilistic.name())) {
+			return DuplicateFilterPolicy.Probabilistic;
+		}
+		return DuplicateFilterPolicy.Exact;
+	}
+
+	public double getDuplicateFilterFalsePositiveRate() {
+		if (importConf.getSosMetadata().isSetDuplicateFilterFalsePositiveRate()) {
+			return importConf.getSosMetadata().getDuplicateFilterFalsePositiveRate();
+		}
+		return 0.01;
+	}
+
 	public int getSampleSizeDivisor() {
 		if (isSamplingFile() && importConf.getDataFile().isSetSampleSizeDivisor()) {
 			return importConf.getDataFile().getSampleSizeDivisor();
@@ -28,50 +28,40 @@
  */
 package org.n52.sos.importer.feeder;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 
 import org.n52.oxf.xml.NcNameResolver;
+import org.n52.sos.importer.feeder.RowMappingPlan.DateTimeColumn;
+import org.n52.sos.importer.feeder.RowMappingPlan.DateTimeGroup;
+import org.n52.sos.importer.feeder.RowMappingPlan.FoiMapping;
+import org.n52.sos.importer.feeder.RowMappingPlan.Kind;
+import org.n52.sos.importer.feeder.RowMappingPlan.MeasuredValueColumn;
+import org.n52.sos.importer.feeder.csv.Compression;
 import org.n52.sos.importer.feeder.csv.CsvParser;
+import org.n52.sos.importer.feeder.csv.FileCsvParser;
+import org.n52.sos.importer.feeder.csv.ReadAheadInputStream;
+import org.n52.sos.importer.feeder.csv.ReaderCsvParser;
+import org.n52.sos.importer.feeder.csv.ResumableCsvParser;
 import org.n52.sos.importer.feeder.csv.WrappedCSVReader;
 import org.n52.sos.importer.feeder.exceptions.JavaApiBugJDL6203387Exception;
 import org.n52.sos.importer.feeder.model.FeatureOfInterest;
 import org.n52.sos.importer.feeder.model.ObservedProperty;
 import org.n52.sos.importer.feeder.model.Offering;
-import org.n52.sos.importer.feeder.model.Position;
 import org.n52.sos.importer.feeder.model.Resource;
 import org.n52.sos.importer.feeder.model.Sensor;
 import org.n52.sos.importer.feeder.model.Timestamp;
 import org.n52.sos.importer.feeder.model.UnitOfMeasurement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.x52North.sensorweb.sos.importer.x04.ColumnDocument.Column;
-import org.x52North.sensorweb.sos.importer.x04.FeatureOfInterestType;
-import org.x52North.sensorweb.sos.importer.x04.GeneratedResourceType;
-import org.x52North.sensorweb.sos.importer.x04.GeneratedSpatialResourceType;
-import org.x52North.sensorweb.sos.importer.x04.KeyDocument.Key;
-import org.x52North.sensorweb.sos.importer.x04.ManualResourceType;
-import org.x52North.sensorweb.sos.importer.x04.MetadataDocument.Metadata;
-import org.x52North.sensorweb.sos.importer.x04.ObservedPropertyType;
-import org.x52North.sensorweb.sos.importer.x04.RelatedObservedPropertyDocument.RelatedObservedProperty;
-import org.x52North.sensorweb.sos.importer.x04.RelatedUnitOfMeasurementDocument.RelatedUnitOfMeasurement;
-import org.x52North.sensorweb.sos.importer.x04.SensorType;
-import org.x52North.sensorweb.sos.importer.x04.SpatialResourceType;
-import org.x52North.sensorweb.sos.importer.x04.TypeDocument.Type;
-import org.x52North.sensorweb.sos.importer.x04.UnitOfMeasurementType;
 
 /**
  * Class holds the datafile and provides easy to use interfaces to get certain
@@ -83,12 +73,16 @@ public class DataFile {
 
 	private static final Logger LOG = LoggerFactory.getLogger(DataFile.class);
 
-	private static final int MILLIES_PER_HOUR = 1000 * 60 * 60;
-
 	private final Configuration configuration;
 
 	private final File file;
 
+	private volatile RowMappingPlan rowMappingPlan;
+
+	private volatile Timestamp dateInfoFromFile;
+
+	private volatile Compression compression;
+
 	public DataFile(final Configuration configuration, final File file) {
 		this.configuration = configuration;
 		this.file = file;
@@ -155,22 +149,128 @@ public class DataFile {
 	/**
 	 * Returns a CSVReader instance for the current DataFile using the configuration
 	 * including the defined values for: first line with data, separator, escape, and text qualifier.
-	 * @return a <code>CSVReader</code> instance
+	 * @return a <code>FileCsvParser</code> instance
 	 * @throws IOException
+	 * @see #getCSVReader(long)
 	 */
-	public CsvParser getCSVReader() throws IOException {
+	public FileCsvParser getCSVReader() throws IOException {
 		LOG.trace("getCSVReader()");
-		final FileReader fr = new FileReader(file);
-		final BufferedReader br = new BufferedReader(fr);
-		CsvParser cr = null;
+		return getCSVReader(0);
+	}
+
+	/**
+	 * Returns a CsvParser instance for the current DataFile starting at the
+	 * given byte offset. {@link CsvParser}s not implementing
+	 * {@link FileCsvParser} are wrapped by a {@link ReaderCsvParser}.<br />
+	 * Compressed data files are decompressed on a separate thread. The
+	 * offset is the one in the decompressed data.
+	 *
+	 * @param offset the byte offset to start at, e.g.
+	 * 			{@link FileCsvParser#getOffset()} of a previous import.
+	 * 			<code>0</code> to read the whole file. Any other value
+	 * 			requires {@link #isResumable()}.
+	 * @return a <code>FileCsvParser</code> instance
+	 * @throws IOException
+	 */
+	public FileCsvParser getCSVReader(final long offset) throws IOException {
+		LOG.trace("getCSVReader({})", offset);
+		if (isCompressed()) {
+			return getCSVReader(openDecompressed(offset), offset);
+		}
+		final FileCsvParser cr = createCsvParser();
+		cr.init(file, offset, configuration);
+		return cr;
+	}
+
+	/*
+	 * Decompresses the data file on a separate thread and skips the bytes
+	 * before offset.
+	 */
+	private InputStream openDecompressed(final long offset) throws IOException {
+		final InputStream in = new ReadAheadInputStream(openStream(), "Decompress-" + file.getName());
+		try {
+			long remaining = offset;
+			while (remaining > 0) {
+				final long skipped = in.skip(remaining);
+				if (skipped <= 0) {
+					throw new IllegalArgumentException(String.format("Offset %d is behind the end of data file '%s'.",
+							offset, file.getAbsolutePath()));
+				}
+				remaining -= skipped;
+			}
+		} catch (final IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * @return a stream providing the content of the data file, which is
+	 * 			decompressed if required.
+	 * @throws IOException
+	 */
+	public InputStream openStream() throws IOException {
+		return getCompression().open(file);
+	}
+
+	/**
+	 * @return the compression format of the data file detected by its first
+	 * 			bytes or its extension
+	 */
+	public Compression getCompression() {
+		if (compression == null) {
+			compression = Compression.detect(file);
+			LOG.debug("Compression of data file '{}': {}", file.getAbsolutePath(), compression);
+		}
+		return compression;
+	}
+
+	public boolean isCompressed() {
+		return getCompression() != Compression.NONE;
+	}
+
+	/**
+	 * Returns a CsvParser instance reading the given part of the current
+	 * DataFile instead of the file itself, e.g. the lines appended since the
+	 * last import.
+	 *
+	 * @param in the stream providing the data file starting at
+	 * 			<code>offset</code>. It is closed with the returned parser.
+	 * @param offset the byte offset of the first byte of <code>in</code>.
+	 * 			Any other value than <code>0</code> requires
+	 * 			{@link #isResumable()}.
+	 * @return a <code>FileCsvParser</code> instance
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the configured CsvParser is a
+	 * 			{@link FileCsvParser}, which requires the file itself.
+	 */
+	public FileCsvParser getCSVReader(final InputStream in, final long offset) throws IOException {
+		LOG.trace("getCSVReader(in, {})", offset);
+		final FileCsvParser cr = createCsvParser();
+		if (!(cr instanceof ReaderCsvParser)) {
+			in.close();
+			throw new IllegalArgumentException(String.format("CsvParser implementation class '%s' requires the data file and could not read a stream.",
+					cr.getClass().getName()));
+		}
+		((ReaderCsvParser) cr).init(in, offset, configuration);
+		return cr;
+	}
+
+	/*
+	 * The configured class implements either CsvParser or FileCsvParser. The
+	 * former is wrapped by a ReaderCsvParser.
+	 */
+	private FileCsvParser createCsvParser() {
+		Object cr = null;
 		if (configuration.isCsvParserDefined()) {
 			final String csvParser = configuration.getCsvParser();
 			try {
 				final Class<?> clazz = Class.forName(csvParser);
 				final Constructor<?> constructor = clazz.getConstructor((Class<?>[])null);
 				final Object instance = constructor.newInstance();
-				if (CsvParser.class.isAssignableFrom(instance.getClass())) {
-					cr = (CsvParser) instance;
+				if (instance instanceof CsvParser || instance instanceof FileCsvParser) {
+					cr = instance;
 				}
 			} catch (final ClassNotFoundException |
 					NoSuchMethodException |
@@ -182,26 +282,62 @@ public class DataFile {
 				final String errorMsg = String.format("Could not load defined CsvParser implementation class '%s'. Cancel import", csvParser);
 				LOG.error(errorMsg);
 				LOG.debug("Exception thrown: {}", e.getMessage(), e);
-				try {
-					br.close();
-				} catch (final IOException e1) {
-					LOG.error("Could not close BufferedReader: {}", e1.getMessage(), e1);
-				}
 				throw new IllegalArgumentException(errorMsg,e);
 			}
 		}
 		if (cr == null) {
 			cr = new WrappedCSVReader();
 		}
-		cr.init(br, configuration);
-		return cr;
+		if (cr instanceof FileCsvParser) {
+			return (FileCsvParser) cr;
+		}
+		return new ReaderCsvParser((CsvParser) cr, Charset.forName(getEncoding()));
+	}
+
+	/**
+	 * @return <code>true</code>, if the configured CsvParser implements
+	 * 			{@link ResumableCsvParser} or {@link FileCsvParser}.
+	 */
+	public boolean isResumable() {
+		try {
+			final Class<?> clazz = Class.forName(configuration.getCsvParser());
+			return ResumableCsvParser.class.isAssignableFrom(clazz) ||
+					FileCsvParser.class.isAssignableFrom(clazz);
+		} catch (final ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, if the configured CsvParser could read a
+	 * 			stream via {@link #getCSVReader(InputStream, long)}, i.e. it
+	 * 			does not implement {@link FileCsvParser}, which requires the
+	 * 			data file itself.
+	 */
+	public boolean isStreamable() {
+		try {
+			final Class<?> clazz = Class.forName(configuration.getCsvParser());
+			return !FileCsvParser.class.isAssignableFrom(clazz);
+		} catch (final ClassNotFoundException e) {
+			// reported when creating the CsvParser
+			return true;
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, if the data file could be split into chunks
+	 * 			parsed by several threads, which requires
+	 * 			{@link #isResumable()} and an uncompressed data file.
+	 */
+	public boolean isSplittable() {
+		return isResumable() && !isCompressed();
 	}
 
 	/**
 	 * @see {@link Configuration#getMeasureValueColumnIds()}
 	 */
 	public int[] getMeasuredValueColumnIds() {
-		return configuration.getMeasureValueColumnIds();
+		return getRowMappingPlan().getMeasuredValueColumnIds();
 	}
 
 	/**
@@ -211,6 +347,30 @@ public class DataFile {
 		return configuration.getFirstLineWithData();
 	}
 
+	/**
+	 * The {@link RowMappingPlan} is created on first access and re-used for
+	 * all lines of this data file.
+	 *
+	 * @return the {@link RowMappingPlan} for this data file
+	 */
+	public RowMappingPlan getRowMappingPlan() {
+		RowMappingPlan result = rowMappingPlan;
+		if (result == null) {
+			synchronized (this) {
+				result = rowMappingPlan;
+				if (result == null) {
+					result = new RowMappingPlan(configuration);
+					rowMappingPlan = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private MeasuredValueColumn getMeasuredValueColumn(final int mvColumnId) {
+		return getRowMappingPlan().getMeasuredValueColumn(mvColumnId);
+	}
+
 	/**
 	 *
 	 * @param mvColumnId
@@ -218,40 +378,13 @@ public class DataFile {
 	 * @return
 	 */
 	public Sensor getSensorForColumn(final int mvColumnId, final String[] values) {
-		LOG.trace("getSensorForColumn({},{})", mvColumnId, Arrays.toString(values));
-		// check for sensor column and return new sensor
-		Sensor sensor = getSensorFromColumn(mvColumnId,values);
-		if (sensor == null) {
-			LOG.debug("Could not find sensor column for column id {}", mvColumnId);
-		} else {
-			return sensor;
-		}
-		// else build sensor from manual or generated resource
-		SensorType sensorType = configuration.getRelatedSensor(mvColumnId);
-		// Case: one mv column => no related sensor element => check for one single sensor in additional metadata
-		if (sensorType == null && configuration.isOneMvColumn()) {
-			sensorType = configuration.getSensorFromAdditionalMetadata();
-		}
-		if (sensorType != null && sensorType.getResource() != null) {
-			// generated sensor
-			if (sensorType.getResource() instanceof GeneratedResourceType) {
-				final GeneratedResourceType gRT = (GeneratedResourceType) sensorType.getResource();
-				final String[] a = getUriAndNameFromGeneratedResourceType(
-						gRT.isSetConcatString()?gRT.getConcatString():null, // concatstring
-						gRT.isSetURI()?gRT.getURI().getStringValue():null, // uri
-						gRT.isSetURI()&&gRT.getURI().isSetUseAsPrefix()?gRT.getURI().getUseAsPrefix():false, // useUriAsPrefix
-						gRT.getNumberArray(),
-						values
-						);
-				sensor = new Sensor(a[0],a[1]);
-			} else if (sensorType.getResource() instanceof ManualResourceType) {
-				// manual sensor
-				final ManualResourceType mRT = (ManualResourceType) sensorType.getResource();
-				sensor = new Sensor(mRT.getName(),
-						mRT.getURI().getStringValue());
-			}
+		LOG.trace("getSensorForColumn({})", mvColumnId);
+		final String[] a = getMeasuredValueColumn(mvColumnId).sensor.resolve(values);
+		if (a == null) {
+			LOG.debug("Could not find sensor for column id {}", mvColumnId);
+			return null;
 		}
-		return sensor;
+		return new Sensor(a[0],a[1]);
 	}
 
 	/**
@@ -262,49 +395,26 @@ public class DataFile {
 	 * @throws ParseException
 	 */
 	public FeatureOfInterest getFoiForColumn(final int mvColumnId, final String[] values) throws ParseException {
-		LOG.trace(String.format("getFoiForColumn(%d,%s)",
-					mvColumnId,
-					Arrays.toString(values)));
-		// check for foi column and return new sensor
-		FeatureOfInterest foi = getFoiColumn(mvColumnId,values);
-		if (foi == null) {
-			LOG.debug(String.format("Could not find foi column for column id %d",
-					mvColumnId));
-		} else {
-			return foi;
+		LOG.trace("getFoiForColumn({})", mvColumnId);
+		final RowMappingPlan plan = getRowMappingPlan();
+		final FoiMapping mapping = plan.getMeasuredValueColumn(mvColumnId).foi;
+		final String[] a = mapping.resource.resolve(values);
+		// foi column
+		if (mapping.resource.kind == Kind.COLUMN) {
+			return new FeatureOfInterest(a[0], a[1], plan.getFoiPosition(a[1]));
 		}
 		// else build foi from manual or generated resource
-		final FeatureOfInterestType foiT = configuration.getRelatedFoi(mvColumnId);
-		if (foiT != null && foiT.getResource() != null) {
-			// generated sensor
-			if (foiT.getResource() instanceof GeneratedSpatialResourceType) {
-				final GeneratedSpatialResourceType gSRT =
-						(GeneratedSpatialResourceType) foiT.getResource();
-				final String[] a = getUriAndNameFromGeneratedResourceType(
-						gSRT.isSetConcatString()?gSRT.getConcatString():null, // concatstring
-								gSRT.isSetURI()?gSRT.getURI().getStringValue():null, // uri
-										gSRT.isSetURI()&&gSRT.getURI().isSetUseAsPrefix()?gSRT.getURI().getUseAsPrefix():false, // useUriAsPrefix
-												gSRT.getNumberArray(),
-												values
-						);
-				final Position p = getPosition(gSRT.getPosition(),values);
-				foi = new FeatureOfInterest(a[0],a[1],p);
-			} else if (foiT.getResource() instanceof SpatialResourceType) {
-				// manual sensor
-				final SpatialResourceType mSRT = (SpatialResourceType) foiT.getResource();
-				final Position p = getPosition(mSRT.getPosition(),values);
-				foi = new FeatureOfInterest(mSRT.getName(),
-						mSRT.getURI().getStringValue(),
-						p);
-			}
+		FeatureOfInterest foi = null;
+		if (a != null) {
+			foi = new FeatureOfInterest(a[0], a[1], plan.getPosition(mapping.position, values));
 		}
 		if (!NcNameResolver.isNCName(foi.getName())){
-			final String[] a = createCleanNCName(foi);
-			foi.setName(a[0]);
-			if (!a[0].equals(a[1])) {
+			final String[] cleanName = createCleanNCName(foi);
+			foi.setName(cleanName[0]);
+			if (!cleanName[0].equals(cleanName[1])) {
 				LOG.debug(String.format("Feature Of Interest name changed to match NCName production: '%s' to '%s'",
-						a[1],
-						a[0]));
+						cleanName[1],
+						cleanName[0]));
 			}
 		}
 		return foi;
@@ -340,44 +450,28 @@ public class DataFile {
 	 *
 	 * @param mVColumn
 	 * @param values
-	 * @return
+	 * @return the value of the given column decoded according to its type or
+	 * 			<code>null</code>, if the type is not supported.
+	 * @see ValueDecoder#decode(String)
 	 */
 	public Object getValue(final int mVColumn, final String[] values) throws ParseException {
-		LOG.trace(String.format("getValue(%s,%s)",
-				mVColumn,
-				Arrays.toString(values)));
-		final Column column = configuration.getColumnById(mVColumn);
-		String value = values[mVColumn];
-		for (final Metadata m : column.getMetadataArray()) {
-			if (m.getKey().equals(Key.TYPE)) {
-				// check various types of observation
-				// TEXT
-				if (m.getValue().equals("TEXT")) {
-					return new String(value);
-				}
-				// text is done -> clean string before parsing to other types
-				value = value.trim();
-				// BOOLEAN
-				if (m.getValue().equals("BOOLEAN")) {
-					if (value.equalsIgnoreCase("0")) {
-						value = "false";
-					}
-					else if (value.equalsIgnoreCase("1")) {
-						value = "true";
-					}
-					return Boolean.parseBoolean(value);
-				}
-				// COUNT
-				else if (m.getValue().equals("COUNT")) {
-					return Integer.parseInt(value);
-				}
-				// NUMERIC
-				else if (m.getValue().equals("NUMERIC")) {
-					return configuration.parseToDouble(value);
-				}
-			}
+		LOG.trace("getValue({})", mVColumn);
+		final ValueDecoder decoder = getValueDecoder(mVColumn);
+		if (decoder == null) {
+			return null;
 		}
-		return null;
+		return decoder.decode(values[mVColumn]);
+	}
+
+	/**
+	 * Use the typed methods of the returned {@link ValueDecoder} to decode
+	 * values without boxing them.
+	 *
+	 * @return the {@link ValueDecoder} of the given measured value column or
+	 * 			<code>null</code>, if the type of the column is not supported.
+	 */
+	public ValueDecoder getValueDecoder(final int mVColumnId) {
+		return getMeasuredValueColumn(mVColumnId).valueDecoder;
 	}
 
 	/*
@@ -394,146 +488,42 @@ public class DataFile {
 	 */
 	public Timestamp getTimeStamp(final int mVColumn, final String[] values) throws ParseException {
 		LOG.trace("getTimeStamp()");
-		// if RelatedDateTimeGroup is set for mvColumn -> get group id
-		final Column col = configuration.getColumnById(mVColumn);
-		String group = null;
-		if (col.isSetRelatedDateTimeGroup()) {
-			group = col.getRelatedDateTimeGroup();
-		}
-		// else check all columns for Type::DATE_TIME -> get Metadata.Key::GROUP->Value
-		group = configuration.getFirstDateTimeGroup();
-		// Try to get timezone from configuration
-		final Column[] cols = configuration.getAllColumnsForGroup(group, Type.DATE_TIME);
-		if (cols != null) {
+		// all measured value columns are using the first date time group
+		final DateTimeGroup group = getRowMappingPlan().getDateTimeGroup();
+		if (group != null) {
 			// get value from each column
 			final Timestamp ts = new Timestamp();
-			// TODO implement case if time zone is contained in a column
-			final TimeZone timeZone = getTimeZone(cols);
-			for (final Column column : cols) {
-				// get pattern and fields
-				final String pattern = getParsePattern(column);
-				final int[] fields = getGregorianCalendarFields(pattern);
-				for (final int field : fields) {
-					// parse values
-					final short value =
-							parseTimestampComponent(values[column.getNumber()],
-									pattern,
-									field,
-									timeZone);
-					// add to timestamp object
-					switch (field) {
-					case GregorianCalendar.YEAR:
-						ts.setYear(value);
-						break;
-					case GregorianCalendar.MONTH:
-						// java starts month counting at 0 -> +1 for each month
-						ts.setMonth((byte) (value+1));
-						break;
-					case GregorianCalendar.DAY_OF_MONTH:
-						ts.setDay((byte) value);
-						break;
-					case GregorianCalendar.HOUR_OF_DAY:
-						ts.setHour((byte) value);
-						break;
-					case GregorianCalendar.MINUTE:
-						ts.setMinute((byte) value);
-						break;
-					case GregorianCalendar.SECOND:
-						ts.setSeconds((byte) value);
-						break;
-					case GregorianCalendar.ZONE_OFFSET:
-						ts.setTimezone((byte) value);
-						break;
-					default:
-						break;
-					}
-				}
-				enrichTimestampWithColumnMetadata(ts,column);
-			}
-			if (configuration.isDateInfoExtractionFromFileNameSetupValid()) {
-				ts.enrich(
-					file.getName(),
-					configuration.getRegExDateInfoInFileName(),
-					configuration.getDateInfoPattern());
-			}
-			if (configuration.isUseDateInfoFromFileModificationSet()) {
-				ts.enrich(file.lastModified(), configuration.getLastModifiedDelta());
+			for (final DateTimeColumn column : group.columns) {
+				// parse all fields of the column at once
+				column.parser.parse(values[column.number], ts);
+				column.enrich(ts);
 			}
+			ts.enrich(getDateInfoFromFile());
 			return ts;
 		}
 		return null;
 	}
 
-	private TimeZone getTimeZone(final Column[] cols) {
-		if (cols == null || cols.length < 1) {
-			return TimeZone.getDefault();
-		}
-		for (final Column column : cols) {
-			if (column.getMetadataArray() == null ||
-					column.getMetadataArray().length < 1) {
-				continue;
-			}
-			for (final Metadata meta : column.getMetadataArray()) {
-				if (meta.getKey().equals(Key.TIME_ZONE)) {
-					try {
-						for (final String zoneId : TimeZone.getAvailableIDs(Integer.parseInt(meta.getValue())*MILLIES_PER_HOUR) ) {
-							return TimeZone.getTimeZone(zoneId);
-						}
-					} catch (final NumberFormatException nfe) {
-						LOG.error("Could not parse interger from timezone metadata value. Using default timezone");
-						LOG.debug("Exception thrown: ", nfe);
-						return TimeZone.getDefault();
-					}
-				}
-			}
-		}
-		return TimeZone.getDefault();
-	}
-
-	/**
-	 * Checks for <code>Column.Metadata[]</code> and updates and returns the given {@link Timestamp}. Allowed keys are:
-	 * <ul><li>TIME_DAY</li>
-	 * <li>TIME_HOUR</li>
-	 * <li>TIME_MINUTE</li>
-	 * <li>TIME_MONTH</li>
-	 * <li>TIME_SECOND</li>
-	 * <li>TIME_YEAR</li>
-	 * <li>TIME_ZONE</li></ul>
+	/*
+	 * The file name and the modification date are the same for all lines,
+	 * hence, the date information is extracted only once.
 	 */
-	private void enrichTimestampWithColumnMetadata(final Timestamp ts,
-			final Column col) {
-		if (col.getMetadataArray() != null) {
-			for (final Metadata m : col.getMetadataArray()) {
-				if (m.getKey().equals(Key.TIME_ZONE)) {
-					ts.setTimezone( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_YEAR)) {
-					ts.setYear( Short.parseShort( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_MONTH)) {
-					ts.setMonth( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_DAY)) {
-					ts.setDay( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_HOUR)) {
-					ts.setHour( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_MINUTE)) {
-					ts.setMinute( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
-				if (m.getKey().equals(Key.TIME_SECOND)) {
-					ts.setSeconds( Byte.parseByte( m.getValue() ) );
-					continue;
-				}
+	private Timestamp getDateInfoFromFile() throws ParseException {
+		Timestamp result = dateInfoFromFile;
+		if (result == null) {
+			result = new Timestamp();
+			if (configuration.isDateInfoExtractionFromFileNameSetupValid()) {
+				result.enrich(
+					file.getName(),
+					configuration.getRegExDateInfoInFileName(),
+					configuration.getDateInfoPattern());
+			}
+			if (configuration.isUseDateInfoFromFileModificationSet()) {
+				result.enrich(file.lastModified(), configuration.getLastModifiedDelta());
 			}
+			dateInfoFromFile = result;
 		}
+		return result;
 	}
 
 	/**
@@ -557,6 +547,8 @@ public class DataFile {
 	 * 			-> get number of this column<br />
 	 * 			-> return values[number]<br />
 	 *
+	 * The case is resolved once in the {@link RowMappingPlan}.
+	 *
 	 * @param mVColumnId
 	 * @param values
 	 * @return
@@ -564,56 +556,12 @@ public class DataFile {
 	 */
 	public UnitOfMeasurement getUnitOfMeasurement(final int mVColumnId, final String[] values) {
 		LOG.trace("getUnitOfMeasurement()");
-		final Column mvColumn = configuration.getColumnById(mVColumnId);
-
-		// Case A*
-		if (mvColumn.getRelatedUnitOfMeasurementArray() != null &&
-				mvColumn.getRelatedUnitOfMeasurementArray().length > 0) {
-			final RelatedUnitOfMeasurement relUom =
-					mvColumn.getRelatedUnitOfMeasurementArray(0);
-
-			// Case A.1.*: idRef
-			if (relUom.isSetIdRef() && !relUom.isSetNumber()) {
-				final UnitOfMeasurementType uom = configuration.getUomById(relUom.getIdRef());
-				if (uom != null) {
-
-					// Case A.1.1
-					if (uom.getResource() instanceof ManualResourceType) {
-						final ManualResourceType uomMRT =
-								(ManualResourceType) uom.getResource();
-						return new UnitOfMeasurement(uomMRT.getName(), uomMRT.getURI().getStringValue());
-					}
-
-					// Case A.1.2
-					if (uom.getResource() instanceof GeneratedResourceType) {
-						final GeneratedResourceType uomGRT =
-								(GeneratedResourceType) uom.getResource();
-						final String[] a = getUriAndNameFromGeneratedResourceType(
-								uomGRT.isSetConcatString()?
-										uomGRT.getConcatString():"",
-								"",
-								false,
-								uomGRT.getNumberArray(),
-								values);
-						return new UnitOfMeasurement(a[0], a[1]);
-					}
-				}
-			}
-
-			// Case A.2: number
-			if (relUom.isSetNumber() && !relUom.isSetIdRef()) {
-				return new UnitOfMeasurement(values[relUom.getNumber()],values[relUom.getNumber()]);
-			}
-		}
-
-		// Case B: Information stored in another column
-		final int uomColumnId = configuration.getColumnIdForUom(mVColumnId);
-		if (uomColumnId > -1) {
-			return new UnitOfMeasurement(values[uomColumnId],values[uomColumnId]);
+		final String[] a = getMeasuredValueColumn(mVColumnId).unitOfMeasurement.resolve(values);
+		if (a == null) {
+			// no UOM found
+			return null;
 		}
-
-		// no UOM found
-		return null;
+		return new UnitOfMeasurement(a[0], a[1]);
 	}
 
 	/**
@@ -637,6 +585,8 @@ public class DataFile {
 	 * 			-> get number of this column<br />
 	 * 			-> return values[number]<br />
 	 *
+	 * The case is resolved once in the {@link RowMappingPlan}.
+	 *
 	 * @param mVColumnId
 	 * @param values
 	 * @return
@@ -644,61 +594,19 @@ public class DataFile {
 	 */
 	public ObservedProperty getObservedProperty(final int mVColumnId, final String[] values) {
 		LOG.trace("getObservedProperty()");
-		final Column mvColumn = configuration.getColumnById(mVColumnId);
-
-		// Case A*
-		if (mvColumn.getRelatedObservedPropertyArray() != null &&
-				mvColumn.getRelatedObservedPropertyArray().length > 0) {
-			final RelatedObservedProperty relOp =
-					mvColumn.getRelatedObservedPropertyArray(0);
-
-			// Case A.1.*: idRef
-			if (relOp.isSetIdRef() && !relOp.isSetNumber()) {
-				final ObservedPropertyType op = configuration.getObsPropById(relOp.getIdRef());
-				if (op != null) {
-
-					// Case A.1.1
-					if (op.getResource() instanceof ManualResourceType) {
-						final ManualResourceType opMRT =
-								(ManualResourceType) op.getResource();
-						return new ObservedProperty(opMRT.getName(),opMRT.getURI().getStringValue());
-
-					}
-
-					// Case A.1.2
-					if (op.getResource() instanceof GeneratedResourceType) {
-						final GeneratedResourceType opGRT =
-								(GeneratedResourceType) op.getResource();
-						final String[] a = getUriAndNameFromGeneratedResourceType(
-								opGRT.isSetConcatString()?
-										opGRT.getConcatString():"",
-								opGRT.getURI().getStringValue(),
-								opGRT.getURI().isSetUseAsPrefix()?opGRT.getURI().getUseAsPrefix():false,
-								opGRT.getNumberArray(),
-								values);
-						return new ObservedProperty(a[0], a[1]);
-					}
-				}
-			}
-
-			// Case A.2: number
-			if (relOp.isSetNumber() && !relOp.isSetIdRef()) {
-				return new ObservedProperty(values[relOp.getNumber()],values[relOp.getNumber()]);
-			}
-		}
-
-		// Case B: Information stored in another column
-		final int opColumnId = configuration.getColumnIdForOpsProp(mVColumnId);
-		if (opColumnId > -1) {
-			return new ObservedProperty(values[opColumnId],values[opColumnId]);
+		final String[] a = getMeasuredValueColumn(mVColumnId).observedProperty.resolve(values);
+		if (a == null) {
+			// no OP found
+			return null;
 		}
-
-		// no OP found
-		return null;
+		return new ObservedProperty(a[0], a[1]);
 	}
 
 	public Offering getOffering(final Sensor s) {
-		final Offering off = configuration.getOffering(s);
+		final RowMappingPlan plan = getRowMappingPlan();
+		final Offering off = plan.isOfferingGenerated()?
+				new Offering(s.getName(), s.getUri()) :
+				new Offering(plan.getOffering(), plan.getOffering());
 		if (!NcNameResolver.isNCName(off.getName())) {
 			final String[] a = createCleanNCName(off);
 			off.setName(a[0]);
@@ -722,6 +630,10 @@ public class DataFile {
 		return file.getCanonicalPath();
 	}
 
+	public File getFile() {
+		return file;
+	}
+
 	/**
 	 * @see {@link Configuration#getFileName()}
 	 */
@@ -729,188 +641,13 @@ public class DataFile {
 		return configuration.getFileName();
 	}
 
-	/**
-	 * <code>String[] result = {name,uri};</code>
-	 * @return <code>String[] result = {name,uri};</code>
-	 */
-	private String[] getUriAndNameFromGeneratedResourceType(String concatString,
-			String uri,
-			final boolean useUriAsPrefixAfterNameAsUri,
-			final int[] columnIds,
-			final String[] values) {
-		LOG.trace(String.format("getValuesFromResourceType(%s,%s,%b,%s,%s)",
-				concatString,
-				uri,
-				useUriAsPrefixAfterNameAsUri,
-				Arrays.toString(columnIds),
-				Arrays.toString(values)));
-		String name = "";
-		// first the name
-		if (concatString == null) {
-			concatString = "";
-		}
-		for (int i = 0; i < columnIds.length; i++) {
-			if (i > 0) {
-				name = name + concatString + values[columnIds[i]];
-			} else {
-				name = values[columnIds[i]];
-			}
-			LOG.trace(String.format("name: %s", name));
-		}
-		LOG.debug(String.format("name: %s", name));
-		// than the uri
-		if (uri != null && useUriAsPrefixAfterNameAsUri) {
-			uri = uri + name;
-		} else {
-			uri = name;
-		}
-		LOG.debug(String.format("uri: %s", uri));
-		final String[] result = {name,uri};
-		return result;
-	}
-
-	private Sensor getSensorFromColumn(final int mvColumnId, final String[] values) {
-		LOG.trace(String.format("getSensorColumn(%d,%s)",
-			mvColumnId,
-			Arrays.toString(values)));
-		final int i = configuration.getColumnIdForSensor(mvColumnId);
-		if (i < 0) {
-			// sensor is not in the data file -> return null
-			return null;
-		} else {
-			final Sensor s = new Sensor(values[i],values[i]);
-			LOG.debug(String.format("Sensor found in datafile: %s", s));
-			return s;
-		}
-	}
-
-	private FeatureOfInterest getFoiColumn(final int mvColumnId, final String[] values) {
-		LOG.trace(String.format("getFoiColumn(%d,%s)",
-					mvColumnId,
-					Arrays.toString(values)));
-		final int i = configuration.getColumnIdForFoi(mvColumnId);
-		if (i < 0) {
-			// foi is not in the data file -> return null
-			return null;
-		} else {
-			final Position p = configuration.getFoiPosition(values[i]);
-			final FeatureOfInterest s = new FeatureOfInterest(values[i],
-					values[i],
-					p);
-			LOG.debug(String.format("Feature of Interst found in datafile: %s", s));
-			return s;
-		}
-	}
-
-	private Position getPosition(
-			final org.x52North.sensorweb.sos.importer.x04.PositionDocument.Position p,
-			final String[] values) throws ParseException {
-		LOG.trace(String.format("getPosition(%s,%s)",
-					p.xmlText(),
-					Arrays.toString(values)));
-		// Case A: Position is in configuration
-		if (!p.isSetGroup() &&
-				//p.isSetAlt() &&
-				p.isSetEPSGCode() &&
-				p.isSetLat() &&
-				p.isSetLong()) {
-			return configuration.getModelPositionXBPosition(p);
-		}
-		// Case B: Position is in data file (and configuration [missing values])
-		else if (p.isSetGroup() &&
-				//!p.isSetAlt() &&
-				!p.isSetEPSGCode() &&
-				!p.isSetLat() &&
-				!p.isSetLong()) {
-			return configuration.getPosition(p.getGroup(),values);
-		}
-		return null;
-	}
-
-	private short parseTimestampComponent(final String timestampPart,
-			final String pattern,
-			final int field,
-			final TimeZone timeZone) throws ParseException {
-		LOG.trace(String.format("parseTimestampComponent(%s,%s,%d)",
-					timestampPart,
-					pattern,
-					field));
-		Date date = null;
-		final SimpleDateFormat sdf = new SimpleDateFormat(pattern);
-		sdf.setTimeZone(timeZone);
-
-		date = sdf.parse(timestampPart);
-
-		final GregorianCalendar gc = new GregorianCalendar(timeZone);
-		gc.setTime(date);
-
-		return new Integer(gc.get(field)).shortValue();
-	}
-
-	private int[] getGregorianCalendarFields(final String pattern) {
-		LOG.trace(String.format("getGregorianCalendarFields(%s)",
-					pattern));
-		final ArrayList<Integer> fields = new ArrayList<Integer>();
-		if (pattern.indexOf("y") != -1) {
-    		fields.add(GregorianCalendar.YEAR);
-		}
-    	if (pattern.indexOf("M") != -1 ||
-    			pattern.indexOf("w") != -1 ||
-    			pattern.indexOf("D") != -1) {
-    		fields.add(GregorianCalendar.MONTH);
-    	}
-    	if (pattern.indexOf("d") != -1 ||
-    			(pattern.indexOf("W") != -1 && pattern.indexOf("d") != -1)) {
-    		fields.add(GregorianCalendar.DAY_OF_MONTH);
-    	}
-    	if (pattern.indexOf("H") != -1 ||
-    			pattern.indexOf("k") != -1 ||
-    			((pattern.indexOf("K") != -1 ||
-    			(pattern.indexOf("h") != -1) && pattern.indexOf("a") != -1))) {
-    		fields.add(GregorianCalendar.HOUR_OF_DAY);
-    	}
-    	if (pattern.indexOf("m") != -1) {
-    		fields.add(GregorianCalendar.MINUTE);
-    	}
-    	if (pattern.indexOf("s") != -1) {
-    		fields.add(GregorianCalendar.SECOND);
-    	}
-    	if (pattern.indexOf("Z") != -1 || pattern.indexOf("z") != -1) {
-    		fields.add(GregorianCalendar.ZONE_OFFSET);
-    	}
-    	fields.trimToSize();
-    	final int[] result = new int[fields.size()];
-    	int j = 0;
-    	for (final Integer i : fields) {
-			result[j++] = i.intValue();
-		}
-    	return result;
-	}
-
-	private String getParsePattern(final Column column) {
-		LOG.trace("getParsePattern()");
-		if (column.getMetadataArray() != null && column.getMetadataArray().length > 1) {
-			for (final Metadata m : column.getMetadataArray()) {
-				if (m.getKey().equals(Key.PARSE_PATTERN)) {
-					LOG.debug(String.format("Parsepattern found: %s",
-								m.getValue()));
-					return m.getValue();
-				}
-			}
-		}
-		LOG.debug(String.format("No Metadata element found with key %s in column %s",
-					Key.PARSE_PATTERN.toString(),
-					column.xmlText()));
-		return null;
-	}
-
 	@Override
 	public String toString() {
 		return String.format("DataFile [file=%s, configuration=%s]",file,configuration);
 	}
 
 	public String getType(final int mVColumnId) {
-		return configuration.getType(mVColumnId);
+		return getMeasuredValueColumn(mVColumnId).type;
 	}
 
 	public int getExpectedColumnCount()
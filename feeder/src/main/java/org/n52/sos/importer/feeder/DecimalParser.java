@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+
+/**
+ * Parses decimal numbers using the decimal and thousands separators of the
+ * configuration. Instances are thread-safe.
+ * <p>
+ * Plain numbers like <code>-1234.5</code> or <code>1,234.5</code> are parsed
+ * without creating any objects. All other input is parsed by a
+ * {@link DecimalFormat} per thread, hence the results are the same as with
+ * {@link DecimalFormat#parse(String)}.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ *
+ */
+public final class DecimalParser {
+
+	/*
+	 * Mantissas up to 2^53 and powers of ten up to 10^22 are exact doubles,
+	 * hence dividing them results in the correctly rounded value.
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+		1e21, 1e22
+	};
+
+	private static final int MAX_SIGNIFICANT_DIGITS = 18;
+
+	private final char decimalSeparator;
+
+	private final char groupingSeparator;
+
+	private final char minusSign;
+
+	private final ThreadLocal<DecimalFormat> formats;
+
+	/**
+	 * @param decimalSeparator the decimal separator, the thousands separator is
+	 * 			<code>','</code> for <code>'.'</code> and <code>'.'</code>
+	 * 			for <code>','</code>.
+	 */
+	public DecimalParser(final char decimalSeparator) {
+		this.decimalSeparator = decimalSeparator;
+		groupingSeparator = getThousandsSeparator(decimalSeparator);
+		minusSign = new DecimalFormatSymbols().getMinusSign();
+		formats = new ThreadLocal<DecimalFormat>() {
+			@Override
+			protected DecimalFormat initialValue() {
+				final DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+				symbols.setDecimalSeparator(DecimalParser.this.decimalSeparator);
+				symbols.setGroupingSeparator(groupingSeparator);
+				final DecimalFormat formatter = new DecimalFormat();
+				formatter.setDecimalFormatSymbols(symbols);
+				return formatter;
+			}
+		};
+	}
+
+	private static char getThousandsSeparator(final char dSep) {
+		if (dSep == '.') {
+			return ',';
+		} else if (dSep == ',') {
+			return '.';
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * @see #parse(String, int, int)
+	 */
+	public double parse(final String number) throws ParseException {
+		return parse(number, 0, number.length());
+	}
+
+	/**
+	 * Parses the characters <code>[start,end)</code> of the given
+	 * <code>String</code>.
+	 *
+	 * @throws ParseException if the beginning of the given range could not be
+	 * 			parsed.
+	 */
+	public double parse(final String number, final int start, final int end) throws ParseException {
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && number.charAt(pos) == minusSign) {
+			negative = true;
+			pos++;
+		}
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean isDigitFound = false;
+		// integer part
+		while (pos < end) {
+			final char c = number.charAt(pos);
+			if (c >= '0' && c <= '9') {
+				if (mantissa != 0 || c != '0') {
+					if (++significantDigits > MAX_SIGNIFICANT_DIGITS) {
+						return parseWithDecimalFormat(number, start, end);
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				isDigitFound = true;
+				pos++;
+			} else if (c == groupingSeparator && isDigitFound &&
+					pos + 1 < end && isDigit(number.charAt(pos + 1))) {
+				pos++;
+			} else {
+				break;
+			}
+		}
+		// fraction part
+		if (pos < end && number.charAt(pos) == decimalSeparator) {
+			pos++;
+			while (pos < end) {
+				final char c = number.charAt(pos);
+				if (c < '0' || c > '9') {
+					break;
+				}
+				if (mantissa != 0 || c != '0') {
+					if (++significantDigits > MAX_SIGNIFICANT_DIGITS) {
+						return parseWithDecimalFormat(number, start, end);
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				exponent--;
+				isDigitFound = true;
+				pos++;
+			}
+		}
+		if (pos != end || !isDigitFound ||
+				mantissa > MAX_EXACT_MANTISSA ||
+				-exponent >= POWERS_OF_TEN.length) {
+			return parseWithDecimalFormat(number, start, end);
+		}
+		final double value = exponent == 0? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+		return negative? -value : value;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private double parseWithDecimalFormat(final String number, final int start, final int end) throws ParseException {
+		final String text = start == 0 && end == number.length()? number : number.substring(start, end);
+		return formats.get().parse(text).doubleValue();
+	}
+
+	public char getDecimalSeparator() {
+		return decimalSeparator;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DecimalParser [decimalSeparator=%s, groupingSeparator=%s]",
+				decimalSeparator,
+				groupingSeparator);
+	}
+
+}
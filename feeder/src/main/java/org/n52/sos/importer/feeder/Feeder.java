@@ -31,18 +31,30 @@ package org.n52.sos.importer.feeder;
 import static java.lang.Integer.parseInt;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
+import java.util.regex.Pattern;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.Manifest;
 
 import org.apache.xmlbeans.XmlException;
+import org.n52.sos.importer.feeder.metrics.MetricsReporter;
+import org.n52.sos.importer.feeder.task.DirectoryWatcher;
+import org.n52.sos.importer.feeder.task.FeederDaemon;
+import org.n52.sos.importer.feeder.task.FollowingFeeder;
 import org.n52.sos.importer.feeder.task.OneTimeFeeder;
 import org.n52.sos.importer.feeder.task.RepeatedFeeder;
+import org.n52.sos.importer.feeder.task.ReplayFeeder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,37 +66,93 @@ public final class Feeder {
 
 	private static final Logger LOG = LoggerFactory.getLogger(Feeder.class);
 
-	private static final String[] ALLOWED_PARAMETERS = { "-c", "-d", "-p"};
+	private static final String CONFIG_FILE = "-c";
+
+	private static final String DATA_FILE = "-d";
+
+	private static final String PERIOD = "-p";
+
+	private static final String CONCURRENT_INSERTS = "-i";
+
+	private static final String QUIET_PERIOD = "-w";
+
+	private static final String THREADS = "-t";
+
+	private static final String REPLAY_RATE = "-r";
+
+	private static final String METRICS_PERIOD = "-m";
+
+	private static final String FOLLOW_LATENCY = "-f";
+
+	private static final String[] ALLOWED_PARAMETERS = {
+			CONFIG_FILE,
+			DATA_FILE,
+			PERIOD,
+			CONCURRENT_INSERTS,
+			QUIET_PERIOD,
+			THREADS,
+			REPLAY_RATE,
+			METRICS_PERIOD,
+			FOLLOW_LATENCY };
 
 	public static void main(final String[] args) {
 		LOG.trace("main()");
 		logApplicationMetadata();
 		if (checkArgs(args)) {
+			final Map<String, String> options = getOptions(args);
+			if (options.containsKey(METRICS_PERIOD) && !reportMetrics(options.get(METRICS_PERIOD))) {
+				return;
+			}
 			// read configuration
-			final String configFile = args[1];
+			final String configFile = options.get(CONFIG_FILE);
+			if (isSeveralConfigurations(configFile)) {
+				// Case: repeated feeding of several configurations
+				daemonFeeding(configFile, options);
+				return;
+			}
 			try {
 				final Configuration c = new Configuration(configFile);
+				if (options.containsKey(CONCURRENT_INSERTS)) {
+					c.setConcurrentInserts(parseInt(options.get(CONCURRENT_INSERTS)));
+				}
 				// start application with valid configuration
 				// data file
-				if (args.length == 2) {
+				final String dataFile = options.get(DATA_FILE);
+				final String period = options.get(PERIOD);
+				final String quietPeriod = options.get(QUIET_PERIOD);
+				final String replayRate = options.get(REPLAY_RATE);
+				final String latency = options.get(FOLLOW_LATENCY);
+				if (replayRate != null) {
+					// Case: replay of failed observations
+					if (period != null || dataFile != null) {
+						LOG.warn("Parameters -d and -p are not used for replaying failed observations (-r).");
+					}
+					new Thread(new ReplayFeeder(c,parseInt(replayRate)),ReplayFeeder.class.getSimpleName()).start();
+					return;
+				}
+				if (latency != null) {
+					// Case: following the data file
+					followingFeeding(c,dataFile != null? new File(dataFile) : c.getDataFile(),parseInt(latency),period);
+					return;
+				}
+				if (quietPeriod != null && period == null) {
+					LOG.warn("Parameter -w is only used for repeated feeding (-p).");
+				}
+				if (period == null && dataFile == null) {
 					// Case: one time feeding with defined configuration
 					new Thread(new OneTimeFeeder(c),OneTimeFeeder.class.getSimpleName()).start();
 				}
-				else if (args.length == 4) {
-					// Case: one time feeding with file override or period with file from configuration
-					if (isFileOverride(args[2])) {
-						// Case: file override
-						new Thread(new OneTimeFeeder(c,new File(args[3])),OneTimeFeeder.class.getCanonicalName()).start();
-
-					}
-					else if (isTimePeriodSet(args[2]))	{
-						// Case: repeated feeding
-						repeatedFeeding(c,parseInt(args[3]));
-					}
+				else if (period == null) {
+					// Case: one time feeding with file override
+					new Thread(new OneTimeFeeder(c,new File(dataFile)),OneTimeFeeder.class.getCanonicalName()).start();
+				}
+				else if (dataFile == null) {
+					// Case: repeated feeding
+					repeatedFeeding(c,parseInt(period),quietPeriod);
 				}
-				else if (args.length == 6) {
+				else {
 					// Case: repeated feeding with file override
-					repeatedFeeding(c,new File(args[3]),parseInt(args[5]));
+					repeatedFeeding(c,new File(dataFile),parseInt(period),quietPeriod);
 				}
 			}
 			catch (final XmlException e)
@@ -104,7 +172,7 @@ public final class Feeder {
 			}
 			catch (final IllegalArgumentException iae)
 			{
-				LOG.error("Given parameters could not be parsed! -p must be a number.");
+				LOG.error("Given parameters could not be parsed! -p, -i, -w, -r and -f must be numbers.");
 				LOG.debug("Exception Stack Trace:",iae);
 			}
 		}
@@ -113,13 +181,172 @@ public final class Feeder {
 		}
 	}
 
-	private static void repeatedFeeding(final Configuration c, final File f, final int periodInMinutes) {
+	private static void repeatedFeeding(final Configuration c,
+			final File f,
+			final int periodInMinutes,
+			final String quietPeriodInSeconds) throws IOException {
+		final RepeatedFeeder feeder = new RepeatedFeeder(c,f,periodInMinutes);
+		if (quietPeriodInSeconds != null) {
+			if (f.isDirectory()) {
+				// periodic runs remain as rescan of the directory
+				final DirectoryWatcher watcher = new DirectoryWatcher(f,
+						c.getLocaleFilePattern(),
+						parseInt(quietPeriodInSeconds)*1000L,
+						feeder);
+				new Thread(watcher,DirectoryWatcher.class.getSimpleName()).start();
+			} else {
+				LOG.warn("Parameter -w is only used if the data file '{}' is a directory.", f.getAbsolutePath());
+			}
+		}
 		final Timer t = new Timer("FeederTimer");
-		t.schedule(new RepeatedFeeder(c,f,periodInMinutes), 1, periodInMinutes*1000*60);
+		t.schedule(feeder, 1, periodInMinutes*1000*60);
 	}
 
-	private static void repeatedFeeding(final Configuration c, final int periodInMinutes) {
-		repeatedFeeding(c,c.getDataFile(),periodInMinutes);
+	private static void followingFeeding(final Configuration c,
+			final File f,
+			final int latencyInSeconds,
+			final String period) {
+		if (period != null) {
+			LOG.warn("Parameter -p is not used for following the data file (-f).");
+		}
+		if (latencyInSeconds < 1) {
+			LOG.error("Parameter -f must be at least 1 second.");
+		} else if (c.isRemoteFile() || f == null || f.isDirectory()) {
+			LOG.error("Parameter -f requires a local data file.");
+		} else if (new DataFile(c,f).isCompressed()) {
+			LOG.error("Parameter -f requires an uncompressed data file.");
+		} else if (!new DataFile(c,f).isStreamable()) {
+			LOG.error("Parameter -f could not be used with CsvParser implementation class '{}', "
+					+ "which requires the data file itself. Use an implementation of CsvParser instead.",
+					c.getCsvParser());
+		} else {
+			new Thread(new FollowingFeeder(c,f,latencyInSeconds*1000L),FollowingFeeder.class.getSimpleName()).start();
+		}
+	}
+
+	/*
+	 * Logs the metrics of all configurations periodically in a daemon thread,
+	 * hence it does not keep the application alive.
+	 */
+	private static boolean reportMetrics(final String periodInSeconds) {
+		final int period;
+		try {
+			period = parseInt(periodInSeconds);
+		} catch (final NumberFormatException e) {
+			LOG.error("Given parameters could not be parsed! -m must be a number.");
+			return false;
+		}
+		if (period < 1) {
+			LOG.error("Parameter -m must be at least 1 second.");
+			return false;
+		}
+		new Timer("MetricsReporter", true).schedule(new MetricsReporter(), period*1000L, period*1000L);
+		return true;
+	}
+
+	private static boolean isSeveralConfigurations(final String configFile) {
+		return configFile.contains(File.pathSeparator) || new File(configFile).isDirectory();
+	}
+
+	private static void daemonFeeding(final String configFiles, final Map<String, String> options) {
+		final String period = options.get(PERIOD);
+		if (period == null) {
+			LOG.error("Parameter -p is required to feed several configurations.");
+			return;
+		}
+		if (options.containsKey(DATA_FILE)) {
+			LOG.warn("Parameter -d is ignored when feeding several configurations.");
+		}
+		if (options.containsKey(REPLAY_RATE)) {
+			LOG.warn("Parameter -r is ignored when feeding several configurations.");
+		}
+		if (options.containsKey(FOLLOW_LATENCY)) {
+			LOG.warn("Parameter -f is ignored when feeding several configurations.");
+		}
+		try {
+			final List<Configuration> configurations = new ArrayList<Configuration>();
+			for (final File configFile : getConfigFiles(configFiles)) {
+				try {
+					final Configuration c = new Configuration(configFile.getAbsolutePath());
+					if (options.containsKey(CONCURRENT_INSERTS)) {
+						c.setConcurrentInserts(parseInt(options.get(CONCURRENT_INSERTS)));
+					}
+					configurations.add(c);
+				}
+				catch (final XmlException e)
+				{
+					LOG.error(String.format("Configuration file '%s' could not be " +
+							"parsed and is skipped. Exception thrown: %s",
+							configFile,
+							e.getMessage()));
+					LOG.debug("", e);
+				}
+				catch (final IOException e)
+				{
+					LOG.error("Configuration file '{}' could not be read and is skipped. Exception thrown: {}",
+							configFile,
+							e.getMessage());
+					LOG.debug("", e);
+				}
+			}
+			if (configurations.isEmpty()) {
+				LOG.error("No configuration found in '{}'.", configFiles);
+				return;
+			}
+			final int threads = options.containsKey(THREADS)?
+					parseInt(options.get(THREADS)) :
+					Runtime.getRuntime().availableProcessors();
+			final String quietPeriod = options.get(QUIET_PERIOD);
+			new FeederDaemon(configurations,
+					parseInt(period),
+					threads,
+					quietPeriod != null? parseInt(quietPeriod)*1000L : 0).start();
+		}
+		catch (final IOException e)
+		{
+			LOG.error("Exception thrown: {}", e.getMessage());
+			LOG.debug("", e);
+		}
+		catch (final IllegalArgumentException iae)
+		{
+			LOG.error("Given parameters could not be parsed! -p, -i, -w and -t must be numbers.");
+			LOG.debug("Exception Stack Trace:",iae);
+		}
+	}
+
+	/*
+	 * Returns the given configuration files and the XML files of the given
+	 * directories.
+	 */
+	private static List<File> getConfigFiles(final String configFiles) {
+		final List<File> files = new ArrayList<File>();
+		for (final String path : configFiles.split(Pattern.quote(File.pathSeparator))) {
+			if (path.isEmpty()) {
+				continue;
+			}
+			final File file = new File(path);
+			if (file.isDirectory()) {
+				final File[] xmlFiles = file.listFiles(new FileFilter() {
+					@Override
+					public boolean accept(final File pathname) {
+						return pathname.isFile() && pathname.getName().toLowerCase().endsWith(".xml");
+					}
+				});
+				if (xmlFiles != null) {
+					Arrays.sort(xmlFiles);
+					files.addAll(Arrays.asList(xmlFiles));
+				}
+			} else {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	private static void repeatedFeeding(final Configuration c,
+			final int periodInMinutes,
+			final String quietPeriodInSeconds) throws IOException {
+		repeatedFeeding(c,c.getDataFile(),periodInMinutes,quietPeriodInSeconds);
 	}
 
 	/**
@@ -128,11 +355,29 @@ public final class Feeder {
 	 */
 	private static void showUsage() {
 		LOG.trace("showUsage()");
-		System.out.println(new StringBuffer("usage: java -jar Feeder.jar -c file [-d datafile] [-p period]\n")
+		System.out.println(new StringBuffer("usage: java -jar Feeder.jar -c file [-d datafile] [-p period] [-i inserts] [-w seconds] [-t threads] [-r rate] [-m seconds] [-f seconds]\n")
 				.append("options and arguments:\n")
 				.append("-c file	 : read the config file and start the import process\n")
+				.append("              A directory or a list of config files separated by '" + File.pathSeparator + "'\n")
+				.append("              feeds all of them repeatedly in one process (requires -p)\n")
 				.append("-d datafile : OPTIONAL override of the datafile defined in config file\n")
-				.append("-p period   : OPTIONAL time period in minutes for repeated feeding")
+				.append("-p period   : OPTIONAL time period in minutes for repeated feeding\n")
+				.append("-i inserts  : OPTIONAL number of concurrent insert requests when using\n")
+				.append("              import strategy SingleObservation (overrides config file)\n")
+				.append("-w seconds  : OPTIONAL watch the data directory and feed new files after they\n")
+				.append("              were not modified for the given seconds; requires -p, which\n")
+				.append("              is used as period of a full rescan of the directory\n")
+				.append("-t threads  : OPTIONAL number of configurations fed at the same time when\n")
+				.append("              feeding several configurations (default: number of processors)\n")
+				.append("-r rate     : OPTIONAL insert the observations which failed during previous\n")
+				.append("              imports with the config file instead of feeding the data file,\n")
+				.append("              limited to rate observations per second (0 for no limit)\n")
+				.append("-m seconds  : OPTIONAL log the import metrics, e.g. lines per second and\n")
+				.append("              request latencies, every given seconds. They are always\n")
+				.append("              available via JMX.\n")
+				.append("-f seconds  : OPTIONAL follow the data file like 'tail -f' and insert the\n")
+				.append("              appended lines within the given seconds instead of feeding\n")
+				.append("              it repeatedly (-p)")
 				.toString());
 	}
 
@@ -150,40 +395,41 @@ public final class Feeder {
 		if (args == null) {
 			LOG.error("no parameters defined. null received as args!");
 			return false;
-		} else if (args.length == 2) {
-			if (isConfigFileSet(args[0])) {
-				return true;
-			}
-		} else if (args.length == 4) {
-			if (isConfigFileSet(args[0]) && (
-					isFileOverride(args[2]) ||
-					isTimePeriodSet(args[2]) ) ) {
-				return true;
-			}
-		} else if (args.length == 6) {
-			if (args[0].equals(ALLOWED_PARAMETERS[0]) &&
-					isFileOverride(args[2]) &&
-					isTimePeriodSet(args[4])) {
-				return true;
+		} else if (args.length >= 2 && args.length % 2 == 0 && isConfigFileSet(args[0])) {
+			final Set<String> usedParameters = new HashSet<String>();
+			for (int i = 0; i < args.length; i += 2) {
+				if (!isAllowedParameter(args[i]) || !usedParameters.add(args[i])) {
+					LOG.error("Given parameters do not match programm specification. ");
+					return false;
+				}
 			}
+			return true;
 		}
 		LOG.error("Given parameters do not match programm specification. ");
 		return false;
 	}
 
-	private static boolean isConfigFileSet(final String parameter)
-	{
-		return ALLOWED_PARAMETERS[0].equals(parameter);
+	/**
+	 * @param args the parameters validated by {@link #checkArgs(String[])}
+	 * @return the value of each given parameter, e.g. <code>-c</code> &rarr;
+	 * 			<code>config.xml</code>
+	 */
+	private static Map<String, String> getOptions(final String[] args) {
+		final Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i += 2) {
+			options.put(args[i], args[i+1]);
+		}
+		return options;
 	}
 
-	private static boolean isFileOverride(final String parameter)
+	private static boolean isConfigFileSet(final String parameter)
 	{
-		return parameter.equals(ALLOWED_PARAMETERS[1]);
+		return CONFIG_FILE.equals(parameter);
 	}
 
-	private static boolean isTimePeriodSet(final String parameter)
+	private static boolean isAllowedParameter(final String parameter)
 	{
-		return parameter.equals(ALLOWED_PARAMETERS[2]);
+		return Arrays.asList(ALLOWED_PARAMETERS).contains(parameter);
 	}
 
 	/**
@@ -225,7 +471,7 @@ public final class Feeder {
 				System.getProperty("os.version"));
 	}
 
-	protected static String heapSizeInformation() {
+	public static String heapSizeInformation() {
 		final long mb = 1024 * 1024;
 		final Runtime rt = Runtime.getRuntime();
 		final long maxMemoryMB = rt.maxMemory() / mb;
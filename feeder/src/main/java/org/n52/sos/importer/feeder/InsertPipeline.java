@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.xmlbeans.XmlException;
+import org.n52.oxf.OXFException;
+import org.n52.sos.importer.feeder.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connects the parsing of a data file with the sending of the resulting
+ * requests to the SOS.<br />
+ * The calling thread parses the file and {@link #submit(Object, Task) submits}
+ * the requests. They are stored in bounded queues and sent by one or more
+ * sender threads. If a queue is full, {@link #submit(Object, Task)} blocks
+ * until its sender has caught up, hence the memory used for parsed but not yet
+ * sent requests is limited.<br />
+ * Each sender has its own queue. Tasks are assigned to a sender by the hash
+ * code of their key, e.g. the sensor URI. Hence, all tasks with the same key
+ * are sent in the order of submission while tasks with different keys might
+ * be sent concurrently.<br />
+ * The first exception thrown by a task stops the sending of the remaining
+ * tasks and is re-thrown in the parsing thread by the next call of
+ * {@link #submit(Object, Task)} or {@link #finish()}.<br />
+ * A queue size of <code>0</code> in combination with one sender disables the
+ * pipeline: each task is executed directly in the calling thread.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+final class InsertPipeline {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InsertPipeline.class);
+
+	/**
+	 * A unit of work of the sending stage, e.g. inserting the observations of
+	 * one line or one hunk of time series.
+	 */
+	interface Task {
+		void execute() throws OXFException, XmlException, IOException;
+	}
+
+	// maximum time to wait for a sender finishing its current request on cancel
+	private static final long CANCEL_TIMEOUT_MILLIS = 60000;
+
+	private static final Task END_OF_INPUT = new Task() {
+		@Override
+		public void execute() {}
+	};
+
+	private final BlockingQueue<Task>[] queues;
+
+	private final Thread[] senders;
+
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	private volatile boolean isCancelled = false;
+
+	private final Counter queuedTasks;
+
+	InsertPipeline(final String name, final int queueSize) {
+		this(name, queueSize, 1);
+	}
+
+	InsertPipeline(final String name, final int queueSize, final int senderCount) {
+		this(name, queueSize, senderCount, null);
+	}
+
+	/**
+	 * @param queuedTasks counts the tasks waiting for a sender, e.g. for
+	 * 			monitoring. Might be <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	InsertPipeline(final String name, final int queueSize, final int senderCount, final Counter queuedTasks) {
+		if (queueSize < 0) {
+			throw new IllegalArgumentException(String.format("Queue size must be >= 0 but is '%d'.", queueSize));
+		}
+		if (senderCount < 1) {
+			throw new IllegalArgumentException(String.format("Sender count must be >= 1 but is '%d'.", senderCount));
+		}
+		this.queuedTasks = queuedTasks;
+		if (queueSize == 0 && senderCount == 1) {
+			queues = null;
+			senders = null;
+			return;
+		}
+		queues = new BlockingQueue[senderCount];
+		senders = new Thread[senderCount];
+		for (int i = 0; i < senderCount; i++) {
+			final BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(Math.max(queueSize, 1));
+			queues[i] = queue;
+			senders[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					send(queue);
+				}
+			}, senderCount == 1? name + "-sender" : name + "-sender-" + i);
+			senders[i].setDaemon(true);
+			senders[i].start();
+		}
+		LOG.debug("Started {} sender thread(s) for '{}' with queue size {}.", senderCount, name, queueSize);
+	}
+
+	/**
+	 * @see #submit(Object, Task)
+	 */
+	void submit(final Task task) throws OXFException, XmlException, IOException {
+		submit(null, task);
+	}
+
+	/**
+	 * Hands the given task over to the sender responsible for the given key.
+	 * Blocks while its queue is full. Re-throws the exception of an already
+	 * failed task.
+	 *
+	 * @param key used to select the sender, might be <code>null</code>
+	 * @throws InterruptedIOException if the calling thread was interrupted
+	 */
+	void submit(final Object key, final Task task) throws OXFException, XmlException, IOException {
+		if (senders == null) {
+			task.execute();
+			return;
+		}
+		rethrowFailure();
+		final int stripe = key == null? 0 : (key.hashCode() & Integer.MAX_VALUE) % queues.length;
+		try {
+			queues[stripe].put(task);
+			countQueued(1);
+		} catch (final InterruptedException e) {
+			throw interrupted(e);
+		}
+	}
+
+	/**
+	 * Waits until all submitted tasks are executed and stops the sender
+	 * threads. Re-throws the first exception thrown by a task.
+	 */
+	void finish() throws OXFException, XmlException, IOException {
+		if (senders == null) {
+			return;
+		}
+		try {
+			for (final BlockingQueue<Task> queue : queues) {
+				queue.put(END_OF_INPUT);
+			}
+			for (final Thread sender : senders) {
+				sender.join();
+			}
+		} catch (final InterruptedException e) {
+			throw interrupted(e);
+		}
+		rethrowFailure();
+	}
+
+	/**
+	 * Discards all pending tasks and stops the sender threads. Does nothing if
+	 * the pipeline is already {@link #finish() finished}.<br />
+	 * Requests already being sent might not be interruptible, hence the
+	 * senders are awaited for up to {@value #CANCEL_TIMEOUT_MILLIS}ms. The
+	 * state modified by the tasks should not be used before.
+	 */
+	void cancel() {
+		if (senders == null) {
+			return;
+		}
+		isCancelled = true;
+		int discarded = 0;
+		for (int i = 0; i < senders.length; i++) {
+			if (senders[i].isAlive()) {
+				final List<Task> tasks = new ArrayList<Task>();
+				queues[i].drainTo(tasks);
+				tasks.remove(END_OF_INPUT);
+				discarded += tasks.size();
+				countQueued(-tasks.size());
+				senders[i].interrupt();
+			}
+		}
+		if (discarded > 0) {
+			LOG.debug("Sender threads cancelled. Discarded {} pending task(s).", discarded);
+		}
+		final long deadline = System.currentTimeMillis() + CANCEL_TIMEOUT_MILLIS;
+		try {
+			for (final Thread sender : senders) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining > 0) {
+					sender.join(remaining);
+				}
+				if (sender.isAlive()) {
+					LOG.warn("Sender thread '{}' is still sending after {}ms.", sender.getName(), CANCEL_TIMEOUT_MILLIS);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.debug("Interrupted while waiting for the cancelled sender threads.");
+		}
+	}
+
+	private void send(final BlockingQueue<Task> queue) {
+		try {
+			Task task;
+			while ((task = queue.take()) != END_OF_INPUT) {
+				countQueued(-1);
+				// after a failure, the remaining tasks are only drained to unblock the producer
+				if (failure.get() == null && !isCancelled) {
+					try {
+						task.execute();
+					} catch (final Exception | Error e) {
+						if (failure.compareAndSet(null, e)) {
+							LOG.error("Sending failed. Skipping remaining requests: {}", e.getMessage());
+							LOG.debug("Exception thrown: {}", e.getMessage(), e);
+						}
+					}
+				}
+			}
+		} catch (final InterruptedException e) {
+			LOG.debug("Sender thread '{}' interrupted.", Thread.currentThread().getName());
+		}
+	}
+
+	private void countQueued(final int delta) {
+		if (queuedTasks != null) {
+			queuedTasks.add(delta);
+		}
+	}
+
+	private IOException interrupted(final InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return (IOException) new InterruptedIOException("Interrupted while waiting for the sender threads.").initCause(e);
+	}
+
+	private void rethrowFailure() throws OXFException, XmlException, IOException {
+		final Throwable t = failure.get();
+		if (t == null) {
+			return;
+		}
+		if (t instanceof IOException) {
+			throw (IOException) t;
+		}
+		if (t instanceof OXFException) {
+			throw (OXFException) t;
+		}
+		if (t instanceof XmlException) {
+			throw (XmlException) t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		throw new IllegalStateException(t);
+	}
+
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.n52.sos.importer.feeder.csv.FileCsvParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses a local data file in chunks on a {@link ForkJoinPool} and returns
+ * the chunks in the order of the file.<br />
+ * The file is split into byte ranges starting behind a line feed. Such a
+ * start might be inside of a quoted value. Hence, each chunk is checked
+ * against the end of the previous chunk, which is the exact end of its last
+ * line. A chunk not starting there is parsed again from this offset.
+ * <br />
+ * The number of chunks parsed ahead is limited to bound the memory
+ * consumption.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+class ParallelCsvParser<T> implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelCsvParser.class);
+
+	static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
+	/**
+	 * Creates the {@link FileCsvParser} for one chunk.
+	 */
+	interface ParserFactory {
+		FileCsvParser create(long offset) throws IOException;
+	}
+
+	/**
+	 * Parses the values of one line. Called concurrently.
+	 */
+	interface LineParser<T> {
+		/**
+		 * @return the result for the line or <code>null</code>, if the line
+		 * 			is skipped
+		 */
+		T parse(String[] values);
+	}
+
+	/**
+	 * The results of the lines of one byte range.
+	 */
+	static final class Chunk<T> {
+
+		private final long start;
+
+		private final long plannedEnd;
+
+		private final List<T> results = new ArrayList<>();
+
+		private int lineCount;
+
+		private long end;
+
+		private boolean isAtLineStart;
+
+		private boolean isEndOfFile;
+
+		private Exception failure;
+
+		private Chunk(final long start, final long plannedEnd) {
+			this.start = start;
+			this.plannedEnd = plannedEnd;
+		}
+
+		/**
+		 * @return the results of the lines not skipped
+		 */
+		List<T> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the number of lines read incl. skipped ones
+		 */
+		int getLineCount() {
+			return lineCount;
+		}
+
+		/**
+		 * @return the byte offset behind the last line
+		 */
+		long getEnd() {
+			return end;
+		}
+
+		/**
+		 * @see FileCsvParser#isAtLineStart()
+		 */
+		boolean isAtLineStart() {
+			return isAtLineStart;
+		}
+
+		/**
+		 * Throws the exception that stopped parsing this chunk after its
+		 * results. The results are still valid.
+		 */
+		void rethrowFailure() throws IOException {
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		}
+
+	}
+
+	private final ParserFactory parserFactory;
+
+	private final LineParser<T> lineParser;
+
+	private final long chunkSize;
+
+	private final int maxChunksInFlight;
+
+	private final ForkJoinPool pool;
+
+	private final RandomAccessFile file;
+
+	private final long fileSize;
+
+	private final Deque<Future<Chunk<T>>> chunksInFlight = new ArrayDeque<>();
+
+	private long nextPlannedStart;
+
+	private boolean isPlanningFinished;
+
+	private long expectedStart;
+
+	private boolean isFinished;
+
+	/**
+	 * @param file the local data file
+	 * @param offset the byte offset to start at. If <code>0</code>, the
+	 * 			{@link FileCsvParser} skips the lines before the first line
+	 * 			with data.
+	 * @param threads the number of threads parsing in parallel
+	 * @param chunkSize the size of the byte ranges
+	 * @param parserFactory
+	 * @param lineParser
+	 * @throws IOException if the file could not be opened
+	 */
+	ParallelCsvParser(final File file,
+			final long offset,
+			final int threads,
+			final long chunkSize,
+			final ParserFactory parserFactory,
+			final LineParser<T> lineParser) throws IOException {
+		this.parserFactory = parserFactory;
+		this.lineParser = lineParser;
+		this.chunkSize = chunkSize;
+		maxChunksInFlight = threads * 2;
+		this.file = new RandomAccessFile(file, "r");
+		fileSize = this.file.length();
+		nextPlannedStart = offset;
+		expectedStart = offset;
+		pool = new ForkJoinPool(threads);
+		LOG.debug("Parsing '{}' ({} bytes) from offset {} using {} threads.", file.getName(), fileSize, offset, threads);
+	}
+
+	/**
+	 * @return the next chunk in the order of the file or <code>null</code>,
+	 * 			if the end of the file or a failure was reached.
+	 * @throws IOException if reading failed
+	 */
+	Chunk<T> next() throws IOException {
+		if (isFinished) {
+			return null;
+		}
+		plan();
+		Chunk<T> chunk = await(chunksInFlight.removeFirst());
+		if (chunk.start != expectedStart) {
+			LOG.debug("Chunk at byte offset {} did not start at a line. Parsing again from offset {}.",
+					chunk.start, expectedStart);
+			chunk = await(submit(new Chunk<T>(expectedStart, chunk.plannedEnd)));
+		}
+		expectedStart = chunk.end;
+		if (chunk.isEndOfFile || chunk.failure != null) {
+			isFinished = true;
+		}
+		return chunk;
+	}
+
+	private void plan() throws IOException {
+		while (!isPlanningFinished && chunksInFlight.size() < maxChunksInFlight) {
+			final long end = alignToLineStart(nextPlannedStart + chunkSize);
+			chunksInFlight.addLast(submit(new Chunk<T>(nextPlannedStart, end)));
+			nextPlannedStart = end;
+			isPlanningFinished = end == Long.MAX_VALUE;
+		}
+	}
+
+	/*
+	 * Returns the offset behind the next line feed or Long.MAX_VALUE, if the
+	 * rest of the file is one chunk.
+	 */
+	private long alignToLineStart(final long position) throws IOException {
+		final byte[] buffer = new byte[8192];
+		long offset = position;
+		file.seek(position);
+		int read;
+		while (offset < fileSize && (read = file.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					final long lineStart = offset + i + 1;
+					return lineStart < fileSize? lineStart : Long.MAX_VALUE;
+				}
+			}
+			offset += read;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	private Future<Chunk<T>> submit(final Chunk<T> chunk) {
+		return pool.submit(new Callable<Chunk<T>>() {
+			@Override
+			public Chunk<T> call() throws IOException {
+				parse(chunk);
+				return chunk;
+			}
+		});
+	}
+
+	private void parse(final Chunk<T> chunk) throws IOException {
+		try (final FileCsvParser parser = parserFactory.create(chunk.start)) {
+			try {
+				String[] values;
+				while (parser.getOffset() < chunk.plannedEnd) {
+					values = parser.readNext();
+					if (values == null) {
+						chunk.isEndOfFile = true;
+						break;
+					}
+					chunk.lineCount++;
+					final T result = lineParser.parse(values);
+					if (result != null) {
+						chunk.results.add(result);
+					}
+				}
+			} catch (final IOException | RuntimeException e) {
+				// only relevant, if the chunk starts at a line
+				chunk.failure = e;
+			}
+			chunk.end = parser.getOffset();
+			chunk.isAtLineStart = parser.isAtLineStart();
+		}
+	}
+
+	private Chunk<T> await(final Future<Chunk<T>> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for parsed chunk.");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw (Error) cause;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		pool.shutdownNow();
+		file.close();
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.n52.oxf.OXFException;
+import org.n52.oxf.ows.ExceptionReport;
+
+/**
+ * Decides whether and when a request to the SOS is sent again.<br />
+ * Only transport errors, e.g. connections refused or timed out, are retried.
+ * An {@link ExceptionReport} is the answer of the SOS to the request, hence
+ * sending the same request again would result in the same answer.<br />
+ * The delay before a retry grows exponentially with the number of retries up
+ * to a maximum. It is randomized between the half and the full delay, hence
+ * concurrent requests failed at the same time are not retried at the same
+ * time.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+final class RetryPolicy {
+
+	private final int maxRetries;
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final Random random = new Random();
+
+	/**
+	 * @param maxRetries the number of retries after the first attempt
+	 * @param initialDelay the delay in milliseconds before the first retry
+	 * @param maxDelay the maximum delay in milliseconds
+	 */
+	RetryPolicy(final int maxRetries, final long initialDelay, final long maxDelay) {
+		if (maxRetries < 0 || initialDelay < 1 || maxDelay < initialDelay) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid retry policy: retries: %d; delay: %dms; max delay: %dms.",
+					maxRetries, initialDelay, maxDelay));
+		}
+		this.maxRetries = maxRetries;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * @return <code>true</code>, if a request failed the given number of
+	 * 			times with the given exception should be sent again.
+	 */
+	boolean isRetryable(final Exception e, final int failures) {
+		return failures <= maxRetries && isTransportError(e);
+	}
+
+	/**
+	 * @return <code>true</code>, if the given exception was caused by the
+	 * 			connection to the SOS and not by the SOS itself.
+	 */
+	boolean isTransportError(final Exception e) {
+		if (e instanceof ExceptionReport) {
+			return false;
+		}
+		if (e instanceof IOException) {
+			return true;
+		}
+		if (e instanceof OXFException) {
+			// OXF wraps the exceptions of its http client
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the delay in milliseconds before sending a request failed the
+	 * 			given number of times again.
+	 */
+	long getDelay(final int failures) {
+		final int exponent = Math.min(failures - 1, 30);
+		final long delay = Math.min(initialDelay << exponent, maxDelay);
+		return delay / 2 + (long) (random.nextDouble() * (delay - delay / 2));
+	}
+
+	int getMaxRetries() {
+		return maxRetries;
+	}
+
+}
@@ -0,0 +1,695 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.n52.sos.importer.feeder.model.Position;
+import org.n52.sos.importer.feeder.model.Timestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.x52North.sensorweb.sos.importer.x04.ColumnDocument.Column;
+import org.x52North.sensorweb.sos.importer.x04.FeatureOfInterestType;
+import org.x52North.sensorweb.sos.importer.x04.GeneratedResourceType;
+import org.x52North.sensorweb.sos.importer.x04.GeneratedSpatialResourceType;
+import org.x52North.sensorweb.sos.importer.x04.KeyDocument.Key;
+import org.x52North.sensorweb.sos.importer.x04.ManualResourceType;
+import org.x52North.sensorweb.sos.importer.x04.MetadataDocument.Metadata;
+import org.x52North.sensorweb.sos.importer.x04.ObservedPropertyType;
+import org.x52North.sensorweb.sos.importer.x04.RelatedObservedPropertyDocument.RelatedObservedProperty;
+import org.x52North.sensorweb.sos.importer.x04.RelatedUnitOfMeasurementDocument.RelatedUnitOfMeasurement;
+import org.x52North.sensorweb.sos.importer.x04.SensorType;
+import org.x52North.sensorweb.sos.importer.x04.SpatialResourceType;
+import org.x52North.sensorweb.sos.importer.x04.TypeDocument.Type;
+import org.x52North.sensorweb.sos.importer.x04.UnitOfMeasurementType;
+
+/**
+ * Immutable mapping of the measured value columns of a {@link DataFile} to
+ * the columns and resources required to build an observation from one line.
+ * All lookups in the {@link Configuration} are done once while building the
+ * plan, hence, resolving the resources of a line only indexes into the
+ * <code>String[]</code> of values.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ *
+ */
+public final class RowMappingPlan {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RowMappingPlan.class);
+
+	private static final int MILLIES_PER_HOUR = 1000 * 60 * 60;
+
+	/**
+	 * Where the values of a resource are coming from.
+	 */
+	enum Kind {
+		/** the values are taken from a column of the current line */
+		COLUMN,
+		/** the values are generated from one or more columns of the current line */
+		GENERATED,
+		/** the values are defined in the configuration */
+		MANUAL,
+		/** the resource is not defined */
+		NOT_SET
+	}
+
+	private final Configuration configuration;
+
+	private final int[] measuredValueColumnIds;
+
+	private final MeasuredValueColumn[] measuredValueColumns;
+
+	private final DateTimeGroup dateTimeGroup;
+
+	private final Map<String, Position> foiPositions;
+
+	private final boolean generateOffering;
+
+	private final String offering;
+
+	public RowMappingPlan(final Configuration configuration) {
+		LOG.trace("RowMappingPlan()");
+		this.configuration = configuration;
+		measuredValueColumnIds = configuration.getMeasureValueColumnIds();
+		int maxColumnId = -1;
+		for (final int mvColumnId : measuredValueColumnIds) {
+			maxColumnId = Math.max(maxColumnId, mvColumnId);
+		}
+		measuredValueColumns = new MeasuredValueColumn[maxColumnId + 1];
+		for (final int mvColumnId : measuredValueColumnIds) {
+			final Column column = configuration.getColumnById(mvColumnId);
+			if (column != null) {
+				measuredValueColumns[mvColumnId] = new MeasuredValueColumn(mvColumnId,
+						createSensorMapping(mvColumnId),
+						createFoiMapping(mvColumnId),
+						createUomMapping(column, mvColumnId),
+						createObservedPropertyMapping(column, mvColumnId),
+						configuration.getType(mvColumnId),
+						ValueDecoder.create(configuration.getType(mvColumnId), configuration.getDecimalParser()));
+			}
+		}
+		dateTimeGroup = createDateTimeGroup();
+		foiPositions = configuration.getFoiPositions();
+		generateOffering = configuration.isOfferingGenerated();
+		offering = generateOffering? null : configuration.getOfferingName();
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(String.format("Row mapping plan created for %d measured value columns.",
+					measuredValueColumnIds.length));
+		}
+	}
+
+	/**
+	 * @return the ids of all measured value columns
+	 */
+	public int[] getMeasuredValueColumnIds() {
+		return measuredValueColumnIds;
+	}
+
+	/**
+	 * @return the mapping for the given measured value column or
+	 * 			<code>null</code>, if the column is not a measured value column
+	 */
+	MeasuredValueColumn getMeasuredValueColumn(final int mvColumnId) {
+		if (mvColumnId < 0 || mvColumnId >= measuredValueColumns.length) {
+			return null;
+		}
+		return measuredValueColumns[mvColumnId];
+	}
+
+	/**
+	 * @return the date time group used for all measured value columns or
+	 * 			<code>null</code>, if no date time group is defined.
+	 */
+	DateTimeGroup getDateTimeGroup() {
+		return dateTimeGroup;
+	}
+
+	/**
+	 * @return the position of the feature of interest with the given uri
+	 * 			as defined in <code>AdditionalMetadata.FOIPosition</code> or
+	 * 			<code>null</code>
+	 */
+	Position getFoiPosition(final String foiUri) {
+		return foiPositions.get(foiUri);
+	}
+
+	boolean isOfferingGenerated() {
+		return generateOffering;
+	}
+
+	String getOffering() {
+		return offering;
+	}
+
+	Position getPosition(final PositionMapping mapping, final String[] values) throws ParseException {
+		if (mapping == null) {
+			return null;
+		}
+		if (mapping.position != null) {
+			return mapping.position;
+		}
+		return configuration.getPosition(mapping.columns, values);
+	}
+
+	private ResourceMapping createSensorMapping(final int mvColumnId) {
+		final int sensorColumnId = configuration.getColumnIdForSensor(mvColumnId);
+		if (sensorColumnId > -1) {
+			return ResourceMapping.column(sensorColumnId);
+		}
+		SensorType sensorType = configuration.getRelatedSensor(mvColumnId);
+		// Case: one mv column => no related sensor element => check for one single sensor in additional metadata
+		if (sensorType == null && configuration.isOneMvColumn()) {
+			sensorType = configuration.getSensorFromAdditionalMetadata();
+		}
+		if (sensorType != null && sensorType.getResource() != null) {
+			if (sensorType.getResource() instanceof GeneratedResourceType) {
+				final GeneratedResourceType gRT = (GeneratedResourceType) sensorType.getResource();
+				return ResourceMapping.generated(
+						gRT.isSetConcatString()?gRT.getConcatString():null,
+						gRT.isSetURI()?gRT.getURI().getStringValue():null,
+						gRT.isSetURI()&&gRT.getURI().isSetUseAsPrefix()?gRT.getURI().getUseAsPrefix():false,
+						gRT.getNumberArray());
+			} else if (sensorType.getResource() instanceof ManualResourceType) {
+				final ManualResourceType mRT = (ManualResourceType) sensorType.getResource();
+				return ResourceMapping.manual(mRT.getName(), mRT.getURI().getStringValue());
+			}
+		}
+		return ResourceMapping.NOT_SET;
+	}
+
+	private FoiMapping createFoiMapping(final int mvColumnId) {
+		final int foiColumnId = configuration.getColumnIdForFoi(mvColumnId);
+		if (foiColumnId > -1) {
+			return new FoiMapping(ResourceMapping.column(foiColumnId), null);
+		}
+		final FeatureOfInterestType foiT = configuration.getRelatedFoi(mvColumnId);
+		if (foiT != null && foiT.getResource() != null) {
+			if (foiT.getResource() instanceof GeneratedSpatialResourceType) {
+				final GeneratedSpatialResourceType gSRT = (GeneratedSpatialResourceType) foiT.getResource();
+				return new FoiMapping(
+						ResourceMapping.generated(
+								gSRT.isSetConcatString()?gSRT.getConcatString():null,
+								gSRT.isSetURI()?gSRT.getURI().getStringValue():null,
+								gSRT.isSetURI()&&gSRT.getURI().isSetUseAsPrefix()?gSRT.getURI().getUseAsPrefix():false,
+								gSRT.getNumberArray()),
+						createPositionMapping(gSRT.getPosition()));
+			} else if (foiT.getResource() instanceof SpatialResourceType) {
+				final SpatialResourceType mSRT = (SpatialResourceType) foiT.getResource();
+				return new FoiMapping(
+						ResourceMapping.manual(mSRT.getName(), mSRT.getURI().getStringValue()),
+						createPositionMapping(mSRT.getPosition()));
+			}
+		}
+		return new FoiMapping(ResourceMapping.NOT_SET, null);
+	}
+
+	private PositionMapping createPositionMapping(
+			final org.x52North.sensorweb.sos.importer.x04.PositionDocument.Position p) {
+		// Case A: Position is in configuration
+		if (!p.isSetGroup() &&
+				p.isSetEPSGCode() &&
+				p.isSetLat() &&
+				p.isSetLong()) {
+			return new PositionMapping(configuration.getModelPositionXBPosition(p), null);
+		}
+		// Case B: Position is in data file (and configuration [missing values])
+		else if (p.isSetGroup() &&
+				!p.isSetEPSGCode() &&
+				!p.isSetLat() &&
+				!p.isSetLong()) {
+			return new PositionMapping(null, configuration.getAllColumnsForGroup(p.getGroup(), Type.POSITION));
+		}
+		return null;
+	}
+
+	/*
+	 * See DataFile#getUnitOfMeasurement(int, String[]) for the different cases
+	 */
+	private ResourceMapping createUomMapping(final Column mvColumn, final int mvColumnId) {
+		// Case A*
+		if (mvColumn.getRelatedUnitOfMeasurementArray() != null &&
+				mvColumn.getRelatedUnitOfMeasurementArray().length > 0) {
+			final RelatedUnitOfMeasurement relUom = mvColumn.getRelatedUnitOfMeasurementArray(0);
+			// Case A.1.*: idRef
+			if (relUom.isSetIdRef() && !relUom.isSetNumber()) {
+				final UnitOfMeasurementType uom = configuration.getUomById(relUom.getIdRef());
+				if (uom != null) {
+					// Case A.1.1
+					if (uom.getResource() instanceof ManualResourceType) {
+						final ManualResourceType uomMRT = (ManualResourceType) uom.getResource();
+						return ResourceMapping.manual(uomMRT.getName(), uomMRT.getURI().getStringValue());
+					}
+					// Case A.1.2
+					if (uom.getResource() instanceof GeneratedResourceType) {
+						final GeneratedResourceType uomGRT = (GeneratedResourceType) uom.getResource();
+						return ResourceMapping.generated(
+								uomGRT.isSetConcatString()?uomGRT.getConcatString():"",
+								"",
+								false,
+								uomGRT.getNumberArray());
+					}
+				}
+			}
+			// Case A.2: number
+			if (relUom.isSetNumber() && !relUom.isSetIdRef()) {
+				return ResourceMapping.column(relUom.getNumber());
+			}
+		}
+		// Case B: Information stored in another column
+		final int uomColumnId = configuration.getColumnIdForUom(mvColumnId);
+		if (uomColumnId > -1) {
+			return ResourceMapping.column(uomColumnId);
+		}
+		return ResourceMapping.NOT_SET;
+	}
+
+	/*
+	 * See DataFile#getObservedProperty(int, String[]) for the different cases
+	 */
+	private ResourceMapping createObservedPropertyMapping(final Column mvColumn, final int mvColumnId) {
+		// Case A*
+		if (mvColumn.getRelatedObservedPropertyArray() != null &&
+				mvColumn.getRelatedObservedPropertyArray().length > 0) {
+			final RelatedObservedProperty relOp = mvColumn.getRelatedObservedPropertyArray(0);
+			// Case A.1.*: idRef
+			if (relOp.isSetIdRef() && !relOp.isSetNumber()) {
+				final ObservedPropertyType op = configuration.getObsPropById(relOp.getIdRef());
+				if (op != null) {
+					// Case A.1.1
+					if (op.getResource() instanceof ManualResourceType) {
+						final ManualResourceType opMRT = (ManualResourceType) op.getResource();
+						return ResourceMapping.manual(opMRT.getName(), opMRT.getURI().getStringValue());
+					}
+					// Case A.1.2
+					if (op.getResource() instanceof GeneratedResourceType) {
+						final GeneratedResourceType opGRT = (GeneratedResourceType) op.getResource();
+						return ResourceMapping.generated(
+								opGRT.isSetConcatString()?opGRT.getConcatString():"",
+								opGRT.getURI().getStringValue(),
+								opGRT.getURI().isSetUseAsPrefix()?opGRT.getURI().getUseAsPrefix():false,
+								opGRT.getNumberArray());
+					}
+				}
+			}
+			// Case A.2: number
+			if (relOp.isSetNumber() && !relOp.isSetIdRef()) {
+				return ResourceMapping.column(relOp.getNumber());
+			}
+		}
+		// Case B: Information stored in another column
+		final int opColumnId = configuration.getColumnIdForOpsProp(mvColumnId);
+		if (opColumnId > -1) {
+			return ResourceMapping.column(opColumnId);
+		}
+		return ResourceMapping.NOT_SET;
+	}
+
+	private DateTimeGroup createDateTimeGroup() {
+		// all measured value columns are using the first date time group
+		final String group = configuration.getFirstDateTimeGroup();
+		final Column[] cols = configuration.getAllColumnsForGroup(group, Type.DATE_TIME);
+		if (cols == null) {
+			return null;
+		}
+		final TimeZone timeZone = getTimeZone(cols);
+		final DateTimeColumn[] dateTimeColumns = new DateTimeColumn[cols.length];
+		for (int i = 0; i < cols.length; i++) {
+			final String pattern = getParsePattern(cols[i]);
+			dateTimeColumns[i] = new DateTimeColumn(cols[i].getNumber(),
+					new TimestampParser(pattern, getGregorianCalendarFields(pattern), timeZone),
+					getTimestampFromColumnMetadata(cols[i]));
+		}
+		return new DateTimeGroup(dateTimeColumns);
+	}
+
+	private TimeZone getTimeZone(final Column[] cols) {
+		if (cols == null || cols.length < 1) {
+			return TimeZone.getDefault();
+		}
+		for (final Column column : cols) {
+			if (column.getMetadataArray() == null ||
+					column.getMetadataArray().length < 1) {
+				continue;
+			}
+			for (final Metadata meta : column.getMetadataArray()) {
+				if (meta.getKey().equals(Key.TIME_ZONE)) {
+					try {
+						for (final String zoneId : TimeZone.getAvailableIDs(Integer.parseInt(meta.getValue())*MILLIES_PER_HOUR) ) {
+							return TimeZone.getTimeZone(zoneId);
+						}
+					} catch (final NumberFormatException nfe) {
+						LOG.error("Could not parse interger from timezone metadata value. Using default timezone");
+						LOG.debug("Exception thrown: ", nfe);
+						return TimeZone.getDefault();
+					}
+				}
+			}
+		}
+		return TimeZone.getDefault();
+	}
+
+	/**
+	 * Checks for <code>Column.Metadata[]</code> and returns a {@link Timestamp}
+	 * holding their values or <code>null</code>, if none is set. Allowed keys are:
+	 * <ul><li>TIME_DAY</li>
+	 * <li>TIME_HOUR</li>
+	 * <li>TIME_MINUTE</li>
+	 * <li>TIME_MONTH</li>
+	 * <li>TIME_SECOND</li>
+	 * <li>TIME_YEAR</li>
+	 * <li>TIME_ZONE</li></ul>
+	 */
+	private Timestamp getTimestampFromColumnMetadata(final Column col) {
+		if (col.getMetadataArray() == null) {
+			return null;
+		}
+		final Timestamp ts = new Timestamp();
+		boolean isSet = false;
+		for (final Metadata m : col.getMetadataArray()) {
+			if (m.getKey().equals(Key.TIME_ZONE)) {
+				ts.setTimezone( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_YEAR)) {
+				ts.setYear( Short.parseShort( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_MONTH)) {
+				ts.setMonth( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_DAY)) {
+				ts.setDay( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_HOUR)) {
+				ts.setHour( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_MINUTE)) {
+				ts.setMinute( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			} else if (m.getKey().equals(Key.TIME_SECOND)) {
+				ts.setSeconds( Byte.parseByte( m.getValue() ) );
+				isSet = true;
+			}
+		}
+		return isSet? ts : null;
+	}
+
+	private int[] getGregorianCalendarFields(final String pattern) {
+		LOG.trace(String.format("getGregorianCalendarFields(%s)",
+					pattern));
+		final ArrayList<Integer> fields = new ArrayList<Integer>();
+		if (pattern.indexOf("y") != -1) {
+			fields.add(GregorianCalendar.YEAR);
+		}
+		if (pattern.indexOf("M") != -1 ||
+				pattern.indexOf("w") != -1 ||
+				pattern.indexOf("D") != -1) {
+			fields.add(GregorianCalendar.MONTH);
+		}
+		if (pattern.indexOf("d") != -1 ||
+				(pattern.indexOf("W") != -1 && pattern.indexOf("d") != -1)) {
+			fields.add(GregorianCalendar.DAY_OF_MONTH);
+		}
+		if (pattern.indexOf("H") != -1 ||
+				pattern.indexOf("k") != -1 ||
+				((pattern.indexOf("K") != -1 ||
+				(pattern.indexOf("h") != -1) && pattern.indexOf("a") != -1))) {
+			fields.add(GregorianCalendar.HOUR_OF_DAY);
+		}
+		if (pattern.indexOf("m") != -1) {
+			fields.add(GregorianCalendar.MINUTE);
+		}
+		if (pattern.indexOf("s") != -1) {
+			fields.add(GregorianCalendar.SECOND);
+		}
+		if (pattern.indexOf("Z") != -1 || pattern.indexOf("z") != -1) {
+			fields.add(GregorianCalendar.ZONE_OFFSET);
+		}
+		final int[] result = new int[fields.size()];
+		int j = 0;
+		for (final Integer i : fields) {
+			result[j++] = i.intValue();
+		}
+		return result;
+	}
+
+	private String getParsePattern(final Column column) {
+		LOG.trace("getParsePattern()");
+		if (column.getMetadataArray() != null && column.getMetadataArray().length > 1) {
+			for (final Metadata m : column.getMetadataArray()) {
+				if (m.getKey().equals(Key.PARSE_PATTERN)) {
+					LOG.debug(String.format("Parsepattern found: %s",
+								m.getValue()));
+					return m.getValue();
+				}
+			}
+		}
+		LOG.debug(String.format("No Metadata element found with key %s in column %s",
+					Key.PARSE_PATTERN.toString(),
+					column.xmlText()));
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RowMappingPlan [measuredValueColumnIds=%s, configuration=%s]",
+				Arrays.toString(measuredValueColumnIds),
+				configuration);
+	}
+
+	/**
+	 * Resolved resources of one measured value column.
+	 */
+	static final class MeasuredValueColumn {
+
+		final int number;
+
+		final ResourceMapping sensor;
+
+		final FoiMapping foi;
+
+		final ResourceMapping unitOfMeasurement;
+
+		final ResourceMapping observedProperty;
+
+		final String type;
+
+		final ValueDecoder valueDecoder;
+
+		MeasuredValueColumn(final int number,
+				final ResourceMapping sensor,
+				final FoiMapping foi,
+				final ResourceMapping unitOfMeasurement,
+				final ResourceMapping observedProperty,
+				final String type,
+				final ValueDecoder valueDecoder) {
+			this.number = number;
+			this.sensor = sensor;
+			this.foi = foi;
+			this.unitOfMeasurement = unitOfMeasurement;
+			this.observedProperty = observedProperty;
+			this.type = type;
+			this.valueDecoder = valueDecoder;
+		}
+	}
+
+	/**
+	 * Describes how name and uri of a resource are taken from a line.
+	 */
+	static final class ResourceMapping {
+
+		static final ResourceMapping NOT_SET = new ResourceMapping(Kind.NOT_SET, -1, null, null, null, false, null);
+
+		final Kind kind;
+
+		final int column;
+
+		private final String name;
+
+		private final String uri;
+
+		private final String concatString;
+
+		private final boolean useUriAsPrefix;
+
+		private final int[] columns;
+
+		private ResourceMapping(final Kind kind,
+				final int column,
+				final String name,
+				final String uri,
+				final String concatString,
+				final boolean useUriAsPrefix,
+				final int[] columns) {
+			this.kind = kind;
+			this.column = column;
+			this.name = name;
+			this.uri = uri;
+			this.concatString = concatString;
+			this.useUriAsPrefix = useUriAsPrefix;
+			this.columns = columns;
+		}
+
+		static ResourceMapping column(final int column) {
+			return new ResourceMapping(Kind.COLUMN, column, null, null, null, false, null);
+		}
+
+		static ResourceMapping manual(final String name, final String uri) {
+			return new ResourceMapping(Kind.MANUAL, -1, name, uri, null, false, null);
+		}
+
+		static ResourceMapping generated(final String concatString,
+				final String uri,
+				final boolean useUriAsPrefix,
+				final int[] columns) {
+			return new ResourceMapping(Kind.GENERATED,
+					-1,
+					null,
+					uri,
+					concatString == null? "" : concatString,
+					useUriAsPrefix,
+					columns);
+		}
+
+		/**
+		 * <code>String[] result = {name,uri};</code>
+		 * @return <code>String[] result = {name,uri};</code> or
+		 * 			<code>null</code>, if the resource is not set.
+		 */
+		String[] resolve(final String[] values) {
+			switch (kind) {
+			case COLUMN:
+				return new String[] { values[column], values[column] };
+			case MANUAL:
+				return new String[] { name, uri };
+			case GENERATED:
+				final String generatedName = generateName(values);
+				if (uri != null && useUriAsPrefix) {
+					return new String[] { generatedName, uri + generatedName };
+				}
+				return new String[] { generatedName, generatedName };
+			default:
+				return null;
+			}
+		}
+
+		private String generateName(final String[] values) {
+			if (columns.length == 1) {
+				return values[columns[0]];
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					sb.append(concatString);
+				}
+				sb.append(values[columns[i]]);
+			}
+			return sb.toString();
+		}
+
+	}
+
+	/**
+	 * Resource mapping of the feature of interest including its position.
+	 */
+	static final class FoiMapping {
+
+		final ResourceMapping resource;
+
+		final PositionMapping position;
+
+		FoiMapping(final ResourceMapping resource, final PositionMapping position) {
+			this.resource = resource;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Either a fixed position from the configuration or the position
+	 * columns of a group.
+	 */
+	static final class PositionMapping {
+
+		private final Position position;
+
+		private final Column[] columns;
+
+		PositionMapping(final Position position, final Column[] columns) {
+			this.position = position;
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * The date time columns of one group.
+	 */
+	static final class DateTimeGroup {
+
+		final DateTimeColumn[] columns;
+
+		DateTimeGroup(final DateTimeColumn[] columns) {
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * One date time column with the parser compiled from its parse pattern
+	 * and the date information defined in its metadata.
+	 */
+	static final class DateTimeColumn {
+
+		final int number;
+
+		final TimestampParser parser;
+
+		private final Timestamp metadata;
+
+		DateTimeColumn(final int number,
+				final TimestampParser parser,
+				final Timestamp metadata) {
+			this.number = number;
+			this.parser = parser;
+			this.metadata = metadata;
+		}
+
+		/**
+		 * Adds the date information defined in the column metadata to the
+		 * given {@link Timestamp}.
+		 */
+		void enrich(final Timestamp ts) {
+			if (metadata != null) {
+				ts.enrich(metadata);
+			}
+		}
+	}
+
+}
@@ -31,10 +31,10 @@ package org.n52.sos.importer.feeder;
 import static org.n52.sos.importer.feeder.Configuration.*;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -48,10 +48,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -84,9 +86,12 @@ import org.n52.oxf.sos.observation.ObservationParameters;
 import org.n52.oxf.sos.observation.TextObservationParameters;
 import org.n52.oxf.sos.request.v100.RegisterSensorParameters;
 import org.n52.oxf.sos.request.v200.InsertSensorParameters;
+import org.n52.sos.importer.feeder.Configuration.DuplicateFilterPolicy;
 import org.n52.sos.importer.feeder.Configuration.ImportStrategy;
-import org.n52.sos.importer.feeder.csv.CsvParser;
+import org.n52.sos.importer.feeder.csv.FileCsvParser;
 import org.n52.sos.importer.feeder.exceptions.InvalidColumnCountException;
+import org.n52.sos.importer.feeder.metrics.Histogram;
+import org.n52.sos.importer.feeder.metrics.ImportMetrics;
 import org.n52.sos.importer.feeder.model.FeatureOfInterest;
 import org.n52.sos.importer.feeder.model.ObservedProperty;
 import org.n52.sos.importer.feeder.model.Offering;
@@ -97,7 +102,12 @@ import org.n52.sos.importer.feeder.model.Timestamp;
 import org.n52.sos.importer.feeder.model.UnitOfMeasurement;
 import org.n52.sos.importer.feeder.model.requests.InsertObservation;
 import org.n52.sos.importer.feeder.model.requests.RegisterSensor;
+import org.n52.sos.importer.feeder.util.DeadLetterStore;
 import org.n52.sos.importer.feeder.util.DescriptionBuilder;
+import org.n52.sos.importer.feeder.util.DuplicateFilter;
+import org.n52.sos.importer.feeder.util.FileHelper;
+import org.n52.sos.importer.feeder.util.RateLimiter;
+import org.n52.sos.importer.feeder.util.SensorRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -118,12 +128,18 @@ public final class SensorObservationService {
 	private final URL sosUrl;
 	private final String sosVersion;
 	private final SOSWrapper sosWrapper;
+	// shared with other configurations or own connections
+	private final SosConnections connections;
 	private final ServiceDescriptor serviceDescriptor;
-	private final List<String> registeredSensors;
+	// procedures listed in the capabilities or registered, shared per SOS
+	private final SensorRegistry registeredSensors;
+	// observations inserted before, shared per SOS, null until first used
+	private volatile DuplicateFilter duplicateFilter;
 	private final List<InsertObservation> failedInsertObservations;
 	private int lastLine = 0;
+	// byte offset behind lastLine, 0 => skip lastLine lines
+	private long lastOffset = 0;
 	private final Binding sosBinding;
-	private Map<String, String> offerings;
 	private final DescriptionBuilder sensorDescBuilder;
 
 	private String[] headerLine;
@@ -170,10 +186,37 @@ public final class SensorObservationService {
 	private int sweArrayObservationTimeOutBuffer = 25000;
 
 	private int sampleSizeDivisor;
-	
-	private String skipReason = "";
+
+	// number of parsed requests waiting for being sent
+	// 0 => parse and send in the same thread
+	private int importQueueSize = 4;
+
+	// number of concurrent insert requests using SingleObservation strategy
+	private int concurrentInserts = 1;
+
+	// number of threads parsing one data file
+	// 1 => parse in the thread calling importData
+	private int parseThreads = 1;
+
+	// retries of requests failed because of transport errors
+	private final RetryPolicy retryPolicy;
+
+	// shared by all concurrent requests to this SOS
+	private final CircuitBreaker circuitBreaker;
+
+	private final ImportMetrics metrics;
 
 	public SensorObservationService(final Configuration config) throws ExceptionReport, OXFException, MalformedURLException {
+		this(config, null);
+	}
+
+	/**
+	 * @param connections the connections shared with the services of other
+	 * 			configurations or <code>null</code> to create an own
+	 * 			connection
+	 */
+	public SensorObservationService(final Configuration config,
+			final SosConnections connections) throws ExceptionReport, OXFException, MalformedURLException {
 		LOG.trace(String.format("SensorObservationService(%s)", config.toString()));
 		this.config = config;
 		sosUrl = config.getSosUrl();
@@ -181,6 +224,7 @@ public final class SensorObservationService {
 		sosBinding = getBinding(config.getSosBinding());
 		isSampleBasedDataFile = config.isSamplingFile();
 		ignoredColumns = config.getIgnoredColumnIds();
+		metrics = ImportMetrics.get(config.getFileName());
 		if (isSampleBasedDataFile) {
 			sampleIdPattern = Pattern.compile(config.getSampleStartRegEx());
 			sampleSizePattern = Pattern.compile(config.getSampleSizeRegEx());
@@ -190,22 +234,17 @@ public final class SensorObservationService {
 			sampleOffsetDifference = Math.abs(sampleDateOffset - sampleSizeOffset);
 			sampleDataOffset = config.getSampleDataOffset();
 		}
-		if (sosBinding == null) {
-			sosWrapper = SosWrapperFactory.newInstance(sosUrl.toString(),sosVersion);
-		} else {
-			sosWrapper = SosWrapperFactory.newInstance(sosUrl.toString(),sosVersion,sosBinding);
-		}
+		this.connections = connections != null? connections : new SosConnections();
+		sosWrapper = this.connections.getSosWrapper(config);
 		serviceDescriptor = sosWrapper.getServiceDescriptor();
 		if (sosVersion.equals("2.0.0")) {
 			sensorDescBuilder = new DescriptionBuilder(false);
 		} else {
 			sensorDescBuilder = new DescriptionBuilder();
 		}
-		failedInsertObservations = new LinkedList<InsertObservation>();
-		registeredSensors = new LinkedList<String>();
-		if (sosVersion.equals("2.0.0")) {
-			offerings = new HashMap<String, String>();
-		}
+		// synchronized because of concurrent insert requests
+		failedInsertObservations = Collections.synchronizedList(new LinkedList<InsertObservation>());
+		registeredSensors = this.connections.getSensorRegistry(config);
 		if (config.getHunkSize() > 0) {
 			hunkSize = config.getHunkSize();
 		}
@@ -215,6 +254,21 @@ public final class SensorObservationService {
 		if (config.isInsertSweArrayObservationTimeoutBufferSet()) {
 				sweArrayObservationTimeOutBuffer = config.getInsertSweArrayObservationTimeoutBuffer();
 		}
+		if (config.isImportQueueSizeSet()) {
+			importQueueSize = config.getImportQueueSize();
+		}
+		if (config.isConcurrentInsertsSet()) {
+			concurrentInserts = config.getConcurrentInserts();
+		}
+		if (config.isParseThreadsSet()) {
+			parseThreads = config.getParseThreads();
+		}
+		retryPolicy = new RetryPolicy(config.isRetriesSet()? config.getRetries() : 0,
+				config.isRetryDelaySet()? config.getRetryDelay() : 1000,
+				config.isRetryMaxDelaySet()? config.getRetryMaxDelay() : 60000);
+		circuitBreaker = new CircuitBreaker(sosUrl.toString(),
+				config.isCircuitBreakerThresholdSet()? config.getCircuitBreakerThreshold() : 0,
+				config.isCircuitBreakerPauseSet()? config.getCircuitBreakerPause() : 30000);
 		if (config.getImportStrategy().equals(ImportStrategy.SweArrayObservationWithSplitExtension)) {
 			LOG.info("Using {}ms timeout buffer during insert observation requests. "
 					+ "Change <SosImportConfiguration><SosMetadata insertSweArrayObservationTimeoutBuffer> if required.",
@@ -222,7 +276,26 @@ public final class SensorObservationService {
 		}
 	}
 
-	private Binding getBinding(final String binding) throws OXFException {
+	/**
+	 * @param capabilitiesLatency records the duration of the GetCapabilities
+	 * 			request
+	 */
+	static SOSWrapper createSosWrapper(final URL sosUrl,
+			final String sosVersion,
+			final Binding sosBinding,
+			final Histogram capabilitiesLatency) throws ExceptionReport, OXFException {
+		final long start = System.nanoTime();
+		try {
+			if (sosBinding == null) {
+				return SosWrapperFactory.newInstance(sosUrl.toString(),sosVersion);
+			}
+			return SosWrapperFactory.newInstance(sosUrl.toString(),sosVersion,sosBinding);
+		} finally {
+			capabilitiesLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+	}
+
+	static Binding getBinding(final String binding) throws OXFException {
 		if (binding == null  || binding.isEmpty()) {
 			return null;
 		}
@@ -273,119 +346,325 @@ public final class SensorObservationService {
 	public List<InsertObservation> importData(final DataFile dataFile) throws IOException, OXFException, XmlException, IllegalArgumentException, ParseException {
 		LOG.trace("importData()");
 		// 0 Get line
-		final CsvParser cr = dataFile.getCSVReader();
+		final boolean isResumed = lastOffset > 0 && dataFile.isResumable();
+		final FileCsvParser cr = dataFile.getCSVReader(isResumed? lastOffset : 0);
 		String[] values;
-		lineCounter = dataFile.getFirstLineWithData();
-		if (dataFile.getHeaderLine() > -1 && headerLine == null) {
-			headerLine = readHeaderLine(dataFile);
-		}
-		final int failedObservationsBefore = failedInsertObservations.size();
+		long readOffset;
+		lineCounter = isResumed? lastLine : dataFile.getFirstLineWithData();
+		// this instance might be re-used for several data files -> reset file related state
+		headerLine = dataFile.getHeaderLine() > -1? readHeaderLine(dataFile) : null;
+		isInSample = false;
+		lastTimestamp = null;
+		failedInsertObservations.clear();
 		int numOfObsTriedToInsert = 0;
 		// 1 Get all measured value columns =: mvCols
 		final int[] mVCols = dataFile.getMeasuredValueColumnIds();
 		if (mVCols == null || mVCols.length == 0) {
 			LOG.error("No measured value columns found in configuration");
+			cr.close();
 			return null;
 		}
-		if (config.getFirstLineWithData()==0){
+		if (isResumed) {
+			LOG.debug("Resume reading at byte offset {} behind line {}.", lastOffset, lastLine);
+		} else if (config.getFirstLineWithData()==0){
 			skipLines(cr, lastLine+1);
 		} else {
 			skipLines(cr, lastLine);
 		}
-		switch (config.getImportStrategy()) {
-		case SingleObservation:
-			long startReadingFile = System.currentTimeMillis();
-			// for each line
-			while ((values = cr.readNext()) != null) {
-				if (!isLineIgnorable(values) && isNotEmpty(values) && isSizeValid(dataFile, values) && !isHeaderLine(values)) {
-					LOG.debug(String.format("Handling CSV line #%d: %s",lineCounter+1,Arrays.toString(values)));
-					final InsertObservation[] ios = getInsertObservations(values,mVCols,dataFile);
-					numOfObsTriedToInsert += ios.length;
-					insertObservationsForOneLine(ios,values,dataFile);
-					LOG.debug(Feeder.heapSizeInformation());
-				} else {
-					LOG.trace(String.format("\t\tSkip CSV line #%d; %s; Raw data: '%s'",
-							(lineCounter+1),
-							!skipReason.isEmpty()?String.format("Reason: %s", skipReason):"",
-							Arrays.toString(values)));
-					skipReason = "";
-				}
-				lineCounter++;
-				if (lineCounter % 10000 == 0) {
-					LOG.info("Processed line {}.",lineCounter);
+		// time series are inserted in the order of the data file -> only one sender
+		final InsertPipeline pipeline = new InsertPipeline(dataFile.getFileName(),
+				importQueueSize,
+				config.getImportStrategy().equals(ImportStrategy.SingleObservation)? concurrentInserts : 1,
+				metrics.getQueuedRequestCounter());
+		try {
+			readOffset = cr.getOffset();
+			if (isParsingInParallel(dataFile)) {
+				numOfObsTriedToInsert = importInParallel(dataFile, cr.getOffset(), mVCols, pipeline);
+			} else {
+				switch (config.getImportStrategy()) {
+				case SingleObservation:
+					long startReadingFile = System.currentTimeMillis();
+					// for each line
+					while ((values = cr.readNext()) != null) {
+						final String skipReason = getSkipReason(dataFile, values);
+						if (skipReason == null) {
+							LOG.debug(String.format("Handling CSV line #%d: %s",lineCounter+1,Arrays.toString(values)));
+							final InsertObservation[] parsedIos = getInsertObservations(values,mVCols,dataFile);
+							metrics.observationsParsed(parsedIos.length);
+							final InsertObservation[] ios = removeDuplicates(parsedIos);
+							numOfObsTriedToInsert += countObservations(ios);
+							submitObservationsForOneLine(pipeline, ios);
+							LOG.debug(Feeder.heapSizeInformation());
+						} else {
+							LOG.trace(String.format("\t\tSkip CSV line #%d; Reason: %s; Raw data: '%s'",
+									(lineCounter+1),
+									skipReason,
+									Arrays.toString(values)));
+						}
+						lineCounter++;
+						metrics.linesRead(1, cr.getOffset() - readOffset);
+						readOffset = cr.getOffset();
+						if (lineCounter % 10000 == 0) {
+							LOG.info("Processed line {}.",lineCounter);
+						}
+					}
+					pipeline.finish();
+					long finishedImportData = System.currentTimeMillis();
+					LOG.debug("Timing:\nStart File: {}\nFinished importing: {}",
+							new Date(startReadingFile).toString(),
+							new Date(finishedImportData).toString());
+					break;
+
+				case SweArrayObservationWithSplitExtension:
+					LOG.debug("Using hunkSize '{}'",hunkSize);
+					startReadingFile = System.currentTimeMillis();
+					TimeSeriesRepository timeSeriesRepository = new TimeSeriesRepository(mVCols.length, hunkSize + 1);
+					int currentHunk = 0;
+					int sampleStartLine = lineCounter;
+					while ((values = cr.readNext()) != null) {
+						// if it is a sample based file, I need to get the following information
+						// * date information (depends on last timestamp because of
+						if (isSampleBasedDataFile && !isInSample && isSampleStart(values)) {
+							sampleStartLine = lineCounter;
+							lastTimestamp = null;
+							getSampleMetaData(cr);
+							isInSample = true;
+							skipLines(cr, sampleDataOffset-(lineCounter-sampleStartLine));
+							continue;
+						}
+						final String skipReason = getSkipReason(dataFile, values);
+						if (skipReason == null) {
+							LOG.debug(String.format("Handling CSV line #%d: %s",lineCounter+1,Arrays.toString(values)));
+							final InsertObservation[] parsedIos = getInsertObservations(values,mVCols,dataFile);
+							metrics.observationsParsed(parsedIos.length);
+							final InsertObservation[] ios = removeDuplicates(parsedIos);
+							timeSeriesRepository.addObservations(ios);
+							numOfObsTriedToInsert += countObservations(ios);
+							LOG.debug(Feeder.heapSizeInformation());
+							if (currentHunk == hunkSize) {
+								currentHunk = 0;
+								submitTimeSeries(pipeline, timeSeriesRepository);
+								timeSeriesRepository = new TimeSeriesRepository(mVCols.length, hunkSize + 1);
+							} else {
+								currentHunk++;
+							}
+						} else {
+							LOG.trace(String.format("\t\tSkip CSV line #%d; Reason: %s; Raw data: '%s'",
+									(lineCounter+1),
+									skipReason,
+									Arrays.toString(values)));
+						}
+						lineCounter++;
+						metrics.linesRead(1, cr.getOffset() - readOffset);
+						readOffset = cr.getOffset();
+						if (lineCounter % 10000 == 0) {
+							LOG.info("Processed line {}.",lineCounter);
+						}
+						if (isSampleBasedDataFile) {
+							LOG.debug("SampleFile: {}; isInSample: {}; lineCounter: {}; sampleStartLine: {}; sampleSize: {}; sampleDataOffset: {}",
+								isSampleBasedDataFile, isInSample, lineCounter, sampleStartLine, sampleSize, sampleDataOffset);
+						
+							if (isInSample && isSampleEndReached(sampleStartLine)) {
+								isInSample = false;
+								LOG.debug("Current sample left");
+							}
+						}
+					}
+					if (!timeSeriesRepository.isEmpty()) {
+						submitTimeSeries(pipeline, timeSeriesRepository);
+					}
+					pipeline.finish();
+					finishedImportData = System.currentTimeMillis();
+					LOG.debug("Timing:\nStart File: {}\nFinished importing: {}",
+							new Date(startReadingFile).toString(),
+							new Date(finishedImportData).toString());
 				}
+				// a not terminated last line might be continued -> resume via line count
+				lastOffset = cr.isAtLineStart()? cr.getOffset() : 0;
+			}
+			lastLine = lineCounter;
+		} finally {
+			pipeline.cancel();
+			registeredSensors.save();
+			if (duplicateFilter != null) {
+				duplicateFilter.save();
+			}
+			cr.close();
+		}
+
+		final int newFailedObservationsCount = failedInsertObservations.size();
+		final int newObservationsCount = numOfObsTriedToInsert-newFailedObservationsCount;
+		metrics.observationsFailed(newFailedObservationsCount);
+		LOG.info("New observations in SOS: {}. Failed observations: {}.", newObservationsCount,newFailedObservationsCount);
+		// the list is cleared by the next import using this instance
+		return new ArrayList<InsertObservation>(failedInsertObservations);
+	}
+
+	/**
+	 * Inserts the observations stored in the given {@link DeadLetterStore},
+	 * e.g. by previous imports while the SOS was not available. The
+	 * observations are sent by the configured number of concurrent inserts.
+	 * Observations failing again are appended to the store. If sending is
+	 * stopped by an exception, the next replay starts again with the
+	 * observations not yet confirmed.
+	 *
+	 * @param store the store to drain
+	 * @param maxObservationsPerSecond the maximum number of observations sent
+	 * 			per second or <code>0</code> for no limit
+	 * @return the number of observations failed again
+	 */
+	public int replay(final DeadLetterStore store,
+			final int maxObservationsPerSecond) throws OXFException, XmlException, IOException {
+		LOG.trace("replay()");
+		final DeadLetterStore.Drain drain = store.drain();
+		if (drain == null) {
+			LOG.info("No failed observations stored for SOS '{}'.", sosUrl);
+			return 0;
+		}
+		final List<InsertObservation> failed = Collections.synchronizedList(new LinkedList<InsertObservation>());
+		final RateLimiter rateLimiter = maxObservationsPerSecond > 0? new RateLimiter(maxObservationsPerSecond) : null;
+		final InsertPipeline pipeline = new InsertPipeline("replay",
+				Math.max(importQueueSize, 1),
+				concurrentInserts,
+				metrics.getQueuedRequestCounter());
+		int numOfObsTriedToInsert = 0;
+		try {
+			List<InsertObservation> observations;
+			while ((observations = drain.next()) != null) {
+				metrics.observationsParsed(observations.size());
+				final InsertObservation[] ios = removeDuplicates(observations.toArray(new InsertObservation[observations.size()]));
+				submitObservations(pipeline,
+						ios,
+						failed,
+						rateLimiter);
+				numOfObsTriedToInsert += countObservations(ios);
+			}
+			pipeline.finish();
+			store.append(failed);
+			drain.finish();
+		} finally {
+			pipeline.cancel();
+			registeredSensors.save();
+			if (duplicateFilter != null) {
+				duplicateFilter.save();
+			}
+			drain.close();
+		}
+		metrics.observationsFailed(failed.size());
+		LOG.info("Replayed observations in SOS: {}. Failed observations: {}.",
+				numOfObsTriedToInsert - failed.size(),
+				failed.size());
+		return failed.size();
+	}
+
+	private boolean isParsingInParallel(final DataFile dataFile) {
+		if (parseThreads < 2) {
+			return false;
+		}
+		if (isSampleBasedDataFile || !dataFile.isSplittable()) {
+			LOG.info("Parsing data file '{}' with one thread: sample based files and CsvParser '{}' are not supported.",
+					dataFile.getFileName(), config.getCsvParser());
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Parses the data file in chunks starting at offset using parseThreads
+	 * threads. The lines are inserted in the order of the data file.
+	 */
+	private int importInParallel(final DataFile dataFile,
+			final long offset,
+			final int[] mVCols,
+			final InsertPipeline pipeline) throws IOException, OXFException, XmlException {
+		LOG.debug("Using {} threads for parsing.", parseThreads);
+		final long startReadingFile = System.currentTimeMillis();
+		final boolean isSingleObservation = config.getImportStrategy().equals(ImportStrategy.SingleObservation);
+		int numOfObsTriedToInsert = 0;
+		TimeSeriesRepository timeSeriesRepository = new TimeSeriesRepository(mVCols.length, hunkSize + 1);
+		int currentHunk = 0;
+		long endOffset = offset;
+		long chunkStart = offset;
+		final ParallelCsvParser.ParserFactory parserFactory = new ParallelCsvParser.ParserFactory() {
+			@Override
+			public FileCsvParser create(final long chunkOffset) throws IOException {
+				return dataFile.getCSVReader(chunkOffset);
 			}
-			long finishedImportData = System.currentTimeMillis();
-			LOG.debug("Timing:\nStart File: {}\nFinished importing: {}",
-					new Date(startReadingFile).toString(),
-					new Date(finishedImportData).toString());
-			break;
-
-		case SweArrayObservationWithSplitExtension:
-			LOG.debug("Using hunkSize '{}'",hunkSize);
-			startReadingFile = System.currentTimeMillis();
-			TimeSeriesRepository timeSeriesRepository = new TimeSeriesRepository(mVCols.length);
-			int currentHunk = 0;
-			int sampleStartLine = lineCounter;
-			while ((values = cr.readNext()) != null) {
-				// if it is a sample based file, I need to get the following information
-				// * date information (depends on last timestamp because of
-				if (isSampleBasedDataFile && !isInSample && isSampleStart(values)) {
-					sampleStartLine = lineCounter;
-					lastTimestamp = null;
-					getSampleMetaData(cr);
-					isInSample = true;
-					skipLines(cr, sampleDataOffset-(lineCounter-sampleStartLine));
-					continue;
+		};
+		final ParallelCsvParser.LineParser<InsertObservation[]> lineParser = new ParallelCsvParser.LineParser<InsertObservation[]>() {
+			@Override
+			public InsertObservation[] parse(final String[] values) {
+				final String skipReason = getSkipReason(dataFile, values);
+				if (skipReason == null) {
+					return getInsertObservations(values, mVCols, dataFile);
 				}
-				if (!isLineIgnorable(values) && isNotEmpty(values) && isSizeValid(dataFile, values) && !isHeaderLine(values)) {
-					LOG.debug(String.format("Handling CSV line #%d: %s",lineCounter+1,Arrays.toString(values)));
-					final InsertObservation[] ios = getInsertObservations(values,mVCols,dataFile);
-					timeSeriesRepository.addObservations(ios);
-					numOfObsTriedToInsert += ios.length;
-					LOG.debug(Feeder.heapSizeInformation());
-					if (currentHunk == hunkSize) {
-						currentHunk = 0;
-						insertTimeSeries(timeSeriesRepository);
-						timeSeriesRepository = new TimeSeriesRepository(mVCols.length);
+				LOG.trace("\t\tSkip CSV line; Reason: {}; Raw data: '{}'", skipReason, Arrays.toString(values));
+				return null;
+			}
+		};
+		try (final ParallelCsvParser<InsertObservation[]> parser = new ParallelCsvParser<>(dataFile.getFile(),
+				offset,
+				parseThreads,
+				ParallelCsvParser.DEFAULT_CHUNK_SIZE,
+				parserFactory,
+				lineParser)) {
+			ParallelCsvParser.Chunk<InsertObservation[]> chunk;
+			while ((chunk = parser.next()) != null) {
+				for (final InsertObservation[] parsedIos : chunk.getResults()) {
+					metrics.observationsParsed(parsedIos.length);
+					final InsertObservation[] ios = removeDuplicates(parsedIos);
+					numOfObsTriedToInsert += countObservations(ios);
+					if (isSingleObservation) {
+						submitObservationsForOneLine(pipeline, ios);
 					} else {
-						currentHunk++;
+						timeSeriesRepository.addObservations(ios);
+						if (currentHunk == hunkSize) {
+							currentHunk = 0;
+							submitTimeSeries(pipeline, timeSeriesRepository);
+							timeSeriesRepository = new TimeSeriesRepository(mVCols.length, hunkSize + 1);
+						} else {
+							currentHunk++;
+						}
 					}
-				} else {
-					LOG.trace(String.format("\t\tSkip CSV line #%d; %s; Raw data: '%s'",
-							(lineCounter+1),
-							!skipReason.isEmpty()?String.format("Reason: %s", skipReason):"",
-							Arrays.toString(values)));
-					skipReason = "";
-				}
-				lineCounter++;
-				if (lineCounter % 10000 == 0) {
-					LOG.info("Processed line {}.",lineCounter);
 				}
-				if (isSampleBasedDataFile) {
-					LOG.debug("SampleFile: {}; isInSample: {}; lineCounter: {}; sampleStartLine: {}; sampleSize: {}; sampleDataOffset: {}",
-						isSampleBasedDataFile, isInSample, lineCounter, sampleStartLine, sampleSize, sampleDataOffset);
-					
-					if (isInSample && isSampleEndReached(sampleStartLine)) {
-						isInSample = false;
-						LOG.debug("Current sample left");
-					}
+				if ((lineCounter + chunk.getLineCount()) / 10000 > lineCounter / 10000) {
+					LOG.info("Processed line {}.", lineCounter + chunk.getLineCount());
 				}
+				lineCounter += chunk.getLineCount();
+				metrics.linesRead(chunk.getLineCount(), chunk.getEnd() - chunkStart);
+				chunkStart = chunk.getEnd();
+				chunk.rethrowFailure();
+				// a not terminated last line might be continued -> resume via line count
+				endOffset = chunk.isAtLineStart()? chunk.getEnd() : 0;
 			}
-			if (!timeSeriesRepository.isEmpty()) {
-				insertTimeSeries(timeSeriesRepository);
-			}
-			lastLine = lineCounter;
-			finishedImportData = System.currentTimeMillis();
-			LOG.debug("Timing:\nStart File: {}\nFinished importing: {}",
-					new Date(startReadingFile).toString(),
-					new Date(finishedImportData).toString());
 		}
+		if (!timeSeriesRepository.isEmpty()) {
+			submitTimeSeries(pipeline, timeSeriesRepository);
+		}
+		pipeline.finish();
+		lastOffset = endOffset;
+		LOG.debug("Timing:\nStart File: {}\nFinished importing: {}",
+				new Date(startReadingFile).toString(),
+				new Date().toString());
+		return numOfObsTriedToInsert;
+	}
 
-		final int newFailedObservationsCount = failedInsertObservations.size()-failedObservationsBefore;
-		final int newObservationsCount = numOfObsTriedToInsert-newFailedObservationsCount;
-		LOG.info("New observations in SOS: {}. Failed observations: {}.", newObservationsCount,newFailedObservationsCount);
-		return failedInsertObservations;
+	/*
+	 * Returns the reason to skip the given line or null, if it holds data.
+	 * Free of side effects, hence called by several parsing threads, too.
+	 */
+	private String getSkipReason(final DataFile dataFile, final String[] values) {
+		if (isLineIgnorable(values)) {
+			return "Matched ignore pattern.";
+		}
+		if (!isNotEmpty(values)) {
+			return "Line is empty.";
+		}
+		isSizeValid(dataFile, values);
+		if (isHeaderLine(values)) {
+			return "Headerline found.";
+		}
+		return null;
 	}
 
 	private boolean isLineIgnorable(final String[] values) {
@@ -393,7 +672,6 @@ public final class SensorObservationService {
 			final String line = restoreLine(values);
 			for (final Pattern pattern : ignorePatterns) {
 				if (pattern.matcher(line).matches()) {
-					skipReason = "Matched ignore pattern.";
 					return true;
 				}
 			}
@@ -401,7 +679,7 @@ public final class SensorObservationService {
 		return false;
 	}
 
-	private void getSampleMetaData(final CsvParser cr) throws IOException, ParseException {
+	private void getSampleMetaData(final FileCsvParser cr) throws IOException, ParseException {
 		LOG.trace("getSampleMetadata(...)");
 		LOG.trace("dataOffset: {}; sizeOffset: {}; OffsetDifference: {}",
 				sampleDataOffset, sampleSizeOffset, sampleOffsetDifference);
@@ -468,7 +746,7 @@ public final class SensorObservationService {
 		return sampleIdPattern.matcher(restoreLine(values)).matches();
 	}
 
-	private void skipLines(final CsvParser cr,
+	private void skipLines(final FileCsvParser cr,
 			int skipCount) throws IOException {
 		// get the number of lines to skip (coming from already read lines)
 		String[] values;
@@ -484,9 +762,8 @@ public final class SensorObservationService {
 	private String[] readHeaderLine(final DataFile dataFile) throws UnsupportedEncodingException, FileNotFoundException, IOException {
 		try(BufferedReader br = new BufferedReader(
 				new InputStreamReader(
-						new FileInputStream(
-								dataFile.getCanonicalPath()),
-								dataFile.getEncoding()))) {
+						dataFile.openStream(),
+						dataFile.getEncoding()))) {
 			int counter = 1;
 		    for(String line; (line = br.readLine()) != null; ) {
 		    	if (counter++ == dataFile.getHeaderLine()) {
@@ -498,11 +775,7 @@ public final class SensorObservationService {
 	}
 
 	private boolean isHeaderLine(final String[] values) {
-		boolean isHeaderLine = Arrays.equals(headerLine, values);
-		if (!isHeaderLine) {
-			skipReason = "Headerline found.";
-		}
-		return isHeaderLine;
+		return Arrays.equals(headerLine, values);
 	}
 
 	private boolean isSizeValid(final DataFile dataFile,
@@ -518,7 +791,6 @@ public final class SensorObservationService {
 	}
 
 	private boolean isNotEmpty(final String[] values) {
-		skipReason = "Line is empty.";
 		if (values != null && values.length > 0) {
 			for (int i = 0; i < values.length; i++) {
 				final String value = values[i];
@@ -526,7 +798,6 @@ public final class SensorObservationService {
 					return false;
 				}
 			}
-			skipReason = "";
 			return true;
 		}
 		return false;
@@ -609,6 +880,34 @@ public final class SensorObservationService {
 				dataFile.getType(mVColumnId));
 	}
 
+	/*
+	 * Replaces the observations already inserted by null. The others keep
+	 * their index, which is the id of their time series when importing
+	 * SweArrayObservations.
+	 */
+	private InsertObservation[] removeDuplicates(final InsertObservation[] ios) {
+		final DuplicateFilter filter = getDuplicateFilter();
+		if (filter == null || ios.length == 0) {
+			return ios;
+		}
+		final int duplicates = filter.removeContained(ios);
+		if (duplicates > 0) {
+			LOG.trace("Skipped {} observations already inserted.", duplicates);
+			metrics.duplicatesSkipped(duplicates);
+		}
+		return ios;
+	}
+
+	private static int countObservations(final InsertObservation[] ios) {
+		int count = 0;
+		for (final InsertObservation io : ios) {
+			if (io != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	private void logExceptionThrownDuringParsing(final Exception exception) {
 		LOG.error("Could not retrieve all information required for insert observation because of parsing error: {}: {}. Skipped this one.",
 				exception.getClass().getName(),
@@ -616,10 +915,33 @@ public final class SensorObservationService {
 		LOG.debug("Exception stack trace:",exception);
 	}
 
+	private void submitTimeSeries(final InsertPipeline pipeline,
+			final TimeSeriesRepository timeSeriesRepository) throws OXFException, XmlException, IOException {
+		if (timeSeriesRepository.isEmpty()) {
+			// all observations of the hunk were inserted before
+			return;
+		}
+		int observationCount = 0;
+		for (final TimeSeries timeSeries : timeSeriesRepository.getTimeSeries()) {
+			observationCount += timeSeries.size();
+		}
+		metrics.hunkSubmitted(observationCount);
+		pipeline.submit(new InsertPipeline.Task() {
+			@Override
+			public void execute() throws OXFException, XmlException, IOException {
+				insertTimeSeries(timeSeriesRepository);
+			}
+		});
+	}
+
 	private void insertTimeSeries(final TimeSeriesRepository timeSeriesRepository) throws OXFException, XmlException, IOException {
 		LOG.trace("insertTimeSeries()");
 		insertObservationForATimeSeries:
 		for (final TimeSeries timeSeries : timeSeriesRepository.getTimeSeries()) {
+			if (timeSeries.isEmpty()) {
+				// all observations of the time series were inserted before
+				continue;
+			}
 			// check if sensor is registered
 			if (!isSensorRegistered(timeSeries.getSensorURI())) {
 				final String assignedSensorId = registerSensor(timeSeriesRepository.getRegisterSensor(timeSeries.getSensorURI()));
@@ -629,8 +951,7 @@ public final class SensorObservationService {
 							timeSeries.getSensorURI(),
 							sosUrl.toExternalForm(),
 							timeSeries));
-					// TODO implement storing of failed import of a time series
-					//failedInsertObservations.add(io);
+					failedInsertObservations.addAll(timeSeries.getInsertObservations());
 					continue insertObservationForATimeSeries;
 				} else {
 					LOG.info(String.format("Sensor registered at SOS  '%s' with assigned id '%s'",
@@ -646,16 +967,69 @@ public final class SensorObservationService {
 						timeSeries.getSensorName(),
 						timeSeries.getSensorURI(),
 						timeSeries));
-				// TODO implement something useful here!
-				 failedInsertObservations.addAll(timeSeries.getInsertObservations());
-			} else if (observationId.equals(Configuration.SOS_OBSERVATION_ALREADY_CONTAINED)) {
-				LOG.debug(String.format("TimeSeries '%s' was already contained in SOS.",
-						timeSeries));
+				failedInsertObservations.addAll(timeSeries.getInsertObservations());
+				invalidateSensor(timeSeries.getSensorURI());
+			} else {
+				if (observationId.equals(Configuration.SOS_OBSERVATION_ALREADY_CONTAINED)) {
+					LOG.debug(String.format("TimeSeries '%s' was already contained in SOS.",
+							timeSeries));
+				}
+				final DuplicateFilter filter = getDuplicateFilter();
+				if (filter != null) {
+					for (final InsertObservation io : timeSeries.getInsertObservations()) {
+						filter.add(io);
+					}
+				}
 			}
 		}
 	}
 
-	private void insertObservationsForOneLine(final InsertObservation[] ios, final String[] values, final DataFile dataFile) throws OXFException, XmlException, IOException {
+	/*
+	 * The observations are grouped by sensor and each group is submitted using
+	 * the sensor URI as key. Hence, the observations of one sensor are
+	 * inserted in the order of the data file, and the sensor is registered by
+	 * only one sender.
+	 */
+	private void submitObservationsForOneLine(final InsertPipeline pipeline,
+			final InsertObservation[] ios) throws OXFException, XmlException, IOException {
+		submitObservations(pipeline, ios, failedInsertObservations, null);
+	}
+
+	/*
+	 * Observations failing are added to failed. If a rate limiter is given,
+	 * it is acquired for each observation before sending.
+	 */
+	private void submitObservations(final InsertPipeline pipeline,
+			final InsertObservation[] ios,
+			final List<InsertObservation> failed,
+			final RateLimiter rateLimiter) throws OXFException, XmlException, IOException {
+		final Map<String, List<InsertObservation>> iosBySensor = new LinkedHashMap<String, List<InsertObservation>>();
+		for (final InsertObservation io : ios) {
+			if (io != null) {
+				List<InsertObservation> sensorIos = iosBySensor.get(io.getSensorURI());
+				if (sensorIos == null) {
+					sensorIos = new ArrayList<InsertObservation>(ios.length);
+					iosBySensor.put(io.getSensorURI(), sensorIos);
+				}
+				sensorIos.add(io);
+			}
+		}
+		for (final Map.Entry<String, List<InsertObservation>> sensorIos : iosBySensor.entrySet()) {
+			final InsertObservation[] iosOfSensor = sensorIos.getValue().toArray(new InsertObservation[sensorIos.getValue().size()]);
+			pipeline.submit(sensorIos.getKey(), new InsertPipeline.Task() {
+				@Override
+				public void execute() throws OXFException, XmlException, IOException {
+					if (rateLimiter != null) {
+						rateLimiter.acquire(iosOfSensor.length);
+					}
+					insertObservationsForOneLine(iosOfSensor, failed);
+				}
+			});
+		}
+	}
+
+	private void insertObservationsForOneLine(final InsertObservation[] ios,
+			final List<InsertObservation> failed) throws OXFException, XmlException, IOException {
 		insertObservationForALine:
 		for (final InsertObservation io : ios) {
 			if (io != null) {
@@ -670,7 +1044,7 @@ public final class SensorObservationService {
 								io.getSensorName(),
 								io.getSensorURI(),
 								sosUrl.toExternalForm()));
-						failedInsertObservations.add(io);
+						failed.add(io);
 						continue insertObservationForALine;
 					} else {
 						LOG.debug(String.format("Sensor registered at SOS  '%s' with assigned id '%s'",
@@ -686,15 +1060,41 @@ public final class SensorObservationService {
 							io.getSensorName(),
 							io.getSensorURI(),
 							io));
-					failedInsertObservations.add(io);
-				} else if (observationId.equals(Configuration.SOS_OBSERVATION_ALREADY_CONTAINED)) {
-					LOG.debug(String.format("Observation was already contained in SOS: %s",
-							io));
+					failed.add(io);
+					invalidateSensor(io.getSensorURI());
+				} else {
+					if (observationId.equals(Configuration.SOS_OBSERVATION_ALREADY_CONTAINED)) {
+						LOG.debug(String.format("Observation was already contained in SOS: %s",
+								io));
+					}
+					final DuplicateFilter filter = getDuplicateFilter();
+					if (filter != null) {
+						filter.add(io);
+					}
 				}
 			}
 		}
 	}
 
+	/*
+	 * A sensor taken from the registry of a previous run might not be
+	 * registered anymore, e.g. after resetting the SOS database.
+	 */
+	private void invalidateSensor(final String sensorURI) {
+		if (registeredSensors.removeIfNotConfirmed(sensorURI)) {
+			LOG.info("Removed sensor '{}' from registry. It will be registered again.", sensorURI);
+			// entries could not be removed per sensor, and clearing the filter
+			// would send the observations of all other sensors again
+			final DuplicateFilter filter = getDuplicateFilter();
+			if (filter != null && filter.size() > 0) {
+				LOG.warn("Observations of sensor '{}' inserted before are still dropped by the duplicate filter of SOS '{}'. "
+						+ "Delete the duplicate filter file, if the SOS database was reset.",
+						sensorURI,
+						sosUrl);
+			}
+		}
+	}
+
 	private Map<ObservedProperty, String> getUnitsOfMeasurement(final String sensorURI,
 			final InsertObservation[] ios) {
 		final Map<ObservedProperty,String> unitsOfMeasurement = new HashMap<ObservedProperty, String>(ios.length);
@@ -734,18 +1134,19 @@ public final class SensorObservationService {
 		return observedProperties;
 	}
 
-	private String insertSweArrayObservation(final org.n52.oxf.sos.request.InsertObservationParameters sweArrayObservation) {
+	private String insertSweArrayObservation(final org.n52.oxf.sos.request.InsertObservationParameters sweArrayObservation) throws IOException {
 		OperationResult opResult = null;
 		try {
 			try {
-				final int connectionTimeout = sosWrapper.getConnectionTimeout();
-				final int readTimeout = sosWrapper.getReadTimeout();
-				sosWrapper.setConnectionTimeOut(connectionTimeout + sweArrayObservationTimeOutBuffer);
-				sosWrapper.setReadTimeout(readTimeout + sweArrayObservationTimeOutBuffer);
 				setMimetype(sweArrayObservation);
-				opResult = sosWrapper.doInsertObservation(sweArrayObservation);
-				sosWrapper.setConnectionTimeOut(connectionTimeout);
-				sosWrapper.setReadTimeout(readTimeout);
+				// a connection of its own, hence the extended timeouts do not delay other requests
+				final SOSWrapper sweArrayWrapper = connections.getSosWrapper(config, sweArrayObservationTimeOutBuffer);
+				opResult = send("InsertObservation", metrics.getInsertLatency(), new Request() {
+					@Override
+					public OperationResult send() throws ExceptionReport, OXFException {
+						return sweArrayWrapper.doInsertObservation(sweArrayObservation);
+					}
+				});
 				if (sosVersion.equals("1.0.0")) {
 					try {
 						final InsertObservationResponse response = InsertObservationResponseDocument.Factory.parse(opResult.getIncomingResultAsAutoCloseStream()).getInsertObservationResponse();
@@ -808,14 +1209,18 @@ public final class SensorObservationService {
 
 	private String insertObservation(final InsertObservation io) throws IOException {
 		OperationResult opResult = null;
-		org.n52.oxf.sos.request.InsertObservationParameters parameters = null;
 
 		try {
-			parameters = createParameterAssemblyFromIO(io);
+			final org.n52.oxf.sos.request.InsertObservationParameters parameters = createParameterAssemblyFromIO(io);
 			setMimetype(parameters);
 			try {
 				LOG.debug("\tBEFORE OXF - doOperation 'InsertObservation'");
-				opResult = sosWrapper.doInsertObservation(parameters);
+				opResult = send("InsertObservation", metrics.getInsertLatency(), new Request() {
+					@Override
+					public OperationResult send() throws ExceptionReport, OXFException {
+						return sosWrapper.doInsertObservation(parameters);
+					}
+				});
 				LOG.debug("\tAFTER OXF - doOperation 'InsertObservation'");
 				if (sosVersion.equals("1.0.0")) {
 					try {
@@ -931,7 +1336,12 @@ public final class SensorObservationService {
 			if(sosVersion.equals("1.0.0")) {
 				final RegisterSensorParameters regSensorParameter = createRegisterSensorParametersFromRS(rs);
 				setMimetype(regSensorParameter);
-				final OperationResult opResult = sosWrapper.doRegisterSensor(regSensorParameter);
+				final OperationResult opResult = send("RegisterSensor", metrics.getRegisterLatency(), new Request() {
+					@Override
+					public OperationResult send() throws ExceptionReport, OXFException {
+						return sosWrapper.doRegisterSensor(regSensorParameter);
+					}
+				});
 				final RegisterSensorResponseDocument response = RegisterSensorResponseDocument.Factory.parse(opResult.getIncomingResultAsAutoCloseStream());
 				LOG.debug("RegisterSensorResponse parsed");
 				return response.getRegisterSensorResponse().getAssignedSensorId();
@@ -942,10 +1352,15 @@ public final class SensorObservationService {
 					insSensorParams.addParameterValue(ISOSRequestBuilder.BINDING, sosBinding.name());
 				}
 				setMimetype(insSensorParams);
-				final OperationResult opResult = sosWrapper.doInsertSensor(insSensorParams);
+				final OperationResult opResult = send("InsertSensor", metrics.getRegisterLatency(), new Request() {
+					@Override
+					public OperationResult send() throws ExceptionReport, OXFException {
+						return sosWrapper.doInsertSensor(insSensorParams);
+					}
+				});
 				final InsertSensorResponseDocument response = InsertSensorResponseDocument.Factory.parse(opResult.getIncomingResultAsAutoCloseStream());
 				LOG.debug("InsertSensorResponse parsed");
-				offerings.put(response.getInsertSensorResponse().getAssignedProcedure(),response.getInsertSensorResponse().getAssignedOffering());
+				registeredSensors.add(response.getInsertSensorResponse().getAssignedProcedure(),response.getInsertSensorResponse().getAssignedOffering());
 				return response.getInsertSensorResponse().getAssignedProcedure();
 			}
 		} catch (final ExceptionReport e) {
@@ -971,7 +1386,7 @@ public final class SensorObservationService {
 					for (final String string : owsEx.getExceptionTexts()) {
 						if (string.indexOf(Configuration.SOS_200_OFFERING_ALREADY_REGISTERED_MESSAGE_START) > -1 &&
 								string.indexOf(Configuration.SOS_200_OFFERING_ALREADY_REGISTERED_MESSAGE_END) > -1) {
-							offerings.put(rs.getSensorURI(), rs.getOfferingUri());
+							registeredSensors.add(rs.getSensorURI(), rs.getOfferingUri());
 							return rs.getSensorURI();
 						}
 					}
@@ -991,6 +1406,8 @@ public final class SensorObservationService {
 			LOG.error(String.format("Exception thrown: %s",
 						e.getMessage()),
 					e);
+		} catch (final InterruptedIOException e) {
+			throw e;
 		} catch (final IOException e) {
 			// TODO Auto-generated catch block generated on 21.06.2012 around 14:53:54
 			LOG.error(String.format("Exception thrown: %s",
@@ -1000,6 +1417,64 @@ public final class SensorObservationService {
 		return null;
 	}
 
+	/**
+	 * A request to the SOS, e.g. an insert observation operation.
+	 */
+	private interface Request {
+		OperationResult send() throws ExceptionReport, OXFException;
+	}
+
+	/*
+	 * Sends the request, if the circuit breaker is closed. Requests failed
+	 * because of transport errors are sent again according to the retry
+	 * policy. Exception reports are answers of the SOS and thrown directly.
+	 * The duration of each attempt is recorded in latency.
+	 */
+	private OperationResult send(final String operation,
+			final Histogram latency,
+			final Request request) throws ExceptionReport, OXFException, IOException {
+		for (int failures = 1; ; failures++) {
+			circuitBreaker.acquire();
+			OXFException transportError = null;
+			final long start = System.nanoTime();
+			try {
+				return request.send();
+			} catch (final OXFException e) {
+				if (retryPolicy.isTransportError(e)) {
+					transportError = e;
+				} else {
+					throw e;
+				}
+			} finally {
+				latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				if (transportError == null) {
+					circuitBreaker.onSuccess();
+				} else {
+					metrics.transportErrorOccurred();
+					circuitBreaker.onFailure();
+				}
+			}
+			if (!retryPolicy.isRetryable(transportError, failures)) {
+				throw transportError;
+			}
+			final long delay = retryPolicy.getDelay(failures);
+			metrics.retried();
+			LOG.warn("{} request to SOS '{}' failed: {}. Retry {} of {} in {}ms.",
+					operation,
+					sosUrl,
+					transportError.getMessage(),
+					failures,
+					retryPolicy.getMaxRetries(),
+					delay);
+			try {
+				Thread.sleep(delay);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw (IOException) new InterruptedIOException("Interrupted while waiting for the retry of a request.").initCause(e);
+			}
+		}
+	}
+
 	private void setMimetype(final MimetypeAwareRequestParameters parameters) {
 		String mimeType = "text/xml";
 		if (sosBinding != null) {
@@ -1091,6 +1566,87 @@ public final class SensorObservationService {
 					sosUrl));
 			return false;
 		}
+		return registeredSensors.contains(sensorURI);
+	}
+
+	/*
+	 * Indexes the procedures of all offerings once, because checking the
+	 * capabilities for each observation is too expensive for SOS instances
+	 * with many offerings. Newly registered sensors are added to the same
+	 * registry because the capabilities update might take to long to wait for.
+	 * Sensors registered during previous runs are loaded from the registry
+	 * file in the importer home, if not disabled via <SosMetadata
+	 * sensorRegistryMaxAge="0">. The registry is created once per SOS by
+	 * SosConnections.
+	 */
+	static SensorRegistry createSensorRegistry(final Configuration config, final ServiceDescriptor serviceDescriptor)
+			throws MalformedURLException {
+		final URL sosUrl = config.getSosUrl();
+		int maxAgeInMinutes = 1440;
+		if (config.isSensorRegistryMaxAgeSet()) {
+			maxAgeInMinutes = config.getSensorRegistryMaxAge();
+		}
+		final SensorRegistry registry;
+		if (maxAgeInMinutes > 0) {
+			registry = new SensorRegistry(
+					FileHelper.createFileInImporterHomeWithUniqueFileName(sosUrl.toExternalForm() + "_sensors"),
+					maxAgeInMinutes * 60L * 1000L);
+			registry.load();
+		} else {
+			registry = new SensorRegistry();
+		}
+		addSensorsFromCapabilities(registry, serviceDescriptor, sosUrl);
+		return registry;
+	}
+
+	/*
+	 * The filter is allocated for its maximum size, hence it is taken from
+	 * SosConnections when used first instead of when creating this instance.
+	 */
+	private DuplicateFilter getDuplicateFilter() {
+		if (!config.isDuplicateFilterSizeSet()) {
+			return null;
+		}
+		DuplicateFilter filter = duplicateFilter;
+		if (filter == null) {
+			try {
+				filter = connections.getDuplicateFilter(config);
+			} catch (final MalformedURLException e) {
+				// already parsed when creating this instance
+				throw new IllegalStateException(e);
+			}
+			duplicateFilter = filter;
+		}
+		return filter;
+	}
+
+	/*
+	 * The duplicate filter is stored per SOS like the sensor registry. It is
+	 * created once per SOS by SosConnections.
+	 */
+	static DuplicateFilter createDuplicateFilter(final Configuration config) throws MalformedURLException {
+		if (!config.isDuplicateFilterSizeSet()) {
+			return null;
+		}
+		final DuplicateFilter filter = new DuplicateFilter(
+				FileHelper.createFileInImporterHomeWithUniqueFileName(config.getSosUrl().toExternalForm() + "_observations"),
+				config.getDuplicateFilterSize(),
+				config.getDuplicateFilterFalsePositiveRate(),
+				config.getDuplicateFilterPolicy().equals(DuplicateFilterPolicy.Exact));
+		filter.load();
+		LOG.info("Using duplicate filter with policy {} for up to {} observations. Known observations: {}.",
+				config.getDuplicateFilterPolicy(),
+				config.getDuplicateFilterSize(),
+				filter.size());
+		return filter;
+	}
+
+	private static void addSensorsFromCapabilities(final SensorRegistry registeredSensors,
+			final ServiceDescriptor serviceDescriptor,
+			final URL sosUrl) {
+		if (serviceDescriptor == null) {
+			return;
+		}
 		// 0 check operation metadata of DescribeSensor
 //		if (serviceDescriptor.getOperationsMetadata() != null &&
 //				serviceDescriptor.getOperationsMetadata().getOperationByName(SOSAdapter.DESCRIBE_SENSOR) != null &&
@@ -1112,22 +1668,14 @@ public final class SensorObservationService {
 			for (final String offeringId : offeringIds) {
 				final ObservationOffering offering = sosContent.getDataIdentification(offeringId);
 				final String[] sensorIds = offering.getProcedures();
-				for (final String sensorId : sensorIds) {
-					if (sensorId.equals(sensorURI)) {
-						return true;
+				if (sensorIds != null) {
+					for (final String sensorId : sensorIds) {
+						registeredSensors.add(sensorId, offeringId);
 					}
 				}
 			}
 		}
-		// 2 check the list of newly registered sensors because the capabilities update might take to long to wait for
-		if (registeredSensors != null && registeredSensors.size() > 0) {
-			for (final String sensorId : registeredSensors) {
-				if (sensorId.equals(sensorURI)) {
-					return true;
-				}
-			}
-		}
-		return false;
+		LOG.debug("Known sensors of SOS '{}' from capabilities and registry: {}.", sosUrl, registeredSensors.size());
 	}
 
 	public int getLastLine() {
@@ -1139,4 +1687,23 @@ public final class SensorObservationService {
 		this.lastLine = lastLine;
 	}
 
+	/**
+	 * @return the byte offset directly behind {@link #getLastLine()} or
+	 * 			<code>0</code>, if unknown.
+	 */
+	public long getLastOffset() {
+		return lastOffset;
+	}
+
+	/**
+	 * @param lastOffset the byte offset directly behind
+	 * 			{@link #getLastLine()}. The next import continues reading at
+	 * 			this offset instead of skipping the lines. <code>0</code>
+	 * 			restores skipping.
+	 */
+	public void setLastOffset(final long lastOffset) {
+		LOG.debug("Last offset updated: old: {}; new: {}", this.lastOffset, lastOffset);
+		this.lastOffset = lastOffset;
+	}
+
 }
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.net.MalformedURLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.n52.oxf.OXFException;
+import org.n52.oxf.ows.ExceptionReport;
+import org.n52.oxf.sos.adapter.wrapper.SOSWrapper;
+import org.n52.sos.importer.feeder.metrics.ImportMetrics;
+import org.n52.sos.importer.feeder.util.DuplicateFilter;
+import org.n52.sos.importer.feeder.util.SensorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the connection to one SOS instance, its {@link SensorRegistry} and
+ * its {@link DuplicateFilter} between the {@link SensorObservationService}s of several configurations or
+ * of the concurrent sessions of one configuration, e.g. when feeding many
+ * configurations in one process. Hence, the capabilities are requested and
+ * the registry and filter are loaded once per SOS instance. Instances are
+ * identified by URL, version and binding.<br />
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class SosConnections {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SosConnections.class);
+
+	private final ConcurrentMap<String, SOSWrapper> sosWrappers = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, SensorRegistry> sensorRegistries = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, DuplicateFilter> duplicateFilters = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the connection to the SOS instance of the given configuration,
+	 * 			which is created on first access.
+	 */
+	public SOSWrapper getSosWrapper(final Configuration config)
+			throws ExceptionReport, OXFException, MalformedURLException {
+		return getSosWrapper(config, 0);
+	}
+
+	/**
+	 * @param timeoutBuffer milliseconds added to the connection and read
+	 * 			timeouts, e.g. for long running SweArrayObservation inserts
+	 * @return the connection to the SOS instance of the given configuration
+	 * 			using the given timeouts, which is created on first access.
+	 * 			Connections using other timeouts are separate instances,
+	 * 			hence their timeouts are never changed.
+	 */
+	public SOSWrapper getSosWrapper(final Configuration config, final int timeoutBuffer)
+			throws ExceptionReport, OXFException, MalformedURLException {
+		final String key = getKey(config) + " " + timeoutBuffer;
+		final SOSWrapper existing = sosWrappers.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		// requested without lock, hence a slow SOS does not block the others
+		LOG.debug("Creating connection to SOS '{}'.", key);
+		final SOSWrapper sosWrapper = SensorObservationService.createSosWrapper(config.getSosUrl(),
+				config.getSosVersion(),
+				SensorObservationService.getBinding(config.getSosBinding()),
+				ImportMetrics.get(config.getFileName()).getCapabilitiesLatency());
+		if (timeoutBuffer > 0) {
+			sosWrapper.setConnectionTimeOut(sosWrapper.getConnectionTimeout() + timeoutBuffer);
+			sosWrapper.setReadTimeout(sosWrapper.getReadTimeout() + timeoutBuffer);
+		}
+		final SOSWrapper concurrentlyCreated = sosWrappers.putIfAbsent(key, sosWrapper);
+		return concurrentlyCreated != null? concurrentlyCreated : sosWrapper;
+	}
+
+	/**
+	 * @return the registry of the sensors known to be registered at the SOS
+	 * 			instance of the given configuration, which is created on first
+	 * 			access from the registry file and the capabilities. Registries
+	 * 			using another maximum age are separate instances.
+	 */
+	public SensorRegistry getSensorRegistry(final Configuration config)
+			throws ExceptionReport, OXFException, MalformedURLException {
+		final String key = getKey(config) + " " + (config.isSensorRegistryMaxAgeSet()? config.getSensorRegistryMaxAge() : "");
+		final SensorRegistry existing = sensorRegistries.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		final SensorRegistry registry = SensorObservationService.createSensorRegistry(config,
+				getSosWrapper(config).getServiceDescriptor());
+		final SensorRegistry concurrentlyCreated = sensorRegistries.putIfAbsent(key, registry);
+		return concurrentlyCreated != null? concurrentlyCreated : registry;
+	}
+
+	/**
+	 * @return the filter of the observations already inserted into the SOS
+	 * 			instance of the given configuration, which is created and
+	 * 			loaded on first access, or <code>null</code>, if observations
+	 * 			are not filtered. Filters using another size or policy are
+	 * 			separate instances.
+	 */
+	public DuplicateFilter getDuplicateFilter(final Configuration config) throws MalformedURLException {
+		if (!config.isDuplicateFilterSizeSet()) {
+			return null;
+		}
+		final String key = getKey(config) + " " + config.getDuplicateFilterSize()
+				+ " " + config.getDuplicateFilterFalsePositiveRate()
+				+ " " + config.getDuplicateFilterPolicy();
+		final DuplicateFilter existing = duplicateFilters.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		// created under lock, because each filter is allocated for its maximum size
+		synchronized (duplicateFilters) {
+			DuplicateFilter filter = duplicateFilters.get(key);
+			if (filter == null) {
+				filter = SensorObservationService.createDuplicateFilter(config);
+				duplicateFilters.put(key, filter);
+			}
+			return filter;
+		}
+	}
+
+	/**
+	 * Discards the connections to the SOS instance of the given configuration
+	 * and its sensor registries, e.g. because the communication failed. The
+	 * next call of {@link #getSosWrapper(Configuration)} creates a new one.
+	 * The duplicate filters are kept, because they do not depend on the
+	 * connection.
+	 */
+	public void invalidate(final Configuration config) {
+		try {
+			final String prefix = getKey(config) + " ";
+			final boolean isInvalidated = remove(sosWrappers, prefix);
+			remove(sensorRegistries, prefix);
+			if (isInvalidated) {
+				LOG.debug("Invalidated connection to SOS '{}'.", config.getSosUrl());
+			}
+		} catch (final MalformedURLException e) {
+			// no connection was created for this configuration
+			LOG.debug("Exception thrown: {}", e.getMessage(), e);
+		}
+	}
+
+	private static boolean remove(final ConcurrentMap<String, ?> map, final String prefix) {
+		boolean isRemoved = false;
+		for (final Iterator<String> keys = map.keySet().iterator(); keys.hasNext();) {
+			if (keys.next().startsWith(prefix)) {
+				keys.remove();
+				isRemoved = true;
+			}
+		}
+		return isRemoved;
+	}
+
+	private String getKey(final Configuration config) throws MalformedURLException {
+		return config.getSosUrl().toExternalForm() + " " + config.getSosVersion() + " " + config.getSosBinding();
+	}
+
+}
@@ -0,0 +1,371 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.n52.sos.importer.feeder.model.Timestamp;
+
+/**
+ * Parses the values of one date time column into a {@link Timestamp}. The
+ * parse pattern is compiled once and all calendar fields are extracted in
+ * one pass. Instances are thread-safe.
+ * <p>
+ * Patterns consisting only of the numeric fields <code>yyyy, M, MM, d, dd,
+ * H, HH, m, mm, s, ss</code> and literals are parsed without
+ * {@link SimpleDateFormat}. Values not matching such a pattern exactly, e.g.
+ * out of range values that are rolled over by a lenient
+ * {@link SimpleDateFormat}, and all other patterns are parsed using a
+ * {@link SimpleDateFormat} per thread. In contrast to a lenient
+ * {@link SimpleDateFormat}, local times falling into a daylight saving time
+ * gap are kept as they are written in the data file.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ *
+ */
+public final class TimestampParser {
+
+	private static final int MILLIS_PER_HOUR = 1000 * 60 * 60;
+
+	private static final int[] DAYS_PER_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	private static final int MAX_DIGITS = 9;
+
+	private static final char LITERAL = 0;
+
+	private final String pattern;
+
+	private final int[] fields;
+
+	/*
+	 * compiled fast path: one entry per token. Field tokens have their
+	 * pattern letter in tokenTypes and the digit count for abutting fields in
+	 * tokenWidths (0 := variable). Literal tokens have LITERAL as type and
+	 * the text in tokenLiterals.
+	 */
+	private final char[] tokenTypes;
+
+	private final int[] tokenWidths;
+
+	private final String[] tokenLiterals;
+
+	private final ThreadLocal<SimpleDateFormat> formats;
+
+	private final ThreadLocal<GregorianCalendar> calendars;
+
+	/**
+	 * @param pattern the {@link SimpleDateFormat} pattern of the column
+	 * @param fields the <code>GregorianCalendar</code> fields to set in the
+	 * 			resulting {@link Timestamp}
+	 * @param timeZone the time zone used for parsing
+	 */
+	public TimestampParser(final String pattern, final int[] fields, final TimeZone timeZone) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("parameter pattern is mandatory.");
+		}
+		this.pattern = pattern;
+		this.fields = fields.clone();
+		final List<Character> types = new ArrayList<Character>();
+		final List<Integer> widths = new ArrayList<Integer>();
+		final List<String> literals = new ArrayList<String>();
+		if (compile(pattern, types, widths, literals)) {
+			tokenTypes = new char[types.size()];
+			tokenWidths = new int[types.size()];
+			for (int i = 0; i < tokenTypes.length; i++) {
+				tokenTypes[i] = types.get(i);
+				tokenWidths[i] = widths.get(i);
+			}
+			tokenLiterals = literals.toArray(new String[literals.size()]);
+		} else {
+			tokenTypes = null;
+			tokenWidths = null;
+			tokenLiterals = null;
+		}
+		formats = new ThreadLocal<SimpleDateFormat>() {
+			@Override
+			protected SimpleDateFormat initialValue() {
+				final SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+				sdf.setTimeZone(timeZone);
+				return sdf;
+			}
+		};
+		calendars = new ThreadLocal<GregorianCalendar>() {
+			@Override
+			protected GregorianCalendar initialValue() {
+				return new GregorianCalendar(timeZone);
+			}
+		};
+	}
+
+	/**
+	 * Parses the given value and sets the fields of this column in the given
+	 * {@link Timestamp}.
+	 *
+	 * @throws ParseException if the value could not be parsed using the
+	 * 			pattern of this column
+	 */
+	public void parse(final String value, final Timestamp ts) throws ParseException {
+		if (tokenTypes != null && parseNumeric(value, ts)) {
+			return;
+		}
+		final GregorianCalendar cal = calendars.get();
+		cal.setTime(formats.get().parse(value));
+		for (final int field : fields) {
+			switch (field) {
+			case GregorianCalendar.MONTH:
+				// java starts month counting at 0 -> +1 for each month
+				setField(ts, field, cal.get(field) + 1);
+				break;
+			case GregorianCalendar.ZONE_OFFSET:
+				setField(ts, field, (cal.get(GregorianCalendar.ZONE_OFFSET) +
+						cal.get(GregorianCalendar.DST_OFFSET)) / MILLIS_PER_HOUR);
+				break;
+			default:
+				setField(ts, field, cal.get(field));
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, if this column is parsed without
+	 * 			{@link SimpleDateFormat} if the values are well formed.
+	 */
+	public boolean isFastPathAvailable() {
+		return tokenTypes != null;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	/*
+	 * returns false, if the value does not match the pattern exactly. In this
+	 * case, the value is parsed by the SimpleDateFormat, which might still
+	 * accept it.
+	 */
+	private boolean parseNumeric(final String value, final Timestamp ts) {
+		// defaults as set by SimpleDateFormat for fields not in the pattern
+		int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0;
+		final int length = value.length();
+		int pos = 0;
+		for (int t = 0; t < tokenTypes.length; t++) {
+			final char type = tokenTypes[t];
+			if (type == LITERAL) {
+				final String literal = tokenLiterals[t];
+				if (!value.startsWith(literal, pos)) {
+					return false;
+				}
+				pos += literal.length();
+				continue;
+			}
+			final int maxEnd = tokenWidths[t] > 0? pos + tokenWidths[t] : pos + MAX_DIGITS;
+			int number = 0;
+			final int start = pos;
+			while (pos < length && pos < maxEnd) {
+				final char c = value.charAt(pos);
+				if (c < '0' || c > '9') {
+					break;
+				}
+				number = number * 10 + (c - '0');
+				pos++;
+			}
+			if (pos == start || (tokenWidths[t] > 0 && pos != maxEnd)) {
+				return false;
+			}
+			switch (type) {
+			case 'y':
+				year = number;
+				break;
+			case 'M':
+				month = number;
+				break;
+			case 'd':
+				day = number;
+				break;
+			case 'H':
+				hour = number;
+				break;
+			case 'm':
+				minute = number;
+				break;
+			case 's':
+				second = number;
+				break;
+			default:
+				return false;
+			}
+		}
+		if (pos != length ||
+				month < 1 || month > 12 ||
+				day < 1 || day > getDaysOfMonth(year, month) ||
+				hour > 23 || minute > 59 || second > 59) {
+			return false;
+		}
+		for (final int field : fields) {
+			switch (field) {
+			case GregorianCalendar.YEAR:
+				setField(ts, field, year);
+				break;
+			case GregorianCalendar.MONTH:
+				setField(ts, field, month);
+				break;
+			case GregorianCalendar.DAY_OF_MONTH:
+				setField(ts, field, day);
+				break;
+			case GregorianCalendar.HOUR_OF_DAY:
+				setField(ts, field, hour);
+				break;
+			case GregorianCalendar.MINUTE:
+				setField(ts, field, minute);
+				break;
+			case GregorianCalendar.SECOND:
+				setField(ts, field, second);
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getDaysOfMonth(final int year, final int month) {
+		if (month == 2 && ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0)) {
+			return 29;
+		}
+		return DAYS_PER_MONTH[month - 1];
+	}
+
+	private static void setField(final Timestamp ts, final int field, final int value) {
+		switch (field) {
+		case GregorianCalendar.YEAR:
+			ts.setYear((short) value);
+			break;
+		case GregorianCalendar.MONTH:
+			ts.setMonth((byte) value);
+			break;
+		case GregorianCalendar.DAY_OF_MONTH:
+			ts.setDay((byte) value);
+			break;
+		case GregorianCalendar.HOUR_OF_DAY:
+			ts.setHour((byte) value);
+			break;
+		case GregorianCalendar.MINUTE:
+			ts.setMinute((byte) value);
+			break;
+		case GregorianCalendar.SECOND:
+			ts.setSeconds((byte) value);
+			break;
+		case GregorianCalendar.ZONE_OFFSET:
+			ts.setTimezone((byte) value);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/*
+	 * Splits the pattern into field and literal tokens. Returns false, if the
+	 * pattern contains anything that is not supported by the fast path.
+	 */
+	private static boolean compile(final String pattern,
+			final List<Character> types,
+			final List<Integer> widths,
+			final List<String> literals) {
+		final StringBuilder literal = new StringBuilder();
+		int previousCount = 0;
+		int i = 0;
+		while (i < pattern.length()) {
+			final char c = pattern.charAt(i);
+			if (c == '\'') {
+				// quoted text, '' is a single quote
+				if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i += 2;
+					continue;
+				}
+				final int end = pattern.indexOf('\'', i + 1);
+				if (end < 0) {
+					return false;
+				}
+				literal.append(pattern, i + 1, end);
+				i = end + 1;
+			} else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				int count = 1;
+				while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+					count++;
+				}
+				if ("yMdHms".indexOf(c) < 0 ||
+						(c == 'y' && count < 3) ||
+						(c == 'M' && count > 2)) {
+					return false;
+				}
+				if (literal.length() > 0) {
+					addToken(types, widths, literals, LITERAL, 0, literal.toString());
+					literal.setLength(0);
+				} else if (!types.isEmpty() && types.get(types.size() - 1) != LITERAL) {
+					// abutting numeric fields: the previous one has a fixed width
+					widths.set(widths.size() - 1, previousCount);
+				}
+				addToken(types, widths, literals, c, 0, null);
+				previousCount = count;
+				i += count;
+			} else {
+				literal.append(c);
+				i++;
+			}
+		}
+		if (literal.length() > 0) {
+			addToken(types, widths, literals, LITERAL, 0, literal.toString());
+		}
+		return !types.isEmpty();
+	}
+
+	private static void addToken(final List<Character> types,
+			final List<Integer> widths,
+			final List<String> literals,
+			final char type,
+			final int width,
+			final String literal) {
+		types.add(type);
+		widths.add(width);
+		literals.add(literal);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TimestampParser [pattern=%s, fastPath=%b]", pattern, isFastPathAvailable());
+	}
+
+}
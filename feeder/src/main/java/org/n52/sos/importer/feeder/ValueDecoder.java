@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import java.text.ParseException;
+
+/**
+ * Decodes the values of one measured value column according to its type.
+ * The typed methods return primitives and do not create objects for well
+ * formed values. Instances are thread-safe.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ *
+ */
+public final class ValueDecoder {
+
+	/**
+	 * The supported types of measured values as used in the
+	 * <code>TYPE</code> metadata of measured value columns.
+	 */
+	public enum Type {
+		TEXT,
+		BOOLEAN,
+		COUNT,
+		NUMERIC
+	}
+
+	private final Type type;
+
+	private final DecimalParser decimalParser;
+
+	public ValueDecoder(final Type type, final DecimalParser decimalParser) {
+		if (type == null) {
+			throw new IllegalArgumentException("parameter type is mandatory.");
+		}
+		this.type = type;
+		this.decimalParser = decimalParser;
+	}
+
+	/**
+	 * @param type the value of the <code>TYPE</code> metadata
+	 * @return the {@link ValueDecoder} for the given type or
+	 * 			<code>null</code>, if the type is not supported.
+	 */
+	public static ValueDecoder create(final String type, final DecimalParser decimalParser) {
+		if (type == null) {
+			return null;
+		}
+		for (final Type t : Type.values()) {
+			if (t.name().equals(type)) {
+				return new ValueDecoder(t, decimalParser);
+			}
+		}
+		return null;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the decoded value: a <code>String</code> for
+	 * 			{@link Type#TEXT}, a <code>Boolean</code> for
+	 * 			{@link Type#BOOLEAN}, an <code>Integer</code> for
+	 * 			{@link Type#COUNT}, and a <code>Double</code> for
+	 * 			{@link Type#NUMERIC}.
+	 * @throws ParseException if a numeric value could not be parsed
+	 * @throws NumberFormatException if a count value could not be parsed
+	 */
+	public Object decode(final String value) throws ParseException {
+		switch (type) {
+		case TEXT:
+			return value;
+		case BOOLEAN:
+			return decodeBoolean(value);
+		case COUNT:
+			return decodeCount(value);
+		case NUMERIC:
+			return decodeNumeric(value);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Leading and trailing whitespaces are ignored.
+	 *
+	 * @throws ParseException if the value could not be parsed
+	 */
+	public double decodeNumeric(final String value) throws ParseException {
+		final int start = getTrimmedStart(value);
+		return decimalParser.parse(value, start, getTrimmedEnd(value, start));
+	}
+
+	/**
+	 * Leading and trailing whitespaces are ignored.
+	 *
+	 * @throws NumberFormatException if the value is not an integer
+	 */
+	public int decodeCount(final String value) {
+		final int start = getTrimmedStart(value);
+		final int end = getTrimmedEnd(value, start);
+		int pos = start;
+		boolean negative = false;
+		if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+			negative = value.charAt(pos) == '-';
+			pos++;
+		}
+		// 10 digits might overflow an int but not a long
+		if (pos == end || end - pos > 10) {
+			return Integer.parseInt(value.trim());
+		}
+		long result = 0;
+		for (; pos < end; pos++) {
+			final char c = value.charAt(pos);
+			if (c < '0' || c > '9') {
+				return Integer.parseInt(value.trim());
+			}
+			result = result * 10 + (c - '0');
+		}
+		if (negative) {
+			result = -result;
+		}
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+			return Integer.parseInt(value.trim());
+		}
+		return (int) result;
+	}
+
+	/**
+	 * Leading and trailing whitespaces are ignored.
+	 *
+	 * @return <code>true</code>, if the value is <code>1</code> or
+	 * 			<code>true</code> ignoring case, else <code>false</code>
+	 */
+	public boolean decodeBoolean(final String value) {
+		final int start = getTrimmedStart(value);
+		final int length = getTrimmedEnd(value, start) - start;
+		if (length == 1) {
+			return value.charAt(start) == '1';
+		}
+		return length == 4 && value.regionMatches(true, start, "true", 0, 4);
+	}
+
+	/*
+	 * same whitespace definition as String.trim()
+	 */
+	private static int getTrimmedStart(final String value) {
+		int start = 0;
+		while (start < value.length() && value.charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private static int getTrimmedEnd(final String value, final int start) {
+		int end = value.length();
+		while (end > start && value.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ValueDecoder [type=%s]", type);
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The compression formats of data files, which are decompressed while
+ * reading them. The format is detected by the first bytes of a data file or,
+ * if it could not be read, by its extension. Zip archives must contain the
+ * data file as first file.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public enum Compression {
+
+	NONE(new byte[0]) {
+		@Override
+		public InputStream open(final File file) throws IOException {
+			return new FileInputStream(file);
+		}
+	},
+
+	GZIP(new byte[] { 0x1f, (byte) 0x8b }, ".gz", ".gzip") {
+		@Override
+		public InputStream open(final File file) throws IOException {
+			final InputStream in = new FileInputStream(file);
+			try {
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			} catch (final IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+	},
+
+	ZIP(new byte[] { 'P', 'K', 0x03, 0x04 }, ".zip") {
+		@Override
+		public InputStream open(final File file) throws IOException {
+			final ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			try {
+				ZipEntry entry;
+				while ((entry = in.getNextEntry()) != null) {
+					if (!entry.isDirectory()) {
+						LOG.debug("Reading entry '{}' of zip archive '{}'.", entry.getName(), file.getAbsolutePath());
+						return in;
+					}
+				}
+			} catch (final IOException e) {
+				in.close();
+				throw e;
+			}
+			in.close();
+			throw new IOException(String.format("Zip archive '%s' does not contain a file.", file.getAbsolutePath()));
+		}
+	},
+
+	BZIP2(new byte[] { 'B', 'Z', 'h' }, ".bz2", ".bzip2") {
+		@Override
+		public InputStream open(final File file) throws IOException {
+			final InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+			try {
+				return new BZip2CompressorInputStream(in, true);
+			} catch (final IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+	};
+
+	private static final Logger LOG = LoggerFactory.getLogger(Compression.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// the longest magic number
+	private static final int HEADER_SIZE = 4;
+
+	private final byte[] magicNumber;
+
+	private final String[] extensions;
+
+	private Compression(final byte[] magicNumber, final String... extensions) {
+		this.magicNumber = magicNumber;
+		this.extensions = extensions;
+	}
+
+	/**
+	 * @param file the compressed file
+	 * @return a stream providing the decompressed content of the file
+	 * @throws IOException if the file could not be read or is not compressed
+	 * 			using this format
+	 */
+	public abstract InputStream open(File file) throws IOException;
+
+	/**
+	 * @return the compression format of the given file
+	 */
+	public static Compression detect(final File file) {
+		final byte[] header = new byte[HEADER_SIZE];
+		int length = 0;
+		try (final InputStream in = new FileInputStream(file)) {
+			int read;
+			while (length < header.length && (read = in.read(header, length, header.length - length)) >= 0) {
+				length += read;
+			}
+		} catch (final IOException e) {
+			LOG.debug("Could not read the header of file '{}': {}", file.getAbsolutePath(), e.getMessage());
+			return detectByExtension(file);
+		}
+		if (length == 0) {
+			return detectByExtension(file);
+		}
+		for (final Compression compression : values()) {
+			if (compression != NONE && compression.isMagicNumber(header, length)) {
+				return compression;
+			}
+		}
+		return NONE;
+	}
+
+	private boolean isMagicNumber(final byte[] header, final int length) {
+		return length >= magicNumber.length &&
+				Arrays.equals(Arrays.copyOf(header, magicNumber.length), magicNumber);
+	}
+
+	private static Compression detectByExtension(final File file) {
+		final String name = file.getName().toLowerCase();
+		for (final Compression compression : values()) {
+			for (final String extension : compression.extensions) {
+				if (name.endsWith(extension)) {
+					return compression;
+				}
+			}
+		}
+		return NONE;
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.n52.sos.importer.feeder.Configuration;
+
+/**
+ * Alternative to {@link CsvParser} reading the data file itself instead of a
+ * {@link java.io.BufferedReader}. It is able to start reading at any byte
+ * offset at the beginning of a line, e.g. one returned by
+ * {@link #getOffset()} during a previous import.<br />
+ * {@link org.n52.sos.importer.feeder.DataFile} creates the configured
+ * implementation of either interface and wraps {@link CsvParser}s by a
+ * {@link ReaderCsvParser}.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public interface FileCsvParser extends Closeable {
+
+	/**
+	 * MUST be called before first call of {@link #readNext()}!
+	 *
+	 * @param file the data file to read
+	 * @param offset the byte offset to start reading at. If <code>0</code>,
+	 * 			the lines before the first line with data are skipped, else
+	 * 			no lines are skipped.
+	 * @param configuration
+	 * @throws IOException
+	 */
+	void init(File file, long offset, Configuration configuration) throws IOException;
+
+	/**
+	 * @see CsvParser#readNext()
+	 */
+	String[] readNext() throws IOException;
+
+	/**
+	 * @see CsvParser#getSkipLimit()
+	 */
+	int getSkipLimit();
+
+	/**
+	 * @return the byte offset directly behind the last line read by
+	 * 			{@link #readNext()}
+	 */
+	long getOffset();
+
+	/**
+	 * @return <code>true</code>, if the last line read was terminated by a
+	 * 			line break, i.e. {@link #getOffset()} is the beginning of a
+	 * 			line.
+	 */
+	boolean isAtLineStart();
+
+}
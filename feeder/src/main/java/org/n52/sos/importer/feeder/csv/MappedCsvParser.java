@@ -0,0 +1,418 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.n52.sos.importer.feeder.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FileCsvParser} memory mapping the data file and tokenising the
+ * mapped bytes directly. Only the values are decoded to Strings using the
+ * configured encoding of the data file.<br />
+ * Separator, quote, and escape character are handled like by opencsv's
+ * CSVReader used by {@link WrappedCSVReader}.<br />
+ * Preconditions:
+ * <ul><li>The data file is a local file</li>
+ * <li>The encoding is UTF-8 or any single byte encoding compatible with
+ * US-ASCII, e.g. ISO-8859-1 or windows-1252</li>
+ * <li>Separator, quote, and escape character are US-ASCII characters</li></ul>
+ * Use <code>org.n52.sos.importer.feeder.csv.MappedCsvParser</code> as
+ * <code>CsvParserClass</code> in the configuration to select this parser.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class MappedCsvParser implements FileCsvParser {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MappedCsvParser.class);
+
+	// the data file is mapped in regions of this size; longer lines are not supported
+	private static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+	private static final byte LF = '\n';
+
+	private static final byte CR = '\r';
+
+	private final long windowSize;
+
+	private RandomAccessFile randomAccessFile;
+
+	private FileChannel channel;
+
+	private long fileSize;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	private long offset;
+
+	private boolean isAtLineStart = true;
+
+	private int linesToSkip;
+
+	private Charset charset;
+
+	private boolean isUtf8;
+
+	private byte separator;
+
+	private byte quotechar;
+
+	private byte escape;
+
+	private int lineStart;
+
+	private int lineEnd;
+
+	// a quoted value continues in the next line
+	private boolean isPending;
+
+	// kept across lines like by opencsv
+	private boolean inField;
+
+	private byte[] value = new byte[256];
+
+	private int valueLength;
+
+	private int valueBits;
+
+	private char[] chars = new char[256];
+
+	private final List<String> tokens = new ArrayList<>();
+
+	public MappedCsvParser() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	MappedCsvParser(final long windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	public void init(final File file, final long offset, final Configuration configuration) throws IOException {
+		charset = Charset.forName(configuration.getDataFileEncoding());
+		isUtf8 = charset.name().equals("UTF-8");
+		separator = toByte(configuration.getCsvSeparator(), "separator");
+		quotechar = toByte(configuration.getCsvQuoteChar(), "quote character");
+		escape = toByte(configuration.getCsvEscape(), "escape character");
+		if (!isUtf8 && charset.newEncoder().maxBytesPerChar() != 1.0f) {
+			throw new IllegalArgumentException(String.format("Encoding '%s' is not supported by %s.",
+					charset.name(), getClass().getSimpleName()));
+		}
+		linesToSkip = offset > 0? 0 : configuration.getFirstLineWithData();
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+		fileSize = channel.size();
+		if (offset > fileSize) {
+			close();
+			throw new IllegalArgumentException(String.format("Offset %d is behind the end of data file '%s'.",
+					offset, file.getAbsolutePath()));
+		}
+		this.offset = offset;
+		if (offset < fileSize) {
+			map(offset);
+		}
+		LOG.debug("Mapped data file '{}' ({} bytes) starting at offset {}.", file.getAbsolutePath(), fileSize, offset);
+	}
+
+	private byte toByte(final char c, final String name) {
+		if (c >= 0x80 || !Arrays.equals(String.valueOf(c).getBytes(charset), new byte[] { (byte) c })) {
+			throw new IllegalArgumentException(String.format("The %s '%s' is not supported by %s using encoding '%s'.",
+					name, c, getClass().getSimpleName(), charset.name()));
+		}
+		return (byte) c;
+	}
+
+	@Override
+	public String[] readNext() throws IOException {
+		while (linesToSkip > 0) {
+			linesToSkip--;
+			if (!nextLine()) {
+				return null;
+			}
+		}
+		String[] result = null;
+		do {
+			if (!nextLine()) {
+				// like opencsv: a not terminated quoted value is dropped
+				return result;
+			}
+			final String[] r = parseLine();
+			if (r.length > 0) {
+				if (result == null) {
+					result = r;
+				} else {
+					final String[] t = new String[result.length + r.length];
+					System.arraycopy(result, 0, t, 0, result.length);
+					System.arraycopy(r, 0, t, result.length, r.length);
+					result = t;
+				}
+			}
+		} while (isPending);
+		return result;
+	}
+
+	/*
+	 * Sets lineStart and lineEnd to the bounds of the next line in the window.
+	 */
+	private boolean nextLine() throws IOException {
+		if (offset >= fileSize) {
+			return false;
+		}
+		while (true) {
+			final int start = (int) (offset - windowStart);
+			final int limit = window.limit();
+			final boolean isLastWindow = windowStart + limit == fileSize;
+			int i = start;
+			while (i < limit) {
+				final byte b = window.get(i);
+				if (b == LF || b == CR) {
+					break;
+				}
+				i++;
+			}
+			if (i < limit) {
+				int next = i + 1;
+				if (window.get(i) == CR) {
+					if (next < limit) {
+						if (window.get(next) == LF) {
+							next++;
+						}
+					} else if (!isLastWindow && isLineFeedAt(windowStart + limit)) {
+						// the line feed is the first byte of the next window,
+						// which is mapped by the next call
+						next++;
+					}
+				}
+				lineStart = start;
+				lineEnd = i;
+				offset = windowStart + next;
+				isAtLineStart = true;
+				return true;
+			}
+			if (isLastWindow) {
+				lineStart = start;
+				lineEnd = limit;
+				offset = fileSize;
+				isAtLineStart = false;
+				return true;
+			}
+			remap(start);
+		}
+	}
+
+	/*
+	 * Reads the byte behind the window instead of remapping, which fails for a
+	 * line filling the whole window.
+	 */
+	private boolean isLineFeedAt(final long position) throws IOException {
+		final ByteBuffer b = ByteBuffer.allocate(1);
+		return channel.read(b, position) == 1 && b.get(0) == LF;
+	}
+
+	private void remap(final int start) throws IOException {
+		if (start == 0) {
+			throw new IOException(String.format("Line at byte offset %d is longer than %d bytes.", offset, windowSize));
+		}
+		map(offset);
+	}
+
+	private void map(final long position) throws IOException {
+		window = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, fileSize - position));
+		windowStart = position;
+	}
+
+	/*
+	 * Same rules as opencsv's CSVParser.parseLine(String, boolean) with
+	 * strictQuotes == false and ignoreLeadingWhiteSpace == true
+	 */
+	private String[] parseLine() {
+		tokens.clear();
+		boolean inQuotes = false;
+		if (isPending) {
+			isPending = false;
+			inQuotes = true;
+		} else {
+			clearValue();
+		}
+		// index of the current char in the decoded line
+		int charIndex = -1;
+		for (int i = lineStart; i < lineEnd; i++) {
+			final byte b = window.get(i);
+			charIndex += getCharCount(b);
+			if (b == escape) {
+				if (isNextByte(i, inQuotes || inField, quotechar, escape)) {
+					i++;
+					charIndex++;
+					append(window.get(i));
+				}
+			} else if (b == quotechar) {
+				if (isNextByte(i, inQuotes || inField, quotechar, quotechar)) {
+					i++;
+					charIndex++;
+					append(window.get(i));
+				} else {
+					inQuotes = !inQuotes;
+					// the tricky case of an embedded quote in the middle: a,bc"d"ef,g
+					if (charIndex > 2
+							&& window.get(i - 1) != separator
+							&& i + 1 < lineEnd
+							&& window.get(i + 1) != separator) {
+						if (valueLength > 0 && isValueWhiteSpace()) {
+							clearValue();
+						} else {
+							append(b);
+						}
+					}
+				}
+				inField = !inField;
+			} else if (b == separator && !inQuotes) {
+				tokens.add(valueToString());
+				clearValue();
+				inField = false;
+			} else {
+				append(b);
+				inField = true;
+			}
+		}
+		if (inQuotes) {
+			// continuing a quoted section in the next line
+			append(LF);
+			isPending = true;
+		} else {
+			tokens.add(valueToString());
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	private boolean isNextByte(final int i, final boolean inQuotes, final byte b1, final byte b2) {
+		if (inQuotes && i + 1 < lineEnd) {
+			final byte next = window.get(i + 1);
+			return next == b1 || next == b2;
+		}
+		return false;
+	}
+
+	/*
+	 * Number of UTF-16 chars started by the given byte
+	 */
+	private int getCharCount(final byte b) {
+		if (!isUtf8 || (b & 0x80) == 0) {
+			return 1;
+		}
+		if ((b & 0xC0) == 0x80) {
+			// continuation byte
+			return 0;
+		}
+		// supplementary characters are surrogate pairs
+		return (b & 0xF8) == 0xF0? 2 : 1;
+	}
+
+	private void append(final byte b) {
+		if (valueLength == value.length) {
+			value = Arrays.copyOf(value, value.length * 2);
+		}
+		value[valueLength++] = b;
+		valueBits |= b;
+	}
+
+	private void clearValue() {
+		valueLength = 0;
+		valueBits = 0;
+	}
+
+	private boolean isValueWhiteSpace() {
+		if ((valueBits & 0x80) != 0) {
+			final String s = valueToString();
+			for (int i = 0; i < s.length(); i++) {
+				if (!Character.isWhitespace(s.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (int i = 0; i < valueLength; i++) {
+			if (!Character.isWhitespace((char) value[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String valueToString() {
+		if ((valueBits & 0x80) != 0) {
+			return new String(value, 0, valueLength, charset);
+		}
+		// US-ASCII only -> no decoding required
+		if (chars.length < valueLength) {
+			chars = new char[value.length];
+		}
+		for (int i = 0; i < valueLength; i++) {
+			chars[i] = (char) value[i];
+		}
+		return new String(chars, 0, valueLength);
+	}
+
+	@Override
+	public int getSkipLimit() {
+		return 1;
+	}
+
+	@Override
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public boolean isAtLineStart() {
+		return isAtLineStart;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		if (randomAccessFile != null) {
+			randomAccessFile.close();
+		}
+	}
+
+}
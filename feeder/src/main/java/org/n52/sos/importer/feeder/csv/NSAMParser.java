@@ -32,14 +32,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Stack;
+import java.util.Queue;
 import java.util.TimeZone;
 
 import org.n52.sos.importer.feeder.Configuration;
@@ -54,6 +52,10 @@ import org.slf4j.LoggerFactory;
  * <li>Time is encoded with HH:mm:ss</li>
  * <li>Each import run requires a NEW file</li></ul>
  *
+ * The data lines are read on demand. Each call of {@link #readNext()}
+ * returns the next element of the time series in the order of the file,
+ * i.e. all elements of one data line before the elements of the next line.
+ *
  * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
  */
 public class NSAMParser implements CsvParser {
@@ -83,18 +85,38 @@ public class NSAMParser implements CsvParser {
 
     private static final String metadataSplitter = ",,,,,";
 
-    private static String timeSeriesSplitter = ",,,";
+    private String timeSeriesSplitter = ",,,";
+
+    /*
+     * The elements of the current data line not yet returned
+     */
+    private final Queue<String[]> lines = new ArrayDeque<>();
+
+    private BufferedReader br;
+
+    private String[] startDates;
+
+    private String startTime;
 
+    private String timeSeriesElementSplitter;
 
-    final Stack<String[]> lines = new Stack<>();
+    private SimpleDateFormat sdf;
 
+    private TimeZone timeZone;
+
+    private boolean firstLine;
+
+    private boolean isEndOfData;
 
     @Override
     public String[] readNext() throws IOException {
-        if (lines.empty()) {
-            return null;
+        while (lines.isEmpty()) {
+            if (isEndOfData) {
+                return null;
+            }
+            readDataLine();
         }
-        return lines.pop();
+        return lines.poll();
     }
 
     @Override
@@ -104,54 +126,55 @@ public class NSAMParser implements CsvParser {
         skipLines(br,metaDataOffset);
         // 1.1 start date => # of timeseries (columns)
 		final String startDateLine = br.readLine();
-        final String[] startDates = getStartDates(startDateLine);
+        startDates = getStartDates(startDateLine);
         // 1.2 start time pro zeitreihe einlesen
         String startTimeLine = br.readLine();
-        final String startTime = startTimeLine.substring(metaDataTimebeginIndex,metaDataTimebeginIndex+metaDataTimeLength);
-        // 2 read data
+        startTime = startTimeLine.substring(metaDataTimebeginIndex,metaDataTimebeginIndex+metaDataTimeLength);
+        // 2 skip to data
         skipLines(br,dataOffset);
-        // 2.1 split each data line into time series
-        String line;
-        final List<List<String[]>> timeSeriesBuffer = new LinkedList<>();
-        for (@SuppressWarnings("unused") final String startDate : startDates) {
-            timeSeriesBuffer.add(new LinkedList<String[]>());
-        }
-        final String timeSeriesElementSplitter = new String(new char[] {configuration.getCsvSeparator()});
-        final SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yy HH:mm:ss");
-        final TimeZone timeZone = TimeZone.getTimeZone("UTC");
+        this.br = br;
+        timeSeriesElementSplitter = new String(new char[] {configuration.getCsvSeparator()});
+        sdf = new SimpleDateFormat("MM/dd/yy HH:mm:ss");
+        timeZone = TimeZone.getTimeZone("UTC");
         sdf.setTimeZone(timeZone);
-        boolean firstLine = true;
-        while ((line = br.readLine()) != null) {
-            if (line.isEmpty()) {
-                break;
-            }
-            if (firstLine) {
-            	firstLine = false;
-            	if (hasMoreThanOneTimeseries(startDates)) {
-            		createTimeSeriesSplitter(line);
-            	} else {
-            		LOG.debug("Only one time series in dataset found.");
-            	}
-            }
-            int i = 0;
-            for (final String timeSeriesElem : line.split(timeSeriesSplitter)) {
-            	if (timeSeriesElem != null && !timeSeriesElem.isEmpty()) {
-            		final String[] timeSeriesElemTokens = timeSeriesElem.split(timeSeriesElementSplitter);
-            		if (timeSeriesElemTokens != null && timeSeriesElemTokens.length > 0 && timeSeriesElemTokens[0].indexOf("Comment for Sample") == -1) {
-            			try {
-            				final Timestamp timestamp = getTimestamp(startDates[i],
-            						startTime, sdf, timeZone, timeSeriesElemTokens[0]);
-            				timeSeriesBuffer.get(i).add(new String[] {timestamp.toString(), timeSeriesElemTokens[1]});
-            				i++;
-            			} catch (NumberFormatException | ParseException e) {
-            				LOG.error("Exception thrown: {}", e.getMessage(), e);
-            			}
-            		}
-            	}
-            }
+        firstLine = true;
+        isEndOfData = false;
+        lines.clear();
+    }
+
+    /*
+     * Splits the next data line into the elements of the time series.
+     */
+    private void readDataLine() throws IOException {
+        final String line = br.readLine();
+        if (line == null || line.isEmpty()) {
+            isEndOfData = true;
+            return;
+        }
+        if (firstLine) {
+        	firstLine = false;
+        	if (hasMoreThanOneTimeseries(startDates)) {
+        		createTimeSeriesSplitter(line);
+        	} else {
+        		LOG.debug("Only one time series in dataset found.");
+        	}
+        }
+        int i = 0;
+        for (final String timeSeriesElem : line.split(timeSeriesSplitter)) {
+        	if (timeSeriesElem != null && !timeSeriesElem.isEmpty()) {
+        		final String[] timeSeriesElemTokens = timeSeriesElem.split(timeSeriesElementSplitter);
+        		if (timeSeriesElemTokens != null && timeSeriesElemTokens.length > 0 && timeSeriesElemTokens[0].indexOf("Comment for Sample") == -1) {
+        			try {
+        				final Timestamp timestamp = getTimestamp(startDates[i],
+        						startTime, sdf, timeZone, timeSeriesElemTokens[0]);
+        				lines.add(new String[] {timestamp.toString(), timeSeriesElemTokens[1]});
+        				i++;
+        			} catch (NumberFormatException | ParseException e) {
+        				LOG.error("Exception thrown: {}", e.getMessage(), e);
+        			}
+        		}
+        	}
         }
-        // 3 create line Stack<String[]> from timeSeriesBuffer
-        createStack(timeSeriesBuffer);
     }
 
 	private boolean hasMoreThanOneTimeseries(final String[] startDates) {
@@ -237,16 +260,6 @@ public class NSAMParser implements CsvParser {
         return startDates;
     }
 
-    private void createStack(final List<List<String[]>> timeSeriesBuffer) {
-        Collections.reverse(timeSeriesBuffer);
-        for (final List<String[]> timeSeries : timeSeriesBuffer) {
-            Collections.reverse(timeSeries);
-            for (final String[] strings : timeSeries) {
-                lines.push(strings);
-            }
-        }
-    }
-
     private void skipLines(final BufferedReader br,
             int i) throws IOException {
         while(i-->0) {
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Reader decoding an {@link InputStream} and counting the bytes of all
+ * characters passed to its callers.<br />
+ * For ASCII compatible encodings, each call of {@link #read(char[], int, int)}
+ * returns at most one line terminated by <code>\n</code>, <code>\r</code>
+ * or <code>\r\n</code>. Hence, wrapping {@link java.io.BufferedReader}s do
+ * not read ahead and {@link #getOffset()} is the byte offset directly behind
+ * the last line read by a {@link CsvParser}.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class OffsetTrackingReader extends Reader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final byte LINE_FEED = '\n';
+
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private final InputStream in;
+
+	private final CharsetDecoder decoder;
+
+	private final boolean isSplittingLines;
+
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	private boolean isEndOfStream;
+
+	private long offset;
+
+	private boolean isAtLineStart = true;
+
+	/**
+	 * @param in the stream to read from, already positioned at <code>offset</code>
+	 * @param charset the encoding of the stream
+	 * @param offset the byte offset of the first byte of <code>in</code>
+	 */
+	public OffsetTrackingReader(final InputStream in, final Charset charset, final long offset) {
+		this.in = in;
+		this.offset = offset;
+		decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		isSplittingLines = Arrays.equals("\r\n".getBytes(charset), new byte[] { CARRIAGE_RETURN, LINE_FEED });
+		bytes.flip();
+		chars.flip();
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (!chars.hasRemaining()) {
+			if (!decodeSegment()) {
+				return -1;
+			}
+		}
+		final int count = Math.min(len, chars.remaining());
+		chars.get(cbuf, off, count);
+		final char last = cbuf[off + count - 1];
+		isAtLineStart = last == '\n' || last == '\r';
+		return count;
+	}
+
+	/*
+	 * Decodes the buffered bytes up to and including the next line break.
+	 */
+	private boolean decodeSegment() throws IOException {
+		int end = indexOfLineBreak();
+		if (end < 0 && !isEndOfStream) {
+			fill();
+			end = indexOfLineBreak();
+		}
+		if (end >= 0 && isCarriageReturnAtLimit(end) && !isEndOfStream) {
+			// a line feed might follow the carriage return
+			fill();
+			end = indexOfLineBreak();
+		}
+		if (!bytes.hasRemaining()) {
+			return false;
+		}
+		final int start = bytes.position();
+		final int limit = bytes.limit();
+		if (end >= 0) {
+			bytes.limit(end + 1);
+		}
+		chars.clear();
+		decoder.decode(bytes, chars, isEndOfStream && end < 0);
+		chars.flip();
+		offset += bytes.position() - start;
+		bytes.limit(limit);
+		return true;
+	}
+
+	/*
+	 * Returns the index of the last byte of the next line break, i.e. of the
+	 * line feed of \r\n.
+	 */
+	private int indexOfLineBreak() {
+		if (isSplittingLines) {
+			for (int i = bytes.position(); i < bytes.limit(); i++) {
+				final byte b = bytes.get(i);
+				if (b == LINE_FEED) {
+					return i;
+				}
+				if (b == CARRIAGE_RETURN) {
+					return i + 1 < bytes.limit() && bytes.get(i + 1) == LINE_FEED? i + 1 : i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private boolean isCarriageReturnAtLimit(final int index) {
+		return index == bytes.limit() - 1 && bytes.get(index) == CARRIAGE_RETURN;
+	}
+
+	private void fill() throws IOException {
+		bytes.compact();
+		if (bytes.hasRemaining()) {
+			final int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+			if (read < 0) {
+				isEndOfStream = true;
+			} else {
+				bytes.position(bytes.position() + read);
+			}
+		}
+		bytes.flip();
+	}
+
+	/**
+	 * Always <code>false</code> to prevent wrapping readers from requesting
+	 * more than one line.
+	 */
+	@Override
+	public boolean ready() {
+		return false;
+	}
+
+	/**
+	 * @return the byte offset directly behind the last character returned
+	 * 			by {@link #read(char[], int, int)}
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return <code>true</code>, if the last character returned was a line
+	 * 			break, i.e. {@link #getOffset()} is the beginning of a line.
+	 */
+	public boolean isAtLineStart() {
+		return isAtLineStart;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads another stream in blocks on a separate thread, e.g. to decompress a
+ * data file while the previous blocks are parsed. At most
+ * <code>blockCount</code> blocks are read ahead.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReadAheadInputStream.class);
+
+	private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private static final int DEFAULT_BLOCK_COUNT = 16;
+
+	// marks the end of the stream
+	private static final byte[] END = new byte[0];
+
+	private final InputStream in;
+
+	private final BlockingQueue<byte[]> blocks;
+
+	private final Thread reader;
+
+	private volatile IOException failure;
+
+	private byte[] block;
+
+	private int position;
+
+	/**
+	 * @param in the stream to read ahead. It is closed by {@link #close()}.
+	 * @param name the name of the reading thread
+	 */
+	public ReadAheadInputStream(final InputStream in, final String name) {
+		this(in, name, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT);
+	}
+
+	ReadAheadInputStream(final InputStream in, final String name, final int blockSize, final int blockCount) {
+		this.in = in;
+		blocks = new ArrayBlockingQueue<>(blockCount);
+		reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readAhead(blockSize);
+			}
+		}, name);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readAhead(final int blockSize) {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				final byte[] buffer = new byte[blockSize];
+				int length = 0;
+				int read = 0;
+				while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) >= 0) {
+					length += read;
+				}
+				if (length > 0) {
+					blocks.put(length < buffer.length? Arrays.copyOf(buffer, length) : buffer);
+				}
+				if (read < 0) {
+					break;
+				}
+			}
+		} catch (final IOException e) {
+			failure = e;
+		} catch (final InterruptedException e) {
+			LOG.trace("Reading ahead interrupted.");
+			return;
+		}
+		try {
+			blocks.put(END);
+		} catch (final InterruptedException e) {
+			LOG.trace("Reading ahead interrupted.");
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return block[position++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		final int count = Math.min(len, block.length - position);
+		System.arraycopy(block, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		if (n <= 0 || !nextBlock()) {
+			return 0;
+		}
+		final int count = (int) Math.min(n, block.length - position);
+		position += count;
+		return count;
+	}
+
+	/*
+	 * Takes the next block if the current one is consumed. Returns false at
+	 * the end of the stream.
+	 */
+	private boolean nextBlock() throws IOException {
+		if (block == END) {
+			return false;
+		}
+		if (block != null && position < block.length) {
+			return true;
+		}
+		try {
+			block = blocks.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the next block.");
+		}
+		position = 0;
+		if (block == END) {
+			if (failure != null) {
+				throw failure;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.interrupt();
+		try {
+			reader.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.n52.sos.importer.feeder.Configuration;
+
+/**
+ * Adapter providing a {@link FileCsvParser} for {@link CsvParser}s reading
+ * from a {@link BufferedReader}. The offset is tracked by an
+ * {@link OffsetTrackingReader}. Starting at an offset &gt; 0 requires a
+ * {@link ResumableCsvParser}.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class ReaderCsvParser implements FileCsvParser {
+
+	private final CsvParser csvParser;
+
+	private final Charset charset;
+
+	private OffsetTrackingReader reader;
+
+	/**
+	 * @param csvParser the parser to read with
+	 * @param charset the encoding of the data file
+	 */
+	public ReaderCsvParser(final CsvParser csvParser, final Charset charset) {
+		this.csvParser = csvParser;
+		this.charset = charset;
+	}
+
+	@Override
+	public void init(final File file, final long offset, final Configuration configuration) throws IOException {
+		if (offset > 0 && !(csvParser instanceof ResumableCsvParser)) {
+			throw new IllegalArgumentException(String.format("CsvParser implementation class '%s' could not resume reading.",
+					csvParser.getClass().getName()));
+		}
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			in.getChannel().position(offset);
+		} catch (final IOException e) {
+			in.close();
+			throw e;
+		}
+		init(in, offset, configuration);
+	}
+
+	/**
+	 * Alternative to {@link #init(File, long, Configuration)} for data not
+	 * read from a file directly, e.g. a part of it.
+	 *
+	 * @param in the stream to read, already positioned at <code>offset</code>.
+	 * 			It is closed by {@link #close()}.
+	 * @param offset the byte offset of the first byte of <code>in</code>
+	 * @param configuration
+	 * @throws IOException
+	 */
+	public void init(final InputStream in, final long offset, final Configuration configuration) throws IOException {
+		if (offset > 0 && !(csvParser instanceof ResumableCsvParser)) {
+			in.close();
+			throw new IllegalArgumentException(String.format("CsvParser implementation class '%s' could not resume reading.",
+					csvParser.getClass().getName()));
+		}
+		try {
+			reader = new OffsetTrackingReader(in, charset, offset);
+			if (offset > 0) {
+				((ResumableCsvParser) csvParser).resume(new BufferedReader(reader), configuration);
+			} else {
+				csvParser.init(new BufferedReader(reader), configuration);
+			}
+		} catch (final IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public String[] readNext() throws IOException {
+		return csvParser.readNext();
+	}
+
+	@Override
+	public int getSkipLimit() {
+		return csvParser.getSkipLimit();
+	}
+
+	@Override
+	public long getOffset() {
+		return reader != null? reader.getOffset() : 0;
+	}
+
+	@Override
+	public boolean isAtLineStart() {
+		return reader == null || reader.isAtLineStart();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+}
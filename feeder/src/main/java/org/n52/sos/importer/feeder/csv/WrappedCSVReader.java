@@ -38,7 +38,7 @@ import au.com.bytecode.opencsv.CSVReader;
 /**
  * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
  */
-public class WrappedCSVReader implements CsvParser {
+public class WrappedCSVReader implements ResumableCsvParser {
 
 	private CSVReader csvReader;
 
@@ -50,7 +50,18 @@ public class WrappedCSVReader implements CsvParser {
 	@Override
 	public void init(final BufferedReader bufferedReader,
 			final Configuration configuration) {
-		final int flwd = configuration.getFirstLineWithData();
+		init(bufferedReader, configuration, configuration.getFirstLineWithData());
+	}
+
+	@Override
+	public void resume(final BufferedReader bufferedReader,
+			final Configuration configuration) {
+		init(bufferedReader, configuration, 0);
+	}
+
+	private void init(final BufferedReader bufferedReader,
+			final Configuration configuration,
+			final int flwd) {
 		final char separator = configuration.getCsvSeparator(),
 				quotechar = configuration.getCsvQuoteChar(),
 				escape = configuration.getCsvEscape();
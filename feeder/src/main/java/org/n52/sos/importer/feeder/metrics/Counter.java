@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter updated by many threads without contention. Each thread adds to
+ * one of several cells selected by its id. The cells are padded to separate
+ * cache lines, hence threads updating different cells do not slow down each
+ * other. Reading sums up all cells and is not atomic with regard to
+ * concurrent updates.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class Counter {
+
+	// 8 longs = 64 bytes = one cache line on most CPUs
+	private static final int PADDING = 8;
+
+	private static final int CELLS = cellCount();
+
+	private final AtomicLongArray cells = new AtomicLongArray(CELLS * PADDING);
+
+	public void increment() {
+		add(1);
+	}
+
+	public void add(final long value) {
+		final int cell = (int) (Thread.currentThread().getId() & (CELLS - 1));
+		cells.getAndAdd(cell * PADDING, value);
+	}
+
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i < CELLS; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	// power of two >= twice the number of processors
+	private static int cellCount() {
+		int count = 1;
+		while (count < Runtime.getRuntime().availableProcessors() * 2) {
+			count <<= 1;
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of recorded values, e.g. request latencies in milliseconds.
+ * The values are counted in buckets with power of two bounds, hence
+ * recording is cheap and percentiles are approximated by the upper bound of
+ * their bucket.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class Histogram {
+
+	// bucket i holds values < 2^i; the last one all larger values
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final Counter count = new Counter();
+
+	private final Counter sum = new Counter();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(final long value) {
+		final long v = Math.max(value, 0);
+		buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(v), BUCKETS - 1));
+		count.increment();
+		sum.add(v);
+		long currentMax;
+		while (v > (currentMax = max.get()) && !max.compareAndSet(currentMax, v)) {
+			// retry with updated maximum
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMean() {
+		final long n = count.get();
+		return n == 0? 0 : sum.get() / n;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100, e.g. 99
+	 * @return the upper bound of the values below the given percentile
+	 */
+	public long getPercentile(final double percentile) {
+		long total = 0;
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min(i == 0? 0 : (1L << i) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%d p50=%d p99=%d max=%d",
+				getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+	}
+
+}
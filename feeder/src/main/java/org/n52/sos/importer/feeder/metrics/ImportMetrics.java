@@ -0,0 +1,411 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runtime metrics of the imports of one configuration, e.g. lines per
+ * second or the latency of insert requests. They help to find out whether an
+ * import is limited by parsing, reading or the SOS.<br />
+ * The instance of a configuration is registered as MBean
+ * <code>org.n52.sos.importer.feeder:type=ImportMetrics,name=&lt;config
+ * file&gt;</code>. All counters are updated without locking.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class ImportMetrics implements ImportMetricsMBean {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ImportMetrics.class);
+
+	private static final Map<String, ImportMetrics> METRICS = new LinkedHashMap<>();
+
+	private final String name;
+
+	private final Counter lines = new Counter();
+
+	private final Counter observations = new Counter();
+
+	private final Counter bytes = new Counter();
+
+	private final Histogram hunkSizes = new Histogram();
+
+	private final Histogram registerLatency = new Histogram();
+
+	private final Histogram insertLatency = new Histogram();
+
+	private final Histogram capabilitiesLatency = new Histogram();
+
+	private final Counter retries = new Counter();
+
+	private final Counter transportErrors = new Counter();
+
+	private final Counter failedObservations = new Counter();
+
+	private final Counter skippedDuplicates = new Counter();
+
+	private final Counter queuedRequests = new Counter();
+
+	private volatile long linesAtCheckpoint;
+
+	// start of the current rate interval
+	private volatile Mark mark;
+
+	private ImportMetrics(final String name) {
+		this.name = name;
+		mark = new Mark(System.nanoTime(), 0, 0, 0);
+	}
+
+	/**
+	 * @param configuration the name of the configuration file
+	 * @return the metrics of the given configuration, which are created and
+	 * 			registered on first access.
+	 */
+	public static ImportMetrics get(final String configuration) {
+		synchronized (METRICS) {
+			ImportMetrics metrics = METRICS.get(configuration);
+			if (metrics == null) {
+				metrics = new ImportMetrics(configuration);
+				METRICS.put(configuration, metrics);
+				register(metrics);
+			}
+			return metrics;
+		}
+	}
+
+	/**
+	 * @return the metrics of all configurations in order of creation
+	 */
+	public static Collection<ImportMetrics> getAll() {
+		synchronized (METRICS) {
+			return new ArrayList<>(METRICS.values());
+		}
+	}
+
+	private static void register(final ImportMetrics metrics) {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName("org.n52.sos.importer.feeder:type=ImportMetrics,name="
+					+ ObjectName.quote(metrics.name));
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(metrics, objectName);
+			}
+		} catch (final JMException e) {
+			// the metrics are still available via the log
+			LOG.warn("Could not register metrics of '{}' via JMX: {}", metrics.name, e.getMessage());
+			LOG.debug("Exception thrown: {}", e.getMessage(), e);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Counts lines read from a data file.
+	 *
+	 * @param count the number of lines
+	 * @param size the number of bytes of the lines
+	 */
+	public void linesRead(final int count, final long size) {
+		lines.add(count);
+		if (size > 0) {
+			bytes.add(size);
+		}
+	}
+
+	public void observationsParsed(final int count) {
+		observations.add(count);
+	}
+
+	public void hunkSubmitted(final int observationCount) {
+		hunkSizes.record(observationCount);
+	}
+
+	/**
+	 * @return the latencies of RegisterSensor and InsertSensor requests
+	 */
+	public Histogram getRegisterLatency() {
+		return registerLatency;
+	}
+
+	/**
+	 * @return the latencies of InsertObservation requests
+	 */
+	public Histogram getInsertLatency() {
+		return insertLatency;
+	}
+
+	/**
+	 * @return the latencies of GetCapabilities requests
+	 */
+	public Histogram getCapabilitiesLatency() {
+		return capabilitiesLatency;
+	}
+
+	public void retried() {
+		retries.increment();
+	}
+
+	public void transportErrorOccurred() {
+		transportErrors.increment();
+	}
+
+	public void observationsFailed(final int count) {
+		failedObservations.add(count);
+	}
+
+	/**
+	 * Counts observations dropped by the duplicate filter.
+	 */
+	public void duplicatesSkipped(final int count) {
+		skippedDuplicates.add(count);
+	}
+
+	/**
+	 * @return the number of requests parsed but not yet sent, which is
+	 * 			updated by the insert pipelines of this configuration
+	 */
+	public Counter getQueuedRequestCounter() {
+		return queuedRequests;
+	}
+
+	/**
+	 * Records that all lines read so far are stored in the counter file.
+	 */
+	public void checkpoint() {
+		linesAtCheckpoint = lines.get();
+	}
+
+	/**
+	 * Starts a new interval for the rates.
+	 */
+	public void mark() {
+		mark = new Mark(System.nanoTime(), lines.get(), observations.get(), bytes.get());
+	}
+
+	@Override
+	public long getLines() {
+		return lines.get();
+	}
+
+	@Override
+	public long getObservations() {
+		return observations.get();
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	@Override
+	public double getLinesPerSecond() {
+		final Mark m = mark;
+		return m.getRate(lines.get() - m.lines);
+	}
+
+	@Override
+	public double getObservationsPerSecond() {
+		final Mark m = mark;
+		return m.getRate(observations.get() - m.observations);
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		final Mark m = mark;
+		return m.getRate(bytes.get() - m.bytes);
+	}
+
+	@Override
+	public long getHunks() {
+		return hunkSizes.getCount();
+	}
+
+	@Override
+	public long getMeanHunkSize() {
+		return hunkSizes.getMean();
+	}
+
+	@Override
+	public long getMaxHunkSize() {
+		return hunkSizes.getMax();
+	}
+
+	@Override
+	public long getRegisterRequests() {
+		return registerLatency.getCount();
+	}
+
+	@Override
+	public long getRegisterLatencyMean() {
+		return registerLatency.getMean();
+	}
+
+	@Override
+	public long getRegisterLatency99thPercentile() {
+		return registerLatency.getPercentile(99);
+	}
+
+	@Override
+	public long getInsertRequests() {
+		return insertLatency.getCount();
+	}
+
+	@Override
+	public long getInsertLatencyMean() {
+		return insertLatency.getMean();
+	}
+
+	@Override
+	public long getInsertLatency99thPercentile() {
+		return insertLatency.getPercentile(99);
+	}
+
+	@Override
+	public long getCapabilitiesRequests() {
+		return capabilitiesLatency.getCount();
+	}
+
+	@Override
+	public long getCapabilitiesLatencyMean() {
+		return capabilitiesLatency.getMean();
+	}
+
+	@Override
+	public long getRetries() {
+		return retries.get();
+	}
+
+	@Override
+	public long getTransportErrors() {
+		return transportErrors.get();
+	}
+
+	@Override
+	public long getFailedObservations() {
+		return failedObservations.get();
+	}
+
+	@Override
+	public long getSkippedDuplicates() {
+		return skippedDuplicates.get();
+	}
+
+	@Override
+	public long getQueuedRequests() {
+		// might be negative for a moment, as tasks are counted after queueing
+		return Math.max(queuedRequests.get(), 0);
+	}
+
+	/**
+	 * @return the number of lines read but not yet stored in the counter file,
+	 * 			i.e. read again after a crash
+	 */
+	@Override
+	public long getCheckpointLag() {
+		return Math.max(lines.get() - linesAtCheckpoint, 0);
+	}
+
+	/**
+	 * @return all metrics as one line of <code>key=value</code> pairs
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH,
+				"config=%s lines/s=%.1f observations/s=%.1f bytes/s=%.0f lines=%d observations=%d "
+				+ "hunks=%d hunkSize.mean=%d hunkSize.max=%d "
+				+ "register.count=%d register.mean=%d register.p99=%d register.max=%d "
+				+ "insert.count=%d insert.mean=%d insert.p99=%d insert.max=%d "
+				+ "capabilities.count=%d capabilities.mean=%d "
+				+ "retries=%d transportErrors=%d failedObservations=%d skippedDuplicates=%d queuedRequests=%d checkpointLag=%d",
+				name,
+				getLinesPerSecond(),
+				getObservationsPerSecond(),
+				getBytesPerSecond(),
+				getLines(),
+				getObservations(),
+				getHunks(),
+				getMeanHunkSize(),
+				getMaxHunkSize(),
+				registerLatency.getCount(),
+				registerLatency.getMean(),
+				registerLatency.getPercentile(99),
+				registerLatency.getMax(),
+				insertLatency.getCount(),
+				insertLatency.getMean(),
+				insertLatency.getPercentile(99),
+				insertLatency.getMax(),
+				capabilitiesLatency.getCount(),
+				capabilitiesLatency.getMean(),
+				getRetries(),
+				getTransportErrors(),
+				getFailedObservations(),
+				getSkippedDuplicates(),
+				getQueuedRequests(),
+				getCheckpointLag());
+	}
+
+	private static final class Mark {
+
+		private final long time;
+
+		private final long lines;
+
+		private final long observations;
+
+		private final long bytes;
+
+		private Mark(final long time, final long lines, final long observations, final long bytes) {
+			this.time = time;
+			this.lines = lines;
+			this.observations = observations;
+			this.bytes = bytes;
+		}
+
+		private double getRate(final long count) {
+			final long nanos = System.nanoTime() - time;
+			return nanos <= 0? 0 : count * 1e9 / nanos;
+		}
+
+	}
+
+}
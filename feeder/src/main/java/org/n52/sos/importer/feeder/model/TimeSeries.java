@@ -28,29 +28,28 @@
  */
 package org.n52.sos.importer.feeder.model;
 
-import java.math.BigInteger;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import net.opengis.swe.x20.DataArrayDocument;
-import net.opengis.swe.x20.DataArrayType;
-import net.opengis.swe.x20.DataArrayType.ElementType;
-import net.opengis.swe.x20.DataRecordType;
-import net.opengis.swe.x20.DataRecordType.Field;
-import net.opengis.swe.x20.QuantityType;
-import net.opengis.swe.x20.TextEncodingType;
-import net.opengis.swe.x20.TimeType;
-
-import org.apache.xmlbeans.XmlString;
 import org.n52.oxf.sos.observation.ObservationParameters;
 import org.n52.oxf.sos.observation.SweArrayObservationParameters;
 import org.n52.oxf.sos.request.InsertObservationParameters;
 import org.n52.oxf.xml.NcNameResolver;
-import org.n52.oxf.xml.XMLConstants;
 import org.n52.sos.importer.feeder.Configuration;
 import org.n52.sos.importer.feeder.model.requests.InsertObservation;
 
+/**
+ * Stores the observations of one measured value column in a columnar way:
+ * the metadata like sensor, feature of interest or observed property is taken
+ * from the first observation and stored only once. The timestamps and values
+ * are kept in primitive arrays. {@link InsertObservation} objects are only
+ * re-created on demand via {@link #getInsertObservations()}.
+ */
 public class TimeSeries {
 
 	public static final String SENSOR_ID_NOT_SET = "SENSOR_ID_NOT_SET";
@@ -63,21 +62,231 @@ public class TimeSeries {
 
 	public static final String SENSOR_NAME_NOT_SET = "SENSOR_NAME_NOT_SET";
 
-	private final LinkedList<InsertObservation> timeseries = new LinkedList<>();
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static final String SWE_20_NS = "http://www.opengis.net/swe/2.0";
+
+	private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
+	// used to size the buffer of the DataArray
+	private static final int DATA_ARRAY_HEADER_LENGTH = 1024;
+
+	// e.g. "2015-03-17T13:37:00+01:00;52.42@"
+	private static final int ESTIMATED_BLOCK_LENGTH = 40;
+
+	private enum ValueStorage { NONE, DOUBLE, INTEGER, BOOLEAN, OBJECT }
 
 	private final String tokenSeparator = ";";
 
 	private final String blockSeparator = "@";
 
+	// provides the metadata of all observations
+	private InsertObservation first;
+
+	private int size = 0;
+
+	// see Timestamp.pack()
+	private long[] timestamps;
+
+	private ValueStorage valueStorage = ValueStorage.NONE;
+
+	private double[] doubleValues;
+
+	private int[] integerValues;
+
+	private boolean[] booleanValues;
+
+	private Object[] objectValues;
+
+	private int startIndex = -1;
+
+	private long startMillis;
+
+	private int endIndex = -1;
+
+	private long endMillis;
+
+	// observations with metadata different from the first one, rarely used
+	private Map<Integer, InsertObservation> deviatingObservations;
+
+	public TimeSeries() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the expected number of observations, used to avoid
+	 * 			resizing the internal arrays
+	 */
+	public TimeSeries(final int expectedSize) {
+		timestamps = new long[Math.max(expectedSize, 1)];
+	}
+
 	public boolean addObservation(final InsertObservation insertObservation) {
-		return timeseries.add(insertObservation);
+		if (insertObservation == null) {
+			return false;
+		}
+		if (first == null) {
+			first = insertObservation;
+		} else if (!hasSameMetadata(insertObservation)) {
+			if (deviatingObservations == null) {
+				deviatingObservations = new HashMap<Integer, InsertObservation>();
+			}
+			deviatingObservations.put(size, insertObservation);
+		}
+		ensureCapacity(size + 1);
+		final Timestamp timeStamp = insertObservation.getTimeStamp();
+		timestamps[size] = timeStamp.pack();
+		final long millis = timeStamp.toEpochMillis();
+		// the first of several equal timestamps is used for start and end
+		if (startIndex < 0 || millis < startMillis) {
+			startIndex = size;
+			startMillis = millis;
+		}
+		if (endIndex < 0 || millis > endMillis) {
+			endIndex = size;
+			endMillis = millis;
+		}
+		setValue(size, insertObservation.getResultValue());
+		size++;
+		return true;
+	}
+
+	private void setValue(final int index, final Object value) {
+		if (valueStorage == ValueStorage.NONE) {
+			initValueStorage(value);
+		}
+		switch (valueStorage) {
+		case DOUBLE:
+			if (value instanceof Double) {
+				doubleValues[index] = (Double) value;
+				return;
+			}
+			break;
+		case INTEGER:
+			if (value instanceof Integer) {
+				integerValues[index] = (Integer) value;
+				return;
+			}
+			break;
+		case BOOLEAN:
+			if (value instanceof Boolean) {
+				booleanValues[index] = (Boolean) value;
+				return;
+			}
+			break;
+		default:
+			break;
+		}
+		if (valueStorage != ValueStorage.OBJECT) {
+			switchToObjectStorage();
+		}
+		objectValues[index] = value;
+	}
+
+	private void initValueStorage(final Object value) {
+		final int capacity = timestamps.length;
+		if (value instanceof Double) {
+			valueStorage = ValueStorage.DOUBLE;
+			doubleValues = new double[capacity];
+		} else if (value instanceof Integer) {
+			valueStorage = ValueStorage.INTEGER;
+			integerValues = new int[capacity];
+		} else if (value instanceof Boolean) {
+			valueStorage = ValueStorage.BOOLEAN;
+			booleanValues = new boolean[capacity];
+		} else {
+			valueStorage = ValueStorage.OBJECT;
+			objectValues = new Object[capacity];
+		}
+	}
+
+	/*
+	 * Fallback for mixed value types within one time series
+	 */
+	private void switchToObjectStorage() {
+		final Object[] values = new Object[timestamps.length];
+		for (int i = 0; i < size; i++) {
+			values[i] = getValue(i);
+		}
+		objectValues = values;
+		doubleValues = null;
+		integerValues = null;
+		booleanValues = null;
+		valueStorage = ValueStorage.OBJECT;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity <= timestamps.length) {
+			return;
+		}
+		final int newCapacity = Math.max(capacity, timestamps.length * 2);
+		timestamps = Arrays.copyOf(timestamps, newCapacity);
+		if (doubleValues != null) {
+			doubleValues = Arrays.copyOf(doubleValues, newCapacity);
+		}
+		if (integerValues != null) {
+			integerValues = Arrays.copyOf(integerValues, newCapacity);
+		}
+		if (booleanValues != null) {
+			booleanValues = Arrays.copyOf(booleanValues, newCapacity);
+		}
+		if (objectValues != null) {
+			objectValues = Arrays.copyOf(objectValues, newCapacity);
+		}
+	}
+
+	private boolean hasSameMetadata(final InsertObservation io) {
+		return isEqual(first.getSensorURI(), io.getSensorURI()) &&
+				isEqual(first.getSensorName(), io.getSensorName()) &&
+				isEqual(first.getFeatureOfInterestURI(), io.getFeatureOfInterestURI()) &&
+				isEqual(first.getFeatureOfInterestName(), io.getFeatureOfInterestName()) &&
+				isEqual(first.getObservedProperty(), io.getObservedProperty()) &&
+				isEqual(first.getUnitOfMeasurementCode(), io.getUnitOfMeasurementCode()) &&
+				isEqual(first.getOffering(), io.getOffering()) &&
+				isEqual(first.getMeasuredValueType(), io.getMeasuredValueType());
+	}
+
+	private static boolean isEqual(final Object a, final Object b) {
+		return a == null? b == null : a.equals(b);
+	}
+
+	private Object getValue(final int index) {
+		switch (valueStorage) {
+		case DOUBLE:
+			return doubleValues[index];
+		case INTEGER:
+			return integerValues[index];
+		case BOOLEAN:
+			return booleanValues[index];
+		case OBJECT:
+			return objectValues[index];
+		default:
+			return null;
+		}
+	}
+
+	private void appendValue(final Appendable out, final int index) throws IOException {
+		switch (valueStorage) {
+		case DOUBLE:
+			out.append(Double.toString(doubleValues[index]));
+			break;
+		case INTEGER:
+			out.append(Integer.toString(integerValues[index]));
+			break;
+		case BOOLEAN:
+			out.append(booleanValues[index]? "true" : "false");
+			break;
+		default:
+			appendEscaped(out, String.valueOf(objectValues[index]));
+			break;
+		}
 	}
 
 	public String getSensorURI() {
-		if (timeseries.isEmpty()) {
+		if (isEmpty()) {
 			return SENSOR_ID_NOT_SET;
 		}
-		final String sensorURI = timeseries.getFirst().getSensorURI();
+		final String sensorURI = first.getSensorURI();
 		if (sensorURI == null || sensorURI.isEmpty()) {
 			return SENSOR_ID_NOT_SET;
 		}
@@ -85,10 +294,10 @@ public class TimeSeries {
 	}
 
 	public Object getSensorName() {
-		if (timeseries.isEmpty()) {
+		if (isEmpty()) {
 			return SENSOR_NAME_NOT_SET;
 		}
-		final String sensorName = timeseries.getFirst().getSensorName();
+		final String sensorName = first.getSensorName();
 		if (sensorName == null || sensorName.isEmpty()) {
 			return SENSOR_NAME_NOT_SET;
 		}
@@ -96,17 +305,14 @@ public class TimeSeries {
 	}
 
 	public InsertObservation getFirst() {
-		if (timeseries.isEmpty()) {
-			return null;
-		}
-		return timeseries.getFirst();
+		return first;
 	}
 
 	public ObservedProperty getObservedProperty() {
-		if (timeseries.isEmpty()) {
+		if (isEmpty()) {
 			return OBSERVED_PROPERTY_NOT_SET;
 		}
-		final ObservedProperty obsProp = timeseries.getFirst().getObservedProperty();
+		final ObservedProperty obsProp = first.getObservedProperty();
 		if (obsProp == null) {
 			return OBSERVED_PROPERTY_NOT_SET;
 		}
@@ -114,10 +320,10 @@ public class TimeSeries {
 	}
 
 	public String getUnitOfMeasurementCode() {
-		if (timeseries.isEmpty()) {
+		if (isEmpty()) {
 			return UOM_CODE_NOT_SET;
 		}
-		final String uomCode = timeseries.getFirst().getUnitOfMeasurementCode();
+		final String uomCode = first.getUnitOfMeasurementCode();
 		if (uomCode == null || uomCode.isEmpty()) {
 			return UOM_CODE_NOT_SET;
 		}
@@ -125,16 +331,23 @@ public class TimeSeries {
 	}
 
 	public String getMeasuredValueType() {
-		if (timeseries.isEmpty()) {
+		if (isEmpty()) {
 			return MV_TYPE_NOT_SET;
 		}
-		final String mVType = timeseries.getFirst().getMeasuredValueType();
+		final String mVType = first.getMeasuredValueType();
 		if (mVType == null || mVType.isEmpty()) {
 			return MV_TYPE_NOT_SET;
 		}
 		return mVType;
 	}
 
+	/**
+	 * @return the number of observations in this time series
+	 */
+	public int size() {
+		return size;
+	}
+
 	public InsertObservationParameters getSweArrayObservation(final String sosVersion) {
 		final SweArrayObservationParameters obsParameter = new SweArrayObservationParameters();
 		// add extension
@@ -164,75 +377,86 @@ public class TimeSeries {
 	}
 
 	private void addResult(final SweArrayObservationParameters obsParameter) {
-		final DataArrayDocument xbDataArrayDoc = DataArrayDocument.Factory.newInstance();
-		final DataArrayType xbDataArray = xbDataArrayDoc.addNewDataArray1();
+		// the OX-F API requires a String -> the builder is the only copy of the values
+		final StringBuilder dataArray = new StringBuilder(DATA_ARRAY_HEADER_LENGTH + size * ESTIMATED_BLOCK_LENGTH);
+		try {
+			writeDataArray(dataArray);
+		} catch (final IOException e) {
+			// not thrown by StringBuilder
+			throw new IllegalStateException(e);
+		}
+		obsParameter.addObservationValue(dataArray.toString());
+	}
+
+	/**
+	 * Writes this time series as SWE 2.0 DataArray incl. element count,
+	 * record definition, text encoding and values to the given output.<br />
+	 * The values are streamed from the internal arrays without building an
+	 * intermediate document or String.
+	 */
+	public void writeDataArray(final Appendable out) throws IOException {
+		out.append("<swe:DataArray xmlns:swe=\"").append(SWE_20_NS)
+			.append("\" xmlns:xlink=\"").append(XLINK_NS).append("\">");
 		// count
-		xbDataArray.addNewElementCount().addNewCount().setValue(BigInteger.valueOf(timeseries.size()));
+		out.append("<swe:elementCount><swe:Count><swe:value>")
+			.append(Integer.toString(size))
+			.append("</swe:value></swe:Count></swe:elementCount>");
 		// element type
-		final DataRecordType xbDataRecord = DataRecordType.Factory.newInstance();
+		out.append("<swe:elementType name=\"definition\"><swe:DataRecord>");
 		// phentime
-		final Field xbPhenTime = xbDataRecord.addNewField();
-		xbPhenTime.setName("phenomenonTime");
-		final TimeType xbTimeWithUom = TimeType.Factory.newInstance();
-		xbTimeWithUom.setDefinition("http://www.opengis.net/def/property/OGC/0/PhenomenonTime");
-		xbTimeWithUom.addNewUom().setHref("http://www.opengis.net/def/uom/ISO-8601/0/Gregorian");
-		xbPhenTime.addNewAbstractDataComponent().set(xbTimeWithUom);
-		xbPhenTime
-			.getAbstractDataComponent()
-			.substitute(XMLConstants.QN_SWE_2_0_TIME, TimeType.type);
+		out.append("<swe:field name=\"phenomenonTime\">")
+			.append("<swe:Time definition=\"http://www.opengis.net/def/property/OGC/0/PhenomenonTime\">")
+			.append("<swe:uom xlink:href=\"http://www.opengis.net/def/uom/ISO-8601/0/Gregorian\"/>")
+			.append("</swe:Time></swe:field>");
 		// obsProp
-		final Field xbObsProperty = xbDataRecord.addNewField();
-		xbObsProperty.setName(NcNameResolver.fixNcName(getObservedProperty().getName()));
-		final QuantityType xbQuantityWithUom = QuantityType.Factory.newInstance();
-		xbQuantityWithUom.setDefinition(getObservedProperty().getUri());
-		xbQuantityWithUom.addNewUom().setCode(getUnitOfMeasurementCode());
-		xbObsProperty.addNewAbstractDataComponent().set(xbQuantityWithUom);
-		xbObsProperty
-			.getAbstractDataComponent()
-			.substitute(XMLConstants.QN_SWE_2_0_QUANTITY, QuantityType.type);
-
-		final ElementType xbElementType = xbDataArray.addNewElementType();
-		xbElementType.setName("definition");
-		xbElementType.addNewAbstractDataComponent().set(xbDataRecord);
-		xbElementType
-			.getAbstractDataComponent()
-			.substitute(XMLConstants.QN_SWE_2_0_DATA_RECORD, DataRecordType.type);
-
+		out.append("<swe:field name=\"");
+		appendEscaped(out, NcNameResolver.fixNcName(getObservedProperty().getName()));
+		out.append("\"><swe:Quantity definition=\"");
+		appendEscaped(out, getObservedProperty().getUri());
+		out.append("\"><swe:uom code=\"");
+		appendEscaped(out, getUnitOfMeasurementCode());
+		out.append("\"/></swe:Quantity></swe:field>");
+		out.append("</swe:DataRecord></swe:elementType>");
 		// encoding
-		final TextEncodingType textEncoding = TextEncodingType.Factory.newInstance();
-		// token
-		textEncoding.setTokenSeparator(tokenSeparator);
-		// block seperator
-		textEncoding.setBlockSeparator(blockSeparator);
-		xbDataArray.addNewEncoding().addNewAbstractEncoding().set(textEncoding);
-		xbDataArray
-			.getEncoding().getAbstractEncoding()
-			.substitute(XMLConstants.QN_SWE_2_0_TEXT_ENCODING, TextEncodingType.type);
-
+		out.append("<swe:encoding><swe:TextEncoding tokenSeparator=\"").append(tokenSeparator)
+			.append("\" blockSeparator=\"").append(blockSeparator)
+			.append("\"/></swe:encoding>");
 		// values
-		xbDataArray.addNewValues().set(createValuesString());
-		obsParameter.addObservationValue(xbDataArrayDoc.xmlText());
+		out.append("<swe:values>");
+		final Timestamp timeStamp = new Timestamp();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				out.append(blockSeparator);
+			}
+			timeStamp.setPacked(timestamps[i]).appendTo(out);
+			out.append(tokenSeparator);
+			appendValue(out, i);
+		}
+		out.append("</swe:values>");
+		out.append("</swe:DataArray>");
 	}
 
-	private XmlString createValuesString() {
-		// values <-- linebreak every 100 lines?
-		final StringBuilder sb = new StringBuilder();
-		int counter = 0;
-		for (final InsertObservation io : timeseries) {
-			sb.append(io.getTimeStamp().toString());
-			sb.append(tokenSeparator);
-			sb.append(io.getResultValue());
-			sb.append(blockSeparator);
-			if (counter > 0 && counter++ % 100 == 0) {
-				sb.append("\n");
+	private static void appendEscaped(final Appendable out, final String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				out.append("&amp;");
+				break;
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			default:
+				out.append(c);
+				break;
 			}
 		}
-		sb.trimToSize();
-		String valueString = sb.toString();
-		valueString = valueString.substring(0, valueString.lastIndexOf(blockSeparator));
-		final XmlString xbValueString = XmlString.Factory.newInstance();
-        xbValueString.setStringValue(valueString);
-        return xbValueString;
 	}
 
 	private void addFeature(final ObservationParameters obsParameter) {
@@ -261,12 +485,7 @@ public class TimeSeries {
 	}
 
 	private String getResultTime() {
-		Timestamp resultTime = null;
-		for (final InsertObservation io : timeseries) {
-			if (resultTime == null || resultTime.before(io.getTimeStamp())) {
-				resultTime = io.getTimeStamp();
-			}
-		}
+		final Timestamp resultTime = endIndex < 0? null : Timestamp.unpack(timestamps[endIndex]);
 		if (resultTime == null || resultTime.toString().isEmpty()) {
 			return "Could not get result time date of timeseries";
 		}
@@ -274,16 +493,8 @@ public class TimeSeries {
 	}
 
 	private String getPhenomenonTime() {
-		Timestamp start = null;
-		Timestamp end = null;
-		for (final InsertObservation io : timeseries) {
-			if (start == null || start.after(io.getTimeStamp())) {
-				start = io.getTimeStamp();
-			}
-			if (end == null || end.before(io.getTimeStamp())) {
-				end = io.getTimeStamp();
-			}
-		}
+		final Timestamp start = startIndex < 0? null : Timestamp.unpack(timestamps[startIndex]);
+		final Timestamp end = endIndex < 0? null : Timestamp.unpack(timestamps[endIndex]);
 		if (start == null || start.toString().isEmpty() || end == null || end.toString().isEmpty()) {
 			return "Could not get start and/or end date of timeseries";
 		}
@@ -295,18 +506,28 @@ public class TimeSeries {
 		return String.format("TimeSeries [sensor=%s, observedProperty=%s, feature=%s]",
 				getSensorURI(),
 				getObservedProperty(),
-				timeseries.getFirst().getFeatureOfInterestURI());
+				first.getFeatureOfInterestURI());
 	}
 
 	/**
 	 * @return <code>true</code>, if this time series contains no {@link InsertObservation} objects.
 	 */
 	public boolean isEmpty() {
-		return timeseries.isEmpty();
+		return size == 0;
 	}
 
+	/**
+	 * @return the observations of this time series re-created from the
+	 * 			stored values and timestamps
+	 */
 	public List<? extends InsertObservation> getInsertObservations() {
-		return Collections.unmodifiableList(timeseries);
+		final List<InsertObservation> ios = new ArrayList<InsertObservation>(size);
+		for (int i = 0; i < size; i++) {
+			final InsertObservation deviating = deviatingObservations != null? deviatingObservations.get(i) : null;
+			final InsertObservation metadata = deviating != null? deviating : first;
+			ios.add(metadata.withResult(getValue(i), Timestamp.unpack(timestamps[i])));
+		}
+		return Collections.unmodifiableList(ios);
 	}
 
 }
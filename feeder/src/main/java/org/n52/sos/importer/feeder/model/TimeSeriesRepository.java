@@ -49,9 +49,17 @@ public class TimeSeriesRepository {
 	private final Vector<TimeSeries> repo;
 
 	public TimeSeriesRepository(final int numberOfTimeSeries) {
+		this(numberOfTimeSeries, 0);
+	}
+
+	/**
+	 * @param observationsPerTimeSeries the expected number of observations
+	 * 			of each time series, e.g. the hunk size
+	 */
+	public TimeSeriesRepository(final int numberOfTimeSeries, final int observationsPerTimeSeries) {
 		repo = new Vector<TimeSeries>(numberOfTimeSeries);
 		for (int i = 0; i < numberOfTimeSeries; i++) {
-			repo.add(i, new TimeSeries());
+			repo.add(i, observationsPerTimeSeries > 0? new TimeSeries(observationsPerTimeSeries) : new TimeSeries());
 		}
 	}
 
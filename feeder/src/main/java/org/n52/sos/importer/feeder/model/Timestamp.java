@@ -28,6 +28,7 @@
  */
 package org.n52.sos.importer.feeder.model;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -47,6 +48,7 @@ public class Timestamp {
 
 	private static final int millisPerHour = 1000 * 60 * 60;
 	private static final int millisPerDay = millisPerHour * 24;
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
 	private short year = Short.MIN_VALUE;
 	private byte month = Byte.MIN_VALUE;
 	private byte day = Byte.MIN_VALUE;
@@ -58,39 +60,54 @@ public class Timestamp {
 	@Override
 	public String toString() {
 		// yyyy-MM-ddTHH:mm:ss+hh:mm => 31 chars
-		final StringBuffer ts = new StringBuffer(31);
+		final StringBuilder ts = new StringBuilder(31);
+		try {
+			appendTo(ts);
+		} catch (final IOException e) {
+			// not thrown by StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return ts.toString();
+	}
+
+	/**
+	 * Appends the same as {@link #toString()} without creating an
+	 * intermediate String.
+	 */
+	public void appendTo(final Appendable ts) throws IOException {
 		if (year != Short.MIN_VALUE) {
-			ts.append(year);
+			ts.append(Short.toString(year));
 			if (month != Byte.MIN_VALUE) {
-				ts.append("-");
+				ts.append('-');
 			}
 		}
 		if (month != Byte.MIN_VALUE) {
-			ts.append(month<10?"0"+month:month);
+			appendTwoDigits(ts, month);
 			if (day != Byte.MIN_VALUE) {
-				ts.append("-");
+				ts.append('-');
 			}
 		}
 		if (day != Byte.MIN_VALUE) {
-			ts.append(day<10?"0"+day:day);
+			appendTwoDigits(ts, day);
 		}
 		if ( (year != Short.MIN_VALUE || month != Byte.MIN_VALUE || day != Byte.MIN_VALUE )
 				&& (hour != Byte.MIN_VALUE || minute != Byte.MIN_VALUE || seconds != Byte.MIN_VALUE)) {
-			ts.append("T");
+			ts.append('T');
 		}
 		if (hour != Byte.MIN_VALUE) {
-			ts.append(hour<10?"0"+hour:hour);
+			appendTwoDigits(ts, hour);
 			if (minute != Byte.MIN_VALUE) {
-				ts.append(":");
+				ts.append(':');
 			}
 		}
 		if (minute != Byte.MIN_VALUE) {
-			ts.append( (minute<10?"0"+minute:minute)+":");
+			appendTwoDigits(ts, minute);
+			ts.append(':');
 		} else if (hour != Byte.MIN_VALUE) {
 			ts.append("00:");
 		}
 		if (seconds != Byte.MIN_VALUE ) {
-			ts.append(seconds<10?"0"+seconds:seconds);
+			appendTwoDigits(ts, seconds);
 		} else if (minute != Byte.MIN_VALUE && hour != Byte.MIN_VALUE) {
 			ts.append("00");
 		}
@@ -98,7 +115,13 @@ public class Timestamp {
 				(hour != Byte.MIN_VALUE || minute != Byte.MIN_VALUE || seconds != Byte.MIN_VALUE)) {
 			ts.append(convertTimeZone(timezone));
 		}
-		return ts.toString();
+	}
+
+	private void appendTwoDigits(final Appendable ts, final byte value) throws IOException {
+		if (value < 10) {
+			ts.append('0');
+		}
+		ts.append(Byte.toString(value));
 	}
 
 	private String convertTimeZone(final int timeZone) {
@@ -247,18 +270,75 @@ public class Timestamp {
 		return datePattern;
 	}
 
+	/**
+	 * @return the milliseconds since 1970-01-01T00:00:00Z of this timestamp
+	 * 			like {@link #toDate()}: unset date fields default to
+	 * 			1970-01-01, unset time fields to 00:00:00 and the time zone
+	 * 			to the default one of the JVM.
+	 */
+	public long toEpochMillis() {
+		final boolean isTimezoneUsed = timezone != Byte.MIN_VALUE &&
+				(hour != Byte.MIN_VALUE || minute != Byte.MIN_VALUE || seconds != Byte.MIN_VALUE);
+		final Calendar cal = new GregorianCalendar(isTimezoneUsed? UTC : TimeZone.getDefault());
+		cal.clear();
+		cal.set(year != Short.MIN_VALUE? year : 1970,
+				month != Byte.MIN_VALUE? month-1 : 0,
+				day != Byte.MIN_VALUE? day : 1,
+				hour != Byte.MIN_VALUE? hour : 0,
+				minute != Byte.MIN_VALUE? minute : 0,
+				seconds != Byte.MIN_VALUE? seconds : 0);
+		final long millis = cal.getTimeInMillis();
+		return isTimezoneUsed? millis - timezone * millisPerHour : millis;
+	}
+
+	/**
+	 * @return all fields of this timestamp incl. unset ones in one
+	 * 			<code>long</code>
+	 * @see #unpack(long)
+	 */
+	long pack() {
+		return ((long) year << 48) |
+				((month & 0xFFL) << 40) |
+				((day & 0xFFL) << 32) |
+				((hour & 0xFFL) << 24) |
+				((minute & 0xFFL) << 16) |
+				((seconds & 0xFFL) << 8) |
+				(timezone & 0xFFL);
+	}
+
+	/**
+	 * @return a new {@link Timestamp} with the fields stored by {@link #pack()}
+	 */
+	static Timestamp unpack(final long packed) {
+		return new Timestamp().setPacked(packed);
+	}
+
+	/**
+	 * Sets all fields of this timestamp to the ones stored by {@link #pack()}.
+	 */
+	Timestamp setPacked(final long packed) {
+		year = (short) (packed >> 48);
+		month = (byte) (packed >> 40);
+		day = (byte) (packed >> 32);
+		hour = (byte) (packed >> 24);
+		minute = (byte) (packed >> 16);
+		seconds = (byte) (packed >> 8);
+		timezone = (byte) packed;
+		return this;
+	}
+
 	public boolean after(final Timestamp timeStamp) {
 		if (timeStamp == null) {
 			throw new IllegalArgumentException("parameter timeStamp is mandatory.");
 		}
-		return toDate().after(timeStamp.toDate());
+		return toEpochMillis() > timeStamp.toEpochMillis();
 	}
 
 	public boolean before(final Timestamp timeStamp) {
 		if (timeStamp == null) {
 			throw new IllegalArgumentException("parameter timeStamp is mandatory.");
 		}
-		return toDate().before(timeStamp.toDate());
+		return toEpochMillis() < timeStamp.toEpochMillis();
 	}
 
 	/**
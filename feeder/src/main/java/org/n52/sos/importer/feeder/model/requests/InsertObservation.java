@@ -69,6 +69,20 @@ public class InsertObservation {
 		measuredValueType = mvType;
 	}
 
+	/**
+	 * @return a copy of this observation with the given value and timestamp
+	 */
+	public InsertObservation withResult(final Object value, final Timestamp timeStamp) {
+		return new InsertObservation(sensor,
+				featureOfInterest,
+				value,
+				timeStamp,
+				unitOfMeasurement,
+				observedProperty,
+				offering,
+				measuredValueType);
+	}
+
 	public String getSensorName() {
 		return sensor.getName();
 	}
@@ -128,11 +142,11 @@ public class InsertObservation {
 		return observedProperty;
 	}
 
-	protected FeatureOfInterest getFeatureOfInterest() {
+	public FeatureOfInterest getFeatureOfInterest() {
 		return featureOfInterest;
 	}
 
-	protected UnitOfMeasurement getUnitOfMeasurment() {
+	public UnitOfMeasurement getUnitOfMeasurment() {
 		return unitOfMeasurement;
 	}
 
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a data directory for new or modified files using a
+ * {@link WatchService}. A file is reported to the {@link Listener} after no
+ * event was received for it during the quiet period and its size and last
+ * modified date did not change since the last event, i.e. the file is not
+ * written anymore.<br />
+ * Events dropped by the file system are reported via
+ * {@link Listener#onOverflow()}, which should rescan the whole directory.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class DirectoryWatcher implements Runnable, Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+	/**
+	 * Receives the files which are ready for import. Called by the thread
+	 * running the watcher.
+	 */
+	public interface Listener {
+
+		void onFilesReady(List<File> files);
+
+		void onOverflow();
+
+	}
+
+	/*
+	 * State of a file at its last event
+	 */
+	private static final class FileState {
+
+		private long size;
+
+		private long lastModified;
+
+		private long lastEventNanos;
+
+		private FileState(final File file, final long now) {
+			update(file, now);
+		}
+
+		private void update(final File file, final long now) {
+			size = file.length();
+			lastModified = file.lastModified();
+			lastEventNanos = now;
+		}
+
+		private boolean isUnchanged(final File file) {
+			return size == file.length() && lastModified == file.lastModified();
+		}
+
+	}
+
+	private final Path directory;
+
+	private final Pattern filePattern;
+
+	private final long quietPeriodNanos;
+
+	private final Listener listener;
+
+	private final WatchService watchService;
+
+	private final Map<Path, FileState> pendingFiles = new LinkedHashMap<>();
+
+	/**
+	 * @param directory the directory to watch
+	 * @param filePattern the pattern of the file names to report, e.g.
+	 * 			{@link org.n52.sos.importer.feeder.Configuration#getLocaleFilePattern()}.
+	 * 			<code>null</code> to report all files.
+	 * @param quietPeriodMillis the time a file must not be modified before it
+	 * 			is reported
+	 * @param listener
+	 * @throws IOException if the directory could not be watched
+	 */
+	public DirectoryWatcher(final File directory,
+			final Pattern filePattern,
+			final long quietPeriodMillis,
+			final Listener listener) throws IOException {
+		this.directory = directory.toPath();
+		this.filePattern = filePattern;
+		quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+		this.listener = listener;
+		watchService = FileSystems.getDefault().newWatchService();
+		try {
+			this.directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+		} catch (final IOException e) {
+			watchService.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void run() {
+		LOG.info("Watching directory '{}' for new files.", directory);
+		try {
+			boolean isValid = true;
+			while (isValid) {
+				final WatchKey key = pendingFiles.isEmpty()?
+						watchService.take() :
+						watchService.poll(quietPeriodNanos, TimeUnit.NANOSECONDS);
+				if (key != null) {
+					handleEvents(key);
+					isValid = key.reset();
+				}
+				reportStableFiles();
+			}
+			LOG.error("Directory '{}' could not be watched anymore.", directory);
+		} catch (final ClosedWatchServiceException e) {
+			LOG.debug("Stopped watching directory '{}'.", directory);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.debug("Interrupted while watching directory '{}'.", directory);
+		} finally {
+			try {
+				watchService.close();
+			} catch (final IOException e) {
+				LOG.debug("Exception thrown: {}", e.getMessage(), e);
+			}
+		}
+	}
+
+	private void handleEvents(final WatchKey key) {
+		final long now = System.nanoTime();
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				LOG.warn("Events of directory '{}' were lost. Rescanning directory.", directory);
+				listener.onOverflow();
+				continue;
+			}
+			final Path path = directory.resolve((Path) event.context());
+			if (filePattern != null && !filePattern.matcher(path.getFileName().toString()).matches()) {
+				continue;
+			}
+			final FileState state = pendingFiles.get(path);
+			if (state == null) {
+				LOG.debug("File '{}' changed.", path);
+				pendingFiles.put(path, new FileState(path.toFile(), now));
+			} else {
+				state.update(path.toFile(), now);
+			}
+		}
+	}
+
+	private void reportStableFiles() {
+		final long now = System.nanoTime();
+		final List<File> files = new ArrayList<>();
+		final Iterator<Map.Entry<Path, FileState>> it = pendingFiles.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<Path, FileState> pendingFile = it.next();
+			final FileState state = pendingFile.getValue();
+			if (now - state.lastEventNanos < quietPeriodNanos) {
+				continue;
+			}
+			final File file = pendingFile.getKey().toFile();
+			if (state.isUnchanged(file)) {
+				it.remove();
+				if (file.isFile() && file.canRead()) {
+					files.add(file);
+				}
+			} else {
+				// still written without events, e.g. on network file systems
+				state.update(file, now);
+			}
+		}
+		if (!files.isEmpty()) {
+			LOG.debug("Files ready for import: {}", files);
+			listener.onFilesReady(files);
+		}
+	}
+
+	/**
+	 * Stops watching. The thread running this watcher terminates.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+}
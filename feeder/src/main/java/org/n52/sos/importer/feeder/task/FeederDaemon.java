@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.SosConnections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feeds several configurations repeatedly in one process. The
+ * {@link RepeatedFeeder}s of all configurations are scheduled on one
+ * {@link ScheduledExecutorService} with a bounded number of threads. Their
+ * first runs are spread over the period. Configurations using the same SOS
+ * instance share its connection via {@link SosConnections}.<br />
+ * If a quiet period is given, the data directories are watched by
+ * {@link DirectoryWatcher}s, too. Their files are fed by the same threads.
+ * Files reported while a run of the same configuration is already queued
+ * are fed by that run.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class FeederDaemon {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FeederDaemon.class);
+
+	private final List<Configuration> configurations;
+
+	private final int periodInMinutes;
+
+	private final int threads;
+
+	private final long quietPeriodMillis;
+
+	private final SosConnections connections = new SosConnections();
+
+	private final List<DirectoryWatcher> watchers = new ArrayList<>();
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * @param configurations the configurations to feed
+	 * @param periodInMinutes the period of each configuration
+	 * @param threads the number of configurations fed at the same time
+	 * @param quietPeriodMillis the quiet period of the {@link DirectoryWatcher}s
+	 * 			or <code>0</code> to not watch data directories
+	 */
+	public FeederDaemon(final List<Configuration> configurations,
+			final int periodInMinutes,
+			final int threads,
+			final long quietPeriodMillis) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(String.format("Number of threads must be >= 1 but is '%d'.", threads));
+		}
+		this.configurations = new ArrayList<>(configurations);
+		this.periodInMinutes = periodInMinutes;
+		this.threads = threads;
+		this.quietPeriodMillis = quietPeriodMillis;
+	}
+
+	/**
+	 * Schedules all configurations and starts the watchers.
+	 *
+	 * @throws IOException if a data directory could not be watched
+	 */
+	public synchronized void start() throws IOException {
+		LOG.info("Feeding {} configurations every {} minute{} using {} threads.",
+				configurations.size(),
+				periodInMinutes,
+				periodInMinutes>1?"s":"",
+				threads);
+		final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			@Override
+			public Thread newThread(final Runnable r) {
+				return new Thread(r, FeederDaemon.class.getSimpleName() + "-" + count.incrementAndGet());
+			}
+		});
+		executor = scheduler;
+		final long periodInMillis = periodInMinutes * 60L * 1000L;
+		for (int i = 0; i < configurations.size(); i++) {
+			final Configuration c = configurations.get(i);
+			final File dataFile = c.getDataFile();
+			final RepeatedFeeder feeder = new RepeatedFeeder(c, dataFile, periodInMinutes, connections, scheduler);
+			// spread the first runs to not start all configurations at once
+			final long initialDelay = periodInMillis * i / configurations.size();
+			scheduler.scheduleWithFixedDelay(guard(feeder, c), initialDelay, periodInMillis, TimeUnit.MILLISECONDS);
+			LOG.debug("Scheduled configuration '{}' starting in {}ms.", c.getFileName(), initialDelay);
+			if (quietPeriodMillis > 0) {
+				if (dataFile == null) {
+					LOG.info("Configuration '{}' has no local data file. It is not watched.", c.getFileName());
+				} else if (dataFile.isDirectory()) {
+					watch(dataFile, c, feeder, scheduler);
+				}
+			}
+		}
+	}
+
+	private void watch(final File directory,
+			final Configuration c,
+			final RepeatedFeeder feeder,
+			final ScheduledExecutorService scheduler) throws IOException {
+		final DirectoryWatcher watcher = new DirectoryWatcher(directory,
+				c.getLocaleFilePattern(),
+				quietPeriodMillis,
+				new PendingFiles(c, feeder, scheduler));
+		watchers.add(watcher);
+		final Thread thread = new Thread(watcher, DirectoryWatcher.class.getSimpleName() + "-" + directory.getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/*
+	 * An exception thrown by a task scheduled with a fixed delay would
+	 * silently cancel all further runs.
+	 */
+	private static Runnable guard(final Runnable task, final Configuration c) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (final Throwable t) {
+					LOG.error("Feeding configuration '{}' failed: {}", c.getFileName(), t.getMessage());
+					LOG.debug("Exception thrown: {}", t.getMessage(), t);
+				}
+			}
+		};
+	}
+
+	/*
+	 * Collects the files reported by the watcher of one configuration while a
+	 * run feeding them is queued, hence at most one run per configuration is
+	 * waiting for a thread.
+	 */
+	private static final class PendingFiles implements DirectoryWatcher.Listener, Runnable {
+
+		private final RepeatedFeeder feeder;
+
+		private final ScheduledExecutorService scheduler;
+
+		private final Runnable guardedRun;
+
+		private final List<File> files = new ArrayList<>();
+
+		private boolean isRescanRequired = false;
+
+		private boolean isQueued = false;
+
+		private PendingFiles(final Configuration c,
+				final RepeatedFeeder feeder,
+				final ScheduledExecutorService scheduler) {
+			this.feeder = feeder;
+			this.scheduler = scheduler;
+			guardedRun = guard(this, c);
+		}
+
+		@Override
+		public void onFilesReady(final List<File> readyFiles) {
+			synchronized (this) {
+				if (!isRescanRequired) {
+					files.addAll(readyFiles);
+				}
+				if (isQueued) {
+					return;
+				}
+				isQueued = true;
+			}
+			scheduler.execute(guardedRun);
+		}
+
+		@Override
+		public void onOverflow() {
+			synchronized (this) {
+				// the rescan feeds all new files anyway
+				isRescanRequired = true;
+				files.clear();
+				if (isQueued) {
+					return;
+				}
+				isQueued = true;
+			}
+			scheduler.execute(guardedRun);
+		}
+
+		@Override
+		public void run() {
+			final List<File> filesToFeed;
+			final boolean isRescan;
+			synchronized (this) {
+				filesToFeed = new ArrayList<>(files);
+				files.clear();
+				isRescan = isRescanRequired;
+				isRescanRequired = false;
+				isQueued = false;
+			}
+			if (isRescan) {
+				feeder.run();
+			} else {
+				feeder.onFilesReady(filesToFeed);
+			}
+		}
+
+	}
+
+	/**
+	 * Stops the watchers and interrupts the running feeders.
+	 */
+	public synchronized void stop() {
+		for (final DirectoryWatcher watcher : watchers) {
+			try {
+				watcher.close();
+			} catch (final IOException e) {
+				LOG.debug("Exception thrown: {}", e.getMessage(), e);
+			}
+		}
+		watchers.clear();
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import org.apache.xmlbeans.XmlException;
+import org.n52.oxf.OXFException;
+import org.n52.oxf.ows.ExceptionReport;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.SensorObservationService;
+import org.n52.sos.importer.feeder.SosConnections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the {@link SensorObservationService} of one configuration alive
+ * between several feeding runs, e.g. the ticks of a {@link RepeatedFeeder}.
+ * Hence, the connection, capabilities, registered sensors and offerings are
+ * re-used instead of being requested from the SOS again for each run and
+ * data file.<br />
+ * The service is created on first access and after {@link #invalidate()}, which
+ * should be called if the communication with the SOS failed.<br />
+ * {@link #getConfiguration()} reloads the configuration, if its file was
+ * modified since it was loaded. In this case, the service is created again
+ * using the new configuration. Hence, feeders should get the configuration
+ * from the session at the beginning of each run.<br />
+ * Sessions of several configurations might share the connections to the same
+ * SOS instance via {@link SosConnections}.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class FeederSession {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FeederSession.class);
+
+	private Configuration configuration;
+
+	// last modified date of the configuration file when loaded
+	private long configurationModified;
+
+	private final SosConnections connections;
+
+	private SensorObservationService sos;
+
+	public FeederSession(final Configuration configuration) {
+		this(configuration, null);
+	}
+
+	/**
+	 * @param connections the connections shared with other sessions or
+	 * 			<code>null</code>
+	 */
+	public FeederSession(final Configuration configuration, final SosConnections connections) {
+		this.configuration = configuration;
+		this.connections = connections;
+		configurationModified = getLastModified(configuration);
+	}
+
+	/**
+	 * @return the configuration, which is reloaded first, if its file was
+	 * 			modified. If the modified file could not be loaded, the
+	 * 			previous configuration is kept until the file is modified
+	 * 			again.
+	 */
+	public synchronized Configuration getConfiguration() {
+		final long modified = getLastModified(configuration);
+		if (modified != configurationModified && modified != 0) {
+			final File configFile = configuration.getConfigFile();
+			configurationModified = modified;
+			try {
+				configuration = new Configuration(configFile.getPath());
+				sos = null;
+				LOG.info("Reloaded modified configuration '{}'.", configFile.getAbsolutePath());
+			} catch (final XmlException | IOException e) {
+				LOG.error("Could not reload modified configuration '{}'. Keeping the previous one: {}",
+						configFile.getAbsolutePath(),
+						e.getMessage());
+				LOG.debug("Exception thrown: {}", e.getMessage(), e);
+			}
+		}
+		return configuration;
+	}
+
+	public synchronized SensorObservationService getSensorObservationService()
+			throws ExceptionReport, OXFException, MalformedURLException {
+		if (sos == null) {
+			LOG.debug("Creating SOS connection for configuration '{}'.", configuration.getFileName());
+			sos = new SensorObservationService(configuration, connections);
+		}
+		return sos;
+	}
+
+	/**
+	 * Discards the current {@link SensorObservationService}. The next call of
+	 * {@link #getSensorObservationService()} creates a new one.
+	 */
+	public synchronized void invalidate() {
+		if (sos != null) {
+			LOG.debug("Invalidated SOS connection for configuration '{}'.", configuration.getFileName());
+			sos = null;
+		}
+		if (connections != null) {
+			connections.invalidate(configuration);
+		}
+	}
+
+	private static long getLastModified(final Configuration configuration) {
+		final File configFile = configuration.getConfigFile();
+		return configFile != null? configFile.lastModified() : 0;
+	}
+
+}
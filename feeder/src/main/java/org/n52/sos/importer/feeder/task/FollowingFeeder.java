@@ -0,0 +1,423 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlException;
+import org.n52.oxf.OXFException;
+import org.n52.oxf.ows.ExceptionReport;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.DataFile;
+import org.n52.sos.importer.feeder.SensorObservationService;
+import org.n52.sos.importer.feeder.csv.FileCsvParser;
+import org.n52.sos.importer.feeder.metrics.ImportMetrics;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+import org.n52.sos.importer.feeder.util.CounterFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows a data file which is appended continuously, e.g. by a data logger,
+ * like <code>tail -f</code>. The file is kept open and checked for appended
+ * lines after each latency period. Only lines terminated by a line feed are
+ * imported, hence a trailing line still being written is imported by a later
+ * check. All checks use the same {@link FeederSession} and continue at the
+ * byte offset behind the last imported line, which is saved in the counter
+ * file of the data file like by the {@link OneTimeFeeder}.<br />
+ * A data file getting shorter than this offset was truncated and is imported
+ * again from its beginning. A data file replaced by a new one, e.g. by log
+ * rotation, is detected by its file key, i.e. the inode on unix like systems.
+ * The remaining lines of the replaced file are imported via the still open
+ * file as soon as it was not appended during one latency period. Afterwards,
+ * the new file is followed.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class FollowingFeeder implements Runnable, Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FollowingFeeder.class);
+
+	// bytes read at once while searching the last line feed
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final byte LINE_FEED = '\n';
+
+	private final Configuration config;
+
+	private final File file;
+
+	private final FeederSession session;
+
+	private final long latencyMillis;
+
+	private volatile boolean isClosed;
+
+	private CounterFile counter;
+
+	private FileChannel channel;
+
+	// the key of the open file or null, if not supported by the file system
+	private Object fileKey;
+
+	// the size of the open file during the previous check
+	private long lastSize;
+
+	private int lastLine;
+
+	private long offset;
+
+	/**
+	 * @param latencyMillis the time between two checks for appended lines
+	 */
+	public FollowingFeeder(final Configuration config, final File file, final long latencyMillis) {
+		this(new FeederSession(config), file, latencyMillis);
+	}
+
+	/**
+	 * Uses the {@link SensorObservationService} of the given session, which
+	 * might be shared with previous runs.
+	 *
+	 * @param latencyMillis the time between two checks for appended lines
+	 */
+	public FollowingFeeder(final FeederSession session, final File file, final long latencyMillis) {
+		this.session = session;
+		config = session.getConfiguration();
+		this.file = file;
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public void run() {
+		LOG.trace("run()");
+		LOG.info("Start following data file '{}' via configuration '{}'. Checking for new lines every {} ms.",
+				file.getAbsolutePath(),
+				config.getFileName(),
+				latencyMillis);
+		try {
+			counter = new CounterFile(OneTimeFeeder.getCounterFile(config, file));
+			while (!isClosed) {
+				if (!check()) {
+					Thread.sleep(latencyMillis);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IOException e) {
+			log(e);
+		} finally {
+			closeFile();
+		}
+		LOG.info("Stopped following data file '{}'.", file.getAbsolutePath());
+	}
+
+	/**
+	 * Stops following the data file after the current check.
+	 */
+	@Override
+	public void close() {
+		isClosed = true;
+	}
+
+	/*
+	 * Imports the lines appended since the last check. Returns true, if the
+	 * replaced data file was finished and the new one should be checked
+	 * immediately.
+	 */
+	private boolean check() {
+		try {
+			if (channel == null && !open()) {
+				return false;
+			}
+			final long size = channel.size();
+			if (size < offset) {
+				LOG.warn("Data file '{}' was truncated to {} bytes. Importing it again from its beginning.",
+						file.getAbsolutePath(),
+						size);
+				restart();
+			}
+			final boolean isReplaced = isReplaced();
+			// the writer might still append to the replaced file
+			final boolean isFinished = isReplaced && size == lastSize;
+			lastSize = size;
+			final long end = isFinished? size : findEndOfLastLine(channel, offset, size);
+			if (end > offset && !importLines(end, !isReplaced)) {
+				return false;
+			}
+			if (isFinished) {
+				LOG.info("Data file '{}' was replaced. Following the new file.", file.getAbsolutePath());
+				closeFile();
+				restart();
+				return true;
+			}
+		} catch (final IOException e) {
+			session.invalidate();
+			log(e);
+		} catch (final OXFException e) {
+			session.invalidate();
+			log(e);
+		} catch (final XmlException e) {
+			session.invalidate();
+			log(e);
+		} catch (final ParseException e) {
+			session.invalidate();
+			log(e);
+		} catch (final IllegalArgumentException e) {
+			session.invalidate();
+			log(e);
+		}
+		return false;
+	}
+
+	/*
+	 * Opens the data file and continues at the checkpoint of its counter file.
+	 */
+	private boolean open() throws IOException {
+		if (!file.isFile()) {
+			LOG.debug("Waiting for data file '{}'.", file.getAbsolutePath());
+			return false;
+		}
+		fileKey = getFileKey(file);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		lastSize = -1;
+		if (counter.exists()) {
+			counter.read();
+			// resets the last line, if the data file was replaced
+			offset = counter.getOffset(file);
+			lastLine = counter.getLastLine();
+		} else {
+			lastLine = 0;
+			offset = 0;
+		}
+		LOG.debug("Opened data file '{}' at byte offset {} behind line {}.", file.getAbsolutePath(), offset, lastLine);
+		return true;
+	}
+
+	private boolean isReplaced() throws IOException {
+		if (fileKey == null) {
+			return !file.exists();
+		}
+		try {
+			return !fileKey.equals(getFileKey(file));
+		} catch (final NoSuchFileException e) {
+			return true;
+		}
+	}
+
+	private static Object getFileKey(final File file) throws IOException {
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+	}
+
+	private void restart() throws IOException {
+		lastLine = 0;
+		offset = 0;
+		counter.write(lastLine, offset, file);
+	}
+
+	/*
+	 * Imports the lines between offset and end. The counter file is only
+	 * updated if the open file is still the data file.
+	 */
+	private boolean importLines(final long end, final boolean isCheckpoint)
+			throws IOException, OXFException, XmlException, ParseException {
+		final SensorObservationService sos = getSensorObservationService();
+		if (sos == null) {
+			return false;
+		}
+		sos.setLastLine(lastLine);
+		sos.setLastOffset(offset);
+		final List<InsertObservation> failedInserts = sos.importData(new AppendedLines(config, file, channel, end));
+		// store failed observations before they are skipped by the counter file
+		if (failedInserts != null && !failedInserts.isEmpty()) {
+			OneTimeFeeder.getDeadLetterStore(config).append(failedInserts);
+		}
+		lastLine = sos.getLastLine();
+		// the data was read up to its end
+		offset = end;
+		if (isCheckpoint) {
+			counter.write(lastLine, offset, file);
+		}
+		ImportMetrics.get(config.getFileName()).checkpoint();
+		LOG.debug("Imported data file '{}' up to byte offset {} behind line {}.", file.getAbsolutePath(), offset, lastLine);
+		return true;
+	}
+
+	private SensorObservationService getSensorObservationService() throws MalformedURLException {
+		SensorObservationService sos = null;
+		final String sosURL = config.getSosUrl().toString();
+		try {
+			sos = session.getSensorObservationService();
+		} catch (final ExceptionReport er) {
+			LOG.error("SOS " + sosURL + " is not available. Please check the configuration!", er);
+		} catch (final OXFException oxfe) {
+			LOG.error("SOS " + sosURL + " is not available. Please check the configuration!", oxfe);
+		}
+		if (sos == null || !sos.isAvailable()) {
+			LOG.error(String.format("SOS '%s' is not available. Please check the configuration!", sosURL));
+			session.invalidate();
+			return null;
+		}
+		if (!sos.isTransactional()) {
+			LOG.error(String.format("SOS '%s' does not support required transactional operations!", sosURL));
+			session.invalidate();
+			return null;
+		}
+		return sos;
+	}
+
+	private void closeFile() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				log(e);
+			}
+			channel = null;
+		}
+	}
+
+	private void log(final Exception e) {
+		LOG.error("Exception thrown: {}", e.getMessage());
+		LOG.debug("Exception Stack Trace:", e);
+	}
+
+	/**
+	 * @return the byte offset behind the last line feed between
+	 * 			<code>offset</code> and <code>size</code> or
+	 * 			<code>offset</code>, if there is none.
+	 */
+	static long findEndOfLastLine(final FileChannel channel, final long offset, final long size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long end = size;
+		while (end > offset) {
+			final long start = Math.max(offset, end - BUFFER_SIZE);
+			buffer.clear();
+			buffer.limit((int) (end - start));
+			while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+				// read until the buffer is full or the file was truncated meanwhile
+			}
+			for (int i = buffer.position() - 1; i >= 0; i--) {
+				if (buffer.get(i) == LINE_FEED) {
+					return start + i + 1;
+				}
+			}
+			end = start;
+		}
+		return offset;
+	}
+
+	/*
+	 * The followed data file up to the given end, read via the open file
+	 * instead of its path, which might belong to a new file already.
+	 */
+	private static final class AppendedLines extends DataFile {
+
+		private final FileChannel channel;
+
+		private final long end;
+
+		private AppendedLines(final Configuration configuration,
+				final File file,
+				final FileChannel channel,
+				final long end) {
+			super(configuration, file);
+			this.channel = channel;
+			this.end = end;
+		}
+
+		@Override
+		public FileCsvParser getCSVReader(final long offset) throws IOException {
+			return getCSVReader(new ChannelInputStream(channel, offset, end), offset);
+		}
+
+		/**
+		 * Always <code>false</code>: only a few lines are appended between two
+		 * checks.
+		 */
+		@Override
+		public boolean isSplittable() {
+			return false;
+		}
+
+	}
+
+	/**
+	 * Reads the bytes between two offsets of a channel without changing its
+	 * position. The channel is not closed by {@link #close()}.
+	 */
+	static final class ChannelInputStream extends InputStream {
+
+		private final FileChannel channel;
+
+		private final long end;
+
+		private long position;
+
+		ChannelInputStream(final FileChannel channel, final long start, final long end) {
+			this.channel = channel;
+			position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= end) {
+				return -1;
+			}
+			final int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+			if (read > 0) {
+				position += read;
+			}
+			return read;
+		}
+
+	}
+
+}
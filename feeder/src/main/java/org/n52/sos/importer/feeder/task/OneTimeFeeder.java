@@ -30,14 +30,11 @@ package org.n52.sos.importer.feeder.task;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.text.ParseException;
 import java.util.List;
-import java.util.Scanner;
 
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPHTTPClient;
@@ -47,13 +44,15 @@ import org.n52.oxf.ows.ExceptionReport;
 import org.n52.sos.importer.feeder.Configuration;
 import org.n52.sos.importer.feeder.DataFile;
 import org.n52.sos.importer.feeder.SensorObservationService;
+import org.n52.sos.importer.feeder.metrics.ImportMetrics;
 import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+import org.n52.sos.importer.feeder.util.CounterFile;
+import org.n52.sos.importer.feeder.util.DeadLetterStore;
 import org.n52.sos.importer.feeder.util.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * TODO if failed observations-> store in file
  * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
  *
  */
@@ -62,16 +61,28 @@ public class OneTimeFeeder implements Runnable {
 
 	private final Configuration config;
 
+	private final FeederSession session;
+
 	private DataFile dataFile;
 
 	private static final Logger LOG = LoggerFactory.getLogger(OneTimeFeeder.class);
 
 	public OneTimeFeeder(final Configuration config) {
 		this.config = config;
+		session = new FeederSession(config);
 	}
 
 	public OneTimeFeeder(final Configuration config, final File datafile) {
-		this.config = config;
+		this(new FeederSession(config), datafile);
+	}
+
+	/**
+	 * Uses the {@link SensorObservationService} of the given session, which
+	 * might be shared with previous runs.
+	 */
+	public OneTimeFeeder(final FeederSession session, final File datafile) {
+		this.session = session;
+		config = session.getConfiguration();
 		dataFile = new DataFile(config, datafile);
 	}
 
@@ -164,7 +175,7 @@ public class OneTimeFeeder implements Runnable {
 				SensorObservationService sos = null;
 				final String sosURL = config.getSosUrl().toString();
 				try {
-					sos = new SensorObservationService(config);
+					sos = session.getSensorObservationService();
 				} catch (final ExceptionReport er) {
 					LOG.error("SOS " + sosURL + " is not available. Please check the configuration!", er);
 				} catch (final OXFException oxfe) {
@@ -172,36 +183,38 @@ public class OneTimeFeeder implements Runnable {
 				}
 				if (sos == null || !sos.isAvailable()) {
 					LOG.error(String.format("SOS '%s' is not available. Please check the configuration!", sosURL));
+					session.invalidate();
 				} else if (!sos.isTransactional()){
 					LOG.error(String.format("SOS '%s' does not support required transactional operations!", sosURL));
+					session.invalidate();
 				} else {
 					final String directory = dataFile.getFileName();
 					File counterFile = null;
-					String fileName = null;
 					if (config.isRemoteFile()) {
-						fileName = directory + "_counter";
+						counterFile = FileHelper.createFileInImporterHomeWithUniqueFileName(directory + "_counter");
 					} else {
-						fileName = config.getConfigFile().getCanonicalPath() +
-								"_" +
-								dataFile.getCanonicalPath() +
-								"_counter";
+						counterFile = getCounterFile(config, dataFile.getFile());
 					}
-					counterFile = FileHelper.createFileInImporterHomeWithUniqueFileName(fileName);
 					LOG.debug("Check counter file '{}'.", counterFile.getCanonicalPath());
+					final CounterFile counter = new CounterFile(counterFile);
 					// read already inserted line count
-					if (counterFile.exists()) {
+					if (counter.exists()) {
 						LOG.debug("Read already read lines from file");
-						try (final Scanner sc = new Scanner(counterFile)){
-    						final int count = sc.nextInt();
-    						sos.setLastLine(count);
-						}
+						counter.read();
+						// resets the last line, if the data file was replaced
+						sos.setLastOffset(counter.getOffset(dataFile.getFile()));
+						sos.setLastLine(counter.getLastLine());
 					} else {
 						LOG.debug("Counter file does not exist.");
+						// the service might be re-used from the previous file
+						sos.setLastLine(0);
+						sos.setLastOffset(0);
 					}
 
 					// SOS is available and transactional
 					final List<InsertObservation> failedInserts = sos.importData(dataFile);
 					int lastLine = sos.getLastLine();
+					long lastOffset = sos.getLastOffset();
 					LOG.info("OneTimeFeeder: save read lines count: {} to '{}'",
 							lastLine,
 							counterFile.getCanonicalPath());
@@ -213,32 +226,36 @@ public class OneTimeFeeder implements Runnable {
 					 */
 					if (config.getFileName().contains("EPC_import-config.xml") && isLinuxOrSimilar()) {
 						lastLine = lastLine - 1;
+						lastOffset = 0;
 						LOG.info("Decrement lastLine counter: {}",lastLine);
 					}
-					// override counter file
-					try (
-							final FileWriter counterFileWriter = new FileWriter(counterFile.getAbsoluteFile());
-							final PrintWriter out = new PrintWriter(counterFileWriter);) {
-						out.println(lastLine);
-					}
-
+					// store failed observations before they are skipped by the counter file
 					saveFailedInsertObservations(failedInserts);
+					// override counter file
+					counter.write(lastLine, lastOffset, dataFile.getFile());
+					ImportMetrics.get(config.getFileName()).checkpoint();
 					LOG.info("Feeding data from file {} to SOS instance finished.",dataFile.getFileName());
 				}
 			} catch (final MalformedURLException mue) {
+				session.invalidate();
 				LOG.error("SOS URL syntax not correct in configuration file '{}'. Exception thrown: {}",
 						config.getFileName(),
 						mue.getMessage());
 				LOG.debug("Exception Stack Trace:", mue);
 			} catch (final IOException e) {
+				session.invalidate();
 				log(e);
 			} catch (final OXFException e) {
+				session.invalidate();
 				log(e);
 			} catch (final XmlException e) {
+				session.invalidate();
 				log(e);
 			} catch (final ParseException e) {
+				session.invalidate();
 				log(e);
 			} catch (final IllegalArgumentException e) {
+				session.invalidate();
 				log(e);
 			}
 		}
@@ -256,19 +273,35 @@ public class OneTimeFeeder implements Runnable {
 	}
 
 	/*
-	 * Method should store failed insertObservations in a defined directory and
-	 * created configuration for this.
+	 * Stores the failed observations in the dead letter store of the
+	 * configuration. They could be inserted later using a ReplayFeeder.
 	 */
 	private void saveFailedInsertObservations(
 			final List<InsertObservation> failedInserts) throws IOException {
-		// TODO Auto-generated method stub generated on 25.06.2012 around 11:39:44 by eike
-		LOG.trace("saveFailedInsertObservations() <-- NOT YET IMPLEMENTED");
-//		// TODO save failed InsertObservations via ObjectOutputStream
-//		final String fileName = config.getConfigFile().getCanonicalPath() +
-//		"_" +
-//		dataFile.getCanonicalPath() +
-//		"_failedObservations";
-//		// TODO define name of outputfile
+		if (failedInserts == null || failedInserts.isEmpty()) {
+			return;
+		}
+		getDeadLetterStore(config).append(failedInserts);
+	}
+
+	/**
+	 * @return the counter file holding the checkpoint of the import of the
+	 * 			given local data file using the given configuration
+	 */
+	static File getCounterFile(final Configuration config, final File dataFile) throws IOException {
+		return FileHelper.createFileInImporterHomeWithUniqueFileName(config.getConfigFile().getCanonicalPath() +
+				"_" +
+				dataFile.getCanonicalPath() +
+				"_counter");
+	}
+
+	/**
+	 * @return the store of the observations failed during imports using the
+	 * 			given configuration
+	 */
+	static DeadLetterStore getDeadLetterStore(final Configuration config) throws IOException {
+		return new DeadLetterStore(FileHelper.createFileInImporterHomeWithUniqueFileName(
+				config.getConfigFile().getCanonicalPath() + "_failedObservations"));
 	}
 
 }
@@ -35,12 +35,26 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.SosConnections;
 import org.n52.sos.importer.feeder.exceptions.InvalidColumnCountException;
 import org.n52.sos.importer.feeder.exceptions.JavaApiBugJDL6203387Exception;
 import org.n52.sos.importer.feeder.util.FileHelper;
@@ -48,34 +62,79 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Feeds the data file or all new files of the data directory on each run.
+ * In addition, a {@link DirectoryWatcher} might report new files of the data
+ * directory between the runs, which are fed immediately. In this case, the
+ * runs are a fallback rescan of the directory.<br />
+ * The files of the data directory are fed by up to
+ * {@link Configuration#getConcurrentFiles()} threads, each using its own
+ * {@link FeederSession}. The sessions share the connection to the SOS and
+ * its sensor registry via {@link SosConnections}. The calling thread feeds files, too. The others are
+ * taken from the given executor or an own thread pool. Each file resumes from
+ * its own counter file, hence the last used file is only moved forward when
+ * all older files are fed.
+ *
  * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
  *
  */
-public class RepeatedFeeder extends TimerTask{
+public class RepeatedFeeder extends TimerTask implements DirectoryWatcher.Listener {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RepeatedFeeder.class);
 
 	private final Configuration configuration;
 	private final File file;
 
+	// survives between the runs to keep the SOS connection
+	private final FeederSession session;
+
+	// one session per thread feeding files of the data directory
+	private final FeederSession[] sessions;
+
 	private final int periodInMinutes;
 
-	final private static Lock oneFeederLock = new ReentrantLock(true);
+	// used to not have more than one run of this feeder at a time
+	private final Lock feederLock = new ReentrantLock(true);
 
-	private static File lastUsedDateFile;
+	// runs the additional threads feeding files of the data directory
+	private ExecutorService executor;
+
+	private File lastUsedDateFile;
 
 	public RepeatedFeeder(final Configuration c, final File f, final int periodInMinutes) {
+		this(c, f, periodInMinutes, null, null);
+	}
+
+	/**
+	 * @param connections the SOS connections shared with the feeders of
+	 * 			other configurations or <code>null</code> to share own
+	 * 			connections between the sessions of this feeder only
+	 * @param executor the executor shared with the feeders of other
+	 * 			configurations or <code>null</code> to use an own thread pool,
+	 * 			if files are fed concurrently
+	 */
+	public RepeatedFeeder(final Configuration c,
+			final File f,
+			final int periodInMinutes,
+			final SosConnections connections,
+			final ExecutorService executor) {
 		configuration = c;
+		this.executor = executor;
 		file = f;
+		final SosConnections sessionConnections = connections != null? connections : new SosConnections();
+		session = new FeederSession(c, sessionConnections);
 		this.periodInMinutes = periodInMinutes;
+		sessions = new FeederSession[c.isConcurrentFilesSet()? c.getConcurrentFiles() : 1];
+		sessions[0] = session;
+		for (int i = 1; i < sessions.length; i++) {
+			sessions[i] = new FeederSession(c, sessionConnections);
+		}
 	}
 
 	@Override
 	public void run() {
 		LOG.trace("run()");
 		File datafile;
-		 // used to sync access to lastUsedDateFile and to not have more than one feeder at a time.
-		oneFeederLock.lock();
+		feederLock.lock();
 		try {
 			/*
 			 * save last feeded file incl. counter
@@ -85,34 +144,21 @@ public class RepeatedFeeder extends TimerTask{
 			 * 	feed all newer files
 			 */
 			// if file is a directory, get latest from file list
-			if (file.isDirectory()) {
+			// file is null, if the data file is remote
+			if (file != null && file.isDirectory()) {
 				final ArrayList<File> filesToFeed = new ArrayList<File>();
 				getLastFeedFile();
 				if (lastUsedDateFile != null) {
 					filesToFeed.add(lastUsedDateFile);
 				}
 				addNewerFiles(filesToFeed);
-				for (final File fileToFeed : filesToFeed) {
-					LOG.info("Start feeding file {}",fileToFeed.getName());
-					try {
-						new OneTimeFeeder(configuration, fileToFeed).run();
-						lastUsedDateFile = fileToFeed;
-						saveLastFeedFile();
-						LOG.info("Finished feeding file {}.",fileToFeed.getName());
-					}
-					catch (final InvalidColumnCountException iae) {
-						// Exception is already logged -> nothing to do
-					}
-					catch (final JavaApiBugJDL6203387Exception e) {
-						// Exception is already logged -> nothing to do
-					}
-				}
+				feedFiles(filesToFeed);
 			} else {
 				datafile = file;
 				// OneTimeFeeder with file override used not as thread
-				new OneTimeFeeder(configuration, datafile).run();
+				new OneTimeFeeder(session, datafile).run();
 				LOG.info("Finished feeding file {}. Next run in {} minute{}.",
-						datafile.getName(),
+						datafile != null? datafile.getName() : "from FTP server",
 						periodInMinutes,
 						periodInMinutes>1?"s":"");
 			}
@@ -122,25 +168,242 @@ public class RepeatedFeeder extends TimerTask{
 		}
 		catch (final JavaApiBugJDL6203387Exception e) {
 			// Exception is already logged -> nothing to do
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.error("Interrupted while feeding files of directory '{}'.", file.getAbsolutePath());
 		} catch (final Exception e) {
+			session.invalidate();
 			LOG.error("Exception catched. Switch logging to debug for more details: {}", e.getMessage());
 			LOG.debug("StackTrace:",e);
 		} finally {
-			oneFeederLock.unlock();
+			feederLock.unlock();
+		}
+	}
+
+	/**
+	 * Feeds the files reported by a {@link DirectoryWatcher} of the data
+	 * directory.
+	 */
+	@Override
+	public void onFilesReady(final List<File> files) {
+		LOG.trace("onFilesReady({})", files);
+		feederLock.lock();
+		try {
+			getLastFeedFile();
+			feedFiles(files);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.error("Interrupted while feeding files of directory '{}'.", file.getAbsolutePath());
+		} catch (final Exception e) {
+			session.invalidate();
+			LOG.error("Exception catched. Switch logging to debug for more details: {}", e.getMessage());
+			LOG.debug("StackTrace:",e);
+		} finally {
+			feederLock.unlock();
+		}
+	}
+
+	/**
+	 * Rescans the data directory, because the {@link DirectoryWatcher} lost
+	 * events.
+	 */
+	@Override
+	public void onOverflow() {
+		run();
+	}
+
+	/*
+	 * The calling thread feeds files, too, hence the batch is fed even if all
+	 * threads of a shared executor are busy. Helpers not started when the
+	 * calling thread runs out of files are skipped instead of waited for.
+	 */
+	private void feedFiles(final List<File> filesToFeed) throws InterruptedException {
+		final Batch batch = new Batch(filesToFeed);
+		final int threadCount = Math.min(sessions.length, batch.files.size());
+		if (threadCount <= 1) {
+			batch.feed(session);
+			return;
+		}
+		LOG.debug("Feeding {} files using {} threads.", batch.files.size(), threadCount);
+		final ExecutorService helperExecutor = getExecutor();
+		final List<Helper> helpers = new ArrayList<Helper>(threadCount - 1);
+		for (int i = 1; i < threadCount; i++) {
+			final Helper helper = new Helper(batch, sessions[i]);
+			helper.future = helperExecutor.submit(helper);
+			helpers.add(helper);
+		}
+		batch.feed(session);
+		try {
+			for (final Helper helper : helpers) {
+				if (helper.isStarted.compareAndSet(false, true)) {
+					helper.future.cancel(false);
+					continue;
+				}
+				try {
+					helper.future.get();
+				} catch (final ExecutionException e) {
+					LOG.error("Exception catched. Switch logging to debug for more details: {}", e.getCause().getMessage());
+					LOG.debug("StackTrace:", e.getCause());
+				}
+			}
+		} catch (final InterruptedException e) {
+			batch.cancel();
+			throw e;
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, RepeatedFeeder.class.getSimpleName() + "-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/*
+	 * Feeds files of the batch on a thread of the executor, if started before
+	 * the calling thread ran out of files.
+	 */
+	private static final class Helper implements Runnable {
+
+		private final Batch batch;
+
+		private final FeederSession session;
+
+		private final AtomicBoolean isStarted = new AtomicBoolean();
+
+		private Future<?> future;
+
+		private Helper(final Batch batch, final FeederSession session) {
+			this.batch = batch;
+			this.session = session;
+		}
+
+		@Override
+		public void run() {
+			if (isStarted.compareAndSet(false, true)) {
+				batch.feed(session);
+			}
+		}
+
+	}
+
+	/*
+	 * The distinct files of one run ordered by their last modified date. Each
+	 * thread takes the next file not yet taken.
+	 */
+	private final class Batch {
+
+		private final List<File> files;
+
+		private final boolean[] isFed;
+
+		private final AtomicInteger nextFile = new AtomicInteger();
+
+		// index of the first file not yet fed
+		private int firstNotFed;
+
+		private Batch(final List<File> filesToFeed) {
+			files = new ArrayList<File>(distinct(filesToFeed));
+			Collections.sort(files, new Comparator<File>() {
+				@Override
+				public int compare(final File f1, final File f2) {
+					return Long.compare(f1.lastModified(), f2.lastModified());
+				}
+			});
+			isFed = new boolean[files.size()];
+		}
+
+		private void feed(final FeederSession session) {
+			int i;
+			while ((i = nextFile.getAndIncrement()) < files.size()) {
+				final File fileToFeed = files.get(i);
+				LOG.info("Start feeding file {}",fileToFeed.getName());
+				try {
+					new OneTimeFeeder(session, fileToFeed).run();
+					LOG.info("Finished feeding file {}.",fileToFeed.getName());
+				}
+				catch (final InvalidColumnCountException iae) {
+					// Exception is already logged -> nothing to do
+				}
+				catch (final JavaApiBugJDL6203387Exception e) {
+					// Exception is already logged -> nothing to do
+				}
+				catch (final RuntimeException e) {
+					session.invalidate();
+					LOG.error("Exception catched. Switch logging to debug for more details: {}", e.getMessage());
+					LOG.debug("StackTrace:",e);
+					// the last used file must not pass this file
+					cancel();
+					return;
+				}
+				fed(i);
+			}
+		}
+
+		private void cancel() {
+			nextFile.set(files.size());
+		}
+
+		private void fed(final int index) {
+			synchronized (RepeatedFeeder.this) {
+				isFed[index] = true;
+				File lastFedFile = null;
+				while (firstNotFed < files.size() && isFed[firstNotFed]) {
+					lastFedFile = files.get(firstNotFed);
+					firstNotFed++;
+				}
+				// files reported by the watcher might be older than the last one
+				if (lastFedFile != null &&
+						(lastUsedDateFile == null || lastFedFile.lastModified() >= lastUsedDateFile.lastModified())) {
+					lastUsedDateFile = lastFedFile;
+					saveLastFeedFile();
+				}
+			}
+		}
+
+	}
+
+	/*
+	 * The last used file is listed again as newer file, so it must not be fed
+	 * twice at the same time by two threads.
+	 */
+	private static Collection<File> distinct(final List<File> files) {
+		final Map<String, File> distinctFiles = new LinkedHashMap<String, File>();
+		for (final File f : files) {
+			String path;
+			try {
+				path = f.getCanonicalPath();
+			} catch (final IOException e) {
+				path = f.getAbsolutePath();
+			}
+			if (!distinctFiles.containsKey(path)) {
+				distinctFiles.put(path, f);
+			}
 		}
+		return distinctFiles.values();
 	}
 
 	private void addNewerFiles(final ArrayList<File> filesToFeed)
 	{
 		// TODO if last feed file is null: add all (OR only the newest?) files in directory to list "filesToFeed"
 		// TODO else: get all files newer than last feed file and add to list "filesToFeed"
+		// the file pattern might have been changed in the reloaded configuration
+		final Configuration c = session.getConfiguration();
 		final File[] files = file.listFiles(new FileFilter() {
 			@Override
 			public boolean accept(final File pathname) {
 				return pathname.isFile() &&
 						pathname.canRead() &&
-						(configuration.getLocaleFilePattern() != null?
-						configuration.getLocaleFilePattern().matcher(pathname.getName()).matches():true);
+						(c.getLocaleFilePattern() != null?
+						c.getLocaleFilePattern().matcher(pathname.getName()).matches():true);
 			}
 		});
 		if (files != null) {
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import java.io.IOException;
+
+import org.apache.xmlbeans.XmlException;
+import org.n52.oxf.OXFException;
+import org.n52.oxf.ows.ExceptionReport;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.SensorObservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts the observations stored by {@link OneTimeFeeder}s of the given
+ * configuration, because their insertion failed. Observations failing again
+ * are stored for the next replay.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class ReplayFeeder implements Runnable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReplayFeeder.class);
+
+	private final Configuration config;
+
+	private final FeederSession session;
+
+	private final int maxObservationsPerSecond;
+
+	/**
+	 * @param maxObservationsPerSecond the maximum number of observations
+	 * 			inserted per second, or <code>0</code> for no limit.
+	 * 			The number of concurrent requests is defined by
+	 * 			{@link Configuration#getConcurrentInserts()}.
+	 */
+	public ReplayFeeder(final Configuration config, final int maxObservationsPerSecond) {
+		this.config = config;
+		this.maxObservationsPerSecond = maxObservationsPerSecond;
+		session = new FeederSession(config);
+	}
+
+	@Override
+	public void run() {
+		LOG.trace("run()");
+		LOG.info("Starting replay of failed observations of configuration '{}'", config.getFileName());
+		final String sosURL = config.getSosUrl().toString();
+		try {
+			SensorObservationService sos = null;
+			try {
+				sos = session.getSensorObservationService();
+			} catch (final ExceptionReport er) {
+				LOG.error("SOS " + sosURL + " is not available. Please check the configuration!", er);
+			} catch (final OXFException oxfe) {
+				LOG.error("SOS " + sosURL + " is not available. Please check the configuration!", oxfe);
+			}
+			if (sos == null || !sos.isAvailable()) {
+				LOG.error(String.format("SOS '%s' is not available. Please check the configuration!", sosURL));
+			} else if (!sos.isTransactional()){
+				LOG.error(String.format("SOS '%s' does not support required transactional operations!", sosURL));
+			} else {
+				final int failed = sos.replay(OneTimeFeeder.getDeadLetterStore(config), maxObservationsPerSecond);
+				if (failed > 0) {
+					LOG.warn("{} observations failed again and are stored for the next replay.", failed);
+				}
+				LOG.info("Replay of failed observations of configuration '{}' finished.", config.getFileName());
+			}
+		} catch (final IOException e) {
+			log(e);
+		} catch (final OXFException e) {
+			log(e);
+		} catch (final XmlException e) {
+			log(e);
+		} catch (final IllegalArgumentException e) {
+			log(e);
+		}
+	}
+
+	private void log(final Exception e)
+	{
+		LOG.error("Exception thrown: {}", e.getMessage());
+		LOG.debug("Exception Stack Trace:", e);
+	}
+
+}
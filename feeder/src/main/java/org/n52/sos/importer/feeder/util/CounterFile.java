@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+import org.n52.sos.importer.feeder.csv.Compression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoint of the import of one data file stored in its counter file.<br />
+ * The first line holds the number of lines already imported, hence older
+ * versions are still able to read the file. The optional second and third
+ * line hold the byte offset behind these lines and a fingerprint of the
+ * bytes before this offset. The fingerprint is used to detect truncated or
+ * replaced data files, which could not be continued at the offset. The
+ * offset of compressed data files is the one in the decompressed data. The
+ * optional fourth line holds the length of the data file, which tells
+ * appended compressed data files apart from replaced ones.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class CounterFile {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CounterFile.class);
+
+	// bytes at the beginning of the file and before the offset
+	private static final int FINGERPRINT_WINDOW = 4096;
+
+	private final File file;
+
+	private int lastLine;
+
+	private long offset;
+
+	private long fingerprint;
+
+	private long length;
+
+	public CounterFile(final File file) {
+		this.file = file;
+	}
+
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Reads the checkpoint from the counter file. An empty or corrupt file is
+	 * handled like no checkpoint, hence the data file is imported from its
+	 * beginning.
+	 *
+	 * @throws IOException if the file could not be read
+	 */
+	public void read() throws IOException {
+		try (final Scanner sc = new Scanner(file)) {
+			lastLine = sc.nextInt();
+			offset = sc.hasNextLong()? sc.nextLong() : 0;
+			fingerprint = sc.hasNextLong()? sc.nextLong() : 0;
+			length = sc.hasNextLong()? sc.nextLong() : 0;
+		} catch (final NoSuchElementException e) {
+			LOG.warn("Could not read counter file '{}'. Importing the data file from its beginning.",
+					file.getAbsolutePath());
+			lastLine = 0;
+			offset = 0;
+			fingerprint = 0;
+			length = 0;
+		}
+	}
+
+	/**
+	 * Overrides the counter file. The checkpoint is written to a temporary
+	 * file first, which replaces the counter file, hence a crash does not
+	 * leave a truncated counter file.
+	 *
+	 * @param lastLine the number of lines already imported
+	 * @param offset the byte offset behind <code>lastLine</code> or
+	 * 			<code>0</code>, if unknown
+	 * @param dataFile the data file to take the fingerprint from
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(final int lastLine, final long offset, final File dataFile) throws IOException {
+		this.lastLine = lastLine;
+		this.offset = offset;
+		fingerprint = offset > 0? fingerprint(dataFile, offset) : 0;
+		length = offset > 0? dataFile.length() : 0;
+		final File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			try (
+					final FileWriter counterFileWriter = new FileWriter(tmpFile);
+					final PrintWriter out = new PrintWriter(counterFileWriter);) {
+				out.println(lastLine);
+				if (this.offset > 0) {
+					out.println(this.offset);
+					out.println(fingerprint);
+					out.println(length);
+				}
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// does nothing, if moved
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * @return the number of lines already imported. Call
+	 * 			{@link #getOffset(File)} first, which resets it, if the data
+	 * 			file was replaced.
+	 */
+	public int getLastLine() {
+		return lastLine;
+	}
+
+	/**
+	 * If the fingerprint does not match anymore, the data file was truncated
+	 * or replaced. Skipping the already imported number of lines would lose
+	 * the data of a replaced file, hence the checkpoint is reset and the data
+	 * file is imported from its beginning. Only compressed data files, whose
+	 * fingerprint changes whenever data is appended, are continued by
+	 * skipping the already imported lines, if their beginning is unchanged.
+	 *
+	 * @param dataFile the data file to continue
+	 * @return the byte offset to continue reading <code>dataFile</code> at or
+	 * 			<code>0</code>, if unknown or the fingerprint does not match
+	 * 			anymore.
+	 * @throws IOException if the data file could not be read
+	 */
+	public long getOffset(final File dataFile) throws IOException {
+		if (offset <= 0) {
+			return 0;
+		}
+		if (fingerprint(dataFile, offset) == fingerprint) {
+			return offset;
+		}
+		if (isAppendedCompressedFile(dataFile)) {
+			LOG.debug("Compressed data file '{}' was appended since the last import: skipping {} lines.",
+					dataFile.getAbsolutePath(), lastLine);
+		} else {
+			LOG.warn("Data file '{}' was truncated or replaced since the last import. "
+					+ "Importing it from its beginning instead of skipping {} lines.",
+					dataFile.getAbsolutePath(), lastLine);
+			lastLine = 0;
+		}
+		offset = 0;
+		return 0;
+	}
+
+	/**
+	 * @return the CRC32 checksum of the first bytes of <code>dataFile</code>
+	 * 			and the bytes before <code>offset</code> or <code>-1</code>,
+	 * 			if the file is shorter than <code>offset</code>.
+	 */
+	static long fingerprint(final File dataFile, final long offset) throws IOException {
+		if (Compression.detect(dataFile) != Compression.NONE) {
+			return fingerprintCompressed(dataFile);
+		}
+		try (final RandomAccessFile raf = new RandomAccessFile(dataFile, "r")) {
+			if (raf.length() < offset) {
+				return -1;
+			}
+			final CRC32 crc = new CRC32();
+			final byte[] window = new byte[(int) Math.min(FINGERPRINT_WINDOW, offset)];
+			raf.readFully(window);
+			crc.update(window);
+			raf.seek(offset - window.length);
+			raf.readFully(window);
+			crc.update(window);
+			return crc.getValue();
+		}
+	}
+
+	/*
+	 * The fingerprint of the previous length still matches, if data was
+	 * appended only.
+	 */
+	private boolean isAppendedCompressedFile(final File dataFile) throws IOException {
+		return length > 0
+				&& dataFile.length() > length
+				&& Compression.detect(dataFile) != Compression.NONE
+				&& fingerprintCompressed(dataFile, length) == fingerprint;
+	}
+
+	/*
+	 * The offset of a compressed data file is the one in the decompressed
+	 * data, hence the first bytes and the length of the file are used.
+	 */
+	private static long fingerprintCompressed(final File dataFile) throws IOException {
+		return fingerprintCompressed(dataFile, dataFile.length());
+	}
+
+	private static long fingerprintCompressed(final File dataFile, final long length) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(dataFile, "r")) {
+			final CRC32 crc = new CRC32();
+			final byte[] window = new byte[(int) Math.min(FINGERPRINT_WINDOW, length)];
+			raf.readFully(window);
+			crc.update(window);
+			crc.update(ByteBuffer.allocate(8).putLong(length).array());
+			return crc.getValue();
+		}
+	}
+
+}
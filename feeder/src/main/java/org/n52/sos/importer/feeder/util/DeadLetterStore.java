@@ -0,0 +1,540 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.n52.sos.importer.feeder.model.FeatureOfInterest;
+import org.n52.sos.importer.feeder.model.ObservedProperty;
+import org.n52.sos.importer.feeder.model.Offering;
+import org.n52.sos.importer.feeder.model.Position;
+import org.n52.sos.importer.feeder.model.Sensor;
+import org.n52.sos.importer.feeder.model.Timestamp;
+import org.n52.sos.importer.feeder.model.UnitOfMeasurement;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file of observations which could not be inserted, e.g. because
+ * the SOS was not available. Each {@link #append(List) appended} list is
+ * stored in records holding all information required to re-build the insert
+ * observation and register sensor requests. The sensor, feature of interest,
+ * observed property, unit, offering and type shared by several observations,
+ * e.g. of one time series, are stored once per record.<br />
+ * Each record is prefixed by its length and checksum. A record not completely
+ * written, e.g. because the process was killed, is removed before appending
+ * and ignored when reading. A file with a corrupted record followed by other
+ * bytes is moved to a quarantine file instead of being deleted or continued,
+ * hence the records behind it could be restored manually.<br />
+ * The stored observations are read via {@link #drain()}, which moves the
+ * records out of the way, hence observations failing again could be appended
+ * during the replay.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class DeadLetterStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DeadLetterStore.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// maximum number of observations per record
+	private static final int RECORD_SIZE = 1000;
+
+	// maximum number of bytes per record, larger records are split
+	static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+	private static final byte TYPE_STRING = 'S';
+
+	private static final byte TYPE_DOUBLE = 'D';
+
+	private static final byte TYPE_INTEGER = 'I';
+
+	private static final byte TYPE_BOOLEAN = 'B';
+
+	private static final byte TYPE_NULL = 'N';
+
+	// absolute path -> length of the file known to end with a complete record
+	private static final Map<String, Long> checkedLengths = new HashMap<>();
+
+	private final File file;
+
+	public DeadLetterStore(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return <code>true</code>, if observations are stored, incl. ones of
+	 * 			a replay not finished.
+	 */
+	public boolean exists() {
+		return file.exists() || getDrainedFile().exists();
+	}
+
+	/**
+	 * Appends the given observations to the store and forces them to disk.
+	 *
+	 * @throws IOException if the observations could not be stored
+	 */
+	public void append(final List<? extends InsertObservation> observations) throws IOException {
+		if (observations.isEmpty()) {
+			return;
+		}
+		final ByteArrayOutputStream records = new ByteArrayOutputStream();
+		final DataOutputStream recordsOut = new DataOutputStream(records);
+		for (int i = 0; i < observations.size(); i += RECORD_SIZE) {
+			writeRecords(recordsOut, observations.subList(i, Math.min(i + RECORD_SIZE, observations.size())));
+		}
+		// feeders of several files might use the same store
+		synchronized (DeadLetterStore.class) {
+			final Long checkedLength = checkedLengths.get(file.getAbsolutePath());
+			if (file.exists() && (checkedLength == null || checkedLength != file.length())) {
+				repair();
+			}
+			try (final FileOutputStream out = new FileOutputStream(file, true)) {
+				records.writeTo(out);
+				out.getFD().sync();
+			}
+			checkedLengths.put(file.getAbsolutePath(), file.length());
+		}
+		LOG.info("Stored {} failed observations in '{}'.", observations.size(), file.getAbsolutePath());
+	}
+
+	private static void writeRecords(final DataOutputStream out, final List<? extends InsertObservation> observations)
+			throws IOException {
+		final byte[] record = encode(observations);
+		if (record.length > MAX_RECORD_LENGTH) {
+			if (observations.size() == 1) {
+				throw new IOException(String.format("Observation of sensor '%s' is too large to be stored: %d bytes.",
+						observations.get(0).getSensorURI(),
+						record.length));
+			}
+			final int half = observations.size() / 2;
+			writeRecords(out, observations.subList(0, half));
+			writeRecords(out, observations.subList(half, observations.size()));
+			return;
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(record);
+		out.writeInt(record.length);
+		out.writeInt((int) crc.getValue());
+		out.write(record);
+	}
+
+	/*
+	 * Removes an incomplete record at the end of the file, e.g. left by a
+	 * process killed while appending, hence records appended afterwards are
+	 * readable. A file with a corrupted record is moved to quarantine.
+	 */
+	private void repair() throws IOException {
+		long position = 0;
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				position += 8 + readRecord(in).length;
+			}
+		} catch (final EOFException e) {
+			if (position < file.length()) {
+				LOG.warn("Removing incomplete record at the end of '{}'.", file.getAbsolutePath());
+				try (final FileOutputStream out = new FileOutputStream(file, true)) {
+					out.getChannel().truncate(position);
+				}
+			}
+		} catch (final InvalidRecordException e) {
+			LOG.error("Corrupted record at byte offset {} of '{}': {}", position, file.getAbsolutePath(), e.getMessage());
+			quarantine(file);
+		}
+	}
+
+	/*
+	 * Reads the next record. Throws an EOFException at the end of the file,
+	 * also if the record is incomplete.
+	 */
+	private static byte[] readRecord(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		final int checksum = in.readInt();
+		if (length <= 0 || length > MAX_RECORD_LENGTH) {
+			throw new InvalidRecordException(String.format("Invalid record length %d.", length));
+		}
+		final byte[] record = new byte[length];
+		in.readFully(record);
+		final CRC32 crc = new CRC32();
+		crc.update(record);
+		if ((int) crc.getValue() != checksum) {
+			throw new InvalidRecordException("Checksum does not match.");
+		}
+		return record;
+	}
+
+	/*
+	 * Moves the file out of the way instead of deleting the records behind
+	 * a corrupted one.
+	 */
+	private static void quarantine(final File file) throws IOException {
+		final File quarantined = new File(file.getAbsolutePath() + ".corrupt-" + System.currentTimeMillis());
+		Files.move(file.toPath(), quarantined.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		LOG.error("Moved '{}' to '{}'. Restore the observations stored behind the corrupted record manually.",
+				file.getAbsolutePath(),
+				quarantined.getAbsolutePath());
+	}
+
+	/**
+	 * Moves the stored observations out of the way and returns a
+	 * {@link Drain} reading them. Observations appended in the meantime are
+	 * stored for the next drain. If a previous drain was not
+	 * {@link Drain#finish() finished}, its observations are returned again.
+	 *
+	 * @return the drain or <code>null</code>, if no observations are stored
+	 * @throws IOException if the file could not be moved or opened
+	 */
+	public Drain drain() throws IOException {
+		final File drained = getDrainedFile();
+		synchronized (DeadLetterStore.class) {
+			if (!drained.exists()) {
+				if (!file.exists()) {
+					return null;
+				}
+				Files.move(file.toPath(), drained.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} else {
+				LOG.info("Continuing replay of '{}'.", drained.getAbsolutePath());
+			}
+		}
+		return new Drain(drained);
+	}
+
+	private File getDrainedFile() {
+		return new File(file.getAbsolutePath() + ".replay");
+	}
+
+	/**
+	 * Reads the records of a drained store one by one.
+	 */
+	public static final class Drain implements Closeable {
+
+		private final File file;
+
+		private final DataInputStream in;
+
+		// bytes of the records read
+		private long position;
+
+		private boolean isTruncated;
+
+		// a corrupted record was read, the bytes behind it are unknown
+		private boolean isCorrupt;
+
+		private Drain(final File file) throws IOException {
+			this.file = file;
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		}
+
+		/**
+		 * @return the observations of the next record or <code>null</code>,
+		 * 			if all records are read
+		 * @throws IOException if the file could not be read
+		 */
+		public List<InsertObservation> next() throws IOException {
+			if (isCorrupt) {
+				return null;
+			}
+			final byte[] record;
+			try {
+				record = readRecord(in);
+			} catch (final EOFException e) {
+				isTruncated = position < file.length();
+				if (isTruncated) {
+					LOG.warn("Skipping incomplete record at the end of '{}'.", file.getAbsolutePath());
+				}
+				LOG.debug("End of '{}' reached.", file.getAbsolutePath());
+				return null;
+			} catch (final InvalidRecordException e) {
+				LOG.error("Corrupted record at byte offset {} of '{}': {}", position, file.getAbsolutePath(), e.getMessage());
+				isCorrupt = true;
+				return null;
+			}
+			position += 8 + record.length;
+			return decode(record);
+		}
+
+		/**
+		 * Deletes the drained records. Should be called after all records
+		 * are replayed or stored again. If a corrupted record was read, the
+		 * file is moved to quarantine instead.
+		 *
+		 * @throws IOException if records were appended to the drained file
+		 * 			after reading it, e.g. by another process. The file is
+		 * 			kept and read again by the next drain.
+		 */
+		public void finish() throws IOException {
+			close();
+			if (isCorrupt) {
+				quarantine(file);
+				return;
+			}
+			if (!isTruncated && file.length() > position) {
+				throw new IOException(String.format("Records were appended to '%s' during the replay. Replay again.",
+						file.getAbsolutePath()));
+			}
+			Files.delete(file.toPath());
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+	private static final class InvalidRecordException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private InvalidRecordException(final String message) {
+			super(message);
+		}
+
+	}
+
+	static byte[] encode(final List<? extends InsertObservation> observations) throws IOException {
+		final List<InsertObservation> contexts = new ArrayList<>();
+		final Map<List<Object>, Integer> contextIndices = new HashMap<>();
+		final int[] observationContexts = new int[observations.size()];
+		for (int i = 0; i < observations.size(); i++) {
+			final InsertObservation io = observations.get(i);
+			final List<Object> key = getContextKey(io);
+			Integer index = contextIndices.get(key);
+			if (index == null) {
+				index = contexts.size();
+				contexts.add(io);
+				contextIndices.put(key, index);
+			}
+			observationContexts[i] = index;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(contexts.size());
+		for (final InsertObservation context : contexts) {
+			writeContext(out, context);
+		}
+		out.writeInt(observations.size());
+		for (int i = 0; i < observations.size(); i++) {
+			out.writeInt(observationContexts[i]);
+			writeTimestamp(out, observations.get(i).getTimeStamp());
+			writeValue(out, observations.get(i).getResultValue());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static List<InsertObservation> decode(final byte[] record) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		final InsertObservation[] contexts = new InsertObservation[in.readInt()];
+		for (int i = 0; i < contexts.length; i++) {
+			contexts[i] = readContext(in);
+		}
+		final int size = in.readInt();
+		final List<InsertObservation> observations = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final InsertObservation context = contexts[in.readInt()];
+			final Timestamp timestamp = readTimestamp(in);
+			observations.add(context.withResult(readValue(in), timestamp));
+		}
+		return observations;
+	}
+
+	private static List<Object> getContextKey(final InsertObservation io) {
+		final Position position = io.getFeatureOfInterest().getPosition();
+		return Arrays.<Object>asList(io.getSensorName(),
+				io.getSensorURI(),
+				io.getFeatureOfInterestName(),
+				io.getFeatureOfInterestURI(),
+				position != null? position.toString() : null,
+				io.getObservedProperty().getName(),
+				io.getObservedPropertyURI(),
+				io.getUnitOfMeasurementCode(),
+				io.getUnitOfMeasurment().getUri(),
+				io.getOffering().getName(),
+				io.getOffering().getUri(),
+				io.getMeasuredValueType());
+	}
+
+	private static void writeContext(final DataOutput out, final InsertObservation io) throws IOException {
+		writeString(out, io.getSensorName());
+		writeString(out, io.getSensorURI());
+		writeString(out, io.getFeatureOfInterestName());
+		writeString(out, io.getFeatureOfInterestURI());
+		final Position position = io.getFeatureOfInterest().getPosition();
+		out.writeBoolean(position != null);
+		if (position != null) {
+			out.writeDouble(position.getLongitude());
+			out.writeDouble(position.getLatitude());
+			out.writeDouble(position.getAltitude());
+			writeString(out, position.getLongitudeUnit());
+			writeString(out, position.getLatitudeUnit());
+			writeString(out, position.getAltitudeUnit());
+			out.writeInt(position.getEpsgCode());
+		}
+		writeString(out, io.getObservedProperty().getName());
+		writeString(out, io.getObservedPropertyURI());
+		writeString(out, io.getUnitOfMeasurementCode());
+		writeString(out, io.getUnitOfMeasurment().getUri());
+		writeString(out, io.getOffering().getName());
+		writeString(out, io.getOffering().getUri());
+		writeString(out, io.getMeasuredValueType());
+	}
+
+	private static InsertObservation readContext(final DataInput in) throws IOException {
+		final Sensor sensor = new Sensor(readString(in), readString(in));
+		final String foiName = readString(in);
+		final String foiUri = readString(in);
+		Position position = null;
+		if (in.readBoolean()) {
+			final double[] values = new double[3];
+			values[Position.LONG] = in.readDouble();
+			values[Position.LAT] = in.readDouble();
+			values[Position.ALT] = in.readDouble();
+			final String[] units = new String[3];
+			units[Position.LONG] = readString(in);
+			units[Position.LAT] = readString(in);
+			units[Position.ALT] = readString(in);
+			position = new Position(values, units, in.readInt());
+		}
+		final FeatureOfInterest foi = new FeatureOfInterest(foiName, foiUri, position);
+		final ObservedProperty observedProperty = new ObservedProperty(readString(in), readString(in));
+		final UnitOfMeasurement uom = new UnitOfMeasurement(readString(in), readString(in));
+		final Offering offering = new Offering(readString(in), readString(in));
+		return new InsertObservation(sensor, foi, null, null, uom, observedProperty, offering, readString(in));
+	}
+
+	private static void writeTimestamp(final DataOutput out, final Timestamp timestamp) throws IOException {
+		out.writeBoolean(timestamp != null);
+		if (timestamp != null) {
+			out.writeShort(timestamp.getYear());
+			out.writeByte(timestamp.getMonth());
+			out.writeByte(timestamp.getDay());
+			out.writeByte(timestamp.getHour());
+			out.writeByte(timestamp.getMinute());
+			out.writeByte(timestamp.getSeconds());
+			out.writeByte(timestamp.getTimezone());
+		}
+	}
+
+	private static Timestamp readTimestamp(final DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		final Timestamp timestamp = new Timestamp();
+		timestamp.setYear(in.readShort());
+		timestamp.setMonth(in.readByte());
+		timestamp.setDay(in.readByte());
+		timestamp.setHour(in.readByte());
+		timestamp.setMinute(in.readByte());
+		timestamp.setSeconds(in.readByte());
+		timestamp.setTimezone(in.readByte());
+		return timestamp;
+	}
+
+	private static void writeValue(final DataOutput out, final Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else {
+			out.writeByte(TYPE_STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	private static Object readValue(final DataInput in) throws IOException {
+		final byte type = in.readByte();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_DOUBLE:
+			return in.readDouble();
+		case TYPE_INTEGER:
+			return in.readInt();
+		case TYPE_BOOLEAN:
+			return in.readBoolean();
+		case TYPE_STRING:
+			return readString(in);
+		default:
+			throw new IOException(String.format("Unknown value type '%c'.", (char) type));
+		}
+	}
+
+	private static void writeString(final DataOutput out, final String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+}
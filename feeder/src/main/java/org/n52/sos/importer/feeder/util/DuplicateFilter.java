@@ -0,0 +1,468 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the observations already inserted into one SOS instance, hence
+ * duplicates could be dropped before sending them again, e.g. when a data
+ * file is fed again after resetting its counter file. An observation is
+ * identified by its procedure, observed property, feature of interest and
+ * phenomenon time.<br />
+ * The index consists of a bloom filter and, if exact, a table of 64 bit
+ * fingerprints of the observations. Both are allocated once for the maximum
+ * size. If the filter is full, further observations are not added, hence
+ * they are not filtered.
+ * <ul>
+ * <li><b>exact</b>: an observation is contained, if it is listed in the
+ * 		table. The bloom filter only speeds up the check of new observations.
+ * 		Between 12 and 24 bytes per observation are required.</li>
+ * <li><b>probabilistic</b>: an observation is contained, if the bloom filter
+ * 		reports it. Hence, new observations are dropped with the given false
+ * 		positive rate. About 1.2 bytes per observation are required for a
+ * 		false positive rate of 1%.</li>
+ * </ul>
+ * If created with a file, the filter could be {@link #load() loaded} from and
+ * {@link #save() saved} to this file. Saving merges the observations stored by
+ * other filters of the same SOS in the meantime.<br />
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class DuplicateFilter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DuplicateFilter.class);
+
+	/**
+	 * The maximum size supported, which requires about 2 GiB of memory, if
+	 * exact.
+	 */
+	public static final int MAX_SIZE = 100000000;
+
+	private static final int MAGIC = 0x44555046;
+
+	private static final int VERSION = 1;
+
+	// empty slot of the fingerprint table
+	private static final long EMPTY = 0;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final File file;
+
+	private final int maxSize;
+
+	private final double falsePositiveRate;
+
+	private final boolean isExact;
+
+	private final long[] bits;
+
+	private final long numBits;
+
+	private final int numHashes;
+
+	// fingerprints using open addressing, null if not exact
+	private final long[] fingerprints;
+
+	private int size;
+
+	private boolean modified = false;
+
+	// the file is overwritten instead of merged on next save
+	private boolean cleared = false;
+
+	/**
+	 * Creates a filter that is kept in memory only.
+	 *
+	 * @see #DuplicateFilter(File, int, double, boolean)
+	 */
+	public DuplicateFilter(final int maxSize, final double falsePositiveRate, final boolean isExact) {
+		this(null, maxSize, falsePositiveRate, isExact);
+	}
+
+	/**
+	 * @param file the file used to persist the filter
+	 * @param maxSize the maximum number of observations, at most
+	 * 			{@link #MAX_SIZE}
+	 * @param falsePositiveRate the probability of the bloom filter to report
+	 * 			a new observation as contained, if full
+	 * @param isExact <code>true</code>, if only observations listed in the
+	 * 			table of fingerprints are contained
+	 */
+	public DuplicateFilter(final File file, final int maxSize, final double falsePositiveRate, final boolean isExact) {
+		if (maxSize < 1 || maxSize > MAX_SIZE) {
+			throw new IllegalArgumentException(String.format("Maximum size must be between 1 and %d: %d",
+					MAX_SIZE,
+					maxSize));
+		}
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException(String.format("False positive rate must be between 0 and 1: %s",
+					falsePositiveRate));
+		}
+		this.file = file;
+		this.maxSize = maxSize;
+		this.falsePositiveRate = falsePositiveRate;
+		this.isExact = isExact;
+		final double ln2 = Math.log(2);
+		final long optimalBits = (long) Math.ceil(-maxSize * Math.log(falsePositiveRate) / (ln2 * ln2));
+		if ((optimalBits + 63) / 64 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("False positive rate too small for %d observations: %s",
+					maxSize,
+					falsePositiveRate));
+		}
+		bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+		numBits = bits.length * 64L;
+		numHashes = (int) Math.max(1, Math.round((double) numBits / maxSize * ln2));
+		// load factor <= 0.75
+		fingerprints = isExact? new long[Integer.highestOneBit(maxSize + maxSize / 3) * 2] : null;
+	}
+
+	/**
+	 * @return <code>true</code>, if the observation was added before. The
+	 * 			result of a probabilistic filter might be false positive.
+	 */
+	public boolean contains(final InsertObservation io) {
+		final long h1 = hash(io, FNV_OFFSET);
+		final long h2 = hash(io, GOLDEN_GAMMA);
+		synchronized (this) {
+			if (!containsHash(h1, h2)) {
+				return false;
+			}
+			return !isExact || indexOf(fingerprint(h1)) >= 0;
+		}
+	}
+
+	/**
+	 * Replaces the observations added before by <code>null</code>. The other
+	 * observations keep their index, e.g. the id of their time series in a
+	 * {@link org.n52.sos.importer.feeder.model.TimeSeriesRepository}.
+	 *
+	 * @return the number of observations replaced
+	 */
+	public int removeContained(final InsertObservation[] ios) {
+		int removed = 0;
+		for (int i = 0; i < ios.length; i++) {
+			if (ios[i] != null && contains(ios[i])) {
+				ios[i] = null;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Adds the observation, e.g. after inserting it successfully. Does
+	 * nothing if the filter is full.
+	 */
+	public void add(final InsertObservation io) {
+		final long h1 = hash(io, FNV_OFFSET);
+		final long h2 = hash(io, GOLDEN_GAMMA);
+		synchronized (this) {
+			final boolean isNew;
+			if (isExact) {
+				isNew = addFingerprint(fingerprint(h1));
+			} else if (size < maxSize && !containsHash(h1, h2)) {
+				size++;
+				isNew = true;
+			} else {
+				isNew = false;
+			}
+			if (isNew) {
+				addHash(h1, h2);
+				modified = true;
+				if (size == maxSize) {
+					LOG.warn("Duplicate filter{} is full with {} observations. Further observations are not filtered.",
+							file != null? " '" + file.getAbsolutePath() + "'" : "",
+							maxSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all observations, e.g. after the database of the SOS was reset.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(bits, 0);
+		if (isExact) {
+			Arrays.fill(fingerprints, EMPTY);
+		}
+		size = 0;
+		modified = true;
+		cleared = true;
+	}
+
+	/**
+	 * @return the number of observations added, which is estimated for
+	 * 			probabilistic filters loaded from a file
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * Loads the observations stored in the file. Does nothing if the filter is
+	 * not persistent or the file does not exist. The file is ignored, if it
+	 * was created using other parameters.
+	 */
+	public void load() {
+		if (file == null) {
+			return;
+		}
+		synchronized (DuplicateFilter.class) {
+			synchronized (this) {
+				if (merge()) {
+					LOG.debug("Loaded {} observations from duplicate filter '{}'.", size, file.getAbsolutePath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all observations to the file, if the filter was modified since
+	 * the last {@link #load()} or {@link #save()}. The observations stored in
+	 * the file in the meantime are merged before.
+	 */
+	public void save() {
+		if (file == null) {
+			return;
+		}
+		// several feeding threads might save the filter of the same SOS
+		synchronized (DuplicateFilter.class) {
+			synchronized (this) {
+				if (!modified) {
+					return;
+				}
+				if (!cleared) {
+					merge();
+				}
+				File tmpFile = null;
+				try {
+					tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+					try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+						write(out);
+					}
+					Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					modified = false;
+					cleared = false;
+					LOG.debug("Saved {} observations to duplicate filter '{}'.", size, file.getAbsolutePath());
+				} catch (final IOException e) {
+					if (tmpFile != null) {
+						tmpFile.delete();
+					}
+					LOG.error("Could not write duplicate filter '{}': {}", file.getAbsolutePath(), e.getMessage());
+					LOG.debug("Exception thrown: {}", e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Adds the observations of the file to this filter.
+	 * Returns false, if the file does not exist or does not match.
+	 */
+	private boolean merge() {
+		if (!file.exists()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOG.warn("Ignoring duplicate filter '{}': unknown format.", file.getAbsolutePath());
+				return false;
+			}
+			if (in.readInt() != maxSize || in.readDouble() != falsePositiveRate || in.readBoolean() != isExact) {
+				LOG.info("Ignoring duplicate filter '{}': created with other parameters.", file.getAbsolutePath());
+				return false;
+			}
+			final int storedSize = in.readInt();
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] |= in.readLong();
+			}
+			if (isExact) {
+				for (int i = 0; i < storedSize; i++) {
+					addFingerprint(in.readLong());
+				}
+			} else {
+				size = Math.min(maxSize, Math.max(Math.max(size, storedSize), estimateSize()));
+			}
+			return true;
+		} catch (final IOException e) {
+			LOG.error("Could not read duplicate filter '{}': {}", file.getAbsolutePath(), e.getMessage());
+			LOG.debug("Exception thrown: {}", e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private void write(final DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(maxSize);
+		out.writeDouble(falsePositiveRate);
+		out.writeBoolean(isExact);
+		out.writeInt(size);
+		for (final long word : bits) {
+			out.writeLong(word);
+		}
+		if (isExact) {
+			for (final long fingerprint : fingerprints) {
+				if (fingerprint != EMPTY) {
+					out.writeLong(fingerprint);
+				}
+			}
+		}
+	}
+
+	/*
+	 * The number of observations estimated from the bits set, which is used
+	 * after merging probabilistic filters.
+	 */
+	private int estimateSize() {
+		long set = 0;
+		for (final long word : bits) {
+			set += Long.bitCount(word);
+		}
+		if (set >= numBits) {
+			return maxSize;
+		}
+		return (int) Math.min(maxSize, Math.round(-(double) numBits / numHashes * Math.log(1 - (double) set / numBits)));
+	}
+
+	private boolean containsHash(final long h1, final long h2) {
+		for (int i = 0; i < numHashes; i++) {
+			final long bit = getBit(h1, h2, i);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addHash(final long h1, final long h2) {
+		for (int i = 0; i < numHashes; i++) {
+			final long bit = getBit(h1, h2, i);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	// double hashing as proposed by Kirsch and Mitzenmacher
+	private long getBit(final long h1, final long h2, final int i) {
+		return ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+	}
+
+	/*
+	 * Returns false, if the fingerprint is already contained or the table
+	 * is full.
+	 */
+	private boolean addFingerprint(final long fingerprint) {
+		if (size >= maxSize) {
+			return false;
+		}
+		final int mask = fingerprints.length - 1;
+		int slot = (int) fingerprint & mask;
+		while (fingerprints[slot] != EMPTY) {
+			if (fingerprints[slot] == fingerprint) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		fingerprints[slot] = fingerprint;
+		size++;
+		return true;
+	}
+
+	private int indexOf(final long fingerprint) {
+		final int mask = fingerprints.length - 1;
+		int slot = (int) fingerprint & mask;
+		while (fingerprints[slot] != EMPTY) {
+			if (fingerprints[slot] == fingerprint) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static long fingerprint(final long hash) {
+		return hash == EMPTY? 1 : hash;
+	}
+
+	private static long hash(final InsertObservation io, final long seed) {
+		long hash = seed;
+		hash = hash(hash, io.getSensorURI());
+		hash = hash(hash, io.getObservedPropertyURI());
+		hash = hash(hash, io.getFeatureOfInterestURI());
+		hash = hash(hash, io.getTimeStamp() != null? io.getTimeStamp().toString() : null);
+		return mix(hash);
+	}
+
+	// FNV-1a of the characters followed by a separator
+	private static long hash(long hash, final String value) {
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+			}
+		}
+		return (hash ^ 0xffff) * FNV_PRIME;
+	}
+
+	// finalizer of MurmurHash3
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb3fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests, e.g. when replaying failed observations, to
+ * not overload the SOS. Permits are handed out at fixed intervals. A caller
+ * acquiring several permits delays the following callers accordingly.<br />
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class RateLimiter {
+
+	private final long intervalNanos;
+
+	private long nextPermitNanos = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond the maximum number of permits per second
+	 */
+	public RateLimiter(final int permitsPerSecond) {
+		if (permitsPerSecond < 1) {
+			throw new IllegalArgumentException(String.format("Permits per second must be >= 1 but is '%d'.", permitsPerSecond));
+		}
+		intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+	}
+
+	/**
+	 * Blocks until the given number of permits is available.
+	 *
+	 * @throws InterruptedIOException if the calling thread was interrupted
+	 */
+	public void acquire(final int permits) throws InterruptedIOException {
+		final long waitNanos;
+		synchronized (this) {
+			final long now = System.nanoTime();
+			if (nextPermitNanos - now < 0) {
+				nextPermitNanos = now;
+			}
+			waitNanos = nextPermitNanos - now;
+			nextPermitNanos += permits * intervalNanos;
+		}
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for rate limit.");
+			}
+		}
+	}
+
+}
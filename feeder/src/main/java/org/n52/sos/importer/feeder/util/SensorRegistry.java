@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the sensors (procedures) known to be registered at one SOS
+ * instance incl. their offerings, if known.<br />
+ * If created with a file, the registry could be {@link #load() loaded} from
+ * and {@link #save() saved} to this file. Each entry stores the time it was
+ * confirmed the last time, e.g. by the capabilities or a successful
+ * registration. Entries older than the maximum age are ignored when loading.
+ * <br />
+ * This class is thread-safe.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public class SensorRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SensorRegistry.class);
+
+	private static final String SEPARATOR = " ";
+
+	private final ConcurrentMap<String, Entry> sensors = new ConcurrentHashMap<String, Entry>();
+
+	private final File file;
+
+	private final long maxAge;
+
+	private final long created = System.currentTimeMillis();
+
+	private volatile boolean modified = false;
+
+	/**
+	 * Creates a registry that is kept in memory only.
+	 */
+	public SensorRegistry() {
+		this(null, 0);
+	}
+
+	/**
+	 * @param file the file used to persist the registry
+	 * @param maxAge the maximum age of an entry in milliseconds
+	 */
+	public SensorRegistry(final File file, final long maxAge) {
+		this.file = file;
+		this.maxAge = maxAge;
+	}
+
+	public boolean contains(final String sensorURI) {
+		return sensorURI != null && sensors.containsKey(sensorURI);
+	}
+
+	/**
+	 * Adds the sensor or confirms an existing entry keeping its offering.
+	 */
+	public void add(final String sensorURI) {
+		final Entry existing = sensors.get(sensorURI);
+		add(sensorURI, existing != null? existing.offering : null);
+	}
+
+	public void add(final String sensorURI, final String offeringURI) {
+		sensors.put(sensorURI, new Entry(System.currentTimeMillis(), offeringURI));
+		modified = true;
+	}
+
+	/**
+	 * @return the offering of the sensor or <code>null</code>, if unknown
+	 */
+	public String getOffering(final String sensorURI) {
+		final Entry entry = sensors.get(sensorURI);
+		return entry != null? entry.offering : null;
+	}
+
+	/**
+	 * Removes the sensor if it was loaded from the file and not confirmed
+	 * since the creation of this registry, e.g. if an insert observation
+	 * request for it failed. Hence, the sensor is checked again.
+	 *
+	 * @return <code>true</code>, if the sensor was removed
+	 */
+	public boolean removeIfNotConfirmed(final String sensorURI) {
+		final Entry entry = sensors.get(sensorURI);
+		if (entry != null && entry.confirmed < created && sensors.remove(sensorURI, entry)) {
+			modified = true;
+			return true;
+		}
+		return false;
+	}
+
+	public int size() {
+		return sensors.size();
+	}
+
+	/**
+	 * Loads all entries from the file that are not older than the maximum age.
+	 * Does nothing if the registry is not persistent or the file does not
+	 * exist.
+	 */
+	public void load() {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		final Properties props = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			props.load(in);
+		} catch (final IOException e) {
+			LOG.error("Could not read sensor registry '{}': {}", file.getAbsolutePath(), e.getMessage());
+			LOG.debug("Exception thrown: {}", e.getMessage(), e);
+			return;
+		}
+		final long oldestAllowed = System.currentTimeMillis() - maxAge;
+		int stale = 0;
+		for (final String sensorURI : props.stringPropertyNames()) {
+			final Entry entry = Entry.parse(props.getProperty(sensorURI));
+			if (entry == null || entry.confirmed < oldestAllowed) {
+				stale++;
+			} else if (!sensors.containsKey(sensorURI)) {
+				sensors.put(sensorURI, entry);
+			}
+		}
+		if (stale > 0) {
+			modified = true;
+		}
+		LOG.debug("Loaded {} sensors from registry '{}'. Ignored {} outdated entries.",
+				props.size() - stale, file.getAbsolutePath(), stale);
+	}
+
+	/**
+	 * Writes all entries to the file if the registry was modified since the
+	 * last {@link #load()} or {@link #save()}. Synchronized, hence an older
+	 * state saved by another thread does not replace a newer one.
+	 */
+	public synchronized void save() {
+		if (file == null || !modified) {
+			return;
+		}
+		modified = false;
+		final Properties props = new Properties();
+		for (final Map.Entry<String, Entry> sensor : sensors.entrySet()) {
+			props.setProperty(sensor.getKey(), sensor.getValue().toString());
+		}
+		File tmpFile = null;
+		try {
+			// several feeding threads might save the registry of the same SOS
+			tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			try (OutputStream out = new FileOutputStream(tmpFile)) {
+				props.store(out, "sensors registered at SOS");
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.debug("Saved {} sensors to registry '{}'.", props.size(), file.getAbsolutePath());
+		} catch (final IOException e) {
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+			modified = true;
+			LOG.error("Could not write sensor registry '{}': {}", file.getAbsolutePath(), e.getMessage());
+			LOG.debug("Exception thrown: {}", e.getMessage(), e);
+		}
+	}
+
+	private static final class Entry {
+
+		private final long confirmed;
+
+		private final String offering;
+
+		private Entry(final long confirmed, final String offering) {
+			this.confirmed = confirmed;
+			this.offering = offering;
+		}
+
+		private static Entry parse(final String value) {
+			final int separator = value.indexOf(SEPARATOR);
+			try {
+				if (separator < 0) {
+					return new Entry(Long.parseLong(value), null);
+				}
+				return new Entry(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+			} catch (final NumberFormatException e) {
+				LOG.debug("Ignoring invalid sensor registry entry '{}'.", value);
+				return null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return offering == null? Long.toString(confirmed) : confirmed + SEPARATOR + offering;
+		}
+
+	}
+
+}
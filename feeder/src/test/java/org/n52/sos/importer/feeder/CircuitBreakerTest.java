@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void shouldOpenAfterThresholdConsecutiveFailures() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+		breaker.onFailure();
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+		breaker.onFailure();
+
+		assertThat(breaker.isOpen(), is(false));
+		breaker.onFailure();
+		assertThat(breaker.isOpen(), is(true));
+	}
+
+	@Test
+	public void shouldNeverOpenIfDisabled() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker("test", 0, 60000);
+		for (int i = 0; i < 100; i++) {
+			breaker.onFailure();
+		}
+
+		assertThat(breaker.isOpen(), is(false));
+		breaker.acquire();
+	}
+
+	@Test
+	public void shouldBlockUntilPauseElapsed() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker("test", 1, 200);
+		breaker.onFailure();
+
+		final long start = System.nanoTime();
+		breaker.acquire();
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150, is(true));
+	}
+
+	@Test
+	public void shouldAllowOneTrialRequestAndCloseOnSuccess() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker("test", 1, 50);
+		breaker.onFailure();
+		breaker.acquire();
+
+		final CountDownLatch acquired = new CountDownLatch(1);
+		final Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					breaker.acquire();
+					acquired.countDown();
+				} catch (final Exception e) {
+					// ends the thread
+				}
+			}
+		});
+		other.start();
+
+		assertThat(acquired.await(200, TimeUnit.MILLISECONDS), is(false));
+		breaker.onSuccess();
+		assertThat(acquired.await(1, TimeUnit.SECONDS), is(true));
+		assertThat(breaker.isOpen(), is(false));
+	}
+
+	@Test
+	public void shouldReopenIfTrialRequestFails() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker("test", 1, 50);
+		breaker.onFailure();
+		breaker.acquire();
+		breaker.onFailure();
+
+		assertThat(breaker.isOpen(), is(true));
+		final long start = System.nanoTime();
+		breaker.acquire();
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 30, is(true));
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.text.ParseException;
+
+import org.apache.xmlbeans.XmlException;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.model.FeatureOfInterest;
+import org.n52.sos.importer.feeder.model.Sensor;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument;
+
+public class DataFileTest {
+
+	private static final String CONFIGURATION =
+			"<SosImportConfiguration xmlns=\"http://52north.org/sensorweb/sos/importer/0.4/\">" +
+			"<DataFile><LocalFile><Path>data.csv</Path></LocalFile></DataFile>" +
+			"<SosMetadata><URL>http://localhost:8080/sos</URL><Offering generate=\"true\"/></SosMetadata>" +
+			"<CsvMetadata>" +
+				"<ColumnAssignments>" +
+					"<Column><Number>0</Number><Type>DATE_TIME</Type>" +
+						"<Metadata><Key>GROUP</Key><Value>1</Value></Metadata>" +
+						"<Metadata><Key>PARSE_PATTERN</Key><Value>yyyy-MM-dd HH:mm:ss</Value></Metadata>" +
+					"</Column>" +
+					"<Column><Number>1</Number><Type>SENSOR</Type></Column>" +
+					"<Column><Number>2</Number><Type>MEASURED_VALUE</Type>" +
+						"<Metadata><Key>TYPE</Key><Value>NUMERIC</Value></Metadata>" +
+						"<RelatedFOI><IdRef>foi-1</IdRef></RelatedFOI>" +
+						"<RelatedObservedProperty><IdRef>op-1</IdRef></RelatedObservedProperty>" +
+						"<RelatedUnitOfMeasurement><IdRef>uom-1</IdRef></RelatedUnitOfMeasurement>" +
+					"</Column>" +
+				"</ColumnAssignments>" +
+				"<DecimalSeparator>.</DecimalSeparator>" +
+				"<FirstLineWithData>0</FirstLineWithData>" +
+				"<Parameter><ColumnSeparator>;</ColumnSeparator></Parameter>" +
+				"<UseHeader>false</UseHeader>" +
+			"</CsvMetadata>" +
+			"<AdditionalMetadata>" +
+				"<ObservedProperty><ManualResource><ID>op-1</ID><URI>op-uri</URI><Name>op-name</Name></ManualResource></ObservedProperty>" +
+				"<FeatureOfInterest><SpatialResource><ID>foi-1</ID><URI>foi-uri</URI><Name>foi name</Name>" +
+					"<Position><Alt unit=\"m\">42.0</Alt><EPSGCode>4326</EPSGCode><Lat unit=\"deg\">52.0</Lat><Long unit=\"deg\">7.5</Long></Position>" +
+				"</SpatialResource></FeatureOfInterest>" +
+				"<UnitOfMeasurement><ManualResource><ID>uom-1</ID><URI>uom-uri</URI><Name>uom-code</Name></ManualResource></UnitOfMeasurement>" +
+			"</AdditionalMetadata>" +
+			"</SosImportConfiguration>";
+
+	private final String[] values = { "2015-03-17 13:37:00", "sensor-1", "52.42" };
+
+	private DataFile dataFile;
+
+	@Before
+	public void createDataFile() throws XmlException {
+		final Configuration configuration = new Configuration(
+				SosImportConfigurationDocument.Factory.parse(CONFIGURATION).getSosImportConfiguration());
+		dataFile = new DataFile(configuration, new File("data.csv"));
+	}
+
+	@Test
+	public void shouldReturnMeasuredValueColumnIds() {
+		assertThat(dataFile.getMeasuredValueColumnIds().length, is(1));
+		assertThat(dataFile.getMeasuredValueColumnIds()[0], is(2));
+	}
+
+	@Test
+	public void shouldResolveSensorFromColumn() {
+		final Sensor sensor = dataFile.getSensorForColumn(2, values);
+		assertThat(sensor.getName(), is("sensor-1"));
+		assertThat(sensor.getUri(), is("sensor-1"));
+	}
+
+	@Test
+	public void shouldResolveManualFeatureOfInterestWithPosition() throws ParseException {
+		final FeatureOfInterest foi = dataFile.getFoiForColumn(2, values);
+		assertThat(foi.getName(), is("foi_name"));
+		assertThat(foi.getUri(), is("foi-uri"));
+		assertThat(foi.getPosition().getEpsgCode(), is(4326));
+		assertThat(foi.getPosition().getLatitude(), is(closeTo(52.0, 0.0001)));
+		assertThat(foi.getPosition().getLongitude(), is(closeTo(7.5, 0.0001)));
+	}
+
+	@Test
+	public void shouldResolveManualUnitOfMeasurementAndObservedProperty() {
+		assertThat(dataFile.getUnitOfMeasurement(2, values).getCode(), is("uom-code"));
+		assertThat(dataFile.getObservedProperty(2, values).getUri(), is("op-uri"));
+	}
+
+	@Test
+	public void shouldParseNumericValue() throws ParseException {
+		assertThat(dataFile.getType(2), is("NUMERIC"));
+		assertThat((Double) dataFile.getValue(2, values), is(closeTo(52.42, 0.0001)));
+	}
+
+	@Test
+	public void shouldParseTimestamp() throws ParseException {
+		assertThat(dataFile.getTimeStamp(2, values).toString(), is("2015-03-17T13:37:00"));
+	}
+
+	@Test
+	public void shouldReturnNullForUnknownColumnInPlan() {
+		assertThat(dataFile.getRowMappingPlan().getMeasuredValueColumn(1), is(nullValue()));
+	}
+
+	@Test
+	public void shouldGenerateOfferingFromSensor() {
+		final Sensor sensor = dataFile.getSensorForColumn(2, values);
+		assertThat(dataFile.getOffering(sensor).getUri(), is("sensor-1"));
+	}
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class InsertPipelineTest {
+
+	@Test
+	public void shouldExecuteTasksInOrderOfSubmission() throws Exception {
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final InsertPipeline pipeline = new InsertPipeline("test", 2);
+		for (int i = 0; i < 100; i++) {
+			pipeline.submit(record(executed, i));
+		}
+		pipeline.finish();
+
+		assertThat(executed.size(), is(100));
+		for (int i = 0; i < 100; i++) {
+			assertThat(executed.get(i), is(i));
+		}
+	}
+
+	@Test
+	public void shouldExecuteTasksInCallingThreadIfQueueSizeIsZero() throws Exception {
+		final List<Thread> threads = new ArrayList<Thread>();
+		final InsertPipeline pipeline = new InsertPipeline("test", 0);
+		pipeline.submit(new InsertPipeline.Task() {
+			@Override
+			public void execute() {
+				threads.add(Thread.currentThread());
+			}
+		});
+
+		assertThat(threads.size(), is(1));
+		assertThat(threads.get(0), is(Thread.currentThread()));
+		pipeline.finish();
+	}
+
+	@Test
+	public void shouldRethrowExceptionOfFailedTaskOnFinish() throws Exception {
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final InsertPipeline pipeline = new InsertPipeline("test", 1);
+		pipeline.submit(new InsertPipeline.Task() {
+			@Override
+			public void execute() throws IOException {
+				throw new IOException("connection refused");
+			}
+		});
+		try {
+			for (int i = 0; i < 10; i++) {
+				pipeline.submit(record(executed, i));
+			}
+			pipeline.finish();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertThat(e.getMessage(), is("connection refused"));
+		}
+		assertThat(executed.isEmpty(), is(true));
+	}
+
+	@Test
+	public void shouldKeepOrderOfTasksWithSameKeyUsingSeveralSenders() throws Exception {
+		final List<Integer> sensorA = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> sensorB = Collections.synchronizedList(new ArrayList<Integer>());
+		final InsertPipeline pipeline = new InsertPipeline("test", 1, 4);
+		for (int i = 0; i < 100; i++) {
+			pipeline.submit("sensor-a", record(sensorA, i));
+			pipeline.submit("sensor-b", record(sensorB, i));
+		}
+		pipeline.finish();
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(sensorA.get(i), is(i));
+			assertThat(sensorB.get(i), is(i));
+		}
+	}
+
+	@Test
+	public void shouldUseSenderThreadsIfQueueSizeIsZeroAndSeveralSendersAreRequested() throws Exception {
+		final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+		final InsertPipeline pipeline = new InsertPipeline("test", 0, 2);
+		pipeline.submit("sensor", new InsertPipeline.Task() {
+			@Override
+			public void execute() {
+				threads.add(Thread.currentThread());
+			}
+		});
+		pipeline.finish();
+
+		assertThat(threads.size(), is(1));
+		assertThat(threads.get(0) == Thread.currentThread(), is(false));
+	}
+
+	@Test
+	public void shouldWaitForTaskBeingSentOnCancel() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		final InsertPipeline pipeline = new InsertPipeline("test", 2);
+		pipeline.submit(new InsertPipeline.Task() {
+			@Override
+			public void execute() {
+				started.countDown();
+				// like a request ignoring interrupts
+				final long end = System.currentTimeMillis() + 200;
+				while (System.currentTimeMillis() < end) {
+					try {
+						Thread.sleep(10);
+					} catch (final InterruptedException e) {
+						// ignored
+					}
+				}
+				executed.add(0);
+			}
+		});
+		pipeline.submit(record(executed, 1));
+		started.await();
+
+		pipeline.cancel();
+
+		assertThat(executed.size(), is(1));
+		Thread.sleep(50);
+		assertThat(executed.size(), is(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptLessThanOneSender() {
+		new InsertPipeline("test", 1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptNegativeQueueSize() {
+		new InsertPipeline("test", -1);
+	}
+
+	private InsertPipeline.Task record(final List<Integer> executed, final int i) {
+		return new InsertPipeline.Task() {
+			@Override
+			public void execute() {
+				executed.add(i);
+			}
+		};
+	}
+
+}
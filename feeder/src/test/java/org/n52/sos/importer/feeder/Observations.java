@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import org.n52.sos.importer.feeder.model.FeatureOfInterest;
+import org.n52.sos.importer.feeder.model.ObservedProperty;
+import org.n52.sos.importer.feeder.model.Offering;
+import org.n52.sos.importer.feeder.model.Position;
+import org.n52.sos.importer.feeder.model.Sensor;
+import org.n52.sos.importer.feeder.model.Timestamp;
+import org.n52.sos.importer.feeder.model.UnitOfMeasurement;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+
+/**
+ * Creates {@link InsertObservation}s for the tests of other packages, which
+ * differ only in sensor, value and phenomenon time.
+ *
+ * @author <a href="mailto:e.h.juerrens@52north.org">Eike Hinderk J&uuml;rrens</a>
+ */
+public final class Observations {
+
+	private Observations() {
+	}
+
+	/**
+	 * @param sensor the name and URI of the sensor
+	 * @param second the second of the phenomenon time, see
+	 * 			{@link #createTimestamp(int)}
+	 */
+	public static InsertObservation createObservation(final String sensor, final Object value, final int second) {
+		final Position position = new Position(new double[] { 7.0, 52.0, 0.0 },
+				new String[] { "deg", "deg", "m" },
+				4326);
+		return new InsertObservation(new Sensor(sensor, sensor),
+				new FeatureOfInterest("foi", "foi-uri", position),
+				value,
+				createTimestamp(second),
+				new UnitOfMeasurement("m", "m-uri"),
+				new ObservedProperty("height", "height-uri"),
+				new Offering("offering", "offering-uri"),
+				"NUMERIC");
+	}
+
+	/**
+	 * @return the timestamp <code>2015-03-17T13:37:&lt;second&gt;+01:00</code>
+	 */
+	public static Timestamp createTimestamp(final int second) {
+		final Timestamp timestamp = new Timestamp();
+		timestamp.setYear((short) 2015);
+		timestamp.setMonth((byte) 3);
+		timestamp.setDay((byte) 17);
+		timestamp.setHour((byte) 13);
+		timestamp.setMinute((byte) 37);
+		timestamp.setSeconds((byte) second);
+		timestamp.setTimezone((byte) 1);
+		return timestamp;
+	}
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.csv.FileCsvParser;
+import org.n52.sos.importer.feeder.csv.MappedCsvParser;
+import org.x52North.sensorweb.sos.importer.x04.SosImportConfigurationDocument;
+
+public class ParallelCsvParserTest {
+
+	private File file;
+
+	private Configuration configuration;
+
+	@Before
+	public void createFile() throws IOException, XmlException {
+		final StringBuilder data = new StringBuilder("header;line\n");
+		for (int i = 0; i < 200; i++) {
+			data.append("2015-03-17 13:37:00;");
+			// quoted line breaks let chunks start within a line
+			data.append(i % 7 == 0? "\"multi\nline " + i + "\"" : "sensor-" + i);
+			data.append(";52.").append(i).append(i % 5 == 0? "\r\n" : "\n");
+		}
+		data.append("2015-03-17 13:38:00;sensor-last;42.0");
+		file = File.createTempFile("parallel-csv-parser", ".csv");
+		try (final OutputStream out = new FileOutputStream(file)) {
+			out.write(data.toString().getBytes("UTF-8"));
+		}
+		configuration = configuration();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldReturnLinesInOrderOfFile() throws IOException {
+		final List<String> expected = readSequentially(0);
+		for (final long chunkSize : new long[] { 1, 13, 64, 1000, file.length() }) {
+			assertThat("chunk size " + chunkSize, readInParallel(0, chunkSize), is(expected));
+		}
+	}
+
+	@Test
+	public void shouldStartAtOffset() throws IOException {
+		final long offset;
+		try (final FileCsvParser parser = parser(0)) {
+			for (int i = 0; i < 10; i++) {
+				parser.readNext();
+			}
+			offset = parser.getOffset();
+		}
+
+		assertThat(readInParallel(offset, 32), is(readSequentially(offset)));
+	}
+
+	@Test
+	public void shouldCountLinesAndStopBehindLastLine() throws IOException {
+		int lineCount = 0;
+		long end = -1;
+		boolean isAtLineStart = true;
+		try (final ParallelCsvParser<String> parser = parallelParser(0, 100)) {
+			ParallelCsvParser.Chunk<String> chunk;
+			while ((chunk = parser.next()) != null) {
+				lineCount += chunk.getLineCount();
+				end = chunk.getEnd();
+				isAtLineStart = chunk.isAtLineStart();
+			}
+		}
+
+		assertThat(lineCount, is(201));
+		assertThat(end, is(file.length()));
+		assertThat(isAtLineStart, is(false));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRethrowFailureAfterResultsOfChunk() throws IOException {
+		final List<String> results = new ArrayList<>();
+		try (final ParallelCsvParser<String> parser = new ParallelCsvParser<>(file, 0, 4, 64, factory(),
+				new ParallelCsvParser.LineParser<String>() {
+					@Override
+					public String parse(final String[] values) {
+						if (values[1].equals("sensor-44")) {
+							throw new IllegalStateException(values[1]);
+						}
+						return values[1];
+					}
+				})) {
+			ParallelCsvParser.Chunk<String> chunk;
+			while ((chunk = parser.next()) != null) {
+				results.addAll(chunk.getResults());
+				chunk.rethrowFailure();
+			}
+		} finally {
+			assertThat(results.get(results.size() - 1), is("sensor-43"));
+		}
+	}
+
+	private List<String> readSequentially(final long offset) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		try (final FileCsvParser parser = parser(offset)) {
+			String[] values;
+			while ((values = parser.readNext()) != null) {
+				lines.add(Arrays.toString(values));
+			}
+		}
+		return lines;
+	}
+
+	private List<String> readInParallel(final long offset, final long chunkSize) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		try (final ParallelCsvParser<String> parser = parallelParser(offset, chunkSize)) {
+			ParallelCsvParser.Chunk<String> chunk;
+			while ((chunk = parser.next()) != null) {
+				chunk.rethrowFailure();
+				lines.addAll(chunk.getResults());
+			}
+		}
+		return lines;
+	}
+
+	private ParallelCsvParser<String> parallelParser(final long offset, final long chunkSize) throws IOException {
+		return new ParallelCsvParser<>(file, offset, 4, chunkSize, factory(),
+				new ParallelCsvParser.LineParser<String>() {
+					@Override
+					public String parse(final String[] values) {
+						return Arrays.toString(values);
+					}
+				});
+	}
+
+	private ParallelCsvParser.ParserFactory factory() {
+		return new ParallelCsvParser.ParserFactory() {
+			@Override
+			public FileCsvParser create(final long offset) throws IOException {
+				return parser(offset);
+			}
+		};
+	}
+
+	private FileCsvParser parser(final long offset) throws IOException {
+		final MappedCsvParser parser = new MappedCsvParser();
+		parser.init(file, offset, configuration);
+		return parser;
+	}
+
+	private Configuration configuration() throws XmlException {
+		return new Configuration(SosImportConfigurationDocument.Factory.parse(
+				"<SosImportConfiguration xmlns=\"http://52north.org/sensorweb/sos/importer/0.4/\">" +
+				"<DataFile><LocalFile><Path>data.csv</Path><Encoding>UTF-8</Encoding></LocalFile></DataFile>" +
+				"<CsvMetadata>" +
+					"<FirstLineWithData>1</FirstLineWithData>" +
+					"<Parameter>" +
+						"<CommentIndicator>\\</CommentIndicator>" +
+						"<ColumnSeparator>;</ColumnSeparator>" +
+						"<TextIndicator>\"</TextIndicator>" +
+					"</Parameter>" +
+				"</CsvMetadata>" +
+				"</SosImportConfiguration>").getSosImportConfiguration());
+	}
+
+}
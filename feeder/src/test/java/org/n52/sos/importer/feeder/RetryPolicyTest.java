@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+import org.n52.oxf.OXFException;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void shouldRetryTransportErrors() {
+		final RetryPolicy policy = new RetryPolicy(2, 100, 1000);
+
+		assertThat(policy.isRetryable(new OXFException(new ConnectException("Connection refused")), 1), is(true));
+		assertThat(policy.isRetryable(new OXFException("wrapped", new OXFException(new SocketTimeoutException())), 2), is(true));
+		assertThat(policy.isRetryable(new SocketTimeoutException(), 1), is(true));
+	}
+
+	@Test
+	public void shouldNotRetryOtherErrors() {
+		final RetryPolicy policy = new RetryPolicy(2, 100, 1000);
+
+		assertThat(policy.isRetryable(new OXFException("Invalid request"), 1), is(false));
+	}
+
+	@Test
+	public void shouldStopRetryingAfterMaxRetries() {
+		final RetryPolicy policy = new RetryPolicy(2, 100, 1000);
+
+		assertThat(policy.isRetryable(new ConnectException(), 3), is(false));
+		assertThat(new RetryPolicy(0, 100, 1000).isRetryable(new ConnectException(), 1), is(false));
+	}
+
+	@Test
+	public void shouldIncreaseDelayExponentiallyWithJitter() {
+		final RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(isBetween(policy.getDelay(1), 50, 100), is(true));
+			assertThat(isBetween(policy.getDelay(2), 100, 200), is(true));
+			assertThat(isBetween(policy.getDelay(3), 200, 400), is(true));
+			assertThat(isBetween(policy.getDelay(10), 500, 1000), is(true));
+			assertThat(isBetween(policy.getDelay(100), 500, 1000), is(true));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectMaxDelayLowerThanDelay() {
+		new RetryPolicy(1, 1000, 100);
+	}
+
+	private boolean isBetween(final long value, final long min, final long max) {
+		return value >= min && value <= max;
+	}
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.n52.sos.importer.feeder.model.Timestamp;
+
+public class TimestampParserTest {
+
+	private static final int[] DATE_TIME_FIELDS = {
+		GregorianCalendar.YEAR,
+		GregorianCalendar.MONTH,
+		GregorianCalendar.DAY_OF_MONTH,
+		GregorianCalendar.HOUR_OF_DAY,
+		GregorianCalendar.MINUTE,
+		GregorianCalendar.SECOND
+	};
+
+	private static final int[] DATE_FIELDS = {
+		GregorianCalendar.YEAR,
+		GregorianCalendar.MONTH,
+		GregorianCalendar.DAY_OF_MONTH
+	};
+
+	private final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+	private String parse(final String pattern, final int[] fields, final String value) throws ParseException {
+		final Timestamp ts = new Timestamp();
+		new TimestampParser(pattern, fields, utc).parse(value, ts);
+		return ts.toString();
+	}
+
+	@Test
+	public void shouldParseIsoLikePatternWithoutSimpleDateFormat() throws ParseException {
+		final TimestampParser parser = new TimestampParser("yyyy-MM-dd'T'HH:mm:ss", DATE_TIME_FIELDS, utc);
+		final Timestamp ts = new Timestamp();
+		parser.parse("2015-03-17T13:37:05", ts);
+
+		assertThat(parser.isFastPathAvailable(), is(true));
+		assertThat(ts.toString(), is("2015-03-17T13:37:05"));
+	}
+
+	@Test
+	public void shouldParseAbuttingFields() throws ParseException {
+		assertThat(parse("yyyyMMddHHmmss", DATE_TIME_FIELDS, "20150317133705"), is("2015-03-17T13:37:05"));
+	}
+
+	@Test
+	public void shouldParseFieldsWithVariableWidth() throws ParseException {
+		assertThat(parse("d.M.yyyy", DATE_FIELDS, "7.3.2015"), is("2015-03-07"));
+	}
+
+	@Test
+	public void shouldRollOverOutOfRangeValuesLikeSimpleDateFormat() throws ParseException {
+		assertThat(parse("yyyy-MM-dd", DATE_FIELDS, "2015-02-30"), is("2015-03-02"));
+	}
+
+	@Test
+	public void shouldFallBackToSimpleDateFormatForTwoDigitYears() throws ParseException {
+		final TimestampParser parser = new TimestampParser("dd/MM/yy", DATE_FIELDS, utc);
+		final Timestamp ts = new Timestamp();
+		parser.parse("07/03/15", ts);
+
+		assertThat(parser.isFastPathAvailable(), is(false));
+		assertThat(ts.toString(), is("2015-03-07"));
+	}
+
+	@Test
+	public void shouldSetTimezoneInHours() throws ParseException {
+		final int[] fields = {
+			GregorianCalendar.YEAR,
+			GregorianCalendar.MONTH,
+			GregorianCalendar.DAY_OF_MONTH,
+			GregorianCalendar.HOUR_OF_DAY,
+			GregorianCalendar.MINUTE,
+			GregorianCalendar.ZONE_OFFSET
+		};
+		final Timestamp ts = new Timestamp();
+		new TimestampParser("yyyy-MM-dd HH:mm Z", fields, TimeZone.getTimeZone("GMT+02:00"))
+			.parse("2015-03-17 13:37 +0100", ts);
+
+		assertThat(ts.toString(), is("2015-03-17T14:37:00+02:00"));
+	}
+
+	@Test(expected=ParseException.class)
+	public void shouldThrowParseExceptionForInvalidValue() throws ParseException {
+		parse("yyyy-MM-dd", DATE_FIELDS, "no date");
+	}
+
+	@Test
+	public void shouldBeUsableFromSeveralThreads() throws Exception {
+		final TimestampParser parser = new TimestampParser("dd/MM/yy HH:mm", DATE_TIME_FIELDS, utc);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 400; i++) {
+				final String minute = String.format("%02d", i % 60);
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						final Timestamp ts = new Timestamp();
+						parser.parse("07/03/15 13:" + minute, ts);
+						return ts.toString();
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get(), is(String.format("2015-03-07T13:%02d:00", i % 60)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+
+import org.junit.Test;
+import org.n52.sos.importer.feeder.ValueDecoder.Type;
+
+public class ValueDecoderTest {
+
+	private final DecimalParser pointParser = new DecimalParser('.');
+
+	private final DecimalParser commaParser = new DecimalParser(',');
+
+	@Test
+	public void shouldParseNumericValuesUsingDecimalSeparator() throws ParseException {
+		final ValueDecoder decoder = new ValueDecoder(Type.NUMERIC, pointParser);
+
+		assertThat(decoder.decodeNumeric("52.42"), is(52.42));
+		assertThat(decoder.decodeNumeric(" -0.1 "), is(-0.1));
+		assertThat(decoder.decodeNumeric("1,234.5"), is(1234.5));
+		assertThat(decoder.decodeNumeric("7"), is(7.0));
+	}
+
+	@Test
+	public void shouldParseNumericValuesUsingCommaAsDecimalSeparator() throws ParseException {
+		final ValueDecoder decoder = new ValueDecoder(Type.NUMERIC, commaParser);
+
+		assertThat(decoder.decodeNumeric("52,42"), is(52.42));
+		assertThat(decoder.decodeNumeric("1.234,5"), is(1234.5));
+	}
+
+	@Test
+	public void shouldParseNumbersNotSupportedByFastPathLikeDecimalFormat() throws ParseException {
+		assertThat(pointParser.parse("1E3"), is(1000.0));
+		assertThat(pointParser.parse("12.5 degrees"), is(12.5));
+		assertThat(pointParser.parse("12345678901234567890"), is(1.2345678901234567E19));
+		assertThat(pointParser.parse("9007199254740993"), is(9.007199254740992E15));
+	}
+
+	@Test(expected=ParseException.class)
+	public void shouldThrowParseExceptionForNonNumericValue() throws ParseException {
+		new ValueDecoder(Type.NUMERIC, pointParser).decodeNumeric("n/a");
+	}
+
+	@Test(expected=ParseException.class)
+	public void shouldThrowParseExceptionForEmptyValue() throws ParseException {
+		new ValueDecoder(Type.NUMERIC, pointParser).decodeNumeric(" ");
+	}
+
+	@Test
+	public void shouldParseCountValues() {
+		final ValueDecoder decoder = new ValueDecoder(Type.COUNT, pointParser);
+
+		assertThat(decoder.decodeCount("42"), is(42));
+		assertThat(decoder.decodeCount(" -42 "), is(-42));
+		assertThat(decoder.decodeCount("+7"), is(7));
+		assertThat(decoder.decodeCount("2147483647"), is(Integer.MAX_VALUE));
+		assertThat(decoder.decodeCount("-2147483648"), is(Integer.MIN_VALUE));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void shouldThrowNumberFormatExceptionForCountOverflow() {
+		new ValueDecoder(Type.COUNT, pointParser).decodeCount("2147483648");
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void shouldThrowNumberFormatExceptionForDecimalCount() {
+		new ValueDecoder(Type.COUNT, pointParser).decodeCount("4.2");
+	}
+
+	@Test
+	public void shouldParseBooleanValues() {
+		final ValueDecoder decoder = new ValueDecoder(Type.BOOLEAN, pointParser);
+
+		assertThat(decoder.decodeBoolean("1"), is(true));
+		assertThat(decoder.decodeBoolean(" TRUE "), is(true));
+		assertThat(decoder.decodeBoolean("0"), is(false));
+		assertThat(decoder.decodeBoolean("false"), is(false));
+		assertThat(decoder.decodeBoolean("yes"), is(false));
+	}
+
+	@Test
+	public void shouldKeepTextValues() throws ParseException {
+		assertThat(new ValueDecoder(Type.TEXT, pointParser).decode(" text "), is((Object) " text "));
+	}
+
+	@Test
+	public void shouldReturnNullForUnsupportedType() {
+		assertThat(ValueDecoder.create("UNKNOWN", pointParser), is(nullValue()));
+		assertThat(ValueDecoder.create(null, pointParser), is(nullValue()));
+		assertThat(ValueDecoder.create("COUNT", pointParser).getType(), is(Type.COUNT));
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressionTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String DATA = "a;1\nb;2\nc;3\n";
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("data", ".csv");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldReadUncompressedFile() throws IOException {
+		try (final OutputStream out = new FileOutputStream(file)) {
+			out.write(DATA.getBytes(UTF_8));
+		}
+
+		assertThat(Compression.detect(file), is(Compression.NONE));
+		assertThat(read(Compression.NONE.open(file)), is(DATA));
+	}
+
+	@Test
+	public void shouldDetectGzipByMagicNumber() throws IOException {
+		try (final OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			out.write(DATA.getBytes(UTF_8));
+		}
+
+		assertThat(Compression.detect(file), is(Compression.GZIP));
+		assertThat(read(Compression.GZIP.open(file)), is(DATA));
+	}
+
+	@Test
+	public void shouldDetectZipByMagicNumber() throws IOException {
+		try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			out.putNextEntry(new ZipEntry("directory/"));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("directory/data.csv"));
+			out.write(DATA.getBytes(UTF_8));
+			out.closeEntry();
+		}
+
+		assertThat(Compression.detect(file), is(Compression.ZIP));
+		assertThat(read(Compression.ZIP.open(file)), is(DATA));
+	}
+
+	@Test
+	public void shouldDetectBzip2ByMagicNumber() throws IOException {
+		try (final OutputStream out = new BZip2CompressorOutputStream(new FileOutputStream(file))) {
+			out.write(DATA.getBytes(UTF_8));
+		}
+
+		assertThat(Compression.detect(file), is(Compression.BZIP2));
+		assertThat(read(Compression.BZIP2.open(file)), is(DATA));
+	}
+
+	@Test
+	public void shouldDetectEmptyFileByExtension() throws IOException {
+		final File gzipFile = File.createTempFile("data", ".csv.GZ");
+		gzipFile.deleteOnExit();
+
+		assertThat(Compression.detect(gzipFile), is(Compression.GZIP));
+		assertThat(Compression.detect(file), is(Compression.NONE));
+	}
+
+	private String read(final InputStream in) throws IOException {
+		try (final InputStream is = in) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int read;
+			while ((read = is.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), UTF_8);
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.Configurations;
+
+public class MappedCsvParserTest {
+
+	private static final String DATA =
+			"header;line\r\n" +
+			"2015-03-17 13:37:00;sensor-1;52.42\r\n" +
+			"2015-03-17 13:38:00;\"sensor;\\\"2\\\"\";52.43\n" +
+			"\n" +
+			"2015-03-17 13:39:00;\"multi\nline\";\u00e4\u20ac\ud83d\ude00\r" +
+			"2015-03-17 13:40:00;a\"b\"c;  \"x\"\n" +
+			"2015-03-17 13:41:00;sensor-1;52.44";
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("mapped-csv-parser", ".csv");
+		try (final OutputStream out = new FileOutputStream(file)) {
+			out.write(DATA.getBytes("UTF-8"));
+		}
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldReadSameValuesAsWrappedCSVReader() throws IOException, XmlException {
+		final Configuration configuration = configuration(1);
+		// small windows to remap within lines
+		try (final ReaderCsvParser expected = new ReaderCsvParser(new WrappedCSVReader(), Charset.forName("UTF-8"));
+				final MappedCsvParser parser = new MappedCsvParser(48)) {
+			expected.init(file, 0, configuration);
+			parser.init(file, 0, configuration);
+
+			assertThat(readAll(parser), is(readAll(expected)));
+		}
+	}
+
+	@Test
+	public void shouldContinueAtOffset() throws IOException, XmlException {
+		final Configuration configuration = configuration(1);
+		final long offset;
+		try (final MappedCsvParser parser = new MappedCsvParser()) {
+			parser.init(file, 0, configuration);
+			parser.readNext();
+			offset = parser.getOffset();
+			assertThat(parser.isAtLineStart(), is(true));
+		}
+		try (final MappedCsvParser parser = new MappedCsvParser()) {
+			parser.init(file, offset, configuration);
+
+			assertThat(parser.readNext()[1], is("sensor;\"2\""));
+		}
+	}
+
+	@Test
+	public void shouldNotBeAtLineStartBehindNotTerminatedLastLine() throws IOException, XmlException {
+		try (final MappedCsvParser parser = new MappedCsvParser()) {
+			parser.init(file, 0, configuration(0));
+			readAll(parser);
+
+			assertThat(parser.getOffset(), is(file.length()));
+			assertThat(parser.isAtLineStart(), is(false));
+		}
+	}
+
+	@Test
+	public void shouldReadLineFillingMappedRegionTerminatedByCarriageReturnAndLineFeed() throws IOException, XmlException {
+		// the carriage return of the header is the last byte of the region
+		try (final MappedCsvParser parser = new MappedCsvParser(12)) {
+			parser.init(file, 0, configuration(0));
+
+			assertThat(parser.readNext()[1], is("line"));
+			assertThat(parser.getOffset(), is(13L));
+			assertThat(parser.isAtLineStart(), is(true));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectLinesLongerThanMappedRegion() throws IOException, XmlException {
+		try (final MappedCsvParser parser = new MappedCsvParser(16)) {
+			parser.init(file, 0, configuration(0));
+			readAll(parser);
+		}
+	}
+
+	private List<String> readAll(final FileCsvParser parser) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		String[] values;
+		while ((values = parser.readNext()) != null) {
+			lines.add(Arrays.toString(values));
+		}
+		return lines;
+	}
+
+	private Configuration configuration(final int firstLineWithData) throws XmlException {
+		return Configurations.create(
+				"<SosImportConfiguration xmlns=\"http://52north.org/sensorweb/sos/importer/0.4/\">" +
+				"<DataFile><LocalFile><Path>data.csv</Path><Encoding>UTF-8</Encoding></LocalFile></DataFile>" +
+				"<CsvMetadata>" +
+					"<FirstLineWithData>" + firstLineWithData + "</FirstLineWithData>" +
+					"<Parameter>" +
+						"<CommentIndicator>\\</CommentIndicator>" +
+						"<ColumnSeparator>;</ColumnSeparator>" +
+						"<TextIndicator>\"</TextIndicator>" +
+					"</Parameter>" +
+					"<CsvParserClass>" + MappedCsvParser.class.getName() + "</CsvParserClass>" +
+				"</CsvMetadata>" +
+				"</SosImportConfiguration>");
+	}
+
+}
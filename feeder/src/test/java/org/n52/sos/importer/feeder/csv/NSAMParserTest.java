@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.xmlbeans.XmlException;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.Configuration;
+import org.n52.sos.importer.feeder.Configurations;
+
+public class NSAMParserTest {
+
+	@Test
+	public void shouldReturnElementsInOrderOfFile() throws IOException, XmlException {
+		final StringBuilder data = new StringBuilder();
+		data.append("meta\nmeta\nmeta\n");
+		data.append("Start Date 03/17/15    03/18/15,,,,,\n");
+		data.append("Start Time 13:37:00\n");
+		for (int i = 0; i < 21; i++) {
+			data.append("meta\n");
+		}
+		data.append("0,1.5,,,0,2.5\n");
+		data.append("60,1.6,,,60,2.6\n");
+		data.append("\n");
+		data.append("trailer\n");
+		final NSAMParser parser = new NSAMParser();
+		parser.init(new BufferedReader(new StringReader(data.toString())), configuration());
+
+		assertThat(parser.readNext(), is(new String[] { "2015-03-17T13:37:00+00:00", "1.5" }));
+		assertThat(parser.readNext(), is(new String[] { "2015-03-18T13:37:00+00:00", "2.5" }));
+		assertThat(parser.readNext(), is(new String[] { "2015-03-17T13:38:00+00:00", "1.6" }));
+		assertThat(parser.readNext(), is(new String[] { "2015-03-18T13:38:00+00:00", "2.6" }));
+		assertThat(parser.readNext(), is(nullValue()));
+	}
+
+	private Configuration configuration() throws XmlException {
+		return Configurations.create(
+				"<SosImportConfiguration xmlns=\"http://52north.org/sensorweb/sos/importer/0.4/\">" +
+				"<CsvMetadata>" +
+					"<Parameter>" +
+						"<CommentIndicator>#</CommentIndicator>" +
+						"<ColumnSeparator>,</ColumnSeparator>" +
+						"<TextIndicator>\"</TextIndicator>" +
+					"</Parameter>" +
+				"</CsvMetadata>" +
+				"</SosImportConfiguration>");
+	}
+
+}
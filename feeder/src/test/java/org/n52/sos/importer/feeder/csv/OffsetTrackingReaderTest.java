@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class OffsetTrackingReaderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Test
+	public void shouldTrackOffsetBehindEachLine() throws IOException {
+		final byte[] data = "a;1\r\n\u00e4\u20ac;2\n\ud83d\ude00;3\n".getBytes(UTF_8);
+		final OffsetTrackingReader reader = new OffsetTrackingReader(new ByteArrayInputStream(data), UTF_8, 0);
+		final BufferedReader br = new BufferedReader(new BufferedReader(reader));
+
+		assertThat(br.readLine(), is("a;1"));
+		assertThat(reader.getOffset(), is(5L));
+		assertThat(br.readLine(), is("\u00e4\u20ac;2"));
+		assertThat(reader.getOffset(), is(13L));
+		assertThat(br.readLine(), is("\ud83d\ude00;3"));
+		assertThat(reader.getOffset(), is((long) data.length));
+		assertThat(reader.isAtLineStart(), is(true));
+		assertThat(br.readLine(), is((String) null));
+	}
+
+	@Test
+	public void shouldTrackOffsetBehindLinesTerminatedByCarriageReturn() throws IOException {
+		final byte[] data = "a;1\rb;2\r\nc;3\r".getBytes(UTF_8);
+		final OffsetTrackingReader reader = new OffsetTrackingReader(new ByteArrayInputStream(data), UTF_8, 0);
+		final BufferedReader br = new BufferedReader(reader);
+
+		assertThat(br.readLine(), is("a;1"));
+		assertThat(reader.getOffset(), is(4L));
+		assertThat(br.readLine(), is("b;2"));
+		assertThat(reader.getOffset(), is(9L));
+		assertThat(br.readLine(), is("c;3"));
+		assertThat(reader.getOffset(), is(13L));
+		assertThat(reader.isAtLineStart(), is(true));
+	}
+
+	@Test
+	public void shouldNotSplitCarriageReturnAndLineFeedReadSeparately() throws IOException {
+		// the first read of the stream ends behind the carriage return
+		final InputStream in = new SequenceInputStream(
+				new ByteArrayInputStream("a;1\r".getBytes(UTF_8)),
+				new ByteArrayInputStream("\nb;2\n".getBytes(UTF_8)));
+		final OffsetTrackingReader reader = new OffsetTrackingReader(in, UTF_8, 0);
+		final BufferedReader br = new BufferedReader(reader);
+
+		assertThat(br.readLine(), is("a;1"));
+		assertThat(reader.getOffset(), is(5L));
+		assertThat(br.readLine(), is("b;2"));
+		assertThat(reader.getOffset(), is(9L));
+	}
+
+	@Test
+	public void shouldContinueAtOffset() throws IOException {
+		final byte[] data = "a;1\nb;2\nc;3".getBytes(UTF_8);
+		final InputStream in = new ByteArrayInputStream(data);
+		in.skip(4);
+		final OffsetTrackingReader reader = new OffsetTrackingReader(in, UTF_8, 4);
+		final BufferedReader br = new BufferedReader(reader);
+
+		assertThat(br.readLine(), is("b;2"));
+		assertThat(reader.getOffset(), is(8L));
+		assertThat(br.readLine(), is("c;3"));
+		assertThat(reader.getOffset(), is(11L));
+		assertThat(reader.isAtLineStart(), is(false));
+	}
+
+	@Test
+	public void shouldCountBytesOfMalformedInput() throws IOException {
+		// latin-1 encoded umlaut in a UTF-8 file
+		final byte[] data = new byte[] { 'a', (byte) 0xe4, ';', '1', '\n', 'b', '\n' };
+		final OffsetTrackingReader reader = new OffsetTrackingReader(new ByteArrayInputStream(data), UTF_8, 0);
+		final BufferedReader br = new BufferedReader(reader);
+
+		br.readLine();
+
+		assertThat(reader.getOffset(), is(5L));
+	}
+
+	@Test
+	public void shouldReadLinesLongerThanBuffer() throws IOException {
+		final StringBuilder line = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			line.append('\u00e4');
+		}
+		final byte[] data = (line + "\nb\n").getBytes(UTF_8);
+		final OffsetTrackingReader reader = new OffsetTrackingReader(new ByteArrayInputStream(data), UTF_8, 0);
+		final BufferedReader br = new BufferedReader(reader);
+
+		assertThat(br.readLine(), is(line.toString()));
+		assertThat(reader.getOffset(), is(20001L));
+		assertThat(br.readLine(), is("b"));
+		assertThat(reader.getOffset(), is(20003L));
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+	@Test
+	public void shouldReadAllBlocks() throws IOException {
+		final byte[] data = createData(1000);
+
+		try (final InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), "test", 64, 2)) {
+			final byte[] read = new byte[data.length];
+			int length = 0;
+			int count;
+			while ((count = in.read(read, length, Math.min(100, read.length - length))) > 0) {
+				length += count;
+			}
+			assertThat(length, is(data.length));
+			assertThat(read, is(data));
+			assertThat(in.read(), is(-1));
+		}
+	}
+
+	@Test
+	public void shouldSkipWithinBlocks() throws IOException {
+		final byte[] data = createData(1000);
+
+		try (final InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), "test", 64, 2)) {
+			assertThat(skip(in, 700), is(700L));
+			assertThat(in.read(), is(data[700] & 0xff));
+			assertThat(skip(in, 1000), is(299L));
+		}
+	}
+
+	@Test
+	public void shouldThrowFailureOfReadStream() throws IOException {
+		final InputStream failing = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (count++ >= 100) {
+					throw new IOException("corrupt data");
+				}
+				return 1;
+			}
+		};
+
+		try (final InputStream in = new ReadAheadInputStream(failing, "test", 64, 2)) {
+			for (int i = 0; i < 64; i++) {
+				in.read();
+			}
+			in.read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertThat(e.getMessage(), is("corrupt data"));
+		}
+	}
+
+	@Test
+	public void shouldStopReadingWhenClosed() throws IOException {
+		final InputStream endless = new InputStream() {
+			@Override
+			public int read() {
+				return 1;
+			}
+		};
+
+		final InputStream in = new ReadAheadInputStream(endless, "test", 64, 2);
+		in.read();
+		in.close();
+	}
+
+	private long skip(final InputStream in, final long n) throws IOException {
+		long skipped = 0;
+		long count;
+		while (skipped < n && (count = in.skip(n - skipped)) > 0) {
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	private byte[] createData(final int length) {
+		final byte[] data = new byte[length];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void shouldReturnZeroIfEmpty() {
+		final Histogram histogram = new Histogram();
+
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getMean(), is(0L));
+		assertThat(histogram.getPercentile(99), is(0L));
+	}
+
+	@Test
+	public void shouldApproximatePercentilesByBucketBounds() {
+		final Histogram histogram = new Histogram();
+		for (int i = 0; i < 98; i++) {
+			histogram.record(10);
+		}
+		histogram.record(500);
+		histogram.record(3000);
+
+		assertThat(histogram.getCount(), is(100L));
+		assertThat(histogram.getMean(), is(44L));
+		assertThat(histogram.getMax(), is(3000L));
+		assertThat(histogram.getPercentile(50), is(15L));
+		assertThat(histogram.getPercentile(99), is(511L));
+		assertThat(histogram.getPercentile(100), is(3000L));
+	}
+
+	@Test
+	public void shouldNotExceedMaximum() {
+		final Histogram histogram = new Histogram();
+		histogram.record(0);
+		histogram.record(1000);
+
+		assertThat(histogram.getPercentile(50), is(0L));
+		assertThat(histogram.getPercentile(99), is(1000L));
+	}
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class ImportMetricsTest {
+
+	@Test
+	public void shouldReturnSameInstanceForConfiguration() {
+		assertThat(ImportMetrics.get("same.xml") == ImportMetrics.get("same.xml"), is(true));
+	}
+
+	@Test
+	public void shouldRegisterMBean() throws Exception {
+		final ImportMetrics metrics = ImportMetrics.get("jmx.xml");
+		metrics.linesRead(3, 42);
+
+		final Object lines = ManagementFactory.getPlatformMBeanServer().getAttribute(
+				new ObjectName("org.n52.sos.importer.feeder:type=ImportMetrics,name=\"jmx.xml\""), "Lines");
+
+		assertThat(lines, is((Object) 3L));
+	}
+
+	@Test
+	public void shouldCountConcurrentUpdates() throws Exception {
+		final ImportMetrics metrics = ImportMetrics.get("concurrent.xml");
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						metrics.linesRead(1, 10);
+						metrics.observationsParsed(2);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(metrics.getLines(), is(80000L));
+		assertThat(metrics.getBytes(), is(800000L));
+		assertThat(metrics.getObservations(), is(160000L));
+	}
+
+	@Test
+	public void shouldCalculateCheckpointLag() {
+		final ImportMetrics metrics = ImportMetrics.get("checkpoint.xml");
+		metrics.linesRead(10, 100);
+		metrics.checkpoint();
+		metrics.linesRead(5, 50);
+
+		assertThat(metrics.getCheckpointLag(), is(5L));
+	}
+
+	@Test
+	public void shouldStartNewRateIntervalOnMark() throws Exception {
+		final ImportMetrics metrics = ImportMetrics.get("rates.xml");
+		metrics.linesRead(1000, 0);
+		metrics.mark();
+
+		assertThat(metrics.getLinesPerSecond(), is(0.0));
+	}
+
+}
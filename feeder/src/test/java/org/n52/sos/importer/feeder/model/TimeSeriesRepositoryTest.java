@@ -32,10 +32,13 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 
+import java.util.Iterator;
+
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.n52.sos.importer.feeder.model.requests.InsertObservation;
 import org.n52.sos.importer.feeder.model.requests.RegisterSensor;
+import org.n52.sos.importer.feeder.util.DuplicateFilter;
 
 
 public class TimeSeriesRepositoryTest {
@@ -63,4 +66,31 @@ public class TimeSeriesRepositoryTest {
 		assertThat(registerSensor.getObservedProperties(), Matchers.containsInAnyOrder(observedProperty1,observedProperty2));
 	}
 
+	@Test
+	public void shouldKeepTimeSeriesOfLinePartlyInsertedBefore() {
+		final TimeSeriesRepository tsr = new TimeSeriesRepository(2);
+		final Sensor sensor = new Sensor("test-sensor-1-name", "test-sensor-1-uri");
+		final FeatureOfInterest foi = new FeatureOfInterest("foi-name", "foi-uri", null);
+		final Timestamp timeStamp = new Timestamp().set(System.currentTimeMillis());
+		final UnitOfMeasurement uom = new UnitOfMeasurement("uom-code", "uom-uri");
+		final Offering off = new Offering("offering-name", "offering-uri");
+		final InsertObservation io = new InsertObservation(sensor, foi, 1, timeStamp, uom,
+				new ObservedProperty("test-obs-prop-1-name", "test-obs-prop-1-uri"), off, "mv-type");
+		final InsertObservation io2 = new InsertObservation(sensor, foi, 2, timeStamp, uom,
+				new ObservedProperty("test-obs-prop-2-name", "test-obs-prop-2-uri"), off, "mv-type");
+		final DuplicateFilter filter = new DuplicateFilter(10, 0.01, true);
+		filter.add(io);
+		final InsertObservation[] ios = { io, io2 };
+
+		assertThat(filter.removeContained(ios), is(1));
+		tsr.addObservations(ios);
+
+		final Iterator<TimeSeries> timeSeries = tsr.getTimeSeries().iterator();
+		assertThat(timeSeries.next().isEmpty(), is(true));
+		final TimeSeries second = timeSeries.next();
+		assertThat(second.size(), is(1));
+		assertThat(second.getObservedProperty().getUri(), is("test-obs-prop-2-uri"));
+		assertThat(tsr.getRegisterSensor("test-sensor-1-uri").getObservedProperties(), hasSize(1));
+	}
+
 }
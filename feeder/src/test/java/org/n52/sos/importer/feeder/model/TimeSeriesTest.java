@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.model;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+
+public class TimeSeriesTest {
+
+	private final Sensor sensor = new Sensor("sensor-name", "sensor-uri");
+
+	private final FeatureOfInterest foi = new FeatureOfInterest("foi-name", "foi-uri", null);
+
+	private final UnitOfMeasurement uom = new UnitOfMeasurement("uom-code", "uom-uri");
+
+	private final ObservedProperty obsProp = new ObservedProperty("obs-prop-name", "obs-prop-uri");
+
+	private final Offering offering = new Offering("offering-name", "offering-uri");
+
+	@Test
+	public void shouldRecreateInsertObservations() {
+		final TimeSeries timeSeries = new TimeSeries(1);
+		timeSeries.addObservation(observation(foi, 1.5, 1000));
+		timeSeries.addObservation(observation(foi, 2.5, 2000));
+		timeSeries.addObservation(observation(foi, -3.0, 3000));
+
+		final List<? extends InsertObservation> ios = timeSeries.getInsertObservations();
+
+		assertThat(timeSeries.size(), is(3));
+		assertThat(ios.size(), is(3));
+		assertThat(ios.get(0).getResultValue(), is((Object) 1.5));
+		assertThat(ios.get(2).getResultValue(), is((Object) (-3.0)));
+		assertThat(ios.get(1).getTimeStamp().toString(), is(new Timestamp().set(2000).toString()));
+		assertThat(ios.get(1).getSensorURI(), is("sensor-uri"));
+		assertThat(ios.get(1).getObservedProperty(), is(obsProp));
+		assertThat(ios.get(1).getOffering().getUri(), is("offering-uri"));
+	}
+
+	@Test
+	public void shouldKeepValuesOfMixedTypes() {
+		final TimeSeries timeSeries = new TimeSeries();
+		timeSeries.addObservation(observation(foi, 1, 1000));
+		timeSeries.addObservation(observation(foi, 2, 2000));
+		timeSeries.addObservation(observation(foi, "n/a", 3000));
+
+		final List<? extends InsertObservation> ios = timeSeries.getInsertObservations();
+
+		assertThat(ios.get(0).getResultValue(), is((Object) 1));
+		assertThat(ios.get(1).getResultValue(), is((Object) 2));
+		assertThat(ios.get(2).getResultValue(), is((Object) "n/a"));
+	}
+
+	@Test
+	public void shouldKeepMetadataOfObservationsDifferentFromTheFirstOne() {
+		final FeatureOfInterest otherFoi = new FeatureOfInterest("other-foi-name", "other-foi-uri", null);
+		final TimeSeries timeSeries = new TimeSeries();
+		timeSeries.addObservation(observation(foi, true, 1000));
+		timeSeries.addObservation(observation(otherFoi, false, 2000));
+		timeSeries.addObservation(observation(foi, true, 3000));
+
+		final List<? extends InsertObservation> ios = timeSeries.getInsertObservations();
+
+		assertThat(ios.get(0).getFeatureOfInterestURI(), is("foi-uri"));
+		assertThat(ios.get(1).getFeatureOfInterestURI(), is("other-foi-uri"));
+		assertThat(ios.get(1).getResultValue(), is((Object) false));
+		assertThat(ios.get(2).getFeatureOfInterestURI(), is("foi-uri"));
+	}
+
+	@Test
+	public void shouldIgnoreNullObservations() {
+		final TimeSeries timeSeries = new TimeSeries();
+
+		assertThat(timeSeries.addObservation(null), is(false));
+		assertThat(timeSeries.isEmpty(), is(true));
+		assertThat(timeSeries.getSensorURI(), is(TimeSeries.SENSOR_ID_NOT_SET));
+	}
+
+	@Test
+	public void shouldWriteValuesOfDataArray() throws IOException {
+		final TimeSeries timeSeries = new TimeSeries();
+		timeSeries.addObservation(observation(foi, 1.5, 1000));
+		timeSeries.addObservation(observation(foi, 2.5, 2000));
+		final StringBuilder dataArray = new StringBuilder();
+
+		timeSeries.writeDataArray(dataArray);
+
+		final String expectedValues = new StringBuilder("<swe:values>")
+				.append(new Timestamp().set(1000)).append(";1.5@")
+				.append(new Timestamp().set(2000)).append(";2.5")
+				.append("</swe:values>").toString();
+		assertThat(dataArray.toString(), containsString("<swe:value>2</swe:value>"));
+		assertThat(dataArray.toString(), containsString("<swe:uom code=\"uom-code\"/>"));
+		assertThat(dataArray.toString(), containsString(expectedValues));
+	}
+
+	@Test
+	public void shouldEscapeValuesOfDataArray() throws IOException {
+		final TimeSeries timeSeries = new TimeSeries();
+		timeSeries.addObservation(observation(foi, "a<b&c", 1000));
+		final StringBuilder dataArray = new StringBuilder();
+
+		timeSeries.writeDataArray(dataArray);
+
+		assertThat(dataArray.toString(), containsString(";a&lt;b&amp;c</swe:values>"));
+	}
+
+	private InsertObservation observation(final FeatureOfInterest featureOfInterest, final Object value, final long time) {
+		return new InsertObservation(sensor,
+				featureOfInterest,
+				value,
+				new Timestamp().set(time),
+				uom,
+				obsProp,
+				offering,
+				"NUMERIC");
+	}
+
+}
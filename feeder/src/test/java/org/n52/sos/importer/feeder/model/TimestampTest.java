@@ -199,6 +199,43 @@ public class TimestampTest {
 		assertThat(timestamp.getTimezone(), is(Byte.MIN_VALUE));
 	}
 
+	@Test public void
+	shouldCalculateEpochMillisLikeToDate() throws ParseException {
+		final Timestamp withTimezone = new Timestamp().enrich("2015-03-17T13:37:42", "(.*)", "yyyy-MM-dd'T'HH:mm:ss");
+		withTimezone.setTimezone((byte) 2);
+		final Timestamp withoutTime = new Timestamp().enrich("2015-03-17", "(.*)", "yyyy-MM-dd");
+		final Timestamp withoutDate = new Timestamp().enrich("13:37", "(.*)", "HH:mm");
+
+		assertThat(withTimezone.toEpochMillis(), is(withTimezone.toDate().getTime()));
+		assertThat(withTimezone.toEpochMillis(), is(1426592262000L));
+		assertThat(withoutTime.toEpochMillis(), is(withoutTime.toDate().getTime()));
+		assertThat(withoutDate.toEpochMillis(), is(withoutDate.toDate().getTime()));
+	}
+
+	@Test public void
+	shouldRestorePackedTimestamp() {
+		timestamp.set(getCurrentTimeMillisTimestampCompatible());
+		final Timestamp partial = new Timestamp();
+		partial.setYear((short) 1969);
+		partial.setTimezone((byte) -5);
+
+		assertThat(Timestamp.unpack(timestamp.pack()).toString(), is(timestamp.toString()));
+		assertThat(Timestamp.unpack(partial.pack()).getYear(), is((short) 1969));
+		assertThat(Timestamp.unpack(partial.pack()).getMonth(), is(Byte.MIN_VALUE));
+		assertThat(Timestamp.unpack(partial.pack()).getTimezone(), is((byte) -5));
+		assertThat(Timestamp.unpack(new Timestamp().pack()).toString(), is(""));
+	}
+
+	@Test public void
+	shouldCompareTimestamps() {
+		final Timestamp earlier = new Timestamp().set(0);
+		final Timestamp later = new Timestamp().set(1000);
+
+		assertThat(earlier.before(later), is(true));
+		assertThat(later.after(earlier), is(true));
+		assertThat(earlier.after(earlier), is(false));
+	}
+
 	private long getCurrentTimeMillisTimestampCompatible() {
 		// Timestamp is not storing milliseconds now => remove them
 		return (System.currentTimeMillis() / 1000) * 1000;
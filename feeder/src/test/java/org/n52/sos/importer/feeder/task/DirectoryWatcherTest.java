@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryWatcherTest {
+
+	private File directory;
+
+	private final BlockingQueue<File> readyFiles = new LinkedBlockingQueue<>();
+
+	private DirectoryWatcher watcher;
+
+	private Thread thread;
+
+	@Before
+	public void startWatcher() throws IOException {
+		directory = File.createTempFile("watched", "");
+		directory.delete();
+		directory.mkdir();
+		watcher = new DirectoryWatcher(directory, Pattern.compile(".*\\.csv"), 200, new DirectoryWatcher.Listener() {
+			@Override
+			public void onFilesReady(final List<File> files) {
+				readyFiles.addAll(files);
+			}
+
+			@Override
+			public void onOverflow() {
+				// nothing to rescan
+			}
+		});
+		thread = new Thread(watcher);
+		thread.start();
+	}
+
+	@After
+	public void stopWatcher() throws IOException, InterruptedException {
+		watcher.close();
+		thread.join(10000);
+		for (final File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void shouldReportMatchingFileAfterQuietPeriod() throws IOException, InterruptedException {
+		final File file = new File(directory, "data.csv");
+		write(new File(directory, "data.txt"), "a;1\n");
+		write(file, "a;1\n");
+
+		assertThat(readyFiles.poll(10, TimeUnit.SECONDS), is(file));
+		assertThat(readyFiles.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+	}
+
+	@Test
+	public void shouldReportFileOnceWhileWritten() throws IOException, InterruptedException {
+		final File file = new File(directory, "data.csv");
+		for (int i = 0; i < 5; i++) {
+			write(file, "a;" + i + "\n");
+			Thread.sleep(50);
+		}
+
+		assertThat(readyFiles.poll(10, TimeUnit.SECONDS), is(file));
+		assertThat(readyFiles.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+		assertThat(thread.isAlive(), is(true));
+	}
+
+	private void write(final File file, final String data) throws IOException {
+		try (final FileWriter writer = new FileWriter(file, true)) {
+			writer.write(data);
+		}
+	}
+
+}
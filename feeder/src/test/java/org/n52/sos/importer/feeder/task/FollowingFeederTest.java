@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.task;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FollowingFeederTest {
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("followed", ".csv");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldFindEndOfLastCompleteLine() throws IOException {
+		write("a;1\nb;2\nc;");
+
+		try (final FileChannel channel = open()) {
+			assertThat(FollowingFeeder.findEndOfLastLine(channel, 0, channel.size()), is(8L));
+			assertThat(FollowingFeeder.findEndOfLastLine(channel, 4, channel.size()), is(8L));
+			assertThat(FollowingFeeder.findEndOfLastLine(channel, 8, channel.size()), is(8L));
+		}
+	}
+
+	@Test
+	public void shouldReturnOffsetWithoutCompleteLine() throws IOException {
+		write("a;1\nb;2");
+
+		try (final FileChannel channel = open()) {
+			assertThat(FollowingFeeder.findEndOfLastLine(channel, 4, channel.size()), is(4L));
+		}
+	}
+
+	@Test
+	public void shouldFindLineFeedBeforeLongPartialLine() throws IOException {
+		final StringBuilder partialLine = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			partialLine.append('x');
+		}
+		write("a;1\n" + partialLine);
+
+		try (final FileChannel channel = open()) {
+			assertThat(FollowingFeeder.findEndOfLastLine(channel, 0, channel.size()), is(4L));
+		}
+	}
+
+	@Test
+	public void shouldReadBetweenOffsetsOnly() throws IOException {
+		write("a;1\nb;2\nc;3\n");
+
+		try (final FileChannel channel = open()) {
+			channel.position(2);
+			final InputStream in = new FollowingFeeder.ChannelInputStream(channel, 4, 8);
+			assertThat(read(in), is("b;2\n"));
+			in.close();
+			assertThat(channel.isOpen(), is(true));
+			assertThat(channel.position(), is(2L));
+		}
+	}
+
+	private FileChannel open() throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+	}
+
+	private void write(final String data) throws IOException {
+		try (final FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(data.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private String read(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[3];
+		int read;
+		while ((read = in.read(buffer, 0, buffer.length)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CounterFileTest {
+
+	private File file;
+
+	private File dataFile;
+
+	@Before
+	public void createFiles() throws IOException {
+		file = File.createTempFile("data", ".csv_counter");
+		file.delete();
+		dataFile = File.createTempFile("data", ".csv");
+		write("a;1\nb;2\n", false);
+	}
+
+	@After
+	public void deleteFiles() {
+		file.delete();
+		dataFile.delete();
+	}
+
+	@Test
+	public void shouldRestoreOffsetOfAppendedFile() throws IOException {
+		new CounterFile(file).write(2, 8, dataFile);
+		write("c;3\n", true);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getLastLine(), is(2));
+		assertThat(counter.getOffset(dataFile), is(8L));
+	}
+
+	@Test
+	public void shouldIgnoreOffsetOfTruncatedFile() throws IOException {
+		new CounterFile(file).write(2, 8, dataFile);
+		write("a;1\n", false);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getLastLine(), is(2));
+		assertThat(counter.getOffset(dataFile), is(0L));
+		assertThat(counter.getLastLine(), is(0));
+	}
+
+	@Test
+	public void shouldIgnoreOffsetOfReplacedFile() throws IOException {
+		new CounterFile(file).write(2, 8, dataFile);
+		write("x;7\ny;8\nz;9\n", false);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getOffset(dataFile), is(0L));
+	}
+
+	@Test
+	public void shouldImportReplacedFileLongerThanOffsetFromBeginning() throws IOException {
+		new CounterFile(file).write(2, 8, dataFile);
+		write("x;7\ny;8\nz;9\nw;10\n", false);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getOffset(dataFile), is(0L));
+		assertThat(counter.getLastLine(), is(0));
+	}
+
+	@Test
+	public void shouldSkipLinesOfAppendedCompressedFile() throws IOException {
+		writeCompressed("a;1\nb;2\n", false);
+		new CounterFile(file).write(2, 8, dataFile);
+		writeCompressed("c;3\n", true);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getOffset(dataFile), is(0L));
+		assertThat(counter.getLastLine(), is(2));
+	}
+
+	@Test
+	public void shouldImportReplacedCompressedFileFromBeginning() throws IOException {
+		writeCompressed("a;1\nb;2\n", false);
+		new CounterFile(file).write(2, 8, dataFile);
+		writeCompressed("x;7\ny;8\nz;9\n", false);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getOffset(dataFile), is(0L));
+		assertThat(counter.getLastLine(), is(0));
+	}
+
+	@Test
+	public void shouldReadCounterFilesWithLineCountOnly() throws IOException {
+		try (final FileWriter out = new FileWriter(file)) {
+			out.write("42\n");
+		}
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getLastLine(), is(42));
+		assertThat(counter.getOffset(dataFile), is(0L));
+	}
+
+	@Test
+	public void shouldHandleEmptyCounterFileLikeNoCheckpoint() throws IOException {
+		new FileWriter(file).close();
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getLastLine(), is(0));
+		assertThat(counter.getOffset(dataFile), is(0L));
+	}
+
+	@Test
+	public void shouldReplaceExistingCounterFile() throws IOException {
+		new CounterFile(file).write(2, 8, dataFile);
+		new CounterFile(file).write(1, 0, dataFile);
+
+		final CounterFile counter = new CounterFile(file);
+		counter.read();
+
+		assertThat(counter.getLastLine(), is(1));
+		assertThat(counter.getOffset(dataFile), is(0L));
+		assertThat(file.getAbsoluteFile().getParentFile().list(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.startsWith(file.getName()) && name.endsWith(".tmp");
+			}
+		}).length, is(0));
+	}
+
+	private void write(final String data, final boolean append) throws IOException {
+		try (final OutputStream out = new FileOutputStream(dataFile, append)) {
+			out.write(data.getBytes("UTF-8"));
+		}
+	}
+
+	/*
+	 * Appends a new gzip member, which is still a valid gzip file.
+	 */
+	private void writeCompressed(final String data, final boolean append) throws IOException {
+		try (final OutputStream out = new GZIPOutputStream(new FileOutputStream(dataFile, append))) {
+			out.write(data.getBytes("UTF-8"));
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.n52.sos.importer.feeder.Observations.createObservation;
+import static org.n52.sos.importer.feeder.Observations.createTimestamp;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+
+public class DeadLetterStoreTest {
+
+	private File file;
+
+	private DeadLetterStore store;
+
+	@Before
+	public void createStore() throws IOException {
+		file = File.createTempFile("config.xml", "_failedObservations");
+		file.delete();
+		store = new DeadLetterStore(file);
+	}
+
+	@After
+	public void deleteFiles() {
+		file.delete();
+		new File(file.getAbsolutePath() + ".replay").delete();
+		for (final File quarantined : getQuarantinedFiles()) {
+			quarantined.delete();
+		}
+	}
+
+	@Test
+	public void shouldRestoreAppendedObservations() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10),
+				createObservation("sensor-1", 42, 11),
+				createObservation("sensor-2", "text", 12)));
+
+		final DeadLetterStore.Drain drain = store.drain();
+		final List<InsertObservation> observations = drain.next();
+
+		assertThat(observations.size(), is(3));
+		assertThat(observations.get(0).getSensorURI(), is("sensor-1"));
+		assertThat(observations.get(0).getResultValue(), is((Object) 1.5));
+		assertThat(observations.get(0).getTimeStamp().toString(), is(createTimestamp(10).toString()));
+		assertThat(observations.get(0).getFeatureOfInterest().getPosition().getLatitude(), is(52.0));
+		assertThat(observations.get(1).getResultValue(), is((Object) 42));
+		assertThat(observations.get(2).getSensorURI(), is("sensor-2"));
+		assertThat(observations.get(2).getResultValue(), is((Object) "text"));
+		assertThat(observations.get(2).getMeasuredValueType(), is("NUMERIC"));
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+		assertThat(store.exists(), is(false));
+	}
+
+	@Test
+	public void shouldSplitObservationsIntoRecords() throws IOException {
+		final List<InsertObservation> observations = new ArrayList<>();
+		for (int i = 0; i < 1500; i++) {
+			observations.add(createObservation("sensor-1", (double) i, i % 60));
+		}
+		store.append(observations);
+
+		try (final DeadLetterStore.Drain drain = store.drain()) {
+			assertThat(drain.next().size(), is(1000));
+			assertThat(drain.next().get(499).getResultValue(), is((Object) 1499.0));
+			assertThat(drain.next(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void shouldIgnoreIncompleteRecord() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10)));
+		store.append(Arrays.asList(createObservation("sensor-1", 2.5, 11)));
+		// simulate a process killed while appending
+		final long length = file.length();
+		try (final FileOutputStream out = new FileOutputStream(file, true)) {
+			out.getChannel().truncate(length - 5);
+		}
+
+		final DeadLetterStore.Drain drain = store.drain();
+		assertThat(drain.next().get(0).getResultValue(), is((Object) 1.5));
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+		assertThat(store.exists(), is(false));
+	}
+
+	@Test
+	public void shouldRemoveIncompleteRecordBeforeAppending() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10)));
+		store.append(Arrays.asList(createObservation("sensor-1", 2.5, 11)));
+		// simulate a process killed while appending
+		final long length = file.length();
+		try (final FileOutputStream out = new FileOutputStream(file, true)) {
+			out.getChannel().truncate(length - 5);
+		}
+		store.append(Arrays.asList(createObservation("sensor-1", 3.5, 12)));
+
+		final DeadLetterStore.Drain drain = store.drain();
+		assertThat(drain.next().get(0).getResultValue(), is((Object) 1.5));
+		assertThat(drain.next().get(0).getResultValue(), is((Object) 3.5));
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+		assertThat(store.exists(), is(false));
+	}
+
+	@Test
+	public void shouldQuarantineFileWithCorruptedRecord() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10)));
+		store.append(Arrays.asList(createObservation("sensor-1", 2.5, 11)));
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(12);
+			raf.write(~raf.read());
+		}
+		final long length = file.length();
+
+		final DeadLetterStore.Drain drain = store.drain();
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+
+		assertThat(store.exists(), is(false));
+		assertThat(getQuarantinedFiles().length, is(1));
+		// incl. the record behind the corrupted one
+		assertThat(getQuarantinedFiles()[0].length(), is(length));
+	}
+
+	@Test
+	public void shouldNotReadRecordsOfInvalidLength() throws IOException {
+		try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(Integer.MAX_VALUE);
+			out.writeInt(0);
+			out.write(new byte[16]);
+		}
+
+		final DeadLetterStore.Drain drain = store.drain();
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+
+		assertThat(getQuarantinedFiles().length, is(1));
+	}
+
+	@Test
+	public void shouldKeepObservationsAppendedDuringDrain() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10)));
+
+		final DeadLetterStore.Drain drain = store.drain();
+		store.append(Arrays.asList(createObservation("sensor-1", 2.5, 11)));
+		assertThat(drain.next().get(0).getResultValue(), is((Object) 1.5));
+		assertThat(drain.next(), is(nullValue()));
+		drain.finish();
+
+		assertThat(store.exists(), is(true));
+		try (final DeadLetterStore.Drain next = store.drain()) {
+			assertThat(next.next().get(0).getResultValue(), is((Object) 2.5));
+		}
+	}
+
+	@Test
+	public void shouldContinueUnfinishedDrain() throws IOException {
+		store.append(Arrays.asList(createObservation("sensor-1", 1.5, 10)));
+		store.drain().close();
+		store.append(Arrays.asList(createObservation("sensor-1", 2.5, 11)));
+
+		try (final DeadLetterStore.Drain drain = store.drain()) {
+			assertThat(drain.next().get(0).getResultValue(), is((Object) 1.5));
+			assertThat(drain.next(), is(nullValue()));
+		}
+	}
+
+	private File[] getQuarantinedFiles() {
+		return file.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.startsWith(file.getName() + ".replay.corrupt-") || name.startsWith(file.getName() + ".corrupt-");
+			}
+		});
+	}
+
+}
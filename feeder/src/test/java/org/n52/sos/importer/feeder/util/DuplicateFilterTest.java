@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.n52.sos.importer.feeder.Observations.createObservation;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.importer.feeder.model.requests.InsertObservation;
+
+public class DuplicateFilterTest {
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("http___localhost_8080_sos", "_observations");
+		file.delete();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldContainAddedObservationsOnly() {
+		final DuplicateFilter filter = new DuplicateFilter(100, 0.01, true);
+		filter.add(createObservation("sensor-1", 1.5, 10));
+
+		// the value is not part of the key
+		assertThat(filter.contains(createObservation("sensor-1", 2.5, 10)), is(true));
+		assertThat(filter.contains(createObservation("sensor-1", 1.5, 11)), is(false));
+		assertThat(filter.contains(createObservation("sensor-2", 1.5, 10)), is(false));
+		assertThat(filter.size(), is(1));
+	}
+
+	@Test
+	public void shouldReplaceContainedObservationsByNull() {
+		final DuplicateFilter filter = new DuplicateFilter(100, 0.01, true);
+		final InsertObservation inserted = createObservation("sensor-1", 1.5, 10);
+		final InsertObservation notInserted = createObservation("sensor-2", 1.5, 10);
+		filter.add(inserted);
+		final InsertObservation[] ios = { null, inserted, notInserted };
+
+		// the null of an observation not parsed is not a duplicate
+		assertThat(filter.removeContained(ios), is(1));
+		assertThat(ios, is(new InsertObservation[] { null, null, notInserted }));
+	}
+
+	@Test
+	public void shouldNotAddObservationsIfFull() {
+		final DuplicateFilter filter = new DuplicateFilter(10, 0.01, true);
+		for (int i = 0; i < 20; i++) {
+			filter.add(createObservation("sensor-1", 1.5, i));
+		}
+
+		assertThat(filter.isFull(), is(true));
+		assertThat(filter.size(), is(10));
+		assertThat(filter.contains(createObservation("sensor-1", 1.5, 9)), is(true));
+		assertThat(filter.contains(createObservation("sensor-1", 1.5, 10)), is(false));
+	}
+
+	@Test
+	public void shouldKeepFalsePositiveRateOfProbabilisticFilter() {
+		final DuplicateFilter filter = new DuplicateFilter(1000, 0.01, false);
+		for (int i = 0; i < 1000; i++) {
+			filter.add(createObservation("sensor-" + i, 1.5, 0));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.contains(createObservation("other-sensor-" + i, 1.5, 0))) {
+				falsePositives++;
+			}
+		}
+
+		assertThat(filter.contains(createObservation("sensor-999", 1.5, 0)), is(true));
+		assertThat(falsePositives < 200, is(true));
+	}
+
+	@Test
+	public void shouldMergeObservationsOfOtherFiltersOnSave() {
+		final DuplicateFilter first = new DuplicateFilter(file, 100, 0.01, true);
+		final DuplicateFilter second = new DuplicateFilter(file, 100, 0.01, true);
+		first.add(createObservation("sensor-1", 1.5, 10));
+		second.add(createObservation("sensor-2", 1.5, 10));
+		first.save();
+		second.save();
+
+		final DuplicateFilter loaded = new DuplicateFilter(file, 100, 0.01, true);
+		loaded.load();
+
+		assertThat(loaded.size(), is(2));
+		assertThat(loaded.contains(createObservation("sensor-1", 1.5, 10)), is(true));
+		assertThat(loaded.contains(createObservation("sensor-2", 1.5, 10)), is(true));
+	}
+
+	@Test
+	public void shouldIgnoreFileCreatedWithOtherParameters() {
+		final DuplicateFilter filter = new DuplicateFilter(file, 100, 0.01, true);
+		filter.add(createObservation("sensor-1", 1.5, 10));
+		filter.save();
+
+		final DuplicateFilter loaded = new DuplicateFilter(file, 200, 0.01, true);
+		loaded.load();
+
+		assertThat(loaded.size(), is(0));
+		assertThat(loaded.contains(createObservation("sensor-1", 1.5, 10)), is(false));
+	}
+
+	@Test
+	public void shouldOverwriteFileAfterClear() {
+		final DuplicateFilter filter = new DuplicateFilter(file, 100, 0.01, false);
+		filter.add(createObservation("sensor-1", 1.5, 10));
+		filter.save();
+		filter.clear();
+		filter.add(createObservation("sensor-2", 1.5, 10));
+		filter.save();
+
+		final DuplicateFilter loaded = new DuplicateFilter(file, 100, 0.01, false);
+		loaded.load();
+
+		assertThat(loaded.contains(createObservation("sensor-1", 1.5, 10)), is(false));
+		assertThat(loaded.contains(createObservation("sensor-2", 1.5, 10)), is(true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptInvalidFalsePositiveRate() {
+		new DuplicateFilter(100, 1.0, false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAcceptSizeAboveMaximum() {
+		new DuplicateFilter(DuplicateFilter.MAX_SIZE + 1, 0.01, true);
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2011-2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.importer.feeder.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SensorRegistryTest {
+
+	private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("sensor-registry", ".properties");
+		file.delete();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldRestoreSavedSensorsAndOfferings() {
+		final SensorRegistry registry = new SensorRegistry(file, ONE_DAY);
+		registry.add("http://example.org/sensor-1", "http://example.org/offering-1");
+		registry.add("urn:ogc:object:sensor-2");
+		registry.save();
+
+		final SensorRegistry restored = new SensorRegistry(file, ONE_DAY);
+		restored.load();
+
+		assertThat(restored.size(), is(2));
+		assertThat(restored.contains("http://example.org/sensor-1"), is(true));
+		assertThat(restored.getOffering("http://example.org/sensor-1"), is("http://example.org/offering-1"));
+		assertThat(restored.contains("urn:ogc:object:sensor-2"), is(true));
+		assertThat(restored.getOffering("urn:ogc:object:sensor-2"), is(nullValue()));
+	}
+
+	@Test
+	public void shouldIgnoreOutdatedEntries() throws IOException {
+		final Properties props = new Properties();
+		props.setProperty("sensor-old", Long.toString(System.currentTimeMillis() - 2 * ONE_DAY));
+		props.setProperty("sensor-new", Long.toString(System.currentTimeMillis()) + " offering");
+		try (OutputStream out = new FileOutputStream(file)) {
+			props.store(out, null);
+		}
+
+		final SensorRegistry registry = new SensorRegistry(file, ONE_DAY);
+		registry.load();
+
+		assertThat(registry.contains("sensor-old"), is(false));
+		assertThat(registry.contains("sensor-new"), is(true));
+		assertThat(registry.getOffering("sensor-new"), is("offering"));
+	}
+
+	@Test
+	public void shouldKeepOfferingWhenConfirmingSensor() {
+		final SensorRegistry registry = new SensorRegistry();
+		registry.add("sensor", "offering");
+		registry.add("sensor");
+
+		assertThat(registry.getOffering("sensor"), is("offering"));
+	}
+
+	@Test
+	public void shouldRemoveOnlySensorsNotConfirmedSinceLoading() throws InterruptedException {
+		final SensorRegistry registry = new SensorRegistry(file, ONE_DAY);
+		registry.add("sensor-loaded");
+		registry.add("sensor-confirmed");
+		registry.save();
+		Thread.sleep(5);
+
+		final SensorRegistry restored = new SensorRegistry(file, ONE_DAY);
+		restored.load();
+		restored.add("sensor-confirmed");
+
+		assertThat(restored.removeIfNotConfirmed("sensor-loaded"), is(true));
+		assertThat(restored.removeIfNotConfirmed("sensor-confirmed"), is(false));
+		assertThat(restored.contains("sensor-loaded"), is(false));
+		assertThat(restored.contains("sensor-confirmed"), is(true));
+	}
+
+	@Test
+	public void shouldNotWriteFileIfNotPersistent() {
+		final SensorRegistry registry = new SensorRegistry();
+		registry.add("sensor");
+		registry.save();
+
+		assertThat(registry.contains("sensor"), is(true));
+		assertThat(file.exists(), is(false));
+	}
+
+}